@@ -19,6 +19,9 @@ import java.util.Properties;
  * - app_window_start_width: The starting width of the application window (default: 850).
  * - app_window_start_height: The starting height of the application window (default: 600).
  * - extra_classes_folder: The folder for extra viewers and readers (default: "viewers_readers").
+ * - content_index_folder: The folder of the documents' content index (default: "content_index").
+ * - library_store_folder: The folder where the library and shelves are saved (default: "library_store").
+ * - metadata_cache_file: The file where the metadata read from documents is cached (default: "metadata.cache").
  * 
  * Usage:
  * <pre>
@@ -46,6 +49,12 @@ public enum AppProperties {
 	
 	public final String FOLDER_EXTRA_VIEWERS_AND_READERS;
 	public final String FOLDER_DOCUMENT_FILES;
+	public final String FOLDER_CONTENT_INDEX;
+	public final String FOLDER_LIBRARY_STORE;
+	public final String FILE_METADATA_CACHE;
+	
+	public final int PAGE_CACHE_MEGABYTES;
+	public final int THUMBNAIL_CACHE_MEGABYTES;
 
 	private Properties appProperties;
 	
@@ -73,6 +82,12 @@ public enum AppProperties {
 		
 		FOLDER_EXTRA_VIEWERS_AND_READERS = parseString("extra_classes_folder", "viewers_readers");
 		FOLDER_DOCUMENT_FILES = parseString("docs_files_folder", "doc_files");
+		FOLDER_CONTENT_INDEX = parseString("content_index_folder", "content_index");
+		FOLDER_LIBRARY_STORE = parseString("library_store_folder", "library_store");
+		FILE_METADATA_CACHE = parseString("metadata_cache_file", "metadata.cache");
+		
+		PAGE_CACHE_MEGABYTES = parseInt("page_cache_megabytes", 64);
+		THUMBNAIL_CACHE_MEGABYTES = parseInt("thumbnail_cache_megabytes", 32);
 	}
 
 	private int parseInt(String property, int defaultValue) {
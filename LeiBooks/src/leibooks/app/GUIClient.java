@@ -15,9 +15,11 @@ import leibooks.ui.UIMain;
 public class GUIClient {
 
 	public static void main(String[] args) {
-		LEIBooks leib = new LEIBooks();
+		LEIBooks leib = new LEIBooks(AppProperties.INSTANCE.FOLDER_LIBRARY_STORE);
 
-		LoaderDocuments.loadState(leib.getLibraryController(), leib.getShelvesController());
+		// the first time, start with some documents and shelves
+		if (!leib.getLibraryController().getDocuments().iterator().hasNext())
+			LoaderDocuments.loadState(leib.getLibraryController(), leib.getShelvesController());
 
 		UIMain.run(new LEIBooksBookshelfUIDelegate(leib.getShelvesController(), leib.getLibraryController()), 
 				new LEIBooksDocumentUIDelegate(), new LEIBooksDocumentMetadataUIDelegate());
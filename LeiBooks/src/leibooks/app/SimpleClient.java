@@ -7,10 +7,12 @@ import java.util.Map;
 
 import javax.naming.OperationNotSupportedException;
 
+import leibooks.domain.facade.DocumentAttribute;
 import leibooks.domain.facade.IDocument;
 import leibooks.domain.facade.ILibraryController;
 import leibooks.domain.facade.IShelvesController;
 import leibooks.domain.facade.LEIBooks;
+import leibooks.domain.facade.ShelfCriteria;
 import leibooks.domain.facade.events.DocumentEvent;
 import leibooks.domain.facade.events.LBEvent;
 import leibooks.domain.metadatareader.MetadataReaderFactory;
@@ -143,7 +145,8 @@ public class SimpleClient {
 		System.out.println(OPEN_MSG);		
 		System.out.println("Create a smart shelf  with docs modified today");
 		System.out.println(CLOSE_MSG);
-		sc.addSmartShelf("Today", d -> (d.getLastModifiedDate()).equals(LocalDate.now()));
+		sc.addSmartShelf("Today", ShelfCriteria.of(d -> (d.getLastModifiedDate()).equals(LocalDate.now()),
+				DocumentAttribute.DATE));
 	}
 
 	private static void createAndPopulateSomeNormalShelves(IShelvesController sc, List<IDocument> docs) {
@@ -1,5 +1,10 @@
 package leibooks.app.delegates;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 import javax.naming.OperationNotSupportedException;
 
 import leibooks.domain.facade.DocumentProperties;
@@ -7,6 +12,7 @@ import leibooks.domain.facade.IDocument;
 import leibooks.domain.facade.ILibraryController;
 import leibooks.domain.facade.IShelvesController;
 import leibooks.domain.facade.events.AddDocumentEvent;
+import leibooks.domain.facade.events.AddDocumentsEvent;
 import leibooks.domain.facade.events.AddShelfEvent;
 import leibooks.domain.facade.events.DocumentEvent;
 import leibooks.domain.facade.events.LBEvent;
@@ -15,6 +21,8 @@ import leibooks.domain.facade.events.RemoveDocumentShelfEvent;
 import leibooks.domain.facade.events.RemoveShelfEvent;
 import leibooks.domain.facade.events.ShelfEvent;
 import leibooks.ui.delegates.BookshelfUIDelegate;
+import leibooks.utils.BatchListener;
+import leibooks.utils.EventBus;
 
 /**
  * The bookshelf ui delegate default implementation
@@ -22,7 +30,8 @@ import leibooks.ui.delegates.BookshelfUIDelegate;
  * @author fmartins
  *
  */
-public class LEIBooksBookshelfUIDelegate extends BookshelfUIDelegate {
+public class LEIBooksBookshelfUIDelegate extends BookshelfUIDelegate 
+		implements BatchListener<LBEvent> {
 
 	private IShelvesController shelvesController;
 	private ILibraryController libraryController;
@@ -31,8 +40,9 @@ public class LEIBooksBookshelfUIDelegate extends BookshelfUIDelegate {
 			ILibraryController libraryHandler) {
 		this.shelvesController = shelvesHandler;
 		this.libraryController = libraryHandler;
-		libraryHandler.registerListener(this); 
-		shelvesHandler.registerListener(this);
+		// on the event dispatch thread, so updating the bookshelf never holds up the domain
+		libraryHandler.registerListener(EventBus.onEventDispatchThread(this)); 
+		shelvesHandler.registerListener(EventBus.onEventDispatchThread(this));
 	}
 
 	@Override
@@ -92,11 +102,39 @@ public class LEIBooksBookshelfUIDelegate extends BookshelfUIDelegate {
 			handleShelfEvents (se);
 		else if (event instanceof DocumentEvent de)
 			handleDocumentEvents (de);
+		else if (event instanceof AddDocumentsEvent ae)
+			addToDocumentsPanel(ae.getDocuments());
+	}
+	
+	@Override
+	public void processBatch(List<LBEvent> events) {
+		// consecutive additions go to the panel together, so it is refreshed once
+		List<IDocument> added = new ArrayList<>();
+		for (LBEvent event : events) {
+			if (event instanceof AddDocumentEvent ae)
+				added.add(ae.getDocument());
+			else if (event instanceof AddDocumentsEvent ae)
+				ae.getDocuments().forEach(added::add);
+			else {
+				flushAdded(added);
+				processEvent(event);
+			}
+		}
+		flushAdded(added);
+	}
+	
+	private void flushAdded(List<IDocument> added) {
+		if (!added.isEmpty()) {
+			addToDocumentsPanel(new ArrayList<>(added));
+			added.clear();
+		}
 	}
 	
 	private void handleDocumentEvents (DocumentEvent event) {
-		if (event instanceof RemoveDocumentEvent) 
-			removeSelectedDocumentFromPanel ();
+		if (event instanceof RemoveDocumentEvent) {
+			releaseDocument(event.getDocument());
+			removeDocumentFromPanel (event.getDocument());
+		}
 		else if (event instanceof AddDocumentEvent) 
 			addToDocumentsPanel(event.getDocument());
 	}
@@ -107,7 +145,7 @@ public class LEIBooksBookshelfUIDelegate extends BookshelfUIDelegate {
 		else if (event instanceof AddShelfEvent) 
 			addShelfTreeNode(event.getShelfName());
 		else if (event instanceof RemoveDocumentShelfEvent)
-			removeSelectedDocumentFromPanel ();
+			removeDocumentFromPanel (((RemoveDocumentShelfEvent) event).getDocument());
 	}
 
 	@Override
@@ -117,6 +155,8 @@ public class LEIBooksBookshelfUIDelegate extends BookshelfUIDelegate {
 
 	@Override
 	public Iterable<IDocument> searchDocuments(String query) {
-		return libraryController.getMatches(query);
+		Set<IDocument> result = new LinkedHashSet<>(libraryController.getMatches(query));
+		result.addAll(libraryController.getContentMatches(query));
+		return result;
 	}
 }
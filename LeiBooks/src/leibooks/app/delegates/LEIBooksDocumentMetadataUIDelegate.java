@@ -6,6 +6,7 @@ import leibooks.domain.facade.events.DocumentEvent;
 import leibooks.domain.facade.events.RemoveAnnotationEvent;
 import leibooks.domain.facade.events.ToggleBookmarkEvent;
 import leibooks.ui.delegates.DocumentMetadataUIDelegate;
+import leibooks.utils.EventBus;
 
 /**
  * The document's metadata ui delegate default implementation
@@ -23,10 +24,10 @@ public class LEIBooksDocumentMetadataUIDelegate extends DocumentMetadataUIDelega
 	
 	public void setDocument (IDocument doc) {
 		if (document != null)
-			document.unregisterListener(this);
+			document.unregisterListener(EventBus.onEventDispatchThread(this));
 		document = doc;
 		if (document != null)
-			document.registerListener(this);
+			document.registerListener(EventBus.onEventDispatchThread(this));
 	}
 	
 	@Override
@@ -45,7 +46,7 @@ public class LEIBooksDocumentMetadataUIDelegate extends DocumentMetadataUIDelega
 
 	@Override
 	public void deleteObservers() {
-		document.unregisterListener(this);
+		document.unregisterListener(EventBus.onEventDispatchThread(this));
 	}
 
 	@Override
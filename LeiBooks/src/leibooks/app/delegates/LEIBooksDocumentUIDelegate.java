@@ -10,6 +10,7 @@ import leibooks.domain.facade.events.ToggleBookmarkEvent;
 import leibooks.services.viewer.IViewer;
 import leibooks.services.viewer.swing.SwingViewerFactory;
 import leibooks.ui.delegates.DocumentUIDelegate;
+import leibooks.utils.EventBus;
 
 /**
  * The document viewer ui delegate default implementation
@@ -87,12 +88,12 @@ public class LEIBooksDocumentUIDelegate extends DocumentUIDelegate {
 
 	@Override
 	public void setListeners() {
-		document.registerListener(this);
+		document.registerListener(EventBus.onEventDispatchThread(this));
 	}
 
 	@Override
 	public void deleteListeners() {
-		document.unregisterListener(this);
+		document.unregisterListener(EventBus.onEventDispatchThread(this));
 	}
 
 	@Override
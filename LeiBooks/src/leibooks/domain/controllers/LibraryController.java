@@ -1,21 +1,37 @@
 package leibooks.domain.controllers;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 import leibooks.domain.core.ILibrary;
 import leibooks.domain.core.Library;
 import leibooks.domain.core.DocumentFactory;
+import leibooks.domain.core.DocumentId;
 import leibooks.domain.facade.DocumentProperties;
 import leibooks.domain.facade.IDocument;
 import leibooks.domain.facade.ILibraryController;
+import leibooks.domain.facade.ImportReport;
 import leibooks.domain.facade.events.AddDocumentEvent;
+import leibooks.domain.facade.events.AddDocumentsEvent;
 import leibooks.domain.facade.events.RemoveDocumentEvent;
 import leibooks.domain.facade.events.DocumentEvent;
 import leibooks.domain.facade.events.LBEvent;
+import leibooks.domain.search.ContentIndexer;
+import leibooks.domain.search.DocumentIndex;
 import leibooks.utils.AbsSubject;
 import leibooks.utils.Listener;
 
@@ -28,19 +44,63 @@ import leibooks.utils.Listener;
  */
 public class LibraryController extends AbsSubject<LBEvent> implements ILibraryController {
 
+    /**
+     * Number of threads that read the metadata of the files in a bulk import
+     */
+    private static final int IMPORT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Number of documents added to the library at once in a bulk import
+     */
+    private static final int IMPORT_BATCH = 1000;
+
+    private static final String ALREADY_IN_LIBRARY = "already in the library";
+
     private final ILibrary library;
+    private final DocumentIndex index;
+    private final ContentIndexer contentIndexer;
     
     /**
-     * Constructs a LibraryController for the given library.
+     * Constructs a LibraryController for the given library, without a content index.
      *
      * @param library the library to be controlled; must not be null.
      * @throws IllegalArgumentException if library is null.
      */
     public LibraryController(Library library) {
+        this(library, null);
+    }
+
+    /**
+     * Constructs a LibraryController for the given library, whose documents'
+     * contents are indexed by the given indexer. The indexing progress events
+     * are not propagated to the observers of the controller, which are mostly
+     * the UI: whoever follows the progress listens to the indexer itself.
+     *
+     * @param library the library to be controlled; must not be null.
+     * @param contentIndexer the indexer of the library's contents; null if there is none.
+     * @throws IllegalArgumentException if library is null.
+     */
+    public LibraryController(Library library, ContentIndexer contentIndexer) {
         if(library == null) {
             throw new IllegalArgumentException("Library cannot be null");
         }
         this.library = library;
+        this.index = new DocumentIndex(library);
+        this.contentIndexer = contentIndexer;
+    }
+
+    /**
+     * @return the indexer of the library's contents, whose events report the indexing progress
+     */
+    public Optional<ContentIndexer> getContentIndexer() {
+        return Optional.ofNullable(contentIndexer);
+    }
+
+    /**
+     * @return the index of the titles and authors of the documents of the library
+     */
+    public DocumentIndex getDocumentIndex() {
+        return index;
     }
 
     /**
@@ -50,7 +110,7 @@ public class LibraryController extends AbsSubject<LBEvent> implements ILibraryCo
      */
     @Override
     public void emitEvent(LBEvent e) {
-        listeners.forEach(listener -> listener.processEvent(e));
+        super.emitEvent(e);
     }
 
     /**
@@ -60,9 +120,7 @@ public class LibraryController extends AbsSubject<LBEvent> implements ILibraryCo
      */
     @Override
     public void registerListener(Listener<LBEvent> obs) {
-        if (obs != null && !listeners.contains(obs)) {
-            listeners.add(obs);
-        }
+        super.registerListener(obs);
     }
 
     /**
@@ -72,9 +130,7 @@ public class LibraryController extends AbsSubject<LBEvent> implements ILibraryCo
      */
     @Override
     public void unregisterListener(Listener<LBEvent> obs) {
-        if (obs != null) {
-            listeners.remove(obs);
-        }
+        super.unregisterListener(obs);
     }
 
     /**
@@ -106,6 +162,7 @@ public class LibraryController extends AbsSubject<LBEvent> implements ILibraryCo
      * @param pathTofile the file system path; must not be null.
      * @return Optional containing the document if successful; empty if not.
      * @ensures If the file is missing or unreadable, returns Optional.empty().
+     * @ensures If the file is already in the library, returns Optional.empty().
      */
     @Override
     public Optional<IDocument> importDocument(String title, String pathTofile) {
@@ -118,6 +175,10 @@ public class LibraryController extends AbsSubject<LBEvent> implements ILibraryCo
                 System.out.println("-------->> File " + pathTofile.replace("\\", "/") + " not found or could not be open");
                 return Optional.empty();
             }
+            if (library.getDocument(pathTofile).isPresent()) {
+                System.out.println("-------->> File " + pathTofile.replace("\\", "/") + " is already in the library");
+                return Optional.empty();
+            }
             IDocument document = DocumentFactory.INSTANCE.createDocument(title, pathTofile);
             emitEvent(new AddDocumentEvent(document));
             library.addDocument(document);
@@ -128,6 +189,117 @@ public class LibraryController extends AbsSubject<LBEvent> implements ILibraryCo
         }
     }
     
+    /**
+     * Imports several files. Their metadata is read in parallel by a bounded pool of
+     * threads, and the documents are added to the library in batches, in the given order.
+     * The observers get a single AddDocumentsEvent with all the imported documents.
+     *
+     * @param paths the files to import.
+     * @return the outcome of importing each file, in the given order.
+     */
+    @Override
+    public ImportReport importDocuments(Collection<Path> paths) {
+        ImportReport report = new ImportReport();
+        if (paths == null || paths.isEmpty()) {
+            return report;
+        }
+        List<Path> files = new ArrayList<>(paths);
+        IDocument[] documents = new IDocument[files.size()];
+        String[] failures = new String[files.size()];
+        List<IDocument> imported = new ArrayList<>();
+
+        ExecutorService readers = Executors.newFixedThreadPool(Math.min(IMPORT_THREADS, files.size()));
+        List<Integer> batch = new ArrayList<>(IMPORT_BATCH);
+        try {
+            List<Future<IDocument>> reads = new ArrayList<>(files.size());
+            Set<String> seen = new HashSet<>();
+            for (Path file : files) {
+                String pathToFile = file.toString();
+                if (library.getDocument(pathToFile).isPresent() || !seen.add(DocumentId.canonicalPath(pathToFile))) {
+                    reads.add(null);
+                } else {
+                    reads.add(readers.submit(() -> DocumentFactory.INSTANCE.createDocument(titleOf(file), pathToFile)));
+                }
+            }
+            for (int i = 0; i < files.size(); i++) {
+                if (reads.get(i) == null) {
+                    failures[i] = ALREADY_IN_LIBRARY;
+                    continue;
+                }
+                try {
+                    documents[i] = reads.get(i).get();
+                    batch.add(i);
+                } catch (ExecutionException e) {
+                    failures[i] = "could not be read: " + e.getCause().getMessage();
+                }
+                if (batch.size() == IMPORT_BATCH) {
+                    addBatch(batch, documents, failures, imported);
+                }
+            }
+            addBatch(batch, documents, failures, imported);
+        } catch (InterruptedException e) {
+            // the documents already read are added, the others are reported as interrupted
+            addBatch(batch, documents, failures, imported);
+            Thread.currentThread().interrupt();
+        } finally {
+            readers.shutdownNow();
+        }
+
+        for (int i = 0; i < files.size(); i++) {
+            if (failures[i] != null || documents[i] == null) {
+                report.addFailure(files.get(i), failures[i] != null ? failures[i] : "interrupted");
+            } else {
+                report.addImported(files.get(i), documents[i]);
+            }
+        }
+        DocumentFactory.INSTANCE.saveMetadataCache();
+        if (!imported.isEmpty()) {
+            emitEvent(new AddDocumentsEvent(imported));
+        }
+        return report;
+    }
+
+    /**
+     * Imports the regular files of a folder (see importDocuments), sorted by path.
+     *
+     * @param folder the folder.
+     * @param recursive whether to import the files of its subfolders too.
+     * @return the outcome of importing each file; a failure for the folder if it cannot be listed.
+     */
+    @Override
+    public ImportReport importFolder(Path folder, boolean recursive) {
+        try (Stream<Path> entries = recursive ? Files.walk(folder) : Files.list(folder)) {
+            return importDocuments(entries.filter(Files::isRegularFile).sorted().toList());
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("-------->> Folder " + folder.toString().replace("\\", "/") + " could not be listed");
+            ImportReport report = new ImportReport();
+            report.addFailure(folder, "could not be listed: " + e.getMessage());
+            return report;
+        }
+    }
+
+    private void addBatch(List<Integer> batch, IDocument[] documents, String[] failures, List<IDocument> imported) {
+        List<IDocument> toAdd = new ArrayList<>(batch.size());
+        for (int i : batch) {
+            toAdd.add(documents[i]);
+        }
+        Set<IDocument> added = new HashSet<>(library.addDocuments(toAdd));
+        for (int i : batch) {
+            if (added.contains(documents[i])) {
+                imported.add(documents[i]);
+            } else {
+                failures[i] = ALREADY_IN_LIBRARY;
+            }
+        }
+        batch.clear();
+    }
+
+    private static String titleOf(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
     /**
      * Removes the specified document from the library.
      *
@@ -152,13 +324,42 @@ public class LibraryController extends AbsSubject<LBEvent> implements ILibraryCo
     
     /**
      * Retrieves a list of documents from the library that match the given regular expression.
+     * Single words are answered by the title/author index alone. Other queries without
+     * regular expression metacharacters only check the documents that the index finds
+     * may contain them, instead of every document.
      *
      * @param regex the regular expression to match documents against.
-     * @return a List of matching documents.
+     * @return a List of matching documents, in the order of the library.
      */
     @Override
     public List<IDocument> getMatches(String regex) {
-        return library.getMatches(regex);
+        if (regex == null || !DocumentIndex.isKeywordQuery(regex)) {
+            return library.getMatches(regex);
+        }
+        if (DocumentIndex.isWord(regex)) {
+            return index.search(regex).get();
+        }
+        List<IDocument> matches = new ArrayList<>();
+        for (IDocument doc : index.getDocuments(index.candidates(regex).get())) {
+            if (doc.matches(regex)) {
+                matches.add(doc);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Retrieves the documents whose indexed contents have all the words of the query.
+     *
+     * @param query the words to look for.
+     * @return a List of matching documents; empty if there is no content index.
+     */
+    @Override
+    public List<IDocument> getContentMatches(String query) {
+        if (query == null || contentIndexer == null) {
+            return List.of();
+        }
+        return contentIndexer.search(query);
     }
     
     /**
@@ -14,6 +14,7 @@ import leibooks.domain.facade.events.RemoveShelfEvent;
 import leibooks.domain.facade.events.ShelfEvent;
 import leibooks.domain.shelves.IShelves;
 import leibooks.domain.shelves.IShelf;
+import leibooks.domain.shelves.query.ShelfQuery;
 import leibooks.utils.AbsSubject;
 import leibooks.utils.Listener;
 
@@ -48,7 +49,7 @@ public class ShelvesController extends AbsSubject<LBEvent> implements IShelvesCo
      */
     @Override
     public void emitEvent(LBEvent e) {
-        listeners.forEach(listener -> listener.processEvent(e));
+        super.emitEvent(e);
     }
 
     /**
@@ -58,9 +59,7 @@ public class ShelvesController extends AbsSubject<LBEvent> implements IShelvesCo
      */
     @Override
     public void registerListener(Listener<LBEvent> obs) {
-        if (obs != null && !listeners.contains(obs)) {
-            listeners.add(obs);
-        }
+        super.registerListener(obs);
     }
 
     /**
@@ -70,9 +69,7 @@ public class ShelvesController extends AbsSubject<LBEvent> implements IShelvesCo
      */
     @Override
     public void unregisterListener(Listener<LBEvent> obs) {
-        if (obs != null) {
-            listeners.remove(obs);
-        }
+        super.unregisterListener(obs);
     }
 
     /**
@@ -108,6 +105,19 @@ public class ShelvesController extends AbsSubject<LBEvent> implements IShelvesCo
         return shelves.addSmartShelf(name, criteria);
     }
 
+    /**
+     * Adds a smart shelf with the specified name whose documents match a query.
+     *
+     * @param name the name of the shelf to add.
+     * @param query the text of the query, see ShelfQuery.
+     * @return true if the shelf was added successfully, false otherwise.
+     * @throws IllegalArgumentException if the query is not valid.
+     */
+    @Override
+    public boolean addSmartShelf(String name, String query) {
+        return shelves.addSmartShelf(name, ShelfQuery.parse(query));
+    }
+
     /**
      * Returns an iterable collection of all shelf names currently registered.
      *
@@ -4,12 +4,13 @@ import java.io.File;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.TreeMap;
-import java.util.Objects;
-
+import java.util.regex.Pattern;
 
 import leibooks.domain.facade.IDocument;
 import leibooks.domain.facade.events.AddAnnotationEvent;
@@ -28,9 +29,22 @@ public class Document extends AbsSubject<DocumentEvent>
 	private String author;
 	private LocalDate lastModifiedDate;
 	private String mimeType;
-	private String pathToFile;
+	private final String pathToFile;
+	private final File file;
+	private final DocumentId id;
 	private Optional<Integer> numberOfPages;
 
+	// Title and author, as they are and lowercased, in which searches look for their patterns
+	private String text;
+	private String searchText;
+
+	// The last modified date and the number of modifications when the outermost transaction began
+	private LocalDate dateBeforeTransaction;
+	private int modificationsBeforeTransaction;
+
+	// The number of modifications of the document, each of which changes the last modified date
+	private int modifications;
+
 	// The last page number the user visited
 	private int lastPageVisited;
 
@@ -60,7 +74,21 @@ public class Document extends AbsSubject<DocumentEvent>
 		this.lastModifiedDate = expectedModifiedDate;
 		this.mimeType = expectedMimeType;
 		this.pathToFile = expectedPath;
+		this.file = new File(expectedPath);
+		this.id = DocumentId.of(expectedPath);
 		this.numberOfPages = expectedNumPages;
+		updateSearchText();
+	}
+
+	/**
+	 * Gets the identity of the document, computed once from its file.
+	 * Equality, hashing and ordering of documents are based on it.
+	 *
+	 * @return the identity of the document.
+	 * @ensures \result != null
+	 */
+	public DocumentId getId() {
+		return id;
 	}
 
 	/**
@@ -73,6 +101,56 @@ public class Document extends AbsSubject<DocumentEvent>
 		super.emitEvent(e);
 	}
 
+	/**
+	 * Remembers the last modified date when a transaction begins, so that it can
+	 * be restored if the transaction does not modify the document.
+	 */
+	@Override
+	protected void transactionStarted() {
+		dateBeforeTransaction = lastModifiedDate;
+		modificationsBeforeTransaction = modifications;
+	}
+
+	/**
+	 * Drops the pairs of bookmark toggles of a page in a transaction, which undo
+	 * each other. If no event is left and the document had no other modification
+	 * since the transaction began (e.g. setTitle, which emits no event, or one
+	 * by another thread), it was not modified, so its last modified date is restored.
+	 *
+	 * @param events the events emitted in the transaction
+	 * @return the events that were not undone, in order
+	 */
+	@Override
+	protected List<DocumentEvent> coalesce(List<DocumentEvent> events) {
+		List<DocumentEvent> result = new ArrayList<>(events);
+		// page number -> position of the toggle of the page not yet undone
+		Map<Integer, Integer> toggles = new HashMap<>();
+		for (int i = 0; i < events.size(); i++) {
+			if (events.get(i) instanceof ToggleBookmarkEvent toggle) {
+				Integer previous = toggles.remove(toggle.getPageNum());
+				if (previous == null) {
+					toggles.put(toggle.getPageNum(), i);
+				} else {
+					result.set(previous, null);
+					result.set(i, null);
+				}
+			}
+		}
+		result.removeIf(Objects::isNull);
+		if (result.isEmpty() && modifications - modificationsBeforeTransaction == events.size()) {
+			lastModifiedDate = dateBeforeTransaction;
+		}
+		return result;
+	}
+
+	/*
+	 * Records a modification of the document, at the current date
+	 */
+	private void modified() {
+		lastModifiedDate = LocalDate.now();
+		modifications++;
+	}
+
 	/**
 	 * Registers a listener for DocumentEvent notifications.
 	 *
@@ -102,7 +180,7 @@ public class Document extends AbsSubject<DocumentEvent>
 	 */
 	@Override
 	public File getFile() {
-		return new File(pathToFile);
+		return file;
 	}
 
 	/**
@@ -199,7 +277,7 @@ public class Document extends AbsSubject<DocumentEvent>
 	public void toggleBookmark(int pageNum) {
 		Page page = pages.computeIfAbsent(pageNum, Page::new);
 		page.toggleBookmark();
-		this.lastModifiedDate = LocalDate.now();
+		modified();
 		emitEvent(new ToggleBookmarkEvent(this, pageNum, page.isBookmarked()));
 	}
 
@@ -213,7 +291,8 @@ public class Document extends AbsSubject<DocumentEvent>
 	@Override
 	public void setTitle(String title) {
 		this.title = title;
-		this.lastModifiedDate = LocalDate.now();
+		modified();
+		updateSearchText();
 	}
 
 	/**
@@ -226,7 +305,49 @@ public class Document extends AbsSubject<DocumentEvent>
 	@Override
 	public void setAuthor(String author) {
 		this.author = author;
-		this.lastModifiedDate = LocalDate.now();
+		modified();
+		updateSearchText();
+	}
+
+	/**
+	 * Restores the last modified date of the document, e.g. when it is loaded
+	 * from a store. Unlike the other setters, this is not a modification.
+	 *
+	 * @param lastModifiedDate the last modified date to set.
+	 * @requires lastModifiedDate != null
+	 */
+	public void setLastModifiedDate(LocalDate lastModifiedDate) {
+		this.lastModifiedDate = lastModifiedDate;
+	}
+
+	/**
+	 * Gets the numbers of the pages where annotations were added, even if
+	 * they were removed since.
+	 *
+	 * @return the annotated pages, in ascending order.
+	 * @ensures \result != null
+	 */
+	public List<Integer> getAnnotatedPages() {
+		List<Integer> annotatedPages = new ArrayList<>();
+		for (Map.Entry<Integer, Page> entry : pages.entrySet()) {
+			if (entry.getValue().getLastAnnotationId() > 0) {
+				annotatedPages.add(entry.getKey());
+			}
+		}
+		return annotatedPages;
+	}
+
+	/**
+	 * Gets the number of the last annotation added to a page. Annotation
+	 * numbers are never reused, so they can be used to refer to annotations.
+	 *
+	 * @param pageNum the page number.
+	 * @return the number of the last annotation added to the page, or 0 if none.
+	 * @ensures \result >= 0
+	 */
+	public int getLastAnnotationNum(int pageNum) {
+		Page page = pages.get(pageNum);
+		return (page == null) ? 0 : page.getLastAnnotationId();
 	}
 
 	/**
@@ -254,7 +375,7 @@ public class Document extends AbsSubject<DocumentEvent>
 	public void addAnnotation(int pageNum, String text) {
 		Page page = pages.computeIfAbsent(pageNum, Page::new);
 		page.addAnnotation(text);
-		this.lastModifiedDate = LocalDate.now();
+		modified();
 		int annotIndex = page.getAnnotationCount() - 1;
 		boolean hasAnnots = page.hasAnnotations();
 		emitEvent(new AddAnnotationEvent(this, pageNum, annotIndex, text, hasAnnots));
@@ -275,7 +396,7 @@ public class Document extends AbsSubject<DocumentEvent>
 		Page page = pages.get(pageNum);
 		if (page != null) {
 			page.removeAnnotation(annotNum);
-			this.lastModifiedDate = LocalDate.now();
+			modified();
 			emitEvent(new RemoveAnnotationEvent(this, pageNum, annotNum, false));
 		}
 	}
@@ -390,12 +511,33 @@ public class Document extends AbsSubject<DocumentEvent>
 	 * @param regexp the regular expression to be used
 	 * @requires regexp != null
 	 * @return whether some data of the document matches with the given regexp
-	 * @ensures returns true if title or author matches the regexp (case-insensitive)
+	 * @ensures returns true if a match of the regexp is found in the title or author (case-insensitive)
 	 */
 	@Override
 	public boolean matches(String regexp) {
-		String combined = title + " " + author;
-		return combined.matches("(?i).*" + regexp + ".*");
+		return matches(SearchPatternCache.INSTANCE.get(regexp));
+	}
+
+	/**
+	 * Checks if the title or the author of the document contain a match of
+	 * the given search pattern.
+	 *
+	 * @param pattern a pattern obtained from the SearchPatternCache
+	 * @requires pattern != null
+	 * @return whether the pattern is found in the title or the author
+	 */
+	boolean matches(Pattern pattern) {
+		if ((pattern.flags() & Pattern.LITERAL) != 0) {
+			// plain substring search is much cheaper than running the matcher
+			return searchText.contains(pattern.pattern());
+		}
+		// the regex may depend on case, e.g. with \p{Lu}, so it sees the text as it is
+		return pattern.matcher(text).find();
+	}
+
+	private void updateSearchText() {
+		text = title + " " + author;
+		searchText = SearchPatternCache.searchText(text);
 	}
 
 	/**
@@ -407,8 +549,7 @@ public class Document extends AbsSubject<DocumentEvent>
 	 */
 	@Override
 	public int compareTo(IDocument other) {
-		return this.getFile().getAbsolutePath()
-				.compareTo(other.getFile().getAbsolutePath());
+		return id.compareTo(DocumentId.of(other));
 	}
 
 
@@ -430,14 +571,13 @@ public class Document extends AbsSubject<DocumentEvent>
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj) return true;
+		if (obj instanceof Document other) return id == other.id;
 		if (!(obj instanceof IDocument)) return false;
-		IDocument other = (IDocument) obj;
-		return this.getFile().getAbsolutePath()
-				.equals(other.getFile().getAbsolutePath());
+		return id == DocumentId.of((IDocument) obj);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(this.getFile().getAbsolutePath());
+		return id.hashCode();
 	}
 }
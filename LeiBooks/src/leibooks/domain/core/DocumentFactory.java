@@ -2,13 +2,16 @@ package leibooks.domain.core;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.Optional;
 
+import leibooks.app.AppProperties;
 import leibooks.domain.facade.DocumentProperties;
 import leibooks.domain.facade.IDocument;
 import leibooks.domain.metadatareader.IMetadataReader;
-import leibooks.domain.metadatareader.MetadataReaderFactory;
+import leibooks.domain.metadatareader.MetadataCache;
 import leibooks.domain.facade.events.AddDocumentEvent;
 import leibooks.domain.facade.events.DocumentEvent;
 import leibooks.domain.facade.events.RemoveDocumentEvent;
@@ -19,11 +22,41 @@ import leibooks.utils.Listener;
  *
  * This enum is a singleton, providing a single INSTANCE that can
  * create IDocument objects by reading metadata from a file.
+ * The metadata is read through a MetadataCache, which is saved when
+ * the application exits.
  */
 public enum DocumentFactory {
 
     INSTANCE;
 
+    private final MetadataCache metadataCache;
+
+    DocumentFactory() {
+        metadataCache = new MetadataCache(Path.of(AppProperties.INSTANCE.FILE_METADATA_CACHE));
+        Runtime.getRuntime().addShutdownHook(new Thread(this::saveMetadataCache, "metadata-cache-save"));
+    }
+
+    /**
+     * Gets the cache of the metadata read from document files.
+     *
+     * @return the metadata cache
+     * @ensures \result != null
+     */
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
+    /**
+     * Saves the metadata cache, if it changed.
+     */
+    public void saveMetadataCache() {
+        try {
+            metadataCache.save();
+        } catch (IOException e) {
+            System.out.println("-------->> Metadata cache could not be saved: " + e.getMessage());
+        }
+    }
+
     /**
      * Creates a new IDocument by reading metadata from the given file path.
      *
@@ -44,8 +77,7 @@ public enum DocumentFactory {
         }
 
 
-        IMetadataReader reader = MetadataReaderFactory.INSTANCE
-                .createMetadataReader(pathToPhotoFile);
+        IMetadataReader reader = metadataCache.getMetadataReader(pathToPhotoFile);
 
         String author = reader.getAuthors();
         //LocalDate dateModified = reader.getModifiedDate();
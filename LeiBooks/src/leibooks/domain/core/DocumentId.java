@@ -0,0 +1,163 @@
+package leibooks.domain.core;
+
+import java.io.File;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import leibooks.domain.facade.IDocument;
+
+/**
+ * The identity of a document: the canonical path of its file.
+ *
+ * <p>The canonical path is the absolute, normalized path of the file (it is
+ * computed without touching the file system, so symbolic links are not
+ * resolved). Identities are interned, so there is exactly one DocumentId per
+ * canonical path and two identities are equal iff they are the same object.
+ * Each identity also has a compact numeric id, handy for bitmaps and arrays.</p>
+ *
+ * <p>Identities are interned weakly: once no one holds the identity of a path,
+ * it is forgotten and its numeric id is given to a later identity, so the ids
+ * stay below the number of identities in use. Whoever keeps ids, e.g. in
+ * arrays, keeps the identities too.</p>
+ */
+public final class DocumentId implements Comparable<DocumentId> {
+
+	/**
+	 * The interned identity of a path, which does not keep it alive
+	 */
+	private static final class Interned extends WeakReference<DocumentId> {
+		private final String path;
+		private final int id;
+
+		Interned(DocumentId documentId) {
+			super(documentId, COLLECTED);
+			this.path = documentId.path;
+			this.id = documentId.id;
+		}
+	}
+
+	// guarded by INTERNED
+	private static final Map<String, Interned> INTERNED = new HashMap<>();
+	private static final ReferenceQueue<DocumentId> COLLECTED = new ReferenceQueue<>();
+	private static final BitSet USED_IDS = new BitSet();
+
+	private final String path;
+	private final int hash;
+	private final int id;
+
+	private DocumentId(String path, int id) {
+		this.path = path;
+		this.hash = path.hashCode();
+		this.id = id;
+	}
+
+	/**
+	 * Returns the identity of the document stored in the given file.
+	 *
+	 * @param pathToFile the path to the document's file
+	 * @requires pathToFile != null
+	 * @return the identity of the document
+	 * @ensures \result != null
+	 */
+	public static DocumentId of(String pathToFile) {
+		String canonical = canonicalPath(pathToFile);
+		synchronized (INTERNED) {
+			expunge();
+			Interned interned = INTERNED.get(canonical);
+			DocumentId documentId = interned == null ? null : interned.get();
+			if (documentId == null) {
+				int id = USED_IDS.nextClearBit(0);
+				USED_IDS.set(id);
+				documentId = new DocumentId(canonical, id);
+				INTERNED.put(canonical, new Interned(documentId));
+			}
+			return documentId;
+		}
+	}
+
+	/**
+	 * @return the number of identities interned, some of them maybe no longer in use
+	 */
+	static int internedCount() {
+		synchronized (INTERNED) {
+			expunge();
+			return INTERNED.size();
+		}
+	}
+
+	// forgets the identities no one holds, and frees their ids
+	private static void expunge() {
+		Interned collected;
+		while ((collected = (Interned) COLLECTED.poll()) != null) {
+			INTERNED.remove(collected.path, collected);
+			USED_IDS.clear(collected.id);
+		}
+	}
+
+	/**
+	 * Returns the identity of the given document. Documents of this package
+	 * keep their identity, so it is only computed for other implementations.
+	 *
+	 * @param document the document
+	 * @requires document != null
+	 * @return the identity of the document
+	 * @ensures \result != null
+	 */
+	public static DocumentId of(IDocument document) {
+		if (document instanceof Document d) {
+			return d.getId();
+		}
+		return of(document.getFile().getPath());
+	}
+
+	/**
+	 * Returns the canonical path of the given file path: absolute and without
+	 * redundant "." and ".." elements.
+	 *
+	 * @param pathToFile the path to the file
+	 * @requires pathToFile != null
+	 * @return the canonical path
+	 */
+	public static String canonicalPath(String pathToFile) {
+		return new File(pathToFile).getAbsoluteFile().toPath().normalize().toString();
+	}
+
+	/**
+	 * @return the canonical path of the document's file
+	 * @ensures \result != null
+	 */
+	public String path() {
+		return path;
+	}
+
+	/**
+	 * @return the compact numeric id of this identity
+	 * @ensures \result >= 0
+	 */
+	public int id() {
+		return id;
+	}
+
+	@Override
+	public int compareTo(DocumentId other) {
+		return this == other ? 0 : path.compareTo(other.path);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return this == obj;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return "DocumentId [id=" + id + ", path=" + path + "]";
+	}
+}
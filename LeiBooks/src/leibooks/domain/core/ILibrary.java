@@ -1,6 +1,8 @@
 package leibooks.domain.core;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 import leibooks.domain.facade.DocumentProperties;
 import leibooks.domain.facade.IDocument;
@@ -15,6 +17,7 @@ import leibooks.utils.Subject;
  * A library emits document events
  * 		AddADocumentEvent when a document is added
  * 		RemoveDocumentEvent when a document is removed
+ * 		UpdateDocumentEvent when the properties of a document are updated
  */
 public interface ILibrary extends Iterable<IDocument>, Subject<DocumentEvent>{
 
@@ -33,7 +36,32 @@ public interface ILibrary extends Iterable<IDocument>, Subject<DocumentEvent>{
 	 * @return  true if the document was added successfully, false otherwise
 	 */
 	boolean addDocument(IDocument document);
+
+	/**
+	 * Adds several documents to the library, skipping those already present.
+	 * An AddDocumentEvent is emitted for each document added.
+	 * 
+	 * @param documents the documents to add to the library
+	 * @return  the documents that were added, in the given order
+	 */
+	List<IDocument> addDocuments(Collection<? extends IDocument> documents);
      
+	/**
+	 * Checks whether the given document is in the library
+	 * 
+	 * @param document the document to look for
+	 * @return true if the library contains the document, false otherwise
+	 */
+	boolean contains(IDocument document);
+
+	/**
+	 * Returns the document of the library whose file is at the given path
+	 * 
+	 * @param pathToFile the path to the file of the document
+	 * @return the document with that file, if it is in the library
+	 */
+	Optional<IDocument> getDocument(String pathToFile);
+
 	/**
 	 * Removes a given documents from the library
 	 * 
@@ -1,8 +1,14 @@
 package leibooks.domain.core;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Pattern;
 import java.util.ArrayList;
 import java.util.Collections;
 
@@ -12,15 +18,31 @@ import leibooks.domain.facade.IDocument;
 import leibooks.domain.facade.events.DocumentEvent;
 import leibooks.domain.facade.events.AddDocumentEvent;
 import leibooks.domain.facade.events.RemoveDocumentEvent;
+import leibooks.domain.facade.events.UpdateDocumentEvent;
 import leibooks.utils.Listener;
 import leibooks.utils.AbsSubject;
+import leibooks.utils.EventTransaction;
 
 
 
 public class Library extends AbsSubject<DocumentEvent>
 					 implements  ILibrary {
 
-	private final List<IDocument> documents = new ArrayList<>();
+	// Documents indexed by the canonical path of their file. The LinkedHashMap keeps
+	// the insertion order, so iterating the library is the same as with a list.
+	private final Map<String, IDocument> documents = new LinkedHashMap<>();
+
+	/**
+	 * Returns the key used to index a document: the canonical path of its file,
+	 * which is the document's unique identifier.
+	 *
+	 * @param document the document
+	 * @requires document != null
+	 * @return the index key of the document
+	 */
+	private static String keyOf(IDocument document) {
+		return DocumentId.of(document).path();
+	}
 
 	/**
 	 * Returns an iterator over the documents in this library.
@@ -29,7 +51,7 @@ public class Library extends AbsSubject<DocumentEvent>
 	 */
 	@Override
 	public Iterator<IDocument> iterator() {
-		return documents.iterator();
+		return Collections.unmodifiableCollection(documents.values()).iterator();
 	}
 
 	/**
@@ -42,6 +64,52 @@ public class Library extends AbsSubject<DocumentEvent>
 		super.emitEvent(e);
 	}
 
+	/**
+	 * Merges the events of a transaction: a document added and removed in it
+	 * was never seen by the listeners, so its events are dropped, and only the
+	 * last update of a document that was neither added nor removed is kept,
+	 * since listeners read the document when they process the event.
+	 *
+	 * @param events the events emitted in the transaction
+	 * @return the merged events, in order
+	 */
+	@Override
+	protected List<DocumentEvent> coalesce(List<DocumentEvent> events) {
+		List<DocumentEvent> result = new ArrayList<>(events);
+		// document key -> position of its AddDocumentEvent
+		Map<String, Integer> adds = new HashMap<>();
+		// document key -> position of its last UpdateDocumentEvent
+		Map<String, Integer> updates = new HashMap<>();
+		for (int i = 0; i < events.size(); i++) {
+			DocumentEvent e = events.get(i);
+			if (e instanceof AddDocumentEvent add) {
+				adds.put(keyOf(add.getDocument()), i);
+			} else if (e instanceof UpdateDocumentEvent update) {
+				String key = keyOf(update.getDocument());
+				Integer previous = updates.put(key, i);
+				if (previous != null) {
+					result.set(previous, null);
+				}
+				if (adds.containsKey(key)) {
+					result.set(i, null);
+				}
+			} else if (e instanceof RemoveDocumentEvent remove) {
+				String key = keyOf(remove.getDocument());
+				Integer update = updates.remove(key);
+				if (update != null) {
+					result.set(update, null);
+				}
+				Integer add = adds.remove(key);
+				if (add != null) {
+					result.set(add, null);
+					result.set(i, null);
+				}
+			}
+		}
+		result.removeIf(Objects::isNull);
+		return result;
+	}
+
 	/**
 	 * Registers a new listener
 	 *
@@ -81,14 +149,65 @@ public class Library extends AbsSubject<DocumentEvent>
 	@Override
 	public boolean addDocument(IDocument document) {
 		if (document == null) return false;
-		if (!documents.contains(document)) {
-			documents.add(document);
+		if (documents.putIfAbsent(keyOf(document), document) == null) {
 			emitEvent(new AddDocumentEvent(document));
 			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * Adds several documents to the library, skipping those already present.
+	 * The documents are all added before the AddDocumentEvents are emitted,
+	 * in a single transaction.
+	 *
+	 * @param newDocuments the documents to add
+	 * @return the documents that were added, in the given order
+	 */
+	@Override
+	public List<IDocument> addDocuments(Collection<? extends IDocument> newDocuments) {
+		List<IDocument> added = new ArrayList<>(newDocuments.size());
+		for (IDocument document : newDocuments) {
+			if (document != null && documents.putIfAbsent(keyOf(document), document) == null) {
+				added.add(document);
+			}
+		}
+		EventTransaction transaction = beginTransaction();
+		try {
+			for (IDocument document : added) {
+				emitEvent(new AddDocumentEvent(document));
+			}
+		} finally {
+			transaction.close();
+		}
+		return added;
+	}
+
+	/**
+	 * Checks whether the given document is in the library.
+	 *
+	 * @param document the document to look for
+	 * @return true if the library contains the document, false otherwise
+	 */
+	@Override
+	public boolean contains(IDocument document) {
+		return document != null && documents.containsKey(keyOf(document));
+	}
+
+	/**
+	 * Returns the document of the library whose file is at the given path.
+	 *
+	 * @param pathToFile the path to the document's file
+	 * @return the document with that file, if it is in the library
+	 */
+	@Override
+	public Optional<IDocument> getDocument(String pathToFile) {
+		if (pathToFile == null) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(documents.get(DocumentId.canonicalPath(pathToFile)));
+	}
+
 	/**
 	 * Removes the specified document from the library, if it exists.
 	 *
@@ -96,14 +215,19 @@ public class Library extends AbsSubject<DocumentEvent>
 	 */
 	@Override
 	public void removeDocument(IDocument document) {
-		if (documents.remove(document)) {
-			emitEvent(new RemoveDocumentEvent(document));
+		if (document == null) {
+			return;
+		}
+		IDocument removed = documents.remove(keyOf(document));
+		if (removed != null) {
+			emitEvent(new RemoveDocumentEvent(removed));
 		}
 	}
 
 	/**
 	 * Updates a document's properties by applying the values
 	 * provided in the given DocumentProperties object.
+	 * Emits an UpdateDocumentEvent if the title or the author were set.
 	 *
 	 * @param document the document to update
 	 * @param documentProperties the new properties
@@ -113,7 +237,7 @@ public class Library extends AbsSubject<DocumentEvent>
 		if (document == null || documentProperties == null) {
 			return;
 		}
-		if (!documents.contains(document)) {
+		if (!contains(document)) {
 			return;
 		}
 		String newTitle = documentProperties.title();
@@ -124,6 +248,9 @@ public class Library extends AbsSubject<DocumentEvent>
 		if (newAuthor != null) {
 			document.setAuthor(newAuthor);
 		}
+		if (newTitle != null || newAuthor != null) {
+			emitEvent(new UpdateDocumentEvent(document));
+		}
 	}
 
 	/**
@@ -137,9 +264,12 @@ public class Library extends AbsSubject<DocumentEvent>
 		if (regex == null) {
 			return Collections.emptyList();
 		}
+		// compile the query once, instead of once per document
+		Pattern pattern = SearchPatternCache.INSTANCE.get(regex);
 		List<IDocument> matches = new ArrayList<>();
-		for (IDocument doc : documents) {
-			if (doc.matches(regex)) {
+		for (IDocument doc : documents.values()) {
+			boolean match = (doc instanceof Document d) ? d.matches(pattern) : doc.matches(regex);
+			if (match) {
 				matches.add(doc);
 			}
 		}
@@ -157,11 +287,12 @@ public class Library extends AbsSubject<DocumentEvent>
 		if (this == o) return true;
 		if (!(o instanceof Library)) return false;
 		Library that = (Library) o;
-		return Objects.equals(documents, that.documents);
+		return Objects.equals(new ArrayList<>(documents.values()),
+				new ArrayList<>(that.documents.values()));
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(documents);
+		return Objects.hash(new ArrayList<>(documents.values()));
 	}
 }
@@ -86,6 +86,17 @@ public class Page {
         return this.pageNum;
     }
 
+    /**
+     * Returns the ID of the last annotation added to this page.
+     * Annotation IDs are never reused, so later annotations have greater IDs.
+     *
+     * @return the last annotation ID, or 0 if no annotation was ever added
+     * @ensures \result >= 0
+     */
+    public int getLastAnnotationId() {
+        return nextAnnotationId;
+    }
+
     /**
      * Checks whether this page has any annotations.
      *
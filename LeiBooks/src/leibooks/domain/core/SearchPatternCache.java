@@ -0,0 +1,75 @@
+package leibooks.domain.core;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A bounded LRU cache of the patterns compiled for document searches.
+ *
+ * <p>A search compiles its regular expression once and then uses the pattern to
+ * find a match in the search text of each document. Queries with no regular
+ * expression metacharacters are compiled as lowercased literals, which documents
+ * match with a plain substring search in their lowercased search text; all other
+ * queries are compiled case-insensitive, also for non-ASCII letters, and are
+ * matched against the search text as it is.</p>
+ */
+enum SearchPatternCache {
+
+	INSTANCE;
+
+	/**
+	 * Number of recent queries whose patterns are kept
+	 */
+	private static final int CAPACITY = 64;
+
+	private static final String METACHARACTERS = "\\.[]{}()<>*+-=!?^$|";
+
+	private final Map<String, Pattern> patterns = new LinkedHashMap<>(CAPACITY, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+			return size() > CAPACITY;
+		}
+	};
+
+	/**
+	 * Returns the pattern for the given search query, compiling it if it is not
+	 * one of the recent queries.
+	 *
+	 * @param regexp the regular expression of the query
+	 * @requires regexp != null
+	 * @return a pattern to be found in the search text, lowercased if the pattern is LITERAL
+	 * @throws java.util.regex.PatternSyntaxException if the expression is invalid
+	 */
+	synchronized Pattern get(String regexp) {
+		Pattern pattern = patterns.get(regexp);
+		if (pattern == null) {
+			pattern = compile(regexp);
+			patterns.put(regexp, pattern);
+		}
+		return pattern;
+	}
+
+	/**
+	 * Returns the text in which a search looks for a LITERAL pattern.
+	 *
+	 * @param text the text to search
+	 * @requires text != null
+	 * @return the lowercased text
+	 */
+	static String searchText(String text) {
+		return text.toLowerCase(Locale.ROOT);
+	}
+
+	private static Pattern compile(String regexp) {
+		for (int i = 0; i < regexp.length(); i++) {
+			if (METACHARACTERS.indexOf(regexp.charAt(i)) >= 0) {
+				return Pattern.compile(regexp, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+			}
+		}
+		return Pattern.compile(searchText(regexp), Pattern.LITERAL);
+	}
+}
@@ -0,0 +1,55 @@
+package leibooks.domain.facade;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import leibooks.domain.facade.events.AnnotationEvent;
+import leibooks.domain.facade.events.DocumentEvent;
+import leibooks.domain.facade.events.ToggleBookmarkEvent;
+import leibooks.domain.facade.events.UpdateDocumentEvent;
+
+/**
+ * The attributes of a document that the criteria of a smart shelf may read.
+ */
+public enum DocumentAttribute {
+	TITLE, AUTHOR, MIME_TYPE, DATE, BOOKMARKS, ANNOTATIONS;
+
+	private static final Set<DocumentAttribute> ALL = Collections.unmodifiableSet(EnumSet.allOf(DocumentAttribute.class));
+	private static final Set<DocumentAttribute> BOOKMARK_CHANGE =
+			Collections.unmodifiableSet(EnumSet.of(BOOKMARKS, DATE));
+	private static final Set<DocumentAttribute> ANNOTATION_CHANGE =
+			Collections.unmodifiableSet(EnumSet.of(ANNOTATIONS, DATE));
+	private static final Set<DocumentAttribute> PROPERTIES_CHANGE =
+			Collections.unmodifiableSet(EnumSet.of(TITLE, AUTHOR, DATE));
+
+	/**
+	 * @return all the attributes
+	 */
+	public static Set<DocumentAttribute> all() {
+		return ALL;
+	}
+
+	/**
+	 * Returns the attributes of its document that an event may have changed.
+	 * Every change of a document also sets its last modified date. Events that
+	 * are not known to change particular attributes may have changed any of them.
+	 *
+	 * @param e the event
+	 * @requires e != null
+	 * @return the attributes the event may have changed
+	 * @ensures \result != null
+	 */
+	public static Set<DocumentAttribute> changedBy(DocumentEvent e) {
+		if (e instanceof ToggleBookmarkEvent) {
+			return BOOKMARK_CHANGE;
+		}
+		if (e instanceof AnnotationEvent) {
+			return ANNOTATION_CHANGE;
+		}
+		if (e instanceof UpdateDocumentEvent) {
+			return PROPERTIES_CHANGE;
+		}
+		return ALL;
+	}
+}
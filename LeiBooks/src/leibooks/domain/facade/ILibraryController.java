@@ -1,5 +1,7 @@
 package leibooks.domain.facade;
 
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -34,6 +36,25 @@ public interface ILibraryController extends Subject<LBEvent>, Listener<DocumentE
 	 */
 	Optional<IDocument> importDocument(String title, String pathTofile);
 
+	/**
+	 * Imports several files into the library. The metadata of the files is read
+	 * in parallel, and the observers get a single AddDocumentsEvent. Each document
+	 * is titled with the name of its file, without the extension.
+	 *
+	 * @param paths the files to import.
+	 * @return the outcome of importing each file.
+	 */
+	ImportReport importDocuments(Collection<Path> paths);
+
+	/**
+	 * Imports the files of a folder into the library (see importDocuments).
+	 *
+	 * @param folder the folder.
+	 * @param recursive whether to import the files of its subfolders too.
+	 * @return the outcome of importing each file.
+	 */
+	ImportReport importFolder(Path folder, boolean recursive);
+
 	/**
 	 * Removes a document from the library.
 	 *
@@ -56,4 +77,14 @@ public interface ILibraryController extends Subject<LBEvent>, Listener<DocumentE
 	 * @return a List of IDocument representing the matching documents.
 	 */
 	List<IDocument> getMatches(String regex);
+
+	/**
+	 * Retrieves the documents whose contents have all the words of the given query.
+	 * Only the contents already indexed are searched.
+	 *
+	 * @param query the words to look for in the documents' contents.
+	 * @return a List of IDocument representing the matching documents, empty if
+	 *         the query is not a sequence of words.
+	 */
+	List<IDocument> getContentMatches(String query);
 }
@@ -31,11 +31,24 @@ public interface IShelvesController extends Subject<LBEvent>, Listener<ShelfEven
 	 * Adds a smart shelf with the specified name and criteria.
 	 *
 	 * @param name the name of the shelf to be added
-	 * @param criteria the criteria to determine which documents belong to the shelf
+	 * @param criteria the criteria to determine which documents belong to the shelf;
+	 *        a ShelfCriteria also declares the document attributes it reads
 	 * @return true if the shelf was successfully added, false otherwise
 	 */
 	boolean addSmartShelf(String name, Predicate<IDocument> criteria);
 
+	/**
+	 * Adds a smart shelf with the specified name whose documents match a query,
+	 * e.g. "mime in (pdf, txt) and modified >= now-6M and bookmarked". Unlike
+	 * criteria given as a predicate, the query is saved with the library.
+	 *
+	 * @param name the name of the shelf to be added
+	 * @param query the query the documents of the shelf match
+	 * @return true if the shelf was successfully added, false otherwise
+	 * @throws IllegalArgumentException if the query is not valid
+	 */
+	boolean addSmartShelf(String name, String query);
+
 	/**
 	 * Retrieves an iterable collection of shelf names.
 	 *
@@ -0,0 +1,87 @@
+package leibooks.domain.facade;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The outcome of importing several files into a library: for each file, the
+ * imported document or the reason why it was not imported.
+ */
+public class ImportReport {
+
+	/**
+	 * The outcome of importing one file.
+	 *
+	 * @param path the file
+	 * @param document the imported document, if the file was imported
+	 * @param failure why the file was not imported, if it was not
+	 */
+	public record Result(Path path, Optional<IDocument> document, Optional<String> failure) {
+
+		public boolean isImported() {
+			return document.isPresent();
+		}
+	}
+
+	private final List<Result> results = new ArrayList<>();
+
+	/**
+	 * Records that a file was imported.
+	 *
+	 * @param path the file
+	 * @param document the document imported from the file
+	 */
+	public void addImported(Path path, IDocument document) {
+		results.add(new Result(path, Optional.of(document), Optional.empty()));
+	}
+
+	/**
+	 * Records that a file was not imported.
+	 *
+	 * @param path the file
+	 * @param failure why the file was not imported
+	 */
+	public void addFailure(Path path, String failure) {
+		results.add(new Result(path, Optional.empty(), Optional.of(failure)));
+	}
+
+	/**
+	 * @return the outcome of each file, in the order the files were given
+	 */
+	public List<Result> getResults() {
+		return Collections.unmodifiableList(results);
+	}
+
+	/**
+	 * @return the imported documents, in the order the files were given
+	 */
+	public List<IDocument> getImported() {
+		List<IDocument> imported = new ArrayList<>();
+		for (Result r : results) {
+			r.document().ifPresent(imported::add);
+		}
+		return imported;
+	}
+
+	/**
+	 * @return the outcome of the files that were not imported
+	 */
+	public List<Result> getFailures() {
+		List<Result> failures = new ArrayList<>();
+		for (Result r : results) {
+			if (!r.isImported()) {
+				failures.add(r);
+			}
+		}
+		return failures;
+	}
+
+	@Override
+	public String toString() {
+		int imported = getImported().size();
+		return "ImportReport [imported=" + imported + ", failed=" + (results.size() - imported) + "]";
+	}
+}
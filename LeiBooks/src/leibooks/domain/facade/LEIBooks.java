@@ -1,11 +1,19 @@
 package leibooks.domain.facade;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import leibooks.app.AppProperties;
 import leibooks.domain.controllers.LibraryController;
 import leibooks.domain.controllers.ShelvesController;
 import leibooks.domain.core.ILibrary;
 import leibooks.domain.core.Library;
+import leibooks.domain.search.ContentIndex;
+import leibooks.domain.search.ContentIndexer;
 import leibooks.domain.shelves.IShelves;
 import leibooks.domain.shelves.Shelves;
+import leibooks.domain.store.LibraryStore;
 
 public class LEIBooks {
 
@@ -14,17 +22,55 @@ public class LEIBooks {
 	
 	private final IShelvesController shelvesController;
 	private final ILibraryController libraryController;
+
+	private LibraryStore store;
 	
 	public LEIBooks() {
 		//lib and its controller
 		library = new Library ();
-		libraryController = new LibraryController(library);
+		LibraryController controller = new LibraryController(library, createContentIndexer(library));
+		libraryController = controller;
 		
-		//shelves and its controller
-		shelves = new Shelves (library);
+		//shelves and its controller, whose queries use the index of the library controller
+		shelves = new Shelves (library, controller.getDocumentIndex());
 		shelvesController = new ShelvesController(shelves);
 	}
 
+	/**
+	 * Creates the library and its shelves, restored from the store in the given
+	 * folder; their changes are saved there until the application exits.
+	 * If the store cannot be opened, the library is not saved.
+	 *
+	 * @param storeFolder the folder of the library store
+	 */
+	public LEIBooks(String storeFolder) {
+		this();
+		try {
+			LibraryStore opened = new LibraryStore(Path.of(storeFolder), library, shelves);
+			Runtime.getRuntime().addShutdownHook(new Thread(opened::close, "library-store-close"));
+			store = opened;
+		} catch (IOException e) {
+			System.out.println("-------->> Library store " + storeFolder + " could not be opened, changes will not be saved");
+		}
+	}
+
+	private static ContentIndexer createContentIndexer(Library library) {
+		try {
+			ContentIndex index = new ContentIndex(Path.of(AppProperties.INSTANCE.FOLDER_CONTENT_INDEX));
+			return new ContentIndexer(library, index);
+		} catch (IOException e) {
+			System.out.println("-------->> Content index could not be opened, searching titles and authors only");
+			return null;
+		}
+	}
+
+	/**
+	 * @return the store where the library is saved, if it is saved
+	 */
+	public Optional<LibraryStore> getStore() {
+		return Optional.ofNullable(store);
+	}
+
 	public ILibrary getLibrary() {
 		return library;
 	}
@@ -0,0 +1,75 @@
+package leibooks.domain.facade;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The criteria of a smart shelf, together with the attributes of the documents
+ * it reads. A smart shelf only tests a document again after an event that may
+ * have changed one of those attributes.
+ *
+ * <p>A criteria given as a plain Predicate is taken to read every attribute.</p>
+ */
+public interface ShelfCriteria extends Predicate<IDocument> {
+
+	/**
+	 * @return the attributes of a document that the criteria reads
+	 * @ensures \result != null
+	 */
+	Set<DocumentAttribute> getDependencies();
+
+	/**
+	 * Returns a criteria that reads the given attributes.
+	 *
+	 * @param criteria the test of the documents
+	 * @param dependencies the attributes read by the test
+	 * @requires criteria != null && dependencies != null
+	 * @return the criteria
+	 */
+	static ShelfCriteria of(Predicate<IDocument> criteria, Set<DocumentAttribute> dependencies) {
+		if (criteria == null || dependencies == null) {
+			throw new IllegalArgumentException("Criteria and dependencies cannot be null");
+		}
+		Set<DocumentAttribute> attributes = dependencies.isEmpty() ? EnumSet.noneOf(DocumentAttribute.class)
+				: EnumSet.copyOf(dependencies);
+		Set<DocumentAttribute> readOnly = Collections.unmodifiableSet(attributes);
+		return new ShelfCriteria() {
+			@Override
+			public boolean test(IDocument document) {
+				return criteria.test(document);
+			}
+
+			@Override
+			public Set<DocumentAttribute> getDependencies() {
+				return readOnly;
+			}
+		};
+	}
+
+	/**
+	 * Returns a criteria that reads the given attributes.
+	 *
+	 * @param criteria the test of the documents
+	 * @param first an attribute read by the test
+	 * @param others the other attributes read by the test
+	 * @requires criteria != null && first != null
+	 * @return the criteria
+	 */
+	static ShelfCriteria of(Predicate<IDocument> criteria, DocumentAttribute first, DocumentAttribute... others) {
+		return of(criteria, EnumSet.of(first, others));
+	}
+
+	/**
+	 * Returns the attributes read by a criteria: the declared ones for a
+	 * ShelfCriteria, all of them for any other predicate.
+	 *
+	 * @param criteria the criteria
+	 * @requires criteria != null
+	 * @return the attributes read by the criteria
+	 */
+	static Set<DocumentAttribute> dependenciesOf(Predicate<IDocument> criteria) {
+		return criteria instanceof ShelfCriteria c ? c.getDependencies() : DocumentAttribute.all();
+	}
+}
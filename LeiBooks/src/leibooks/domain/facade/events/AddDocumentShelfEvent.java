@@ -0,0 +1,23 @@
+package leibooks.domain.facade.events;
+
+import leibooks.domain.facade.IDocument;
+
+public class AddDocumentShelfEvent extends AShelfEvent {
+	
+	private final IDocument doc;
+		
+	public AddDocumentShelfEvent(String shelfName, IDocument doc) {
+		super(shelfName);
+		this.doc = doc;
+	}
+
+	public IDocument getDocument() {
+		return doc;
+	}
+
+	@Override
+	public String toString() {
+		return "AddDocumentShelfEvent [document=" + this.doc.getFile() + 
+				" shelf=" + this.getShelfName() + "]";
+	}
+}
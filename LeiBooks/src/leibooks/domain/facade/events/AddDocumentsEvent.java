@@ -0,0 +1,27 @@
+package leibooks.domain.facade.events;
+
+import java.util.List;
+
+import leibooks.domain.facade.IDocument;
+
+/**
+ * Reports that several documents were imported into the library at once,
+ * instead of one AddDocumentEvent per document.
+ */
+public class AddDocumentsEvent implements LBEvent {
+
+	private final List<IDocument> documents;
+
+	public AddDocumentsEvent(List<IDocument> documents) {
+		this.documents = List.copyOf(documents);
+	}
+
+	public List<IDocument> getDocuments() {
+		return documents;
+	}
+
+	@Override
+	public String toString() {
+		return "AddDocumentsEvent [documents=" + documents.size() + "]";
+	}
+}
@@ -0,0 +1,49 @@
+package leibooks.domain.facade.events;
+
+import leibooks.domain.facade.IDocument;
+
+/**
+ * Reports that a page of a document was added to the content index.
+ * These events are emitted by the indexing threads, never by the Swing
+ * event dispatch thread.
+ */
+public class IndexProgressEvent extends ADocumentEvent {
+
+	private final int page;
+	private final int numberOfPages;
+	private final int pendingDocuments;
+
+	public IndexProgressEvent(IDocument document, int page, int numberOfPages, int pendingDocuments) {
+		super(document);
+		this.page = page;
+		this.numberOfPages = numberOfPages;
+		this.pendingDocuments = pendingDocuments;
+	}
+
+	/**
+	 * @return the page that was indexed (1-based index)
+	 */
+	public int getPage() {
+		return page;
+	}
+
+	/**
+	 * @return the number of pages of the document
+	 */
+	public int getNumberOfPages() {
+		return numberOfPages;
+	}
+
+	/**
+	 * @return the number of documents still waiting to be indexed, besides this one
+	 */
+	public int getPendingDocuments() {
+		return pendingDocuments;
+	}
+
+	@Override
+	public String toString() {
+		return "IndexProgressEvent [document=" + getDocument().getFile() + ", page=" + page + "/" + numberOfPages
+				+ ", pending=" + pendingDocuments + "]";
+	}
+}
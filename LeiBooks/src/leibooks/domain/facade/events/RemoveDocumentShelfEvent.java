@@ -9,6 +9,11 @@ public class RemoveDocumentShelfEvent extends AShelfEvent{
 		super(shelfName);
 		this.doc = doc;
 	}
+
+	public IDocument getDocument() {
+		return doc;
+	}
+
 	@Override
 	public String toString() {
 		return "RemoveDocumentShelfEvent [document=" + this.doc.getFile() + 
@@ -0,0 +1,15 @@
+package leibooks.domain.facade.events;
+
+import leibooks.domain.facade.IDocument;
+
+public class UpdateDocumentEvent extends ADocumentEvent {
+
+	public UpdateDocumentEvent(IDocument document) {
+		super(document);
+	}
+
+	@Override
+	public String toString() {
+		return "UpdateDocumentEvent [document=" + getDocument().getFile() + "]";
+	}
+}
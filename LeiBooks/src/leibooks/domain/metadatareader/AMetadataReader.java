@@ -2,8 +2,6 @@ package leibooks.domain.metadatareader;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
@@ -15,7 +13,8 @@ import java.util.Optional;
  * <p>
  * It defines a constructor that accepts the path to a document file, and retrieves the file's
  * last modification date and MIME type directly from the file, throwing a FileNotFoundException
- * if there is any problem accessing the file.
+ * if there is any problem accessing the file. A second constructor accepts the MIME type
+ * already determined by the MetadataReaderFactory, so the file is not sniffed twice.
  * </p>
  *
  * <p>
@@ -41,6 +40,18 @@ public abstract class AMetadataReader implements IMetadataReader {
      * @throws FileNotFoundException if the file cannot be accessed.
      */
     public AMetadataReader(String pathToDocFile) throws FileNotFoundException {
+        this(pathToDocFile, MimeTypeSniffer.sniff(pathToDocFile));
+    }
+
+    /**
+     * Constructs an AMetadataReader for a file whose MIME type is already known.
+     * It obtains the file's last modification date.
+     *
+     * @param pathToDocFile the file system path to the document.
+     * @param mimeType the MIME type of the document, as returned by MimeTypeSniffer.
+     * @throws FileNotFoundException if the file cannot be accessed.
+     */
+    public AMetadataReader(String pathToDocFile, String mimeType) throws FileNotFoundException {
         File file = new File(pathToDocFile);
         if (!file.exists() || !file.canRead()) {
             throw new FileNotFoundException("Cannot access file: " + pathToDocFile);
@@ -50,13 +61,7 @@ public abstract class AMetadataReader implements IMetadataReader {
         this.dateModified = Instant.ofEpochMilli(lastMod)
                 .atZone(ZoneId.systemDefault())
                 .toLocalDate();
-
-        try {
-            String type = Files.probeContentType(file.toPath());
-            this.mimeType = (type != null) ? type : "";
-        } catch (IOException e) {
-            this.mimeType = "";
-        }
+        this.mimeType = (mimeType != null) ? mimeType : "";
     }
 
     /**
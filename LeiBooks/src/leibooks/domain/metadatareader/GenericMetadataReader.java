@@ -16,7 +16,18 @@ public class GenericMetadataReader extends AMetadataReader {
      * @throws FileNotFoundException if the file cannot be accessed.
      */
     public GenericMetadataReader(String pathToDocFile) throws FileNotFoundException {
-        super(pathToDocFile);
+        this(pathToDocFile, MimeTypeSniffer.sniff(pathToDocFile));
+    }
+
+    /**
+     * Constructs a GenericMetadataReader for a document file whose MIME type is already known.
+     *
+     * @param pathToDocFile the file system path to the document.
+     * @param mimeType the MIME type of the document.
+     * @throws FileNotFoundException if the file cannot be accessed.
+     */
+    public GenericMetadataReader(String pathToDocFile, String mimeType) throws FileNotFoundException {
+        super(pathToDocFile, mimeType);
         this.numPages = Optional.of(1);
     }
 }
@@ -0,0 +1,210 @@
+package leibooks.domain.metadatareader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A persistent cache of the metadata read from document files, in front of
+ * {@link MetadataReaderFactory#createMetadataReader(String)}.
+ *
+ * <p>Entries are keyed by the absolute path of the file and are valid while the
+ * file keeps the same size and last modification time, so a hit only looks at
+ * the file's attributes, never at its contents. An entry of a file that changed
+ * is dropped when the file is looked up, and the entries of files that no longer
+ * exist are not saved. The cache is loaded from its file when it is created and
+ * saved with {@link #save()}.</p>
+ */
+public class MetadataCache {
+
+	private static final int MAGIC = 0x4C424D43;
+	private static final int VERSION = 1;
+
+	private final Path file;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private volatile boolean dirty;
+
+	/**
+	 * The metadata of a file, with the size and modification time it was read with.
+	 */
+	private record Entry(long size, long lastModified, String mimeType, String authors, int numPages,
+			long modifiedDay) implements IMetadataReader {
+
+		@Override
+		public String getAuthors() {
+			return authors;
+		}
+
+		@Override
+		public String getMimeType() {
+			return mimeType;
+		}
+
+		@Override
+		public LocalDate getModifiedDate() {
+			return modifiedDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(modifiedDay);
+		}
+
+		@Override
+		public Optional<Integer> getNumPages() {
+			return numPages < 0 ? Optional.empty() : Optional.of(numPages);
+		}
+	}
+
+	/**
+	 * Creates a cache stored in the given file, loading its entries if the file exists.
+	 * An unreadable file is ignored: the cache starts empty.
+	 *
+	 * @param file the file of the cache
+	 * @requires file != null
+	 */
+	public MetadataCache(Path file) {
+		this.file = file;
+		if (Files.exists(file)) {
+			try {
+				load();
+			} catch (IOException | RuntimeException e) {
+				entries.clear();
+				System.out.println("-------->> Metadata cache " + file + " could not be read, it will be rebuilt");
+			}
+		}
+	}
+
+	/**
+	 * Returns the metadata of the file at the given path: the cached metadata if
+	 * the file did not change since it was read, otherwise the metadata read by a
+	 * reader of the MetadataReaderFactory, which is then cached. The outdated
+	 * entry of the file, if any, is dropped, even if the file cannot be read.
+	 *
+	 * @param pathToDocFile the file system path to the document
+	 * @requires pathToDocFile != null
+	 * @return the metadata of the file
+	 * @throws FileNotFoundException if the file cannot be accessed
+	 */
+	public IMetadataReader getMetadataReader(String pathToDocFile) throws FileNotFoundException {
+		File docFile = new File(pathToDocFile);
+		String key = keyOf(docFile);
+		long size = docFile.length();
+		long lastModified = docFile.lastModified();
+		Entry entry = entries.get(key);
+		if (entry != null && entry.size() == size && entry.lastModified() == lastModified && docFile.canRead()) {
+			hits.incrementAndGet();
+			return entry;
+		}
+		if (entry != null && entries.remove(key, entry)) {
+			dirty = true;
+		}
+		misses.incrementAndGet();
+		IMetadataReader reader = MetadataReaderFactory.INSTANCE.createMetadataReader(pathToDocFile);
+		LocalDate modified = reader.getModifiedDate();
+		entries.put(key, new Entry(size, lastModified, reader.getMimeType(), reader.getAuthors(),
+				reader.getNumPages().orElse(-1), modified == null ? Long.MIN_VALUE : modified.toEpochDay()));
+		dirty = true;
+		return reader;
+	}
+
+	/**
+	 * @return the number of requests answered by the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of requests that had to read the file
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of files in the cache
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Writes the cache to its file, if it changed since it was loaded or saved,
+	 * leaving out the entries of files that no longer exist.
+	 *
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized void save() throws IOException {
+		if (!dirty) {
+			return;
+		}
+		dirty = false;
+		Path parent = file.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			List<Map.Entry<String, Entry>> kept = new ArrayList<>();
+			for (Map.Entry<String, Entry> e : Map.copyOf(entries).entrySet()) {
+				if (new File(e.getKey()).exists()) {
+					kept.add(e);
+				} else {
+					entries.remove(e.getKey(), e.getValue());
+				}
+			}
+			out.writeInt(kept.size());
+			for (Map.Entry<String, Entry> e : kept) {
+				Entry entry = e.getValue();
+				out.writeUTF(e.getKey());
+				out.writeLong(entry.size());
+				out.writeLong(entry.lastModified());
+				out.writeUTF(entry.mimeType());
+				out.writeUTF(entry.authors());
+				out.writeInt(entry.numPages());
+				out.writeLong(entry.modifiedDay());
+			}
+		} catch (IOException e) {
+			dirty = true;
+			throw e;
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private void load() throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Not a metadata cache: " + file);
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String key = in.readUTF();
+				entries.put(key, new Entry(in.readLong(), in.readLong(), in.readUTF(), in.readUTF(), in.readInt(),
+						in.readLong()));
+			}
+		}
+	}
+
+	private static String keyOf(File docFile) {
+		return docFile.getAbsoluteFile().toPath().normalize().toString();
+	}
+
+	@Override
+	public String toString() {
+		return "MetadataCache [files=" + entries.size() + ", hits=" + hits + ", misses=" + misses + "]";
+	}
+}
@@ -3,11 +3,8 @@ package leibooks.domain.metadatareader;
 import leibooks.app.AppProperties;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -55,46 +52,32 @@ public enum MetadataReaderFactory {
 
     /**
      * Creates an appropriate IMetadataReader for the document file at the given path.
+     * The MIME type of the file is sniffed once, here, and given to readers that
+     * have a constructor taking the path and the MIME type.
      *
      * @param pathToDocFile the file system path to the document.
      * @return an IMetadataReader instance for reading the document's metadata.
      * @throws FileNotFoundException if the file cannot be accessed.
      */
     public IMetadataReader createMetadataReader(String pathToDocFile) throws FileNotFoundException {
-        String mimeType = getMimeType(pathToDocFile);
+        String mimeType = MimeTypeSniffer.sniff(pathToDocFile);
         Class<? extends IMetadataReader> readerClass = readerMap.get(mimeType);
         if (readerClass == null) {
             readerClass = GenericMetadataReader.class;
         }
         try {
-            return readerClass.getConstructor(String.class).newInstance(pathToDocFile);
+            try {
+                return readerClass.getConstructor(String.class, String.class).newInstance(pathToDocFile, mimeType);
+            } catch (NoSuchMethodException e) {
+                // readers loaded from the extra folder may only take the path
+                return readerClass.getConstructor(String.class).newInstance(pathToDocFile);
+            }
         } catch (Exception e) {
             throw new FileNotFoundException("Could not create metadata reader for file: " + pathToDocFile
                     + " due to: " + e.getMessage());
         }
     }
 
-    /**
-     * Helper method to determine the MIME type of the file at the given path.
-     *
-     * @param pathToDocFile the file system path to the document.
-     * @return the MIME type as a string; if undetermined, returns an empty string.
-     * @throws FileNotFoundException if the file does not exist or cannot be read.
-     */
-    private String getMimeType(String pathToDocFile) throws FileNotFoundException {
-        File file = new File(pathToDocFile);
-        if (!file.exists() || !file.canRead()) {
-            throw new FileNotFoundException("Cannot access file: " + pathToDocFile);
-        }
-        try {
-            Path path = file.toPath();
-            String type = Files.probeContentType(path);
-            return (type != null) ? type : "";
-        } catch (IOException e) {
-            return "";
-        }
-    }
-
     /**
      * Extracts a MIME type from a class name by converting camel case to MIME format.
      * For example: "PdfTextMetadataReader" → "pdf/text"
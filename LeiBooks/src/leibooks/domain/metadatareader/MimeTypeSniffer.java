@@ -0,0 +1,188 @@
+package leibooks.domain.metadatareader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MimeTypeSniffer determines the MIME type of a document file from its first
+ * bytes, instead of from its name or from the platform's file type detectors.
+ *
+ * <p>
+ * It recognizes PDF, JPEG, PNG, GIF and plain text files by reading at most
+ * {@value #SNIFF_BYTES} bytes into a direct buffer that is reused by each thread.
+ * Only files whose contents are not recognized are handed to
+ * {@link Files#probeContentType(java.nio.file.Path)}.
+ * </p>
+ */
+public final class MimeTypeSniffer {
+
+    /**
+     * Number of bytes read from the beginning of the file
+     */
+    public static final int SNIFF_BYTES = 512;
+
+    /**
+     * Maximum number of bytes before the header of a PDF file
+     */
+    static final int PDF_HEADER_SLACK = 128;
+
+    private static final byte[] PDF = { '%', 'P', 'D', 'F', '-' };
+    private static final byte[] JPEG = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF };
+    private static final byte[] PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final byte[] GIF87 = { 'G', 'I', 'F', '8', '7', 'a' };
+    private static final byte[] GIF89 = { 'G', 'I', 'F', '8', '9', 'a' };
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(SNIFF_BYTES));
+
+    private MimeTypeSniffer() {
+    }
+
+    /**
+     * Determines the MIME type of the file at the given path.
+     *
+     * @param pathToDocFile the file system path to the document
+     * @requires pathToDocFile != null
+     * @return the MIME type; if undetermined, an empty string
+     * @throws FileNotFoundException if the file does not exist or cannot be read
+     */
+    public static String sniff(String pathToDocFile) throws FileNotFoundException {
+        File file = new File(pathToDocFile);
+        if (!file.isFile() || !file.canRead()) {
+            throw new FileNotFoundException("Cannot access file: " + pathToDocFile);
+        }
+        ByteBuffer buffer = BUFFERS.get();
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading until the buffer is full or the file ends
+            }
+        } catch (IOException e) {
+            throw new FileNotFoundException("Cannot read file: " + pathToDocFile);
+        }
+        buffer.flip();
+        String type = sniff(buffer, buffer.limit() < SNIFF_BYTES);
+        if (!type.isEmpty()) {
+            return type;
+        }
+        try {
+            String probed = Files.probeContentType(file.toPath());
+            return probed != null ? probed : "";
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Determines the MIME type of a file from its first bytes.
+     *
+     * @param head the first bytes of the file, between its position and limit
+     * @param whole whether head holds the whole file
+     * @requires head != null
+     * @return the MIME type; if not recognized, an empty string
+     */
+    static String sniff(ByteBuffer head, boolean whole) {
+        if (startsWith(head, JPEG)) {
+            return "image/jpeg";
+        }
+        if (startsWith(head, PNG)) {
+            return "image/png";
+        }
+        if (startsWith(head, GIF87) || startsWith(head, GIF89)) {
+            return "image/gif";
+        }
+        if (isPDF(head)) {
+            return "application/pdf";
+        }
+        if (head.hasRemaining() && isText(head, whole)) {
+            return "text/plain";
+        }
+        return "";
+    }
+
+    private static boolean startsWith(ByteBuffer head, byte[] magic) {
+        return indexOf(head, magic, 0, 1) == 0;
+    }
+
+    /*
+     * The header of a PDF file may follow some whitespace, or some binary garbage
+     * (such as a MacBinary header) up to PDF_HEADER_SLACK bytes, but not text: a
+     * text file that mentions the header is text.
+     */
+    private static boolean isPDF(ByteBuffer head) {
+        int offset = indexOf(head, PDF, 0, PDF_HEADER_SLACK + 1);
+        if (offset <= 0) {
+            return offset == 0;
+        }
+        ByteBuffer leading = head.duplicate().limit(head.position() + offset);
+        return isBlank(leading) || !isText(leading, true);
+    }
+
+    private static boolean isBlank(ByteBuffer bytes) {
+        for (int i = bytes.position(); i < bytes.limit(); i++) {
+            byte b = bytes.get(i);
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r' && b != '\f' && b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer head, byte[] magic, int from, int count) {
+        int start = head.position();
+        int last = Math.min(from + count, head.remaining() - magic.length + 1);
+        for (int i = from; i < last; i++) {
+            int j = 0;
+            while (j < magic.length && head.get(start + i + j) == magic[j]) {
+                j++;
+            }
+            if (j == magic.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Text is well-formed UTF-8 (which includes ASCII) without control characters
+     * other than tab, line feed, form feed, carriage return and escape. A sequence
+     * cut by the end of the buffer is accepted if the file goes on.
+     */
+    private static boolean isText(ByteBuffer head, boolean whole) {
+        int i = head.position();
+        int end = head.limit();
+        while (i < end) {
+            int b = head.get(i) & 0xFF;
+            int continuation;
+            if (b < 0x80) {
+                if (b < 0x20 && b != '\t' && b != '\n' && b != '\f' && b != '\r' && b != 0x1B || b == 0x7F) {
+                    return false;
+                }
+                continuation = 0;
+            } else if (b >= 0xC2 && b <= 0xDF) {
+                continuation = 1;
+            } else if (b >= 0xE0 && b <= 0xEF) {
+                continuation = 2;
+            } else if (b >= 0xF0 && b <= 0xF4) {
+                continuation = 3;
+            } else {
+                return false;
+            }
+            for (int k = 1; k <= continuation; k++) {
+                if (i + k >= end) {
+                    return !whole;
+                }
+                if ((head.get(i + k) & 0xC0) != 0x80) {
+                    return false;
+                }
+            }
+            i += continuation + 1;
+        }
+        return true;
+    }
+}
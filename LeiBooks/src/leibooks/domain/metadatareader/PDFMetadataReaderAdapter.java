@@ -2,13 +2,16 @@ package leibooks.domain.metadatareader;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.Optional;
 
 import leibooks.services.reader.PDFReader;
+import leibooks.services.reader.PDFTailReader;
 
 /**
  * PDFMetadataReaderAdapter is a metadata reader for PDF documents.
- * It extends AMetadataReader and uses services provided by PDFReader to obtain metadata.
+ * It extends AMetadataReader and uses services provided by PDFTailReader to obtain metadata,
+ * falling back to PDFReader, which parses the whole file, when the file is malformed.
  */
 public class PDFMetadataReaderAdapter extends AMetadataReader {
 
@@ -19,13 +22,34 @@ public class PDFMetadataReaderAdapter extends AMetadataReader {
      * @throws FileNotFoundException if the file cannot be accessed.
      */
     public PDFMetadataReaderAdapter(String pathToDocFile) throws FileNotFoundException {
-        super(pathToDocFile);
+        this(pathToDocFile, "application/pdf");
+    }
+
+    /**
+     * Constructs a PDFMetadataReaderAdapter for the given PDF file, whose MIME type is already known.
+     *
+     * @param pathToDocFile the file system path to the PDF document.
+     * @param mimeType the MIME type of the document.
+     * @throws FileNotFoundException if the file cannot be accessed.
+     */
+    public PDFMetadataReaderAdapter(String pathToDocFile, String mimeType) throws FileNotFoundException {
+        super(pathToDocFile, mimeType);
         try {
             File file = new File(pathToDocFile);
-            PDFReader reader = new PDFReader(file);
-            
-            this.numPages = Optional.of(reader.getPages());
-            String pdfAuthors = reader.getAuthors();
+            int pages;
+            String pdfAuthors;
+            try {
+                PDFTailReader reader = new PDFTailReader(file);
+                pages = reader.getPages();
+                pdfAuthors = reader.getAuthors();
+            } catch (IOException e) {
+                // a file the tail reader cannot follow is parsed whole
+                PDFReader reader = new PDFReader(file);
+                pages = reader.getPages();
+                pdfAuthors = reader.getAuthors();
+            }
+
+            this.numPages = Optional.of(pages);
             this.authors = (pdfAuthors != null && !pdfAuthors.isEmpty()) ? pdfAuthors : "n/a";
         } catch (Exception e) {
             this.numPages = Optional.empty();
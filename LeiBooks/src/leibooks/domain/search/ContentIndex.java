@@ -0,0 +1,832 @@
+package leibooks.domain.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import leibooks.domain.core.DocumentId;
+
+/**
+ * An inverted index of the contents of document files, stored on disk.
+ *
+ * <p>Each term (see DocumentIndex.tokens) is mapped to the pages where it occurs,
+ * as a list of (document, page) postings. The index is made of immutable segment
+ * files, which are memory-mapped, and of an in-memory delta with the pages indexed
+ * since the last segment was written. Flushing the index writes the delta, and
+ * the documents removed since, as a new segment (segment-&lt;generation&gt;.idx),
+ * so its cost depends on the delta and not on the size of the index.</p>
+ *
+ * <p>A document is in the newest segment (or the delta) that has it: a newer
+ * segment supersedes the contents of a document in older ones, and a removed
+ * document is written as a document without contents. A segment that is not
+ * much larger than the newer ones together is merged with them in the background
+ * into a single segment (segment-&lt;first generation&gt;-&lt;last generation&gt;.idx),
+ * leaving out the superseded contents, so the segments at least double in size
+ * from the newest to the oldest, and each posting is rewritten a few times. A merge streams the sorted dictionaries of its segments, so it does
+ * not hold their postings in memory.</p>
+ *
+ * <p>Segment layout (big-endian):</p>
+ * <pre>
+ * header     magic, version, #documents, #terms (ints), dictionary offset, postings offset (longs)
+ * documents  #documents x (last modified (long), size (long, -1 if removed), path length (int), UTF-8 path)
+ * dictionary #terms x (UTF-8 term padded with zeros to TERM_BYTES, first posting (int), #postings (int)),
+ *            sorted by term bytes
+ * postings   (document number (int), page (int)), sorted by document and page within each term
+ * </pre>
+ *
+ * <p>Documents are identified by the canonical path of their files, and the last
+ * modification time and size of a file tell whether its indexed contents are up
+ * to date.</p>
+ */
+public class ContentIndex {
+
+	/**
+	 * Maximum length of a term in the dictionary, in UTF-8 bytes. Longer terms are truncated
+	 */
+	static final int TERM_BYTES = 32;
+
+	/**
+	 * A segment less than MERGE_RATIO times the size of the newer ones together is merged with them
+	 */
+	static final int MERGE_RATIO = 2;
+
+	private static final int MAGIC = 0x4C424958;
+	private static final int VERSION = 2;
+	private static final int HEADER_BYTES = 32;
+	private static final int DICTIONARY_ENTRY_BYTES = TERM_BYTES + 8;
+	private static final int POSTING_BYTES = 8;
+	private static final long REMOVED = -1;
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SEGMENT_SUFFIX = ".idx";
+
+	private final Path directory;
+	private final ExecutorService merger;
+
+	// the segments, oldest first
+	private final List<Segment> segments = new ArrayList<>();
+	private long generation;
+	private boolean merging;
+
+	// the pages indexed since the last segment was written, by canonical path
+	private final Map<String, DeltaDocument> delta = new LinkedHashMap<>();
+	// the documents removed since, whose newest segment has their contents
+	private final Set<String> removedPaths = new HashSet<>();
+
+	/**
+	 * Opens the content index stored in the given directory, creating the
+	 * directory if needed. Unreadable segments are discarded.
+	 *
+	 * @param directory the directory of the index files
+	 * @requires directory != null
+	 * @throws IOException if the directory cannot be created
+	 */
+	public ContentIndex(Path directory) throws IOException {
+		this.directory = directory;
+		Files.createDirectories(directory);
+		List<Segment> found = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*")) {
+			for (Path file : files) {
+				long[] range = rangeOf(file);
+				if (range == null) {
+					// a segment whose writing was interrupted
+					Files.deleteIfExists(file);
+					continue;
+				}
+				try {
+					found.add(Segment.open(file, range[0], range[1]));
+				} catch (IOException | RuntimeException e) {
+					System.out.println("-------->> Content index " + file + " could not be read, it will be rebuilt");
+				}
+			}
+		}
+		found.sort(Comparator.comparingLong((Segment s) -> s.last).thenComparingLong(s -> s.first));
+		for (Segment segment : found) {
+			if (isMerged(segment, found)) {
+				// left behind by a merge that was interrupted before deleting it
+				deleteQuietly(segment.file);
+			} else {
+				add(segment);
+				generation = segment.last;
+			}
+		}
+		merger = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r, "content-index-merger");
+			t.setDaemon(true);
+			t.setPriority(Thread.MIN_PRIORITY);
+			return t;
+		});
+	}
+
+	/**
+	 * @return the number of documents in the index
+	 * @ensures \result >= 0
+	 */
+	public synchronized int getNumberOfDocuments() {
+		int count = delta.size();
+		for (Segment segment : segments) {
+			for (int docNo = 0; docNo < segment.paths.length; docNo++) {
+				if (segment.isLive(docNo)) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of segments of the index
+	 * @ensures \result >= 0
+	 */
+	synchronized int getNumberOfSegments() {
+		return segments.size();
+	}
+
+	/**
+	 * Checks if the indexed contents of a file are up to date.
+	 *
+	 * @param pathToFile the path to the file
+	 * @param lastModified the last modification time of the file
+	 * @param size the size of the file, in bytes
+	 * @requires pathToFile != null
+	 * @return whether the file was indexed with that modification time and size
+	 */
+	public synchronized boolean isUpToDate(String pathToFile, long lastModified, long size) {
+		String path = DocumentId.canonicalPath(pathToFile);
+		DeltaDocument doc = delta.get(path);
+		if (doc != null) {
+			return doc.lastModified == lastModified && doc.size == size;
+		}
+		for (Segment segment : segments) {
+			Integer docNo = segment.documents.get(path);
+			if (docNo != null && segment.isLive(docNo)) {
+				return segment.lastModified[docNo] == lastModified && segment.sizes[docNo] == size;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the text of a page of a file to the index. The first page added for a
+	 * file with a different modification time or size replaces its previous contents.
+	 *
+	 * @param pathToFile the path to the file
+	 * @param lastModified the last modification time of the file
+	 * @param size the size of the file, in bytes
+	 * @param page the page number (1-based index)
+	 * @param text the text of the page
+	 * @requires pathToFile != null && text != null && page >= 1
+	 */
+	public synchronized void addPage(String pathToFile, long lastModified, long size, int page, String text) {
+		String path = DocumentId.canonicalPath(pathToFile);
+		DeltaDocument doc = delta.get(path);
+		if (doc == null || doc.lastModified != lastModified || doc.size != size) {
+			doc = new DeltaDocument(lastModified, size);
+			delta.put(path, doc);
+			removedPaths.remove(path);
+			for (Segment segment : segments) {
+				segment.remove(path);
+			}
+		}
+		for (String term : DocumentIndex.tokens(text)) {
+			doc.terms.computeIfAbsent(truncate(term), t -> new BitSet()).set(page);
+		}
+	}
+
+	/**
+	 * Removes the contents of a file from the index.
+	 *
+	 * @param pathToFile the path to the file
+	 * @requires pathToFile != null
+	 */
+	public synchronized void remove(String pathToFile) {
+		String path = DocumentId.canonicalPath(pathToFile);
+		delta.remove(path);
+		Segment newest = null;
+		for (Segment segment : segments) {
+			if (segment.remove(path)) {
+				newest = segment;
+			}
+		}
+		// the removal is written only if the segments would bring the contents back
+		if (newest != null && newest.sizes[newest.documents.get(path)] != REMOVED) {
+			removedPaths.add(path);
+		}
+	}
+
+	/**
+	 * Returns the pages with some term that starts with the given prefix.
+	 *
+	 * @param prefix the prefix, which is lowercased
+	 * @requires prefix != null
+	 * @return the pages with such a term, by canonical path of the file
+	 */
+	public synchronized Map<String, BitSet> prefix(String prefix) {
+		String from = truncate(prefix.toLowerCase(Locale.ROOT));
+		Map<String, BitSet> result = new TreeMap<>();
+		for (Map.Entry<String, DeltaDocument> e : delta.entrySet()) {
+			for (Map.Entry<String, BitSet> t : e.getValue().terms.entrySet()) {
+				if (t.getKey().startsWith(from)) {
+					result.computeIfAbsent(e.getKey(), p -> new BitSet()).or(t.getValue());
+				}
+			}
+		}
+		byte[] wanted = from.getBytes(StandardCharsets.UTF_8);
+		byte[] term = new byte[TERM_BYTES];
+		for (Segment segment : segments) {
+			for (int entry = segment.firstEntryNotBefore(wanted, term); entry < segment.numberOfTerms; entry++) {
+				segment.readTerm(entry, term);
+				if (!startsWith(term, wanted)) {
+					break;
+				}
+				int first = segment.firstPosting(entry);
+				int count = segment.numberOfPostings(entry);
+				for (int i = first; i < first + count; i++) {
+					int docNo = segment.docNo(i);
+					if (segment.isLive(docNo)) {
+						result.computeIfAbsent(segment.paths[docNo], p -> new BitSet()).set(segment.page(i));
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Answers a keyword query: the files that have, for each word of the query,
+	 * some term that starts with it.
+	 *
+	 * @param query the query
+	 * @requires query != null
+	 * @return the matching files, by canonical path, with the pages where some
+	 *         of the words occur
+	 */
+	public synchronized Map<String, BitSet> search(String query) {
+		Map<String, BitSet> result = null;
+		for (String word : DocumentIndex.tokens(query)) {
+			Map<String, BitSet> hits = prefix(word);
+			if (result == null) {
+				result = hits;
+			} else {
+				result.keySet().retainAll(hits.keySet());
+				result.forEach((path, pages) -> pages.or(hits.get(path)));
+			}
+		}
+		return result == null ? new TreeMap<>() : result;
+	}
+
+	/**
+	 * Writes the in-memory delta, and the documents removed since the last
+	 * segment was written, as a new segment, and maps it. Then merges segments
+	 * in the background, if they are due. Does nothing if nothing changed.
+	 *
+	 * @throws IOException if the segment cannot be written
+	 */
+	public void flush() throws IOException {
+		synchronized (this) {
+			if (delta.isEmpty() && removedPaths.isEmpty()) {
+				return;
+			}
+			List<DocumentEntry> docs = new ArrayList<>();
+			Map<String, List<Integer>> termDocuments = new TreeMap<>(ContentIndex::compareTerms);
+			for (Map.Entry<String, DeltaDocument> e : delta.entrySet()) {
+				int docNo = docs.size();
+				docs.add(new DocumentEntry(e.getKey(), e.getValue().lastModified, e.getValue().size));
+				for (String term : e.getValue().terms.keySet()) {
+					termDocuments.computeIfAbsent(term, t -> new ArrayList<>()).add(docNo);
+				}
+			}
+			for (String path : removedPaths) {
+				docs.add(new DocumentEntry(path, 0, REMOVED));
+			}
+
+			Path next = directory.resolve(SEGMENT_PREFIX + (generation + 1) + SEGMENT_SUFFIX);
+			try (SegmentWriter writer = new SegmentWriter(next, docs)) {
+				for (Map.Entry<String, List<Integer>> e : termDocuments.entrySet()) {
+					writer.term(Arrays.copyOf(e.getKey().getBytes(StandardCharsets.UTF_8), TERM_BYTES));
+					for (int docNo : e.getValue()) {
+						BitSet pages = delta.get(docs.get(docNo).path()).terms.get(e.getKey());
+						for (int page = pages.nextSetBit(0); page >= 0; page = pages.nextSetBit(page + 1)) {
+							writer.posting(docNo, page);
+						}
+					}
+				}
+				writer.finish();
+			}
+			generation++;
+			add(Segment.open(next, generation, generation));
+			delta.clear();
+			removedPaths.clear();
+			if (merging || mergeRun() == null) {
+				return;
+			}
+			merging = true;
+		}
+		merger.execute(this::mergeSegments);
+	}
+
+	/**
+	 * Waits until no segments are being merged.
+	 *
+	 * @param timeout the maximum time to wait, in milliseconds
+	 * @return true if no segments are being merged, false if the time elapsed
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	synchronized boolean awaitMerges(long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (merging) {
+			long left = deadline - System.currentTimeMillis();
+			if (left <= 0) {
+				return false;
+			}
+			wait(left);
+		}
+		return true;
+	}
+
+	// adds a segment newer than the others, whose documents supersede theirs
+	private void add(Segment segment) {
+		for (String path : segment.paths) {
+			for (Segment older : segments) {
+				older.supersede(path);
+			}
+		}
+		segments.add(segment);
+	}
+
+	/*
+	 * The segments due to be merged: the oldest segment that is less than
+	 * MERGE_RATIO times the size of the newer ones together, and those.
+	 */
+	private List<Segment> mergeRun() {
+		long newer = 0;
+		long[] newerBytes = new long[segments.size()];
+		for (int i = segments.size() - 1; i >= 0; i--) {
+			newerBytes[i] = newer;
+			newer += segments.get(i).bytes();
+		}
+		for (int from = 0; from < segments.size() - 1; from++) {
+			if (segments.get(from).bytes() < MERGE_RATIO * newerBytes[from]) {
+				return new ArrayList<>(segments.subList(from, segments.size()));
+			}
+		}
+		return null;
+	}
+
+	private void mergeSegments() {
+		try {
+			while (true) {
+				List<Segment> run;
+				List<BitSet> superseded = new ArrayList<>();
+				boolean oldest;
+				synchronized (this) {
+					run = mergeRun();
+					if (run == null) {
+						// under the same lock as the flushes that check it
+						merging = false;
+						notifyAll();
+						return;
+					}
+					for (Segment segment : run) {
+						superseded.add((BitSet) segment.superseded.clone());
+					}
+					oldest = segments.get(0) == run.get(0);
+				}
+				int[][] renumbered = new int[run.size()][];
+				Segment merged = merge(run, superseded, oldest, renumbered);
+				synchronized (this) {
+					replace(run, merged, renumbered);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			System.out.println("-------->> Content index segments could not be merged: " + e.getMessage());
+			synchronized (this) {
+				merging = false;
+				notifyAll();
+			}
+		}
+	}
+
+	/*
+	 * Writes the documents of a run of segments that are not superseded, and their
+	 * postings, as a single segment. The removed documents are left out if no
+	 * segment is older than the run, as there are no contents for them to hide.
+	 */
+	private Segment merge(List<Segment> run, List<BitSet> superseded, boolean oldest, int[][] renumbered)
+			throws IOException {
+		List<DocumentEntry> docs = new ArrayList<>();
+		for (int s = 0; s < run.size(); s++) {
+			Segment segment = run.get(s);
+			renumbered[s] = new int[segment.paths.length];
+			for (int docNo = 0; docNo < segment.paths.length; docNo++) {
+				renumbered[s][docNo] = -1;
+				if (!superseded.get(s).get(docNo) && !(oldest && segment.sizes[docNo] == REMOVED)) {
+					renumbered[s][docNo] = docs.size();
+					docs.add(new DocumentEntry(segment.paths[docNo], segment.lastModified[docNo], segment.sizes[docNo]));
+				}
+			}
+		}
+		Path file = directory.resolve(SEGMENT_PREFIX + run.get(0).first + "-" + run.get(run.size() - 1).last
+				+ SEGMENT_SUFFIX);
+		try (SegmentWriter writer = new SegmentWriter(file, docs)) {
+			// the dictionaries are sorted, and so is their merge
+			int[] entries = new int[run.size()];
+			byte[][] terms = new byte[run.size()][TERM_BYTES];
+			for (int s = 0; s < run.size(); s++) {
+				if (run.get(s).numberOfTerms > 0) {
+					run.get(s).readTerm(0, terms[s]);
+				}
+			}
+			while (true) {
+				byte[] term = null;
+				for (int s = 0; s < run.size(); s++) {
+					if (entries[s] < run.get(s).numberOfTerms
+							&& (term == null || Arrays.compareUnsigned(terms[s], term) < 0)) {
+						term = terms[s];
+					}
+				}
+				if (term == null) {
+					break;
+				}
+				term = term.clone();
+				writer.term(term);
+				// the documents of older segments have lower numbers
+				for (int s = 0; s < run.size(); s++) {
+					Segment segment = run.get(s);
+					if (entries[s] < segment.numberOfTerms && Arrays.equals(terms[s], term)) {
+						int first = segment.firstPosting(entries[s]);
+						int count = segment.numberOfPostings(entries[s]);
+						for (int i = first; i < first + count; i++) {
+							int docNo = renumbered[s][segment.docNo(i)];
+							if (docNo >= 0) {
+								writer.posting(docNo, segment.page(i));
+							}
+						}
+						if (++entries[s] < segment.numberOfTerms) {
+							segment.readTerm(entries[s], terms[s]);
+						}
+					}
+				}
+			}
+			writer.finish();
+		}
+		return Segment.open(file, run.get(0).first, run.get(run.size() - 1).last);
+	}
+
+	/*
+	 * Puts the merged segment in place of its run, keeping what happened to the
+	 * documents of the run while they were merged.
+	 */
+	private void replace(List<Segment> run, Segment merged, int[][] renumbered) {
+		int from = segments.indexOf(run.get(0));
+		for (int s = 0; s < run.size(); s++) {
+			Segment segment = run.get(s);
+			for (int docNo = 0; docNo < segment.paths.length; docNo++) {
+				int mergedNo = renumbered[s][docNo];
+				if (mergedNo >= 0) {
+					if (segment.superseded.get(docNo)) {
+						merged.superseded.set(mergedNo);
+					}
+					if (segment.removed.get(docNo)) {
+						merged.removed.set(mergedNo);
+					}
+				}
+			}
+		}
+		segments.subList(from, from + run.size()).clear();
+		segments.add(from, merged);
+		for (Segment segment : run) {
+			// still mapped on some platforms, it is removed when the index is next opened
+			deleteQuietly(segment.file);
+		}
+	}
+
+	// whether the contents of a segment were merged into another
+	private static boolean isMerged(Segment segment, List<Segment> all) {
+		for (Segment other : all) {
+			if (other != segment && other.first <= segment.first && segment.last <= other.last
+					&& other.last - other.first > segment.last - segment.first) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * The first and last generations of the segments in a segment file, or null
+	 * if it is not a segment file.
+	 */
+	private static long[] rangeOf(Path file) {
+		String name = file.getFileName().toString();
+		if (!name.endsWith(SEGMENT_SUFFIX)) {
+			return null;
+		}
+		String[] generations = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()).split("-");
+		try {
+			long first = Long.parseLong(generations[0]);
+			long last = generations.length == 1 ? first : Long.parseLong(generations[1]);
+			return generations.length <= 2 && first <= last ? new long[] { first, last } : null;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			// only garbage
+		}
+	}
+
+	private static boolean startsWith(byte[] term, byte[] prefix) {
+		return Arrays.equals(term, 0, prefix.length, prefix, 0, prefix.length);
+	}
+
+	private static int compareTerms(String a, String b) {
+		return Arrays.compareUnsigned(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/*
+	 * Truncates a term to at most TERM_BYTES UTF-8 bytes, without splitting characters.
+	 */
+	static String truncate(String term) {
+		if (term.length() * 3 <= TERM_BYTES) {
+			return term;
+		}
+		int bytes = 0;
+		int end = 0;
+		while (end < term.length()) {
+			int cp = term.codePointAt(end);
+			int length = cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+			if (bytes + length > TERM_BYTES) {
+				break;
+			}
+			bytes += length;
+			end += Character.charCount(cp);
+		}
+		return term.substring(0, end);
+	}
+
+	/**
+	 * A document of a segment: its path, and the last modified time and size of
+	 * its file, or REMOVED as size if it was removed
+	 */
+	private record DocumentEntry(String path, long lastModified, long size) {
+	}
+
+	/**
+	 * A mapped segment file
+	 */
+	private static final class Segment {
+		private final Path file;
+		private final long first;
+		private final long last;
+		private final MappedByteBuffer buffer;
+		private final int numberOfTerms;
+		private final long dictionaryOffset;
+		private final long postingsOffset;
+		private final String[] paths;
+		private final long[] lastModified;
+		private final long[] sizes;
+		private final Map<String, Integer> documents = new HashMap<>();
+		// guarded by the index: the documents of newer segments, and also of the delta
+		private final BitSet superseded = new BitSet();
+		private final BitSet removed = new BitSet();
+
+		private Segment(Path file, long first, long last, MappedByteBuffer buffer) {
+			this.file = file;
+			this.first = first;
+			this.last = last;
+			this.buffer = buffer;
+			int numberOfDocuments = buffer.getInt(8);
+			numberOfTerms = buffer.getInt(12);
+			dictionaryOffset = buffer.getLong(16);
+			postingsOffset = buffer.getLong(24);
+			paths = new String[numberOfDocuments];
+			lastModified = new long[numberOfDocuments];
+			sizes = new long[numberOfDocuments];
+			ByteBuffer docs = buffer.duplicate().position(HEADER_BYTES);
+			for (int docNo = 0; docNo < numberOfDocuments; docNo++) {
+				lastModified[docNo] = docs.getLong();
+				sizes[docNo] = docs.getLong();
+				byte[] path = new byte[docs.getInt()];
+				docs.get(path);
+				paths[docNo] = new String(path, StandardCharsets.UTF_8);
+				documents.put(paths[docNo], docNo);
+			}
+		}
+
+		static Segment open(Path file, long first, long last) throws IOException {
+			MappedByteBuffer buffer;
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			int version = buffer.getInt(4);
+			if (buffer.getInt(0) != MAGIC || version < 1 || version > VERSION) {
+				throw new IOException("Not a content index segment: " + file);
+			}
+			return new Segment(file, first, last, buffer);
+		}
+
+		long bytes() {
+			return buffer.capacity();
+		}
+
+		boolean isLive(int docNo) {
+			return !removed.get(docNo) && sizes[docNo] != REMOVED;
+		}
+
+		// a newer segment has the document
+		void supersede(String path) {
+			Integer docNo = documents.get(path);
+			if (docNo != null) {
+				superseded.set(docNo);
+				removed.set(docNo);
+			}
+		}
+
+		// the document was removed or is being indexed again; returns whether the segment has it
+		boolean remove(String path) {
+			Integer docNo = documents.get(path);
+			if (docNo != null) {
+				removed.set(docNo);
+			}
+			return docNo != null && !superseded.get(docNo);
+		}
+
+		int firstPosting(int entry) {
+			return buffer.getInt((int) (dictionaryOffset + (long) entry * DICTIONARY_ENTRY_BYTES + TERM_BYTES));
+		}
+
+		int numberOfPostings(int entry) {
+			return buffer.getInt((int) (dictionaryOffset + (long) entry * DICTIONARY_ENTRY_BYTES + TERM_BYTES + 4));
+		}
+
+		int docNo(int posting) {
+			return buffer.getInt((int) (postingsOffset + (long) posting * POSTING_BYTES));
+		}
+
+		int page(int posting) {
+			return buffer.getInt((int) (postingsOffset + (long) posting * POSTING_BYTES + 4));
+		}
+
+		void readTerm(int entry, byte[] term) {
+			buffer.get((int) (dictionaryOffset + (long) entry * DICTIONARY_ENTRY_BYTES), term);
+		}
+
+		/*
+		 * Binary search of the first dictionary entry whose term is not before the given bytes.
+		 */
+		int firstEntryNotBefore(byte[] wanted, byte[] term) {
+			byte[] padded = Arrays.copyOf(wanted, TERM_BYTES);
+			int lo = 0;
+			int hi = numberOfTerms;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				readTerm(mid, term);
+				if (Arrays.compareUnsigned(term, padded) < 0) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+	}
+
+	/**
+	 * Writes a segment file: the terms, in order, each followed by its postings.
+	 * The dictionary and the postings go to temporary files, which are appended to
+	 * the header and the documents when the number of terms is known.
+	 */
+	private static final class SegmentWriter implements AutoCloseable {
+		private final Path file;
+		private final List<DocumentEntry> docs;
+		private final Path dictionaryFile;
+		private final Path postingsFile;
+		private final DataOutputStream dictionary;
+		private final DataOutputStream postings;
+		private byte[] term;
+		private int first;
+		private int count;
+		private int numberOfTerms;
+
+		SegmentWriter(Path file, List<DocumentEntry> docs) throws IOException {
+			this.file = file;
+			this.docs = docs;
+			dictionaryFile = file.resolveSibling(file.getFileName() + ".dictionary.tmp");
+			postingsFile = file.resolveSibling(file.getFileName() + ".postings.tmp");
+			dictionary = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dictionaryFile), 1 << 16));
+			postings = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(postingsFile), 1 << 16));
+		}
+
+		// starts the postings of a term, padded to TERM_BYTES; a term without postings is left out
+		void term(byte[] nextTerm) throws IOException {
+			endTerm();
+			term = nextTerm;
+		}
+
+		void posting(int docNo, int page) throws IOException {
+			postings.writeInt(docNo);
+			postings.writeInt(page);
+			count++;
+		}
+
+		void finish() throws IOException {
+			endTerm();
+			dictionary.close();
+			postings.close();
+			long documentsBytes = 0;
+			List<byte[]> encodedPaths = new ArrayList<>(docs.size());
+			for (DocumentEntry doc : docs) {
+				byte[] bytes = doc.path().getBytes(StandardCharsets.UTF_8);
+				encodedPaths.add(bytes);
+				documentsBytes += 20 + bytes.length;
+			}
+			long dictionaryStart = HEADER_BYTES + documentsBytes;
+			Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+			try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer head = ByteBuffer.allocate((int) dictionaryStart);
+				head.putInt(MAGIC).putInt(VERSION).putInt(docs.size()).putInt(numberOfTerms);
+				head.putLong(dictionaryStart).putLong(dictionaryStart + (long) numberOfTerms * DICTIONARY_ENTRY_BYTES);
+				for (int docNo = 0; docNo < docs.size(); docNo++) {
+					head.putLong(docs.get(docNo).lastModified()).putLong(docs.get(docNo).size());
+					head.putInt(encodedPaths.get(docNo).length).put(encodedPaths.get(docNo));
+				}
+				head.flip();
+				while (head.hasRemaining()) {
+					channel.write(head);
+				}
+				append(channel, dictionaryFile);
+				append(channel, postingsFile);
+			}
+			Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+		}
+
+		@Override
+		public void close() throws IOException {
+			dictionary.close();
+			postings.close();
+			Files.deleteIfExists(dictionaryFile);
+			Files.deleteIfExists(postingsFile);
+			Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".tmp"));
+		}
+
+		private void endTerm() throws IOException {
+			if (term != null && count > 0) {
+				dictionary.write(term);
+				dictionary.writeInt(first);
+				dictionary.writeInt(count);
+				first += count;
+				numberOfTerms++;
+			}
+			term = null;
+			count = 0;
+		}
+
+		private static void append(FileChannel channel, Path part) throws IOException {
+			try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ)) {
+				long position = 0;
+				long size = in.size();
+				while (position < size) {
+					position += in.transferTo(position, size - position, channel);
+				}
+			}
+		}
+	}
+
+	private static final class DeltaDocument {
+		private final long lastModified;
+		private final long size;
+		private final Map<String, BitSet> terms = new HashMap<>();
+
+		DeltaDocument(long lastModified, long size) {
+			this.lastModified = lastModified;
+			this.size = size;
+		}
+	}
+}
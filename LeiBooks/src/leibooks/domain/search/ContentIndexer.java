@@ -0,0 +1,277 @@
+package leibooks.domain.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import leibooks.domain.core.DocumentId;
+import leibooks.domain.core.ILibrary;
+import leibooks.domain.facade.IDocument;
+import leibooks.domain.facade.events.AddDocumentEvent;
+import leibooks.domain.facade.events.DocumentEvent;
+import leibooks.domain.facade.events.IndexProgressEvent;
+import leibooks.domain.facade.events.RemoveDocumentEvent;
+import leibooks.services.reader.PDFTextExtractor;
+import leibooks.utils.AbsSubject;
+import leibooks.utils.Listener;
+import leibooks.utils.SerialExecutor;
+
+/**
+ * Keeps the content index of a library up to date, in the background.
+ *
+ * <p>The indexer listens to the library and hands the documents that are added
+ * or removed to a small pool of daemon worker threads. The workers extract the
+ * text of PDF and plain text documents page by page, add it to the index, and
+ * emit an IndexProgressEvent when a document is indexed, and every
+ * PROGRESS_INTERVAL while a long one is. When there is no more work to do,
+ * the index is flushed to disk. Documents whose files did not change since they
+ * were indexed are not extracted again.</p>
+ *
+ * <p>The tasks of a document run one at a time, in the order of its events, so
+ * a removal never runs in the middle of its indexing. The workers do not read
+ * the library, which is changed by the event dispatch thread: they check the
+ * documents against a concurrent set of the paths of its files, which follows
+ * the events.</p>
+ *
+ * <p>Listeners are notified by the worker threads: a listener that updates Swing
+ * components must hand the event over to the event dispatch thread.</p>
+ */
+public class ContentIndexer extends AbsSubject<IndexProgressEvent> implements Listener<DocumentEvent> {
+
+	/**
+	 * Number of worker threads: text extraction is CPU bound, so leave a core for the UI
+	 */
+	static final int WORKERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+	/**
+	 * Milliseconds between the progress events of a document being indexed
+	 */
+	static final long PROGRESS_INTERVAL = 500;
+
+	private final ILibrary library;
+	private final ContentIndex index;
+	private final ExecutorService workers;
+	private final AtomicInteger pending = new AtomicInteger();
+	// the canonical paths of the files of the documents in the library
+	private final Set<String> members = ConcurrentHashMap.newKeySet();
+	// the tasks waiting or running for each canonical path; guarded by the indexer
+	private final Map<String, PathTasks> tasks = new HashMap<>();
+	private boolean idle = true;
+
+	/**
+	 * Constructs an indexer that keeps the given index up to date with the
+	 * contents of the documents of the library. The documents already in the
+	 * library are scheduled for indexing.
+	 *
+	 * @param library the library whose documents are indexed
+	 * @param index the index to update
+	 * @requires library != null && index != null
+	 */
+	public ContentIndexer(ILibrary library, ContentIndex index) {
+		this.library = library;
+		this.index = index;
+		AtomicInteger threads = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(WORKERS, r -> {
+			Thread t = new Thread(r, "content-indexer-" + threads.incrementAndGet());
+			t.setDaemon(true);
+			t.setPriority(Thread.MIN_PRIORITY);
+			return t;
+		});
+		for (IDocument doc : library) {
+			String path = DocumentId.of(doc).path();
+			members.add(path);
+			schedule(path, () -> indexDocument(doc, path));
+		}
+		library.registerListener(this);
+	}
+
+	/**
+	 * Schedules the indexing of added documents and the removal of removed ones.
+	 * Returns immediately.
+	 *
+	 * @param e the event to process
+	 */
+	@Override
+	public void processEvent(DocumentEvent e) {
+		IDocument doc = e.getDocument();
+		String path = DocumentId.of(doc).path();
+		if (e instanceof AddDocumentEvent) {
+			members.add(path);
+			schedule(path, () -> indexDocument(doc, path));
+		} else if (e instanceof RemoveDocumentEvent) {
+			members.remove(path);
+			schedule(path, () -> index.remove(path));
+		}
+	}
+
+	/**
+	 * Answers a keyword query over the contents of the documents.
+	 *
+	 * @param query the query (see DocumentIndex.isKeywordQuery)
+	 * @requires query != null
+	 * @return the documents of the library with all the words of the query, in
+	 *         library order, or an empty list if it is not a keyword query
+	 */
+	public List<IDocument> search(String query) {
+		List<IDocument> result = new ArrayList<>();
+		if (!DocumentIndex.isKeywordQuery(query)) {
+			return result;
+		}
+		Map<String, BitSet> hits = index.search(query);
+		if (hits.isEmpty()) {
+			return result;
+		}
+		for (IDocument doc : library) {
+			if (hits.containsKey(DocumentId.of(doc).path())) {
+				result.add(doc);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of documents waiting to be indexed or removed
+	 * @ensures \result >= 0
+	 */
+	public int getPendingDocuments() {
+		return pending.get();
+	}
+
+	/**
+	 * Waits until there are no documents waiting to be indexed or removed,
+	 * and the index was flushed.
+	 *
+	 * @param timeout the maximum time to wait, in milliseconds
+	 * @return true if the indexer is idle, false if the time elapsed
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public synchronized boolean awaitIdle(long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (!idle) {
+			long left = deadline - System.currentTimeMillis();
+			if (left <= 0) {
+				return false;
+			}
+			wait(left);
+		}
+		return true;
+	}
+
+	/**
+	 * Stops the worker threads, waiting a little for the current tasks.
+	 */
+	public void shutdown() {
+		workers.shutdownNow();
+		try {
+			workers.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void schedule(String path, Runnable task) {
+		PathTasks queue;
+		synchronized (this) {
+			idle = false;
+			queue = tasks.computeIfAbsent(path, p -> new PathTasks(new SerialExecutor(workers)));
+			queue.count++;
+		}
+		pending.incrementAndGet();
+		queue.executor.execute(() -> {
+			try {
+				task.run();
+			} finally {
+				synchronized (this) {
+					if (--queue.count == 0) {
+						tasks.remove(path);
+					}
+				}
+				if (pending.decrementAndGet() == 0) {
+					flush();
+				}
+			}
+		});
+	}
+
+	private void flush() {
+		try {
+			index.flush();
+		} catch (IOException e) {
+			System.out.println("-------->> Content index could not be saved: " + e.getMessage());
+		}
+		synchronized (this) {
+			idle = pending.get() == 0;
+			notifyAll();
+		}
+	}
+
+	private void indexDocument(IDocument doc, String path) {
+		File file = doc.getFile();
+		if (!members.contains(path) || !file.canRead()) {
+			return;
+		}
+		long lastModified = file.lastModified();
+		long size = file.length();
+		if (index.isUpToDate(path, lastModified, size)) {
+			return;
+		}
+		try {
+			if ("application/pdf".equals(doc.getMimeType())) {
+				try (PDFTextExtractor extractor = new PDFTextExtractor(file)) {
+					int numberOfPages = extractor.getNumPages();
+					long lastProgress = System.currentTimeMillis();
+					for (int page = 1; page <= numberOfPages; page++) {
+						if (!members.contains(path)) {
+							// its removal is queued after this task
+							return;
+						}
+						index.addPage(path, lastModified, size, page, pageText(extractor, page));
+						long now = System.currentTimeMillis();
+						if (page == numberOfPages || now - lastProgress >= PROGRESS_INTERVAL) {
+							lastProgress = now;
+							emitEvent(new IndexProgressEvent(doc, page, numberOfPages, pending.get() - 1));
+						}
+					}
+				}
+			} else if ("text/plain".equals(doc.getMimeType())) {
+				String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+				index.addPage(path, lastModified, size, 1, text);
+				emitEvent(new IndexProgressEvent(doc, 1, 1, pending.get() - 1));
+			}
+		} catch (IOException | RuntimeException e) {
+			System.out.println("-------->> Contents of " + path.replace("\\", "/") + " could not be indexed");
+		}
+	}
+
+	private static final class PathTasks {
+		private final SerialExecutor executor;
+		private int count;
+
+		PathTasks(SerialExecutor executor) {
+			this.executor = executor;
+		}
+	}
+
+	/*
+	 * A page that cannot be decoded is indexed as empty, so the rest of the document is not lost.
+	 */
+	private static String pageText(PDFTextExtractor extractor, int page) {
+		try {
+			return extractor.getPageText(page);
+		} catch (IOException | RuntimeException e) {
+			return "";
+		}
+	}
+}
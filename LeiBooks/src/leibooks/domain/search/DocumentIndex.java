@@ -0,0 +1,449 @@
+package leibooks.domain.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+import leibooks.domain.core.DocumentId;
+import leibooks.domain.core.ILibrary;
+import leibooks.domain.facade.IDocument;
+import leibooks.domain.facade.events.AddDocumentEvent;
+import leibooks.domain.facade.events.DocumentEvent;
+import leibooks.domain.facade.events.RemoveDocumentEvent;
+import leibooks.domain.facade.events.UpdateDocumentEvent;
+import leibooks.utils.Listener;
+
+/**
+ * An inverted index of the words in the titles and authors of the documents
+ * of a library.
+ *
+ * <p>Each term (a lowercased sequence of letters and digits) is mapped to the
+ * sorted list of the ids of the documents where it occurs. The index listens to
+ * the library and is updated incrementally when documents are added, removed or
+ * have their properties updated.</p>
+ *
+ * <p>Keyword queries are sequences of words, where each word matches the terms
+ * that contain it, e.g. the terms it is a prefix of. Words are implicitly
+ * combined with AND, and alternatives are separated by OR, e.g.
+ * {@code "lopes aula OR slides"}. The terms that contain a word are found
+ * through the suffixes of the terms, so no query scans the dictionary. Searches
+ * of the library, which look for substrings, use the index to narrow down the
+ * documents they check (see candidates). Documents are listed in library order,
+ * the order in which they were indexed.</p>
+ */
+public class DocumentIndex implements Listener<DocumentEvent> {
+
+	private static final String OR = "OR";
+	private static final String REGEXP_METACHARACTERS = "\\.[]{}()<>*+-=!?^$|";
+
+	private final NavigableMap<String, PostingList> postings = new TreeMap<>();
+	// the terms of the dictionary by each of their suffixes
+	private final NavigableMap<String, Set<String>> suffixes = new TreeMap<>();
+	// the indexed documents, their identities and terms, by document id (ids are compact);
+	// the identities are held so their ids are not given to other documents meanwhile
+	private IDocument[] documents = new IDocument[1024];
+	private DocumentId[] identities = new DocumentId[1024];
+	private String[][] documentTerms = new String[1024][];
+	private int[] positions = new int[1024];
+	private int numberOfDocuments;
+	private int nextPosition;
+
+	/**
+	 * Constructs the index of the documents of the given library and keeps it
+	 * up to date by listening to the library.
+	 *
+	 * @param library the library to index
+	 * @requires library != null
+	 */
+	public DocumentIndex(ILibrary library) {
+		for (IDocument doc : library) {
+			index(doc);
+		}
+		library.registerListener(this);
+	}
+
+	/**
+	 * Updates the index after a document is added, removed or updated.
+	 *
+	 * @param e the event to process
+	 */
+	@Override
+	public synchronized void processEvent(DocumentEvent e) {
+		IDocument doc = e.getDocument();
+		if (e instanceof AddDocumentEvent) {
+			index(doc);
+		} else if (e instanceof RemoveDocumentEvent) {
+			unindex(doc);
+		} else if (e instanceof UpdateDocumentEvent) {
+			// the document keeps its position in the library
+			int position = positionOf(doc);
+			unindex(doc);
+			index(doc);
+			if (position >= 0) {
+				positions[DocumentId.of(doc).id()] = position;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of documents in the index
+	 * @ensures \result >= 0
+	 */
+	public synchronized int getNumberOfDocuments() {
+		return numberOfDocuments;
+	}
+
+	/**
+	 * Returns the ids of the documents where the given term occurs.
+	 *
+	 * @param term the term, which is lowercased
+	 * @requires term != null
+	 * @return the sorted ids of the documents with that term
+	 */
+	public synchronized int[] term(String term) {
+		PostingList list = postings.get(term.toLowerCase(Locale.ROOT));
+		return list == null ? new int[0] : list.toArray();
+	}
+
+	/**
+	 * Returns the ids of the documents with some term that starts with the
+	 * given prefix.
+	 *
+	 * @param prefix the prefix, which is lowercased
+	 * @requires prefix != null
+	 * @return the sorted ids of the documents with a term with that prefix
+	 */
+	public synchronized int[] prefix(String prefix) {
+		String from = prefix.toLowerCase(Locale.ROOT);
+		Map<String, PostingList> range = postings.subMap(from, true, from + Character.MAX_VALUE, false);
+		if (range.size() == 1) {
+			return range.values().iterator().next().toArray();
+		}
+		BitSet bits = new BitSet();
+		for (PostingList list : range.values()) {
+			list.addTo(bits);
+		}
+		return bits.stream().toArray();
+	}
+
+	/**
+	 * Intersects two sorted lists of ids.
+	 *
+	 * @param a a sorted list of ids
+	 * @param b a sorted list of ids
+	 * @return the sorted ids that are in both lists
+	 */
+	public static int[] and(int[] a, int[] b) {
+		int[] result = new int[Math.min(a.length, b.length)];
+		int i = 0;
+		int j = 0;
+		int n = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				result[n++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * Merges two sorted lists of ids.
+	 *
+	 * @param a a sorted list of ids
+	 * @param b a sorted list of ids
+	 * @return the sorted ids that are in some of the lists
+	 */
+	public static int[] or(int[] a, int[] b) {
+		int[] result = new int[a.length + b.length];
+		int i = 0;
+		int j = 0;
+		int n = 0;
+		while (i < a.length || j < b.length) {
+			if (j == b.length || (i < a.length && a[i] < b[j])) {
+				result[n++] = a[i++];
+			} else if (i == a.length || b[j] < a[i]) {
+				result[n++] = b[j++];
+			} else {
+				result[n++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * Returns the indexed documents with the given ids.
+	 *
+	 * @param ids document ids
+	 * @requires ids != null
+	 * @return the documents with those ids, in library order
+	 */
+	public synchronized List<IDocument> getDocuments(int[] ids) {
+		return inLibraryOrder(ids, ids.length);
+	}
+
+	/**
+	 * Returns the indexed documents with the given ids, looking only at the
+	 * ids in the set, not at every document.
+	 *
+	 * @param ids document ids
+	 * @requires ids != null
+	 * @return the documents with those ids, in library order
+	 */
+	public synchronized List<IDocument> getDocuments(BitSet ids) {
+		int[] array = new int[ids.cardinality()];
+		int n = 0;
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+			array[n++] = id;
+		}
+		return inLibraryOrder(array, n);
+	}
+
+	/**
+	 * Answers a keyword query.
+	 *
+	 * @param query the query
+	 * @requires query != null
+	 * @return the matching documents, in library order, or empty
+	 *         if the query is not a keyword query (see isKeywordQuery)
+	 */
+	public synchronized Optional<List<IDocument>> search(String query) {
+		if (!isKeywordQuery(query)) {
+			return Optional.empty();
+		}
+		int[] result = new int[0];
+		int[] group = null;
+		for (String word : query.trim().split("\\s+")) {
+			if (word.equals(OR)) {
+				if (group != null) {
+					result = or(result, group);
+				}
+				group = null;
+				continue;
+			}
+			for (String token : tokens(word)) {
+				int[] hits = containing(token, false).stream().toArray();
+				group = (group == null) ? hits : and(group, hits);
+			}
+		}
+		if (group != null) {
+			result = or(result, group);
+		}
+		return Optional.of(getDocuments(result));
+	}
+
+	/**
+	 * Narrows down the documents whose title and author may contain the given
+	 * keyword query as a case-insensitive substring, which is left to be checked.
+	 *
+	 * <p>Each maximal sequence of letters and digits of the query lies within a
+	 * term of such a document: a term that starts with it, if something else
+	 * comes before it in the query, or else a term that merely contains it
+	 * (e.g. "opes" in "lopes"). The candidates have such terms for all of them.</p>
+	 *
+	 * @param query the query
+	 * @requires query != null
+	 * @return the ids of the candidate documents, or empty if the query is not a
+	 *         keyword query (see isKeywordQuery)
+	 */
+	public synchronized Optional<BitSet> candidates(String query) {
+		if (!isKeywordQuery(query)) {
+			return Optional.empty();
+		}
+		String lower = query.toLowerCase(Locale.ROOT);
+		BitSet result = null;
+		int start = -1;
+		for (int i = 0; i <= lower.length(); i++) {
+			boolean inTerm = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+			if (inTerm && start < 0) {
+				start = i;
+			} else if (!inTerm && start >= 0) {
+				BitSet hits = containing(lower.substring(start, i), start > 0);
+				if (result == null) {
+					result = hits;
+				} else {
+					result.and(hits);
+				}
+				start = -1;
+			}
+		}
+		return Optional.of(result);
+	}
+
+	/**
+	 * Checks if a query is a single word: a sequence of letters and digits. The
+	 * documents whose title or author contain it as a case-insensitive substring
+	 * are the ones that search finds for it.
+	 *
+	 * @param query the query
+	 * @requires query != null
+	 * @return whether the query is a single word
+	 */
+	public static boolean isWord(String query) {
+		return !query.isEmpty() && query.chars().allMatch(Character::isLetterOrDigit);
+	}
+
+	/**
+	 * Checks if a query can be answered by the index: it has some letter or
+	 * digit and no regular expression metacharacters.
+	 *
+	 * @param query the query
+	 * @requires query != null
+	 * @return whether the query is a keyword query
+	 */
+	public static boolean isKeywordQuery(String query) {
+		boolean hasTerm = false;
+		for (int i = 0; i < query.length(); i++) {
+			char c = query.charAt(i);
+			if (REGEXP_METACHARACTERS.indexOf(c) >= 0) {
+				return false;
+			}
+			hasTerm |= Character.isLetterOrDigit(c);
+		}
+		return hasTerm;
+	}
+
+	/**
+	 * Splits a text into lowercased terms: maximal sequences of letters and digits.
+	 *
+	 * @param text the text
+	 * @requires text != null
+	 * @return the terms of the text, without repetitions
+	 */
+	public static Set<String> tokens(String text) {
+		Set<String> result = new LinkedHashSet<>();
+		String lower = text.toLowerCase(Locale.ROOT);
+		int start = -1;
+		for (int i = 0; i <= lower.length(); i++) {
+			boolean inTerm = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+			if (inTerm && start < 0) {
+				start = i;
+			} else if (!inTerm && start >= 0) {
+				result.add(lower.substring(start, i));
+				start = -1;
+			}
+		}
+		return result;
+	}
+
+	// the documents with a term that starts with the word, or else that contains it
+	private BitSet containing(String word, boolean startsTerm) {
+		BitSet bits = new BitSet();
+		if (startsTerm) {
+			for (PostingList list : postings.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+				list.addTo(bits);
+			}
+		} else {
+			// a term contains the word if one of its suffixes starts with it
+			for (Set<String> terms : suffixes.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+				for (String term : terms) {
+					postings.get(term).addTo(bits);
+				}
+			}
+		}
+		return bits;
+	}
+
+	// the ids sorted by the positions of their documents, skipping those not indexed
+	private List<IDocument> inLibraryOrder(int[] ids, int length) {
+		long[] keys = new long[length];
+		int n = 0;
+		for (int i = 0; i < length; i++) {
+			int id = ids[i];
+			if (id < documents.length && documents[id] != null) {
+				keys[n++] = ((long) positions[id] << 32) | id;
+			}
+		}
+		Arrays.sort(keys, 0, n);
+		List<IDocument> result = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			result.add(documents[(int) keys[i]]);
+		}
+		return result;
+	}
+
+	private int positionOf(IDocument doc) {
+		int id = DocumentId.of(doc).id();
+		return id < documents.length && documents[id] != null ? positions[id] : -1;
+	}
+
+	private void addSuffixes(String term) {
+		for (int i = 0; i < term.length(); i++) {
+			suffixes.computeIfAbsent(term.substring(i), t -> new HashSet<>(2)).add(term);
+		}
+	}
+
+	private void removeSuffixes(String term) {
+		for (int i = 0; i < term.length(); i++) {
+			Set<String> terms = suffixes.get(term.substring(i));
+			if (terms != null && terms.remove(term) && terms.isEmpty()) {
+				suffixes.remove(term.substring(i));
+			}
+		}
+	}
+
+	private synchronized void index(IDocument doc) {
+		DocumentId identity = DocumentId.of(doc);
+		int id = identity.id();
+		if (id >= documents.length) {
+			int length = Math.max(id + 1, documents.length * 2);
+			documents = Arrays.copyOf(documents, length);
+			identities = Arrays.copyOf(identities, length);
+			documentTerms = Arrays.copyOf(documentTerms, length);
+			positions = Arrays.copyOf(positions, length);
+		}
+		if (documents[id] != null) {
+			return;
+		}
+		Set<String> terms = tokens(doc.getTitle() + " " + doc.getAuthor());
+		for (String term : terms) {
+			PostingList list = postings.get(term);
+			if (list == null) {
+				list = new PostingList();
+				postings.put(term, list);
+				addSuffixes(term);
+			}
+			list.add(id);
+		}
+		documents[id] = doc;
+		identities[id] = identity;
+		documentTerms[id] = terms.toArray(new String[0]);
+		positions[id] = nextPosition++;
+		numberOfDocuments++;
+	}
+
+	private synchronized void unindex(IDocument doc) {
+		int id = DocumentId.of(doc).id();
+		if (id >= documents.length || documents[id] == null) {
+			return;
+		}
+		String[] terms = documentTerms[id];
+		documents[id] = null;
+		identities[id] = null;
+		documentTerms[id] = null;
+		numberOfDocuments--;
+		for (String term : terms) {
+			PostingList list = postings.get(term);
+			if (list != null && list.remove(id) && list.isEmpty()) {
+				postings.remove(term);
+				removeSuffixes(term);
+			}
+		}
+	}
+}
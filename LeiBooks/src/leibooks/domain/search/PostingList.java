@@ -0,0 +1,79 @@
+package leibooks.domain.search;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A sorted list of document ids without duplicates.
+ *
+ * Documents get their ids when they are created, so most additions are
+ * appended at the end of the list.
+ */
+final class PostingList {
+
+	private int[] ids = new int[4];
+	private int size;
+
+	/**
+	 * Adds a document id to the list.
+	 *
+	 * @param id the document id
+	 * @return true if the id was added, false if it was already in the list
+	 */
+	boolean add(int id) {
+		int pos = size == 0 || ids[size - 1] < id ? -(size + 1) : Arrays.binarySearch(ids, 0, size, id);
+		if (pos >= 0) {
+			return false;
+		}
+		int insertAt = -(pos + 1);
+		if (size == ids.length) {
+			ids = Arrays.copyOf(ids, size * 2);
+		}
+		System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+		ids[insertAt] = id;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Removes a document id from the list.
+	 *
+	 * @param id the document id
+	 * @return true if the id was removed, false if it was not in the list
+	 */
+	boolean remove(int id) {
+		int pos = Arrays.binarySearch(ids, 0, size, id);
+		if (pos < 0) {
+			return false;
+		}
+		System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+		size--;
+		return true;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return a copy of the ids, in ascending order
+	 */
+	int[] toArray() {
+		return Arrays.copyOf(ids, size);
+	}
+
+	/**
+	 * Sets in the given bit set the bits of the ids of this list.
+	 *
+	 * @param bits the bit set to update
+	 */
+	void addTo(BitSet bits) {
+		for (int i = 0; i < size; i++) {
+			bits.set(ids[i]);
+		}
+	}
+}
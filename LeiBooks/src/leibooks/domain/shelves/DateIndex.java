@@ -0,0 +1,101 @@
+package leibooks.domain.shelves;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import leibooks.domain.facade.IDocument;
+
+/**
+ * An index of documents by last modified date: a sorted map from each day to
+ * the documents last modified on that day. Documents without a date are not
+ * indexed.
+ *
+ * <p>The documents modified in a range of days are found by a range scan of the
+ * map, in time proportional to the number of days with documents in the range
+ * and to the number of documents found, instead of to the size of the library.</p>
+ */
+final class DateIndex {
+
+	private final NavigableMap<LocalDate, Set<IDocument>> days = new TreeMap<>();
+	private final Map<IDocument, LocalDate> dates = new HashMap<>();
+
+	/**
+	 * Indexes a document, or moves it to the bucket of its current date if it
+	 * is already indexed.
+	 *
+	 * @param doc the document
+	 * @requires doc != null
+	 */
+	void update(IDocument doc) {
+		LocalDate date = doc.getLastModifiedDate();
+		LocalDate indexed = dates.get(doc);
+		if (date != null && date.equals(indexed)) {
+			return;
+		}
+		remove(doc);
+		if (date != null) {
+			dates.put(doc, date);
+			days.computeIfAbsent(date, d -> new LinkedHashSet<>()).add(doc);
+		}
+	}
+
+	/**
+	 * Removes a document from the index.
+	 *
+	 * @param doc the document
+	 */
+	void remove(IDocument doc) {
+		LocalDate indexed = dates.remove(doc);
+		if (indexed != null) {
+			Set<IDocument> bucket = days.get(indexed);
+			bucket.remove(doc);
+			if (bucket.isEmpty()) {
+				days.remove(indexed);
+			}
+		}
+	}
+
+	/**
+	 * @param from the first day
+	 * @requires from != null
+	 * @return the documents last modified on that day or later
+	 */
+	Set<IDocument> since(LocalDate from) {
+		return collect(days.tailMap(from, true));
+	}
+
+	/**
+	 * @param from the first day
+	 * @param to the day after the last one
+	 * @requires from != null && to != null
+	 * @return the documents last modified on a day from the first one up to the
+	 *         last one, or an empty set if to is not after from
+	 */
+	Set<IDocument> between(LocalDate from, LocalDate to) {
+		if (!to.isAfter(from)) {
+			return new HashSet<>();
+		}
+		return collect(days.subMap(from, true, to, false));
+	}
+
+	/**
+	 * @return the number of indexed documents
+	 */
+	int size() {
+		return dates.size();
+	}
+
+	private static Set<IDocument> collect(Map<LocalDate, Set<IDocument>> range) {
+		Set<IDocument> result = new HashSet<>();
+		for (Set<IDocument> bucket : range.values()) {
+			result.addAll(bucket);
+		}
+		return result;
+	}
+}
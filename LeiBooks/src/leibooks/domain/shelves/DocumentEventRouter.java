@@ -0,0 +1,210 @@
+package leibooks.domain.shelves;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import leibooks.domain.core.ILibrary;
+import leibooks.domain.facade.IDocument;
+import leibooks.domain.facade.events.AddDocumentEvent;
+import leibooks.domain.facade.events.DocumentEvent;
+import leibooks.domain.facade.events.RemoveDocumentEvent;
+import leibooks.domain.facade.events.ToggleBookmarkEvent;
+import leibooks.utils.Listener;
+
+/**
+ * Routes the events of a library and of its documents to the shelves.
+ *
+ * <p>The router is the only shelf-side listener of the library and of each of
+ * its documents, so adding a shelf does not register anything on the documents.
+ * Every event is dispatched once to each interested shelf: smart shelves get all
+ * the events, the other shelves only the removal of documents from the library.</p>
+ *
+ * <p>The router also numbers the documents in the order they were added to the
+ * library, so smart shelves can keep their documents in library order, and it
+ * keeps the set of bookmarked documents and an index of the documents by last
+ * modified date, which smart shelves use to find their candidates.</p>
+ *
+ * <p>Events are dispatched one at a time, also with respect to retest, which is
+ * called from the task that moves the shelves to a new day. Smart shelves are
+ * read under the lock of the router, as they may change on that task.</p>
+ */
+final class DocumentEventRouter implements Listener<DocumentEvent> {
+
+	private final ILibrary library;
+	private final List<IShelf> shelves = new CopyOnWriteArrayList<>();
+	private final Map<IDocument, Long> positions = new HashMap<>();
+	private final Set<IDocument> bookmarked = new HashSet<>();
+	private final DateIndex dates = new DateIndex();
+	private long nextPosition;
+
+	/**
+	 * Constructs a router for the events of the given library and of its documents.
+	 *
+	 * @param library the library
+	 * @requires library != null
+	 */
+	DocumentEventRouter(ILibrary library) {
+		this.library = library;
+		for (IDocument doc : library) {
+			follow(doc);
+		}
+		library.registerListener(this);
+	}
+
+	/**
+	 * @return the library whose events are routed
+	 */
+	ILibrary getLibrary() {
+		return library;
+	}
+
+	/**
+	 * Starts dispatching events to the given shelf.
+	 *
+	 * @param shelf the shelf
+	 * @requires shelf != null
+	 */
+	void addShelf(IShelf shelf) {
+		if (!shelves.contains(shelf)) {
+			shelves.add(shelf);
+		}
+	}
+
+	/**
+	 * Stops dispatching events to the given shelf.
+	 *
+	 * @param shelf the shelf
+	 */
+	void removeShelf(IShelf shelf) {
+		shelves.remove(shelf);
+	}
+
+	/**
+	 * Returns the position of a document in the library: documents added later
+	 * have greater positions.
+	 *
+	 * @param doc the document
+	 * @return the position of the document, or null if it is not in the library
+	 */
+	Long positionOf(IDocument doc) {
+		return positions.get(doc);
+	}
+
+	/**
+	 * @return the documents of the library with some bookmarked page, as a
+	 *         read-only view
+	 */
+	Set<IDocument> getBookmarked() {
+		return Collections.unmodifiableSet(bookmarked);
+	}
+
+	/**
+	 * @param from the first day
+	 * @requires from != null
+	 * @return the documents of the library last modified on that day or later
+	 */
+	synchronized Set<IDocument> modifiedSince(LocalDate from) {
+		return dates.since(from);
+	}
+
+	/**
+	 * @param from the first day
+	 * @param to the day after the last one
+	 * @requires from != null && to != null
+	 * @return the documents of the library last modified from the first day up
+	 *         to the last one
+	 */
+	synchronized Set<IDocument> modifiedBetween(LocalDate from, LocalDate to) {
+		return dates.between(from, to);
+	}
+
+	/**
+	 * Tests the given documents again against the criteria of a smart shelf, e.g.
+	 * because the criteria depends on the current day and the day changed.
+	 *
+	 * @param shelf the shelf
+	 * @param docs the documents to test
+	 * @requires shelf != null && docs != null
+	 * @return the documents that entered (true) or left (false) the shelf
+	 */
+	synchronized Map<IDocument, Boolean> retest(SmartShelf shelf, Collection<IDocument> docs) {
+		return shelf.retest(docs);
+	}
+
+	/**
+	 * Tests every document of the library against the criteria of a smart shelf,
+	 * e.g. to find the documents of a new shelf.
+	 *
+	 * @param shelf the shelf
+	 * @requires shelf != null
+	 * @return the documents that entered (true) or left (false) the shelf
+	 */
+	synchronized Map<IDocument, Boolean> retestAll(SmartShelf shelf) {
+		// the documents followed, which are the ones of the library as of the last event
+		return shelf.retest(positions.keySet());
+	}
+
+	/**
+	 * @return the number of documents whose events are routed
+	 */
+	int getNumberOfDocuments() {
+		return positions.size();
+	}
+
+	/**
+	 * Dispatches an event of the library or of one of its documents to the
+	 * interested shelves. Added documents are followed before the event is
+	 * dispatched, removed documents are forgotten after it.
+	 *
+	 * @param e the event
+	 */
+	@Override
+	public synchronized void processEvent(DocumentEvent e) {
+		IDocument doc = e.getDocument();
+		boolean removal = e instanceof RemoveDocumentEvent;
+		if (e instanceof AddDocumentEvent) {
+			follow(doc);
+		} else if (!positions.containsKey(doc)) {
+			return;
+		} else {
+			// every change of a document sets its last modified date
+			dates.update(doc);
+			if (e instanceof ToggleBookmarkEvent) {
+				if (doc.isBookmarked()) {
+					bookmarked.add(doc);
+				} else {
+					bookmarked.remove(doc);
+				}
+			}
+		}
+		for (IShelf shelf : shelves) {
+			if (removal || shelf instanceof SmartShelf) {
+				shelf.processEvent(e);
+			}
+		}
+		if (removal) {
+			positions.remove(doc);
+			bookmarked.remove(doc);
+			dates.remove(doc);
+			doc.unregisterListener(this);
+		}
+	}
+
+	private void follow(IDocument doc) {
+		if (positions.putIfAbsent(doc, nextPosition) == null) {
+			nextPosition++;
+			dates.update(doc);
+			if (doc.isBookmarked()) {
+				bookmarked.add(doc);
+			}
+			doc.registerListener(this);
+		}
+	}
+}
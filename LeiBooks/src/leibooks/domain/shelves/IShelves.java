@@ -1,11 +1,13 @@
 package leibooks.domain.shelves;
 
+import java.util.Optional;
 import java.util.function.Predicate;
 
 import javax.naming.OperationNotSupportedException;
 
 import leibooks.domain.facade.IDocument;
 import leibooks.domain.facade.events.ShelfEvent;
+import leibooks.domain.shelves.query.ShelfQuery;
 import leibooks.utils.Subject;
 
 /**
@@ -42,6 +44,28 @@ public interface IShelves extends Iterable<IShelf>, Subject<ShelfEvent> {
 	 */
 	boolean addSmartShelf(String shelfName, Predicate<IDocument> criteria);
 
+	/**
+	 * Adds a smart shelf with the specified name whose documents match the given query.
+	 * Unlike a predicate, the query can be stored, see ShelfQuery.
+	 *
+	 * @param shelfName the name of the shelf to add
+	 * @param query the query the documents of the shelf match
+	 * @requires shelfName != null
+	 * @requires query != null
+	 * @return true if the shelf was added successfully, false otherwise
+	 */
+	boolean addSmartShelf(String shelfName, ShelfQuery query);
+
+	/**
+	 * Returns the query of a smart shelf added with a query.
+	 *
+	 * @param shelfName the name of the shelf
+	 * @requires shelfName != null
+	 * @return the query of the shelf, or nothing if there is no such shelf or it
+	 *         was not added with a query
+	 */
+	Optional<ShelfQuery> getQuery(String shelfName);
+
 	/**
 	 * Removes the shelf with the specified name.
 	 *
@@ -1,30 +1,66 @@
 package leibooks.domain.shelves;
 
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import javax.naming.OperationNotSupportedException;
 
+import leibooks.app.AppProperties;
 import leibooks.domain.core.ILibrary;
+import leibooks.domain.facade.DocumentAttribute;
 import leibooks.domain.facade.IDocument;
+import leibooks.domain.facade.ShelfCriteria;
 import leibooks.domain.facade.events.ShelfEvent;
+import leibooks.domain.search.DocumentIndex;
+import leibooks.domain.shelves.query.QueryIndexes;
+import leibooks.domain.shelves.query.ShelfQuery;
 import leibooks.utils.Listener;
 import leibooks.utils.AbsSubject;
+import leibooks.utils.EventTransaction;
+import leibooks.domain.facade.events.AddDocumentShelfEvent;
 import leibooks.domain.facade.events.AddShelfEvent;
-import leibooks.domain.facade.events.DocumentEvent;
 import leibooks.domain.facade.events.RemoveDocumentShelfEvent;
 import leibooks.domain.facade.events.RemoveShelfEvent;
 
 public class Shelves extends AbsSubject<ShelfEvent>
 					 implements IShelves {
 
-	private final ILibrary library;
+	private final DocumentEventRouter router;
 	private final Map<String, IShelf> shelfMap = new HashMap<>();
+	private final Map<String, ShelfQuery> queries = new HashMap<>();
+	// the shelves whose queries have relative dates, also read by the day rollover
+	private final Map<SmartShelf, ShelfQuery> relativeShelves = new ConcurrentHashMap<>();
+	private final QueryIndexes indexes;
+	private final int monthsRecent;
+	private final SmartShelf recent;
+	// the current day of the shelves, and the first day of the Recent shelf
+	private volatile LocalDate day = LocalDate.now();
+	private volatile LocalDate recentSince;
 
 	private static final String SHELF_NAME_CANNOT_BE_NULL = "Shelf name cannot be null";
+	private static final ShelfQuery PDF_OR_TEXT = ShelfQuery.parse("mime in (pdf, txt)");
+
+	// moves the Recent shelf of every Shelves instance to the next day, after midnight
+	private static final ScheduledExecutorService DAY_ROLLOVER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "shelves-day-rollover");
+		t.setDaemon(true);
+		return t;
+	});
 
 
 	/**
@@ -34,26 +70,144 @@ public class Shelves extends AbsSubject<ShelfEvent>
 	 * @throws IllegalArgumentException if library is null.
 	 */
 	public Shelves(ILibrary library) {
+		this(library, null);
+	}
+
+	/**
+	 * Constructs a Shelves instance associated with the given library, whose
+	 * shelf queries take their candidates from the given index of titles and authors.
+	 * The Recent shelf has the documents modified in the last months_recent_shelf months
+	 * (see AppProperties).
+	 *
+	 * @param library the library to which these shelves are linked; must not be null.
+	 * @param index the index of the documents of the library, or null if there is none.
+	 * @throws IllegalArgumentException if library is null.
+	 */
+	public Shelves(ILibrary library, DocumentIndex index) {
+		this(library, index, AppProperties.INSTANCE.MONTHS_RECENT);
+	}
+
+	/**
+	 * Constructs a Shelves instance associated with the given library, whose Recent
+	 * shelf has the PDF and text documents modified in the given number of months.
+	 *
+	 * <p>The Recent shelf is filled from the index of the documents by date and,
+	 * every day after midnight, only the documents modified on the days that left
+	 * the period are tested again.</p>
+	 *
+	 * @param library the library to which these shelves are linked; must not be null.
+	 * @param index the index of the documents of the library, or null if there is none.
+	 * @param monthsRecent the number of months of the Recent shelf; must not be negative.
+	 * @throws IllegalArgumentException if library is null or monthsRecent is negative.
+	 */
+	public Shelves(ILibrary library, DocumentIndex index, int monthsRecent) {
 		if (library == null) {
 			throw new IllegalArgumentException("Library cannot be null");
 		}
-		this.library = library;
+		if (monthsRecent < 0) {
+			throw new IllegalArgumentException("The months of the Recent shelf cannot be negative");
+		}
+		this.router = new DocumentEventRouter(library);
+		this.monthsRecent = monthsRecent;
+		this.indexes = new QueryIndexes() {
+			@Override
+			public Optional<Set<IDocument>> withTermPrefix(String prefix) {
+				return index == null ? Optional.empty()
+						: Optional.of(new HashSet<>(index.getDocuments(index.prefix(prefix))));
+			}
 
-		addUnremovableSmartShelf("Recent", d ->
+			@Override
+			public Optional<Set<IDocument>> bookmarked() {
+				return Optional.of(router.getBookmarked());
+			}
+
+			@Override
+			public Optional<Set<IDocument>> modifiedSince(LocalDate date) {
+				return Optional.of(router.modifiedSince(date));
+			}
+		};
+
+		this.recentSince = day.minusMonths(monthsRecent);
+		this.recent = new UnremovableSmartShelf("Recent", router, ShelfCriteria.of(d ->
 						(d.getMimeType().equals("application/pdf") || d.getMimeType().equals("text/plain"))
-				 && d.getLastModifiedDate().equals(LocalDate.now())
-		);
+				 && d.getLastModifiedDate() != null && !d.getLastModifiedDate().isBefore(recentSince),
+				DocumentAttribute.MIME_TYPE, DocumentAttribute.DATE),
+				router.modifiedSince(recentSince));
+		shelfMap.put(recent.getName(), recent);
+		emitEvent(new AddShelfEvent(recent.getName()));
+		router.addShelf(recent);
+		scheduleRollover(new WeakReference<>(this));
 
-		addUnremovableSmartShelf("Bookmarked", IDocument::isBookmarked);
+		addUnremovableSmartShelf("Bookmarked", ShelfCriteria.of(IDocument::isBookmarked, DocumentAttribute.BOOKMARKS));
+	}
 
+	/**
+	 * Moves the Recent shelf, and the shelves whose queries have relative dates,
+	 * to the given day: the documents modified on the days that left the period
+	 * of a shelf (or entered it, if the clock went back) are tested again, the
+	 * others are not. The documents that leave or enter a shelf are emitted as
+	 * RemoveDocumentShelfEvent and AddDocumentShelfEvent.
+	 *
+	 * @param today the current day
+	 * @requires today != null
+	 */
+	void rollover(LocalDate today) {
+		LocalDate previousDay = day;
+		if (today.equals(previousDay)) {
+			return;
+		}
+		day = today;
+		LocalDate previous = recentSince;
+		LocalDate since = today.minusMonths(monthsRecent);
+		if (!since.equals(previous)) {
+			recentSince = since;
+			emitChanges(recent, router.retest(recent, modifiedOverDays(List.of(previous), List.of(since))));
+		}
+		relativeShelves.forEach((shelf, query) -> emitChanges(shelf,
+				router.retest(shelf, modifiedOverDays(query.relativeDates(previousDay), query.relativeDates(today)))));
+	}
 
-		for (IDocument doc : library) {
-			for (IShelf shelf : shelfMap.values()) {
-				if (shelf instanceof Listener) {
-					doc.registerListener((Listener<DocumentEvent>) shelf);
-				}
+	/*
+	 * The documents modified on the days from each of the given days to the
+	 * matching one of the others, both included
+	 */
+	private Set<IDocument> modifiedOverDays(List<LocalDate> from, List<LocalDate> to) {
+		Set<IDocument> result = new HashSet<>();
+		for (int i = 0; i < from.size(); i++) {
+			LocalDate a = from.get(i);
+			LocalDate b = to.get(i);
+			if (!a.equals(b)) {
+				result.addAll(a.isBefore(b) ? router.modifiedBetween(a, b.plusDays(1))
+						: router.modifiedBetween(b, a.plusDays(1)));
 			}
 		}
+		return result;
+	}
+
+	private void emitChanges(IShelf shelf, Map<IDocument, Boolean> changes) {
+		EventTransaction transaction = beginTransaction();
+		try {
+			changes.forEach((doc, added) -> emitEvent(added ? new AddDocumentShelfEvent(shelf.getName(), doc)
+					: new RemoveDocumentShelfEvent(shelf.getName(), doc)));
+		} finally {
+			transaction.close();
+		}
+	}
+
+	/*
+	 * Runs the rollover of the shelves after the next midnight, and so on every day,
+	 * for as long as the shelves are in use
+	 */
+	private static void scheduleRollover(WeakReference<Shelves> shelves) {
+		LocalDateTime now = LocalDateTime.now();
+		long delay = Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()).toMillis() + 1;
+		DAY_ROLLOVER.schedule(() -> {
+			Shelves s = shelves.get();
+			if (s != null) {
+				s.rollover(LocalDate.now());
+				scheduleRollover(shelves);
+			}
+		}, delay, TimeUnit.MILLISECONDS);
 	}
 
 	/**
@@ -98,13 +252,7 @@ public class Shelves extends AbsSubject<ShelfEvent>
 		shelfMap.put(shelfName, newShelf);
 		emitEvent(new AddShelfEvent(shelfName));
 		System.out.println("-------->> Shelves: AddShelfEvent [shelfName=" + shelfName + "]<<--------");
-
-		for (IDocument doc : library) {
-			doc.registerListener(newShelf);
-		}
-
-		library.registerListener(newShelf);
-
+		router.addShelf(newShelf);
 		return true;
 	}
 
@@ -112,7 +260,9 @@ public class Shelves extends AbsSubject<ShelfEvent>
 	 * Adds a smart shelf with the specified name and criteria.
 	 *
 	 * @param shelfName the name of the shelf to add; must not be null.
-	 * @param criteria the predicate used to filter documents; must not be null.
+	 * @param criteria the predicate used to filter documents; must not be null. A ShelfCriteria
+	 *        declares the document attributes it reads, so the shelf is only re-evaluated
+	 *        when they may have changed.
 	 * @return true if the shelf was added successfully, false if a shelf with the same name already exists.
 	 */
 	@Override
@@ -124,22 +274,69 @@ public class Shelves extends AbsSubject<ShelfEvent>
 			return false;
 		}
 
-		Predicate<IDocument> filteredCriteria = d ->
+		Set<DocumentAttribute> dependencies = EnumSet.of(DocumentAttribute.MIME_TYPE);
+		dependencies.addAll(ShelfCriteria.dependenciesOf(criteria));
+		Predicate<IDocument> filteredCriteria = ShelfCriteria.of(d ->
 				(d.getMimeType().equals("application/pdf") || d.getMimeType().equals("text/plain"))
-						&& criteria.test(d);
+						&& criteria.test(d), dependencies);
 
-		IShelf newShelf = new SmartShelf(shelfName, library, filteredCriteria);
+		IShelf newShelf = new SmartShelf(shelfName, router, filteredCriteria);
 		shelfMap.put(shelfName, newShelf);
 		emitEvent(new AddShelfEvent(shelfName));
 		System.out.println("-------->> Shelves: AddShelfEvent [shelfName=" + shelfName + "]<<--------");
+		router.addShelf(newShelf);
+		return true;
+	}
+
+	/**
+	 * Adds a smart shelf with the specified name whose documents are the PDF and
+	 * text documents that match the query. The shelf is first filled with the
+	 * candidates that the indexes give for the query, instead of testing every
+	 * document of the library. Relative dates (e.g. now-1W) are resolved against
+	 * the current day of the shelves, which moves after midnight (see rollover).
+	 *
+	 * @param shelfName the name of the shelf to add; must not be null.
+	 * @param query the query the documents of the shelf match; must not be null.
+	 * @return true if the shelf was added successfully, false if a shelf with the same name already exists.
+	 */
+	@Override
+	public boolean addSmartShelf(String shelfName, ShelfQuery query) {
+		if (shelfName == null || query == null) {
+			throw new IllegalArgumentException("Shelf name and query cannot be null");
+		}
+		if (shelfMap.containsKey(shelfName)) {
+			return false;
+		}
 
-		for (IDocument doc : library) {
-			doc.registerListener((Listener<DocumentEvent>) newShelf);
+		ShelfQuery filteredQuery = query.and(PDF_OR_TEXT);
+		SmartShelf newShelf = new SmartShelf(shelfName, router, filteredQuery.compile(() -> day),
+				filteredQuery.candidates(indexes, day).orElse(null));
+		shelfMap.put(shelfName, newShelf);
+		queries.put(shelfName, query);
+		emitEvent(new AddShelfEvent(shelfName));
+		System.out.println("-------->> Shelves: AddShelfEvent [shelfName=" + shelfName + ", query=" + query + "]<<--------");
+		router.addShelf(newShelf);
+		if (!query.relativeDates(day).isEmpty()) {
+			relativeShelves.put(newShelf, query);
 		}
-		library.registerListener(newShelf);
 		return true;
 	}
 
+	/**
+	 * Returns the query of a smart shelf added with a query.
+	 *
+	 * @param shelfName the name of the shelf; must not be null.
+	 * @return the query of the shelf, or an empty Optional if there is no such shelf
+	 *         or it was not added with a query.
+	 */
+	@Override
+	public Optional<ShelfQuery> getQuery(String shelfName) {
+		if (shelfName == null) {
+			throw new IllegalArgumentException(SHELF_NAME_CANNOT_BE_NULL);
+		}
+		return Optional.ofNullable(queries.get(shelfName));
+	}
+
 	/**
 	 * Removes the shelf with the specified name.
 	 *
@@ -159,6 +356,9 @@ public class Shelves extends AbsSubject<ShelfEvent>
 			throw new OperationNotSupportedException("This shelf cannot be removed.");
 		}
 		shelfMap.remove(shelfName);
+		queries.remove(shelfName);
+		relativeShelves.remove(shelf);
+		router.removeShelf(shelf);
 		// RemoveShelfEvent
 		emitEvent(new RemoveShelfEvent(shelfName));
 	}
@@ -182,14 +382,11 @@ public class Shelves extends AbsSubject<ShelfEvent>
 		if (shelfMap.containsKey(shelfName)) {
 			return false;
 		}
-		IShelf newShelf = new UnremovableSmartShelf(shelfName, library, criteria);
+		IShelf newShelf = new UnremovableSmartShelf(shelfName, router, criteria);
 		shelfMap.put(shelfName, newShelf);
 		// AddShelfEvent
 		emitEvent(new AddShelfEvent(shelfName));
-		for (IDocument doc : library) {
-			doc.registerListener(newShelf);
-		}
-		library.registerListener(newShelf);
+		router.addShelf(newShelf);
 		return true;
 	}
 
@@ -218,6 +415,7 @@ public class Shelves extends AbsSubject<ShelfEvent>
 
 	/**
 	 * Adds the specified document to the shelf identified by shelfName.
+	 * Emits an AddDocumentShelfEvent if the document was added.
 	 *
 	 * @param shelfName the name of the shelf; must not be null.
 	 * @param document the document to add; must not be null.
@@ -234,6 +432,9 @@ public class Shelves extends AbsSubject<ShelfEvent>
 			return false;
 		}
 		boolean added = shelf.addDocument(document);
+		if (added) {
+			emitEvent(new AddDocumentShelfEvent(shelfName, document));
+		}
 		return added;
 	}
 
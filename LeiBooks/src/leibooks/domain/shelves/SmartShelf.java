@@ -1,37 +1,107 @@
 package leibooks.domain.shelves;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.Predicate;
 import javax.naming.OperationNotSupportedException;
 
+import leibooks.domain.facade.DocumentAttribute;
 import leibooks.domain.facade.IDocument;
+import leibooks.domain.facade.ShelfCriteria;
+import leibooks.domain.facade.events.AddDocumentEvent;
 import leibooks.domain.facade.events.DocumentEvent;
+import leibooks.domain.facade.events.RemoveDocumentEvent;
 import leibooks.utils.Listener;
 import leibooks.domain.core.ILibrary;
 
+/**
+ * A shelf whose documents are the documents of a library that satisfy a criteria.
+ *
+ * <p>The members are computed once, when the shelf is created, and then kept up
+ * to date from the events of the library and of its documents, which a
+ * DocumentEventRouter dispatches to the shelf: only the document of an event is
+ * tested again, and only if the event may have changed an attribute read by the
+ * criteria (see ShelfCriteria). Reading the shelf costs O(shelf size) and lists
+ * the documents in library order.</p>
+ *
+ * <p>The members change under the lock of the router, which may be taken by
+ * another thread than the one that reads the shelf (see DocumentEventRouter.retest),
+ * so the shelf is read under that lock too.</p>
+ */
 public class SmartShelf extends AShelf implements Listener<DocumentEvent> {
 
-    private final ILibrary library;
+    private final DocumentEventRouter router;
     private final Predicate<IDocument> criteria;
+    private final Set<DocumentAttribute> dependencies;
+    private long evaluations;
+    private long skippedEvaluations;
 
+    // The members of the shelf, by position in the library
+    private final NavigableMap<Long, IDocument> members = new TreeMap<>();
+
+    /**
+     * Constructs a smart shelf that follows the events of the library by itself.
+     * Shelves share a single router instead.
+     *
+     * @param name the unique name of the shelf
+     * @param library the library to monitor for documents
+     * @param criteria the predicate that determines which documents belong to this shelf
+     * @throws IllegalArgumentException if name, library or criteria is null
+     */
     public SmartShelf(String name, ILibrary library, Predicate<IDocument> criteria) {
+        this(name, library == null ? null : new DocumentEventRouter(library), criteria);
+        router.addShelf(this);
+    }
+
+    /**
+     * Constructs a smart shelf whose events are dispatched by the given router.
+     * The caller adds the shelf to the router.
+     *
+     * @param name the unique name of the shelf
+     * @param router the router of the events of the library
+     * @param criteria the predicate that determines which documents belong to this shelf
+     * @throws IllegalArgumentException if name, router or criteria is null
+     */
+    SmartShelf(String name, DocumentEventRouter router, Predicate<IDocument> criteria) {
+        this(name, router, criteria, null);
+    }
+
+    /**
+     * Constructs a smart shelf whose events are dispatched by the given router,
+     * testing only the given candidates, which include every document of the
+     * library that satisfies the criteria. The caller adds the shelf to the router.
+     *
+     * @param name the unique name of the shelf
+     * @param router the router of the events of the library
+     * @param criteria the predicate that determines which documents belong to this shelf
+     * @param candidates the documents that may satisfy the criteria, or null to test
+     *        every document of the library
+     * @throws IllegalArgumentException if name, router or criteria is null
+     */
+    SmartShelf(String name, DocumentEventRouter router, Predicate<IDocument> criteria,
+            Collection<IDocument> candidates) {
         super(name);
-        if (library == null || criteria == null) {
+        if (router == null || criteria == null) {
             throw new IllegalArgumentException("Library and criteria cannot be null");
         }
-        this.library = library;
+        this.router = router;
         this.criteria = criteria;
+        this.dependencies = ShelfCriteria.dependenciesOf(criteria);
 
-        for (IDocument doc : library) {
-            if (criteria.test(doc)) {
-                documents.add(doc);
-            }
-            doc.registerListener(this);
+        // under the lock of the router, as events may change its state meanwhile
+        if (candidates == null) {
+            router.retestAll(this);
+        } else {
+            router.retest(this, candidates);
         }
-
-        library.registerListener(this);
     }
 
     /**
@@ -61,41 +131,115 @@ public class SmartShelf extends AShelf implements Listener<DocumentEvent> {
     }
 
     /**
-     * Processes a DocumentEvent.
-     * If the event is a RemoveDocumentEvent, then the corresponding document is removed from this shelf.
+     * Returns an iterator over the documents of the shelf, in library order.
+     * The iterator is over a copy, so the shelf may change while it is used.
      *
-     * @param e the document event to process
+     * @return an iterator of IDocument
      */
-
     @Override
     public Iterator<IDocument> iterator() {
-        List<IDocument> filtered = new ArrayList<>();
-        for (IDocument doc : library) {
-            if (criteria.test(doc)) {
-                filtered.add(doc);
-            }
+        synchronized (router) {
+            return new ArrayList<>(members.values()).iterator();
         }
-        return filtered.iterator();
     }
 
+    /**
+     * Processes a DocumentEvent of the library or of one of its documents.
+     * Removed documents leave the shelf, added documents are tested, and any
+     * other event tests its document again if it may have changed an attribute
+     * that the criteria reads.
+     *
+     * @param evt the document event to process
+     */
     @Override
     public void processEvent(DocumentEvent evt) {
-        // System.out.println("SmartShelf received event: " + evt); //teste
         IDocument doc = evt.getDocument();
-        boolean shouldBe = criteria.test(doc);
-
-        if (evt.getClass().getSimpleName().equals("AddDocumentEvent")) {
-            if (shouldBe) {
-                documents.add(doc);
+        Long position = router.positionOf(doc);
+        if (position == null) {
+            return;
+        }
+        if (evt instanceof RemoveDocumentEvent) {
+            if (documents.remove(doc)) {
+                members.remove(position);
             }
+        } else if (evt instanceof AddDocumentEvent
+                || !Collections.disjoint(dependencies, DocumentAttribute.changedBy(evt))) {
+            update(doc, position);
         } else {
-            boolean inShelf = documents.contains(doc);
-            if (!inShelf && shouldBe) {
-                documents.add(doc);
-            } else if (inShelf && !shouldBe) {
-                documents.remove(doc);
+            skippedEvaluations++;
+        }
+    }
+
+    /**
+     * Tests the given documents of the library again against the criteria.
+     * Documents that are not in the library are ignored.
+     *
+     * @param docs the documents to test
+     * @return the documents that entered (true) or left (false) the shelf, in
+     *         library order
+     */
+    Map<IDocument, Boolean> retest(Iterable<IDocument> docs) {
+        NavigableMap<Long, IDocument> changed = new TreeMap<>();
+        for (IDocument doc : docs) {
+            Long position = router.positionOf(doc);
+            if (position != null && update(doc, position)) {
+                changed.put(position, doc);
+            }
+        }
+        Map<IDocument, Boolean> changes = new LinkedHashMap<>();
+        changed.values().forEach(doc -> changes.put(doc, documents.contains(doc)));
+        return changes;
+    }
+
+    /**
+     * @return the number of times the criteria was tested
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return the number of events after which the criteria was not tested,
+     *         because they could not change an attribute that it reads
+     */
+    public long getSkippedEvaluations() {
+        return skippedEvaluations;
+    }
+
+    /**
+     * Checks the members of the shelf against the documents of the library that
+     * satisfy the criteria now, in the same order. Meant for tests: it costs
+     * O(library size).
+     *
+     * @return true if the shelf has exactly the documents of the library that
+     *         satisfy the criteria, in library order
+     */
+    public boolean isConsistent() {
+        synchronized (router) {
+            List<IDocument> expected = new ArrayList<>();
+            for (IDocument doc : router.getLibrary()) {
+                if (criteria.test(doc)) {
+                    expected.add(doc);
+                }
             }
+            return expected.equals(new ArrayList<>(members.values()))
+                    && documents.size() == members.size() && documents.containsAll(members.values())
+                    && router.getNumberOfDocuments() == router.getLibrary().getNumberOfDocuments();
         }
     }
 
+    // returns whether the document entered or left the shelf
+    private boolean update(IDocument doc, long position) {
+        evaluations++;
+        if (criteria.test(doc)) {
+            if (documents.add(doc)) {
+                members.put(position, doc);
+                return true;
+            }
+        } else if (documents.remove(doc)) {
+            members.remove(position);
+            return true;
+        }
+        return false;
+    }
 }
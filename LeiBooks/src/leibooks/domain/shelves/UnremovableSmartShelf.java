@@ -1,5 +1,6 @@
 package leibooks.domain.shelves;
 
+import java.util.Collection;
 import java.util.function.Predicate;
 import leibooks.domain.facade.IDocument;
 import leibooks.utils.UnRemovable;
@@ -28,4 +29,31 @@ public class UnremovableSmartShelf extends SmartShelf implements UnRemovable {
         super(name, library, criteria);
     }
 
+    /**
+     * Constructs an UnremovableSmartShelf whose events are dispatched by the given router.
+     *
+     * @param name the unique name of the shelf
+     * @param router the router of the events of the library
+     * @param criteria the predicate that determines which documents from the library belong to this shelf
+     * @throws IllegalArgumentException if router or criteria is null
+     */
+    UnremovableSmartShelf(String name, DocumentEventRouter router, Predicate<IDocument> criteria) {
+        super(name, router, criteria);
+    }
+
+    /**
+     * Constructs an UnremovableSmartShelf whose events are dispatched by the given router,
+     * testing only the given candidates.
+     *
+     * @param name the unique name of the shelf
+     * @param router the router of the events of the library
+     * @param criteria the predicate that determines which documents from the library belong to this shelf
+     * @param candidates the documents that may satisfy the criteria, or null to test every document
+     * @throws IllegalArgumentException if router or criteria is null
+     */
+    UnremovableSmartShelf(String name, DocumentEventRouter router, Predicate<IDocument> criteria,
+            Collection<IDocument> candidates) {
+        super(name, router, criteria, candidates);
+    }
+
 }
@@ -0,0 +1,331 @@
+package leibooks.domain.shelves.query;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import leibooks.domain.facade.DocumentAttribute;
+import leibooks.domain.facade.IDocument;
+import leibooks.domain.search.DocumentIndex;
+import leibooks.domain.shelves.query.QueryNode.And;
+import leibooks.domain.shelves.query.QueryNode.Bookmarked;
+import leibooks.domain.shelves.query.QueryNode.Compare;
+import leibooks.domain.shelves.query.QueryNode.DateValue;
+import leibooks.domain.shelves.query.QueryNode.Field;
+import leibooks.domain.shelves.query.QueryNode.In;
+import leibooks.domain.shelves.query.QueryNode.Not;
+import leibooks.domain.shelves.query.QueryNode.NumberValue;
+import leibooks.domain.shelves.query.QueryNode.Operator;
+import leibooks.domain.shelves.query.QueryNode.Or;
+import leibooks.domain.shelves.query.QueryNode.TextValue;
+
+/**
+ * Compiles the syntax tree of a query to a predicate over documents, and
+ * works out the attributes it reads and the candidates the indexes give for it.
+ *
+ * <p>Values are converted once, when the query is compiled: MIME aliases are
+ * expanded, texts lowercased and split into terms. Only relative dates are
+ * resolved each time a document is tested, against the current day given to
+ * compile. The documents of a shelf like modified &gt;= now-1W are not tested
+ * again by themselves when the day changes: Shelves tests those of the days a
+ * relative date moved over (see ShelfQuery.relativeDates). The operands of an
+ * and are tested cheapest first.</p>
+ */
+final class QueryCompiler {
+
+	private static final Map<String, String> MIME_ALIASES = Map.of(
+			"pdf", "application/pdf",
+			"txt", "text/plain",
+			"text", "text/plain",
+			"jpg", "image/jpeg",
+			"jpeg", "image/jpeg",
+			"png", "image/png",
+			"gif", "image/gif");
+
+	private QueryCompiler() {
+	}
+
+	/**
+	 * @param node the root of a query
+	 * @param today the current day, read each time a relative date is resolved
+	 * @requires node != null && today != null
+	 * @return a predicate that holds for the documents that match the query
+	 */
+	static Predicate<IDocument> compile(QueryNode node, Supplier<LocalDate> today) {
+		if (node instanceof And and) {
+			List<Predicate<IDocument>> tests = compileAll(and.operands(), today);
+			return d -> {
+				for (Predicate<IDocument> test : tests) {
+					if (!test.test(d)) {
+						return false;
+					}
+				}
+				return true;
+			};
+		}
+		if (node instanceof Or or) {
+			List<Predicate<IDocument>> tests = compileAll(or.operands(), today);
+			return d -> {
+				for (Predicate<IDocument> test : tests) {
+					if (test.test(d)) {
+						return true;
+					}
+				}
+				return false;
+			};
+		}
+		if (node instanceof Not not) {
+			return compile(not.operand(), today).negate();
+		}
+		if (node instanceof In in) {
+			Set<String> values = new HashSet<>();
+			for (TextValue value : in.values()) {
+				values.add(normalize(in.field(), value.text()));
+			}
+			return d -> values.contains(normalize(in.field(), text(in.field(), d)));
+		}
+		if (node instanceof Compare c) {
+			return compare(c, today);
+		}
+		return IDocument::isBookmarked;
+	}
+
+	/**
+	 * @param node the root of a query
+	 * @requires node != null
+	 * @return the attributes of a document that the query reads
+	 */
+	static Set<DocumentAttribute> dependencies(QueryNode node) {
+		Set<DocumentAttribute> result = EnumSet.noneOf(DocumentAttribute.class);
+		addDependencies(node, result);
+		return result;
+	}
+
+	/**
+	 * @param node the root of a query
+	 * @param today the current day
+	 * @requires node != null && today != null
+	 * @return the days the relative dates of the query stand for on that day, in
+	 *         the order they are written
+	 */
+	static List<LocalDate> relativeDates(QueryNode node, LocalDate today) {
+		List<LocalDate> result = new ArrayList<>();
+		addRelativeDates(node, today, result);
+		return result;
+	}
+
+	/**
+	 * Returns a superset of the documents that match a query, as far as the
+	 * indexes can tell: an and takes its smallest operand with candidates, an or
+	 * the union of its operands if all of them have candidates.
+	 *
+	 * @param node the root of a query
+	 * @param indexes the available indexes
+	 * @param today the current date
+	 * @requires node != null && indexes != null && today != null
+	 * @return the candidates, if the indexes restrict them
+	 */
+	static Optional<Set<IDocument>> candidates(QueryNode node, QueryIndexes indexes, LocalDate today) {
+		if (node instanceof And and) {
+			Optional<Set<IDocument>> best = Optional.empty();
+			for (QueryNode operand : and.operands()) {
+				Optional<Set<IDocument>> c = candidates(operand, indexes, today);
+				if (c.isPresent() && (best.isEmpty() || c.get().size() < best.get().size())) {
+					best = c;
+				}
+			}
+			return best;
+		}
+		if (node instanceof Or or) {
+			return union(or.operands().stream().map(o -> candidates(o, indexes, today)).toList());
+		}
+		if (node instanceof Bookmarked) {
+			return indexes.bookmarked();
+		}
+		if (node instanceof In in && in.field() != Field.MIME) {
+			return union(in.values().stream().map(v -> withTerms(v.text(), indexes)).toList());
+		}
+		if (node instanceof Compare c && c.value() instanceof TextValue text
+				&& (c.operator() == Operator.EQ || c.operator() == Operator.CONTAINS) && c.field() != Field.MIME) {
+			return withTerms(text.text(), indexes);
+		}
+		if (node instanceof Compare c && c.value() instanceof DateValue value) {
+			LocalDate date = value.resolve(today);
+			switch (c.operator()) {
+			case EQ, GE:
+				return indexes.modifiedSince(date);
+			case GT:
+				return indexes.modifiedSince(date.plusDays(1));
+			default:
+				return Optional.empty();
+			}
+		}
+		return Optional.empty();
+	}
+
+	private static Predicate<IDocument> compare(Compare c, Supplier<LocalDate> today) {
+		Field field = c.field();
+		Operator op = c.operator();
+		if (c.value() instanceof DateValue date) {
+			boolean relative = date.date() == null;
+			LocalDate fixed = date.resolve(today.get());
+			return d -> {
+				LocalDate bound = relative ? date.resolve(today.get()) : fixed;
+				return holds(op, d.getLastModifiedDate().compareTo(bound));
+			};
+		}
+		if (c.value() instanceof NumberValue number) {
+			long pages = number.number();
+			return d -> d.getNumberOfPages().map(n -> holds(op, Long.compare(n, pages))).orElse(false);
+		}
+		String text = ((TextValue) c.value()).text();
+		if (op == Operator.CONTAINS) {
+			Set<String> words = DocumentIndex.tokens(text);
+			return d -> {
+				Set<String> terms = DocumentIndex.tokens(text(field, d));
+				for (String word : words) {
+					if (terms.stream().noneMatch(t -> t.startsWith(word))) {
+						return false;
+					}
+				}
+				return true;
+			};
+		}
+		String value = normalize(field, text);
+		return d -> holds(op, normalize(field, text(field, d)).equals(value) ? 0 : 1);
+	}
+
+	private static List<Predicate<IDocument>> compileAll(List<QueryNode> operands, Supplier<LocalDate> today) {
+		List<QueryNode> sorted = new ArrayList<>(operands);
+		sorted.sort(Comparator.comparingInt(QueryCompiler::cost));
+		List<Predicate<IDocument>> tests = new ArrayList<>();
+		for (QueryNode operand : sorted) {
+			tests.add(compile(operand, today));
+		}
+		return tests;
+	}
+
+	private static boolean holds(Operator op, int comparison) {
+		return switch (op) {
+		case EQ -> comparison == 0;
+		case NE -> comparison != 0;
+		case LT -> comparison < 0;
+		case LE -> comparison <= 0;
+		case GT -> comparison > 0;
+		case GE -> comparison >= 0;
+		case CONTAINS -> throw new IllegalArgumentException("~ does not compare values");
+		};
+	}
+
+	private static String text(Field field, IDocument d) {
+		return switch (field) {
+		case TITLE -> d.getTitle();
+		case AUTHOR -> d.getAuthor();
+		case MIME -> d.getMimeType();
+		default -> throw new IllegalArgumentException(field.keyword() + " is not a text field");
+		};
+	}
+
+	private static String normalize(Field field, String text) {
+		String lower = text == null ? "" : text.toLowerCase(Locale.ROOT);
+		return field == Field.MIME ? MIME_ALIASES.getOrDefault(lower, lower) : lower;
+	}
+
+	/*
+	 * Comparisons with constants first, then equality of texts, then searches for words
+	 */
+	private static int cost(QueryNode node) {
+		if (node instanceof Compare c) {
+			if (c.operator() == Operator.CONTAINS) {
+				return 2;
+			}
+			return c.field() == Field.TITLE || c.field() == Field.AUTHOR ? 1 : 0;
+		}
+		if (node instanceof Not not) {
+			return cost(not.operand());
+		}
+		if (node instanceof In) {
+			return 1;
+		}
+		return node instanceof Bookmarked ? 0 : 3;
+	}
+
+	private static void addDependencies(QueryNode node, Set<DocumentAttribute> result) {
+		if (node instanceof And and) {
+			and.operands().forEach(o -> addDependencies(o, result));
+		} else if (node instanceof Or or) {
+			or.operands().forEach(o -> addDependencies(o, result));
+		} else if (node instanceof Not not) {
+			addDependencies(not.operand(), result);
+		} else if (node instanceof In in) {
+			addDependency(in.field(), result);
+		} else if (node instanceof Compare c) {
+			addDependency(c.field(), result);
+		} else {
+			result.add(DocumentAttribute.BOOKMARKS);
+		}
+	}
+
+	private static void addRelativeDates(QueryNode node, LocalDate today, List<LocalDate> result) {
+		if (node instanceof And and) {
+			and.operands().forEach(o -> addRelativeDates(o, today, result));
+		} else if (node instanceof Or or) {
+			or.operands().forEach(o -> addRelativeDates(o, today, result));
+		} else if (node instanceof Not not) {
+			addRelativeDates(not.operand(), today, result);
+		} else if (node instanceof Compare c && c.value() instanceof DateValue date && date.date() == null) {
+			result.add(date.resolve(today));
+		}
+	}
+
+	private static void addDependency(Field field, Set<DocumentAttribute> result) {
+		switch (field) {
+		case TITLE -> result.add(DocumentAttribute.TITLE);
+		case AUTHOR -> result.add(DocumentAttribute.AUTHOR);
+		case MIME -> result.add(DocumentAttribute.MIME_TYPE);
+		case MODIFIED -> result.add(DocumentAttribute.DATE);
+		case PAGES -> {
+			// the number of pages of a document never changes
+		}
+		}
+	}
+
+	/*
+	 * The documents whose titles or authors have terms starting with all the words of the text
+	 */
+	private static Optional<Set<IDocument>> withTerms(String text, QueryIndexes indexes) {
+		Set<IDocument> result = null;
+		for (String word : DocumentIndex.tokens(text)) {
+			Optional<Set<IDocument>> docs = indexes.withTermPrefix(word);
+			if (docs.isEmpty()) {
+				return Optional.empty();
+			}
+			if (result == null) {
+				result = new HashSet<>(docs.get());
+			} else {
+				result.retainAll(docs.get());
+			}
+		}
+		return Optional.ofNullable(result);
+	}
+
+	private static Optional<Set<IDocument>> union(List<Optional<Set<IDocument>>> operands) {
+		Set<IDocument> result = new HashSet<>();
+		for (Optional<Set<IDocument>> operand : operands) {
+			if (operand.isEmpty()) {
+				return Optional.empty();
+			}
+			result.addAll(operand.get());
+		}
+		return Optional.of(result);
+	}
+}
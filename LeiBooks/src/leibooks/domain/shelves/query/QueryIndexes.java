@@ -0,0 +1,49 @@
+package leibooks.domain.shelves.query;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.Set;
+
+import leibooks.domain.facade.IDocument;
+
+/**
+ * The indexes a smart shelf query may use to find the documents it can match
+ * without testing every document of the library. Each index answers with a
+ * superset of the documents with the asked property, or with nothing if it is
+ * not available.
+ */
+public interface QueryIndexes {
+
+	/**
+	 * No index is available.
+	 */
+	QueryIndexes NONE = new QueryIndexes() {
+	};
+
+	/**
+	 * @param prefix a lowercased term of a title or an author
+	 * @requires prefix != null
+	 * @return the documents whose title or author has a term that starts with
+	 *         the prefix, if there is a term index
+	 */
+	default Optional<Set<IDocument>> withTermPrefix(String prefix) {
+		return Optional.empty();
+	}
+
+	/**
+	 * @return the documents with some bookmarked page, if they are indexed
+	 */
+	default Optional<Set<IDocument>> bookmarked() {
+		return Optional.empty();
+	}
+
+	/**
+	 * @param date a date
+	 * @requires date != null
+	 * @return the documents last modified on that date or later, if the
+	 *         documents are indexed by date
+	 */
+	default Optional<Set<IDocument>> modifiedSince(LocalDate date) {
+		return Optional.empty();
+	}
+}
@@ -0,0 +1,139 @@
+package leibooks.domain.shelves.query;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * A node of the abstract syntax tree of a smart shelf query (see ShelfQuery).
+ */
+public sealed interface QueryNode {
+
+	/**
+	 * The document fields a query can compare.
+	 */
+	enum Field {
+		TITLE, AUTHOR, MIME, MODIFIED, PAGES;
+
+		/**
+		 * @return the name of the field in queries
+		 */
+		public String keyword() {
+			return name().toLowerCase();
+		}
+	}
+
+	/**
+	 * The comparison operators.
+	 */
+	enum Operator {
+		EQ("="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">="),
+		/** every word of the value starts a word of the field */
+		CONTAINS("~");
+
+		private final String symbol;
+
+		Operator(String symbol) {
+			this.symbol = symbol;
+		}
+
+		/**
+		 * @return the operator in queries
+		 */
+		public String symbol() {
+			return symbol;
+		}
+	}
+
+	/**
+	 * A value compared with a field.
+	 */
+	sealed interface Value {
+	}
+
+	/**
+	 * A word or a quoted text.
+	 */
+	record TextValue(String text) implements Value {
+	}
+
+	/**
+	 * A whole number, for the number of pages.
+	 */
+	record NumberValue(long number) implements Value {
+	}
+
+	/**
+	 * A date: either a fixed date, or today plus or minus a number of days (D),
+	 * weeks (W), months (M) or years (Y), written now, now-6M, now+1D...
+	 *
+	 * @param date the fixed date, or null for a date relative to today
+	 * @param amount the number of units added to today
+	 * @param unit the unit: 'D', 'W', 'M' or 'Y'
+	 */
+	record DateValue(LocalDate date, int amount, char unit) implements Value {
+
+		/**
+		 * @param today the current date
+		 * @return the date this value stands for on the given day
+		 */
+		public LocalDate resolve(LocalDate today) {
+			if (date != null) {
+				return date;
+			}
+			return switch (unit) {
+			case 'W' -> today.plusWeeks(amount);
+			case 'M' -> today.plusMonths(amount);
+			case 'Y' -> today.plusYears(amount);
+			default -> today.plusDays(amount);
+			};
+		}
+	}
+
+	/**
+	 * All the operands hold.
+	 */
+	record And(List<QueryNode> operands) implements QueryNode {
+
+		public And {
+			operands = List.copyOf(operands);
+		}
+	}
+
+	/**
+	 * Some operand holds.
+	 */
+	record Or(List<QueryNode> operands) implements QueryNode {
+
+		public Or {
+			operands = List.copyOf(operands);
+		}
+	}
+
+	/**
+	 * The operand does not hold.
+	 */
+	record Not(QueryNode operand) implements QueryNode {
+	}
+
+	/**
+	 * The document has some bookmarked page.
+	 */
+	record Bookmarked() implements QueryNode {
+	}
+
+	/**
+	 * The field compared with the value holds.
+	 */
+	record Compare(Field field, Operator operator, Value value) implements QueryNode {
+	}
+
+	/**
+	 * The field is equal to one of the values.
+	 */
+	record In(Field field, List<TextValue> values) implements QueryNode {
+
+		public In {
+			values = List.copyOf(values);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+package leibooks.domain.shelves.query;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import leibooks.domain.shelves.query.QueryNode.And;
+import leibooks.domain.shelves.query.QueryNode.Bookmarked;
+import leibooks.domain.shelves.query.QueryNode.Compare;
+import leibooks.domain.shelves.query.QueryNode.DateValue;
+import leibooks.domain.shelves.query.QueryNode.Field;
+import leibooks.domain.shelves.query.QueryNode.In;
+import leibooks.domain.shelves.query.QueryNode.Not;
+import leibooks.domain.shelves.query.QueryNode.NumberValue;
+import leibooks.domain.shelves.query.QueryNode.Operator;
+import leibooks.domain.shelves.query.QueryNode.Or;
+import leibooks.domain.shelves.query.QueryNode.TextValue;
+import leibooks.domain.shelves.query.QueryNode.Value;
+
+/**
+ * A recursive descent parser of smart shelf queries:
+ *
+ * <pre>
+ * query      = and { "or" and }
+ * and        = unary { "and" unary }
+ * unary      = "not" unary | "(" query ")" | "bookmarked" | comparison
+ * comparison = field operator value | field "in" "(" value { "," value } ")"
+ * field      = "title" | "author" | "mime" | "modified" | "pages"
+ * operator   = "=" | "!=" | "&lt;" | "&lt;=" | "&gt;" | "&gt;=" | "~"
+ * value      = word | quoted text
+ * </pre>
+ *
+ * Keywords and field names are case insensitive. Dates are written yyyy-mm-dd,
+ * now or today, optionally followed by a signed number of days, weeks, months or
+ * years, e.g. now-6M.
+ */
+final class QueryParser {
+
+	private static final String SYMBOLS = "()\",=!<>~";
+	private static final Pattern RELATIVE_DATE = Pattern.compile("(?i)(now|today)(?:([+-]\\d{1,6})([dwmy]))?");
+
+	private final String text;
+	private int pos;
+
+	private QueryParser(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Parses a query.
+	 *
+	 * @param text the query
+	 * @requires text != null
+	 * @return the root of the syntax tree of the query
+	 * @throws IllegalArgumentException if the text is not a valid query
+	 */
+	static QueryNode parse(String text) {
+		QueryParser parser = new QueryParser(text);
+		QueryNode root = parser.query();
+		parser.skipWhitespace();
+		if (parser.pos < text.length()) {
+			throw parser.error("end of the query");
+		}
+		return root;
+	}
+
+	private QueryNode query() {
+		List<QueryNode> operands = new ArrayList<>();
+		operands.add(and());
+		while (acceptKeyword("or")) {
+			operands.add(and());
+		}
+		return operands.size() == 1 ? operands.get(0) : new Or(operands);
+	}
+
+	private QueryNode and() {
+		List<QueryNode> operands = new ArrayList<>();
+		operands.add(unary());
+		while (acceptKeyword("and")) {
+			operands.add(unary());
+		}
+		return operands.size() == 1 ? operands.get(0) : new And(operands);
+	}
+
+	private QueryNode unary() {
+		if (acceptKeyword("not")) {
+			return new Not(unary());
+		}
+		if (accept("(")) {
+			QueryNode inner = query();
+			expect(")");
+			return inner;
+		}
+		if (acceptKeyword("bookmarked")) {
+			return new Bookmarked();
+		}
+		return comparison();
+	}
+
+	private QueryNode comparison() {
+		int start = skipWhitespace();
+		String name = word();
+		Field field = null;
+		for (Field f : Field.values()) {
+			if (f.keyword().equalsIgnoreCase(name)) {
+				field = f;
+			}
+		}
+		if (field == null) {
+			pos = start;
+			throw error("a field (title, author, mime, modified, pages) or bookmarked");
+		}
+		if (acceptKeyword("in")) {
+			if (field != Field.TITLE && field != Field.AUTHOR && field != Field.MIME) {
+				throw error("a comparison operator");
+			}
+			expect("(");
+			List<TextValue> values = new ArrayList<>();
+			do {
+				values.add(new TextValue(text()));
+			} while (accept(","));
+			expect(")");
+			return new In(field, values);
+		}
+		Operator operator = operator();
+		boolean ordered = operator != Operator.EQ && operator != Operator.NE && operator != Operator.CONTAINS;
+		if (field == Field.MIME && operator != Operator.EQ && operator != Operator.NE
+				|| (field == Field.TITLE || field == Field.AUTHOR) && ordered
+				|| (field == Field.MODIFIED || field == Field.PAGES) && operator == Operator.CONTAINS) {
+			throw error("an operator that applies to " + field.keyword());
+		}
+		return new Compare(field, operator, value(field));
+	}
+
+	private Value value(Field field) {
+		int start = skipWhitespace();
+		String value = text();
+		if (field == Field.PAGES) {
+			try {
+				return new NumberValue(Long.parseLong(value));
+			} catch (NumberFormatException e) {
+				pos = start;
+				throw error("a number of pages");
+			}
+		}
+		if (field == Field.MODIFIED) {
+			Matcher m = RELATIVE_DATE.matcher(value);
+			if (m.matches()) {
+				int amount = m.group(2) == null ? 0 : Integer.parseInt(m.group(2));
+				char unit = m.group(3) == null ? 'D' : Character.toUpperCase(m.group(3).charAt(0));
+				return new DateValue(null, amount, unit);
+			}
+			try {
+				return new DateValue(LocalDate.parse(value), 0, 'D');
+			} catch (DateTimeParseException e) {
+				pos = start;
+				throw error("a date (yyyy-mm-dd, now, now-6M...)");
+			}
+		}
+		return new TextValue(value);
+	}
+
+	private Operator operator() {
+		skipWhitespace();
+		Operator best = null;
+		for (Operator op : Operator.values()) {
+			if (text.startsWith(op.symbol(), pos) && (best == null || op.symbol().length() > best.symbol().length())) {
+				best = op;
+			}
+		}
+		if (best == null) {
+			throw error("a comparison operator or in");
+		}
+		pos += best.symbol().length();
+		return best;
+	}
+
+	/*
+	 * A word or a quoted text, with \" and \\ escapes
+	 */
+	private String text() {
+		skipWhitespace();
+		if (pos >= text.length() || text.charAt(pos) != '"') {
+			String word = word();
+			if (word.isEmpty()) {
+				throw error("a value");
+			}
+			return word;
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i = pos + 1; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"') {
+				pos = i + 1;
+				return sb.toString();
+			}
+			if (c == '\\' && i + 1 < text.length()) {
+				c = text.charAt(++i);
+			}
+			sb.append(c);
+		}
+		throw error("a closing quote");
+	}
+
+	private String word() {
+		skipWhitespace();
+		int start = pos;
+		while (pos < text.length() && isWordChar(text.charAt(pos))) {
+			pos++;
+		}
+		return text.substring(start, pos);
+	}
+
+	static boolean isWordChar(char c) {
+		return !Character.isWhitespace(c) && SYMBOLS.indexOf(c) < 0;
+	}
+
+	private boolean acceptKeyword(String keyword) {
+		int start = skipWhitespace();
+		if (word().toLowerCase(Locale.ROOT).equals(keyword)) {
+			return true;
+		}
+		pos = start;
+		return false;
+	}
+
+	private boolean accept(String symbol) {
+		skipWhitespace();
+		if (text.startsWith(symbol, pos)) {
+			pos += symbol.length();
+			return true;
+		}
+		return false;
+	}
+
+	private void expect(String symbol) {
+		if (!accept(symbol)) {
+			throw error("'" + symbol + "'");
+		}
+	}
+
+	private int skipWhitespace() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+			pos++;
+		}
+		return pos;
+	}
+
+	private IllegalArgumentException error(String expected) {
+		return new IllegalArgumentException("Invalid shelf query at position " + pos + ": expected " + expected
+				+ " in \"" + text + "\"");
+	}
+}
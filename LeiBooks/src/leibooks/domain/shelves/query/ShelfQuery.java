@@ -0,0 +1,256 @@
+package leibooks.domain.shelves.query;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import leibooks.domain.facade.IDocument;
+import leibooks.domain.facade.ShelfCriteria;
+import leibooks.domain.shelves.query.QueryNode.And;
+import leibooks.domain.shelves.query.QueryNode.Compare;
+import leibooks.domain.shelves.query.QueryNode.DateValue;
+import leibooks.domain.shelves.query.QueryNode.In;
+import leibooks.domain.shelves.query.QueryNode.Not;
+import leibooks.domain.shelves.query.QueryNode.NumberValue;
+import leibooks.domain.shelves.query.QueryNode.Or;
+import leibooks.domain.shelves.query.QueryNode.TextValue;
+import leibooks.domain.shelves.query.QueryNode.Value;
+
+/**
+ * The criteria of a smart shelf written as a query, e.g.
+ * {@code mime in (pdf, txt) and modified >= now-6M and bookmarked}.
+ *
+ * <p>A query compares the fields title, author, mime, modified (the last
+ * modified date) and pages of a document with values, using = != &lt; &lt;=
+ * &gt; &gt;= (dates and pages), ~ (every word of the value starts a word of the
+ * field) and in (one of a list of values). Texts are compared ignoring case,
+ * and the MIME types pdf, txt, jpg, png and gif can be written by extension.
+ * Comparisons and bookmarked are combined with and, or, not and parentheses.</p>
+ *
+ * <p>Unlike a predicate, a query knows the attributes it reads, can take its
+ * candidate documents from indexes, and has a textual form (toString) that
+ * parses back to the same query, so it can be stored.</p>
+ */
+public final class ShelfQuery {
+
+	private static final Set<String> KEYWORDS = Set.of("and", "or", "not", "in", "bookmarked");
+
+	private final QueryNode root;
+
+	private ShelfQuery(QueryNode root) {
+		this.root = root;
+	}
+
+	/**
+	 * Parses a query.
+	 *
+	 * @param query the text of the query
+	 * @requires query != null
+	 * @return the query
+	 * @throws IllegalArgumentException if query is null or not a valid query
+	 */
+	public static ShelfQuery parse(String query) {
+		if (query == null) {
+			throw new IllegalArgumentException("Query cannot be null");
+		}
+		return new ShelfQuery(QueryParser.parse(query));
+	}
+
+	/**
+	 * @return the root of the syntax tree of the query
+	 */
+	public QueryNode getRoot() {
+		return root;
+	}
+
+	/**
+	 * @param other another query
+	 * @requires other != null
+	 * @return the query that holds when both this query and the other hold
+	 */
+	public ShelfQuery and(ShelfQuery other) {
+		List<QueryNode> operands = new ArrayList<>();
+		for (QueryNode node : List.of(root, other.root)) {
+			if (node instanceof And and) {
+				operands.addAll(and.operands());
+			} else {
+				operands.add(node);
+			}
+		}
+		return new ShelfQuery(new And(operands));
+	}
+
+	/**
+	 * Compiles the query to the criteria of a smart shelf, which declares the
+	 * attributes of the documents the query reads. Relative dates are resolved
+	 * against the current date.
+	 *
+	 * @return the criteria
+	 */
+	public ShelfCriteria compile() {
+		return compile(LocalDate::now);
+	}
+
+	/**
+	 * Compiles the query to the criteria of a smart shelf, which declares the
+	 * attributes of the documents the query reads. Relative dates are resolved
+	 * against the given day each time a document is tested.
+	 *
+	 * @param today the current day
+	 * @requires today != null
+	 * @return the criteria
+	 */
+	public ShelfCriteria compile(Supplier<LocalDate> today) {
+		return ShelfCriteria.of(QueryCompiler.compile(root, today), QueryCompiler.dependencies(root));
+	}
+
+	/**
+	 * Returns the days that the relative dates of the query (e.g. now-1W) stand
+	 * for on a given day. The documents modified between the days of two
+	 * successive days may match the query on one and not on the other.
+	 *
+	 * @param today the day
+	 * @requires today != null
+	 * @return the days, in the order the relative dates are written; empty if
+	 *         the query has no relative dates
+	 */
+	public List<LocalDate> relativeDates(LocalDate today) {
+		return QueryCompiler.relativeDates(root, today);
+	}
+
+	/**
+	 * Returns a superset of the documents that match the query today, as far as
+	 * the given indexes can tell.
+	 *
+	 * @param indexes the available indexes
+	 * @requires indexes != null
+	 * @return the candidate documents, or nothing if the indexes do not restrict them
+	 */
+	public Optional<Set<IDocument>> candidates(QueryIndexes indexes) {
+		return candidates(indexes, LocalDate.now());
+	}
+
+	/**
+	 * Returns a superset of the documents that match the query on the given day,
+	 * as far as the given indexes can tell.
+	 *
+	 * @param indexes the available indexes
+	 * @param today the day
+	 * @requires indexes != null && today != null
+	 * @return the candidate documents, or nothing if the indexes do not restrict them
+	 */
+	public Optional<Set<IDocument>> candidates(QueryIndexes indexes, LocalDate today) {
+		return QueryCompiler.candidates(root, indexes, today);
+	}
+
+	/**
+	 * @return the canonical text of the query, which parses to an equal query
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		write(root, sb);
+		return sb.toString();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof ShelfQuery other && root.equals(other.root);
+	}
+
+	@Override
+	public int hashCode() {
+		return root.hashCode();
+	}
+
+	private static void write(QueryNode node, StringBuilder sb) {
+		if (node instanceof Or or) {
+			writeAll(or.operands(), " or ", sb);
+		} else if (node instanceof And and) {
+			writeAll(and.operands(), " and ", sb);
+		} else if (node instanceof Not not) {
+			sb.append("not ");
+			writeOperand(not.operand(), sb);
+		} else if (node instanceof Compare c) {
+			sb.append(c.field().keyword()).append(' ').append(c.operator().symbol()).append(' ');
+			write(c.value(), sb);
+		} else if (node instanceof In in) {
+			sb.append(in.field().keyword()).append(" in (");
+			for (int i = 0; i < in.values().size(); i++) {
+				if (i > 0) {
+					sb.append(", ");
+				}
+				write(in.values().get(i), sb);
+			}
+			sb.append(')');
+		} else {
+			sb.append("bookmarked");
+		}
+	}
+
+	private static void writeAll(List<QueryNode> operands, String separator, StringBuilder sb) {
+		for (int i = 0; i < operands.size(); i++) {
+			if (i > 0) {
+				sb.append(separator);
+			}
+			QueryNode operand = operands.get(i);
+			// and binds tighter than or, any other nesting keeps its parentheses
+			boolean nested = operand instanceof Or || operand instanceof And && separator.equals(" and ");
+			if (nested) {
+				sb.append('(');
+				write(operand, sb);
+				sb.append(')');
+			} else {
+				write(operand, sb);
+			}
+		}
+	}
+
+	private static void writeOperand(QueryNode operand, StringBuilder sb) {
+		if (operand instanceof And || operand instanceof Or) {
+			sb.append('(');
+			write(operand, sb);
+			sb.append(')');
+		} else {
+			write(operand, sb);
+		}
+	}
+
+	private static void write(Value value, StringBuilder sb) {
+		if (value instanceof NumberValue n) {
+			sb.append(n.number());
+		} else if (value instanceof DateValue d && d.date() != null) {
+			sb.append(d.date());
+		} else if (value instanceof DateValue d) {
+			sb.append("now");
+			if (d.amount() != 0) {
+				sb.append(d.amount() > 0 ? "+" : "").append(d.amount()).append(d.unit());
+			}
+		} else {
+			writeText(((TextValue) value).text(), sb);
+		}
+	}
+
+	private static void writeText(String text, StringBuilder sb) {
+		boolean word = !text.isEmpty() && !KEYWORDS.contains(text.toLowerCase(Locale.ROOT));
+		for (int i = 0; word && i < text.length(); i++) {
+			word = QueryParser.isWordChar(text.charAt(i));
+		}
+		if (word) {
+			sb.append(text);
+			return;
+		}
+		sb.append('"');
+		for (char c : text.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				sb.append('\\');
+			}
+			sb.append(c);
+		}
+		sb.append('"');
+	}
+}
@@ -0,0 +1,425 @@
+package leibooks.domain.store;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of records, with group commit, and its snapshots.
+ *
+ * <p>Records are appended to an in-memory queue and returned immediately. A
+ * writer thread drains the queue, writes all the queued records at once and
+ * forces them to disk with a single fsync, so callers never wait on the disk.</p>
+ *
+ * <p>The journal of generation g is the file journal-g.log. Rotating the journal
+ * writes snapshot-(g+1).snap, a file with records that rebuild the whole state,
+ * and continues in journal-(g+1).log; the files of older generations are then
+ * deleted. Both kinds of files have a header (magic number, version) followed by
+ * framed records: length (int), CRC-32 of the payload (int), payload.</p>
+ *
+ * <p>A write that fails is retried from the end of the last one that succeeded,
+ * after truncating whatever it left in the file, so no record follows a torn
+ * one. If it keeps failing, the journal fails: nothing else is written, and
+ * append, rotate and sync report the failure.</p>
+ */
+final class Journal implements Closeable {
+
+	static final int JOURNAL_MAGIC = 0x4C424A4C;
+	static final int SNAPSHOT_MAGIC = 0x4C425353;
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 8;
+	private static final int FRAME_BYTES = 8;
+	private static final int MAX_RECORD_BYTES = 1 << 26;
+	private static final int WRITE_ATTEMPTS = 3;
+
+	private static final String JOURNAL_PREFIX = "journal-";
+	private static final String JOURNAL_SUFFIX = ".log";
+	private static final String SNAPSHOT_PREFIX = "snapshot-";
+	private static final String SNAPSHOT_SUFFIX = ".snap";
+
+	private final Path directory;
+	private long generation;
+	private FileChannel channel;
+	// the length of the journal file up to the last write that succeeded
+	private long committed;
+
+	// records (byte[]) and snapshots (Snapshot) waiting for the writer, in order
+	private final List<Object> queue = new ArrayList<>();
+	private long queued;
+	private long written;
+	private boolean closed;
+	private IOException failure;
+	private final Thread writer;
+
+	private record Snapshot(byte[] records) {
+	}
+
+	private interface Write {
+		void run() throws IOException;
+	}
+
+	/**
+	 * Opens the journal of the given generation for appending. Whatever follows
+	 * the last valid record (a record torn by a crash) is discarded.
+	 *
+	 * @param directory the directory of the journal files
+	 * @param generation the generation of the journal
+	 * @param validLength the length of the valid prefix of the journal file, as
+	 *        returned by read, or 0 if there is no such file
+	 * @throws IOException if the journal file cannot be opened
+	 */
+	Journal(Path directory, long generation, long validLength) throws IOException {
+		this.directory = directory;
+		this.generation = generation;
+		this.channel = openJournal(journalFile(directory, generation), validLength);
+		this.committed = channel.position();
+		this.writer = new Thread(this::writeLoop, "library-journal");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * @return the generation of the journal file being appended
+	 */
+	synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Queues a record to be appended to the journal. Returns immediately.
+	 *
+	 * @param payload the record
+	 * @requires payload != null
+	 * @throws UncheckedIOException if the journal failed
+	 */
+	synchronized void append(byte[] payload) {
+		if (closed) {
+			return;
+		}
+		checkFailure();
+		queue.add(payload);
+		queued++;
+		notifyAll();
+	}
+
+	/**
+	 * Queues a snapshot of the state that results from all the records appended
+	 * so far. After it is written, the journal continues in a new generation.
+	 *
+	 * @param snapshot the records of the snapshot, framed (see frame)
+	 * @requires snapshot != null
+	 * @throws UncheckedIOException if the journal failed
+	 */
+	synchronized void rotate(byte[] snapshot) {
+		if (closed) {
+			return;
+		}
+		checkFailure();
+		queue.add(new Snapshot(snapshot));
+		queued++;
+		notifyAll();
+	}
+
+	/**
+	 * Waits until everything queued so far is on disk.
+	 *
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 * @throws IOException if the journal failed, so some of it is not on disk
+	 */
+	synchronized void sync() throws InterruptedException, IOException {
+		long target = queued;
+		while (written < target && writer.isAlive() && failure == null) {
+			wait(100);
+		}
+		if (failure != null) {
+			throw new IOException("Library journal failed", failure);
+		}
+	}
+
+	private void checkFailure() {
+		if (failure != null) {
+			throw new UncheckedIOException("Library journal failed", failure);
+		}
+	}
+
+	/**
+	 * Writes what is queued and closes the journal file.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void writeLoop() {
+		while (true) {
+			List<Object> batch;
+			synchronized (this) {
+				while (queue.isEmpty() && !closed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						closed = true;
+					}
+				}
+				if (queue.isEmpty()) {
+					break;
+				}
+				batch = new ArrayList<>(queue);
+				queue.clear();
+			}
+			write(batch);
+			synchronized (this) {
+				written += batch.size();
+				notifyAll();
+			}
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// nothing else to write
+		}
+	}
+
+	/*
+	 * Writes a batch with one write and one fsync per run of records.
+	 */
+	private void write(List<Object> batch) {
+		ByteArrayOutputStream records = new ByteArrayOutputStream();
+		for (Object item : batch) {
+			if (item instanceof byte[] payload) {
+				records.writeBytes(frame(payload));
+			} else {
+				attempt(() -> flush(records));
+				attempt(() -> writeSnapshot(((Snapshot) item).records()));
+			}
+		}
+		attempt(() -> flush(records));
+	}
+
+	/*
+	 * Retries a write that fails from the end of the last one that succeeded.
+	 * If it keeps failing, the journal fails and writes nothing else.
+	 */
+	private void attempt(Write write) {
+		synchronized (this) {
+			if (failure != null) {
+				return;
+			}
+		}
+		IOException error = null;
+		for (int i = 0; i < WRITE_ATTEMPTS; i++) {
+			try {
+				write.run();
+				return;
+			} catch (IOException e) {
+				error = e;
+			}
+			try {
+				// a torn record would hide the records written after it
+				channel.truncate(committed);
+				channel.position(committed);
+			} catch (IOException e) {
+				error.addSuppressed(e);
+				break;
+			}
+		}
+		System.out.println("-------->> Library journal could not be written: " + error.getMessage());
+		synchronized (this) {
+			failure = error;
+			notifyAll();
+		}
+	}
+
+	private void flush(ByteArrayOutputStream records) throws IOException {
+		if (records.size() == 0) {
+			return;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(records.toByteArray());
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		channel.force(false);
+		committed = channel.position();
+		records.reset();
+	}
+
+	private void writeSnapshot(byte[] snapshot) throws IOException {
+		long next = generation + 1;
+		Path file = snapshotFile(directory, next);
+		Path tmp = directory.resolve(file.getFileName() + ".tmp");
+		try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			out.write(header(SNAPSHOT_MAGIC));
+			ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+			while (buffer.hasRemaining()) {
+				out.write(buffer);
+			}
+			out.force(true);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		FileChannel nextChannel = openJournal(journalFile(directory, next), 0);
+		channel.close();
+		channel = nextChannel;
+		committed = channel.position();
+		synchronized (this) {
+			generation = next;
+		}
+		deleteOlderGenerations(directory, next);
+	}
+
+	/**
+	 * Frames a record: length, CRC-32 and payload.
+	 *
+	 * @param payload the record
+	 * @return the framed record
+	 */
+	static byte[] frame(byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		return ByteBuffer.allocate(FRAME_BYTES + payload.length)
+				.putInt(payload.length).putInt((int) crc.getValue()).put(payload).array();
+	}
+
+	/**
+	 * Reads the records of a journal or snapshot file, up to the first record
+	 * that is incomplete or corrupt.
+	 *
+	 * @param file the file
+	 * @param magic the magic number of the kind of file
+	 * @param consumer receives the payload of each record, in order
+	 * @return the length of the valid prefix of the file, or 0 if it is not a valid file
+	 * @throws IOException if the file cannot be read
+	 */
+	static long read(Path file, int magic, Consumer<byte[]> consumer) throws IOException {
+		if (!Files.exists(file)) {
+			return 0;
+		}
+		try (InputStream is = Files.newInputStream(file);
+				DataInputStream in = new DataInputStream(new BufferedInputStream(is, 1 << 16))) {
+			try {
+				if (in.readInt() != magic || in.readInt() != VERSION) {
+					return 0;
+				}
+			} catch (EOFException e) {
+				return 0;
+			}
+			long valid = HEADER_BYTES;
+			CRC32 crc = new CRC32();
+			while (true) {
+				byte[] payload;
+				try {
+					int length = in.readInt();
+					int checksum = in.readInt();
+					if (length < 0 || length > MAX_RECORD_BYTES) {
+						return valid;
+					}
+					payload = new byte[length];
+					in.readFully(payload);
+					crc.reset();
+					crc.update(payload);
+					if ((int) crc.getValue() != checksum) {
+						return valid;
+					}
+				} catch (EOFException e) {
+					// the end of the file, or a record torn by a crash
+					return valid;
+				}
+				consumer.accept(payload);
+				valid += FRAME_BYTES + payload.length;
+			}
+		}
+	}
+
+	/**
+	 * Finds the generation of the most recent snapshot in a directory.
+	 *
+	 * @param directory the directory of the journal files
+	 * @return the generation of the latest snapshot, or 0 if there is none
+	 * @throws IOException if the directory cannot be listed
+	 */
+	static long latestSnapshot(Path directory) throws IOException {
+		long latest = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+			for (Path file : files) {
+				latest = Math.max(latest, generationOf(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX));
+			}
+		}
+		return latest;
+	}
+
+	static Path journalFile(Path directory, long generation) {
+		return directory.resolve(JOURNAL_PREFIX + generation + JOURNAL_SUFFIX);
+	}
+
+	static Path snapshotFile(Path directory, long generation) {
+		return directory.resolve(SNAPSHOT_PREFIX + generation + SNAPSHOT_SUFFIX);
+	}
+
+	private static FileChannel openJournal(Path file, long validLength) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		if (validLength < HEADER_BYTES) {
+			channel.truncate(0);
+			channel.write(header(JOURNAL_MAGIC), 0);
+			channel.force(true);
+		} else {
+			channel.truncate(validLength);
+		}
+		channel.position(channel.size());
+		return channel;
+	}
+
+	private static ByteBuffer header(int magic) {
+		return ByteBuffer.allocate(HEADER_BYTES).putInt(magic).putInt(VERSION).flip();
+	}
+
+	private static void deleteOlderGenerations(Path directory, long generation) {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				long gen = Math.max(generationOf(file, JOURNAL_PREFIX, JOURNAL_SUFFIX),
+						generationOf(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX));
+				if (gen >= 0 && gen < generation) {
+					Files.deleteIfExists(file);
+				}
+			}
+		} catch (IOException e) {
+			// old generations are only garbage
+		}
+	}
+
+	private static long generationOf(Path file, String prefix, String suffix) {
+		String name = file.getFileName().toString();
+		if (!name.startsWith(prefix) || !name.endsWith(suffix)) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
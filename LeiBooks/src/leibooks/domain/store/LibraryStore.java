@@ -0,0 +1,443 @@
+package leibooks.domain.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Optional;
+
+import javax.naming.OperationNotSupportedException;
+
+import leibooks.domain.core.Document;
+import leibooks.domain.core.DocumentId;
+import leibooks.domain.core.ILibrary;
+import leibooks.domain.facade.DocumentProperties;
+import leibooks.domain.facade.IDocument;
+import leibooks.domain.facade.events.AddAnnotationEvent;
+import leibooks.domain.facade.events.AddDocumentEvent;
+import leibooks.domain.facade.events.AddDocumentShelfEvent;
+import leibooks.domain.facade.events.AddShelfEvent;
+import leibooks.domain.facade.events.DocumentEvent;
+import leibooks.domain.facade.events.RemoveAnnotationEvent;
+import leibooks.domain.facade.events.RemoveDocumentEvent;
+import leibooks.domain.facade.events.RemoveDocumentShelfEvent;
+import leibooks.domain.facade.events.RemoveShelfEvent;
+import leibooks.domain.facade.events.ShelfEvent;
+import leibooks.domain.facade.events.ToggleBookmarkEvent;
+import leibooks.domain.facade.events.UpdateDocumentEvent;
+import leibooks.domain.shelves.IShelf;
+import leibooks.domain.shelves.IShelves;
+import leibooks.domain.shelves.NormalShelf;
+import leibooks.domain.shelves.query.ShelfQuery;
+import leibooks.utils.Listener;
+
+/**
+ * Persists a library and its shelves: documents, their properties, bookmarks and
+ * annotations, normal shelves and their documents, and smart shelves defined by
+ * a query.
+ *
+ * <p>The store listens to the library, to its documents and to the shelves, and
+ * appends a record to a journal for each mutation. The journal is written in the
+ * background with group commit (see Journal), so mutations never wait on the disk.
+ * Every SNAPSHOT_EVERY records, the journal is compacted into a snapshot with the
+ * records that rebuild the current state.</p>
+ *
+ * <p>When the store is opened, the latest snapshot and the journal that follows
+ * it are replayed into the given library and shelves, without reading the
+ * documents' files. Smart shelves defined by a predicate are defined by code, so
+ * they are not stored.</p>
+ */
+public class LibraryStore implements Listener<DocumentEvent>, Closeable {
+
+	/**
+	 * Number of journal records after which the journal is compacted into a snapshot
+	 */
+	static final int SNAPSHOT_EVERY = 10_000;
+
+	// record types
+	private static final byte IMPORT = 1;
+	private static final byte REMOVE = 2;
+	private static final byte UPDATE = 3;
+	private static final byte BOOKMARK = 4;
+	private static final byte ADD_ANNOTATION = 5;
+	private static final byte REMOVE_ANNOTATION = 6;
+	private static final byte ADD_SHELF = 7;
+	private static final byte REMOVE_SHELF = 8;
+	private static final byte ADD_TO_SHELF = 9;
+	private static final byte REMOVE_FROM_SHELF = 10;
+	private static final byte ADD_QUERY_SHELF = 11;
+
+	private final ILibrary library;
+	private final IShelves shelves;
+	private final Journal journal;
+	private final Listener<ShelfEvent> shelvesListener = this::processShelfEvent;
+	private int recordsSinceSnapshot;
+
+	/**
+	 * Opens the store in the given directory: replays the stored state into the
+	 * library and the shelves, and from then on records their mutations.
+	 *
+	 * @param directory the directory of the store files, created if needed
+	 * @param library the library to restore and to record
+	 * @param shelves the shelves of the library, to restore and to record
+	 * @requires directory != null && library != null && shelves != null
+	 * @throws IOException if the store cannot be opened
+	 */
+	public LibraryStore(Path directory, ILibrary library, IShelves shelves) throws IOException {
+		this.library = library;
+		this.shelves = shelves;
+		Files.createDirectories(directory);
+
+		long generation = Journal.latestSnapshot(directory);
+		Journal.read(Journal.snapshotFile(directory, generation), Journal.SNAPSHOT_MAGIC, this::replay);
+		long validLength = Journal.read(Journal.journalFile(directory, generation), Journal.JOURNAL_MAGIC,
+				payload -> {
+					replay(payload);
+					recordsSinceSnapshot++;
+				});
+		journal = new Journal(directory, generation, validLength);
+
+		for (IDocument doc : library) {
+			doc.registerListener(this);
+		}
+		library.registerListener(this);
+		shelves.registerListener(shelvesListener);
+		if (recordsSinceSnapshot >= SNAPSHOT_EVERY) {
+			snapshot();
+		}
+	}
+
+	/**
+	 * Records a mutation of the library or of one of its documents.
+	 *
+	 * @param e the event to process
+	 */
+	@Override
+	public void processEvent(DocumentEvent e) {
+		IDocument doc = e.getDocument();
+		if (e instanceof AddDocumentEvent) {
+			doc.registerListener(this);
+			append(importRecord(doc));
+		} else if (e instanceof RemoveDocumentEvent) {
+			doc.unregisterListener(this);
+			append(record(REMOVE, doc, null));
+		} else if (e instanceof UpdateDocumentEvent) {
+			append(record(UPDATE, doc, out -> {
+				writeString(out, doc.getTitle());
+				writeString(out, doc.getAuthor());
+			}));
+		} else if (e instanceof ToggleBookmarkEvent te) {
+			append(record(BOOKMARK, doc, out -> {
+				out.writeInt(te.getPageNum());
+				out.writeBoolean(te.isBookmarked());
+			}));
+		} else if (e instanceof AddAnnotationEvent ae) {
+			append(record(ADD_ANNOTATION, doc, out -> {
+				out.writeInt(ae.getPageNum());
+				writeString(out, ae.getAnnotationText());
+			}));
+		} else if (e instanceof RemoveAnnotationEvent re) {
+			append(record(REMOVE_ANNOTATION, doc, out -> {
+				out.writeInt(re.getPageNum());
+				out.writeInt(re.getAnnotationNum());
+			}));
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the current state, which replaces the journal.
+	 * The snapshot is built by the calling thread and written in the background.
+	 */
+	public void snapshot() {
+		ByteArrayOutputStream records = new ByteArrayOutputStream();
+		try {
+			for (IDocument doc : library) {
+				records.write(Journal.frame(importRecord(doc)));
+				for (int page : doc.getBookmarks()) {
+					records.write(Journal.frame(record(BOOKMARK, doc, out -> {
+						out.writeInt(page);
+						out.writeBoolean(true);
+					})));
+				}
+				if (doc instanceof Document d) {
+					for (int page : d.getAnnotatedPages()) {
+						writeAnnotations(records, d, page);
+					}
+				}
+			}
+			for (IShelf shelf : shelves) {
+				if (shelf instanceof NormalShelf) {
+					records.write(Journal.frame(shelfRecord(ADD_SHELF, shelf.getName(), null)));
+					for (IDocument doc : shelf) {
+						records.write(Journal.frame(shelfRecord(ADD_TO_SHELF, shelf.getName(), path(doc))));
+					}
+				} else {
+					Optional<ShelfQuery> query = shelves.getQuery(shelf.getName());
+					if (query.isPresent()) {
+						records.write(Journal.frame(shelfRecord(ADD_QUERY_SHELF, shelf.getName(), query.get().toString())));
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		journal.rotate(records.toByteArray());
+		recordsSinceSnapshot = 0;
+	}
+
+	/*
+	 * The journal refers to annotations by their numbers, which are never reused: so the
+	 * snapshot reproduces them, re-adding the removed annotations and removing them again.
+	 */
+	private static void writeAnnotations(ByteArrayOutputStream records, Document doc, int page) throws IOException {
+		int last = doc.getLastAnnotationNum(page);
+		for (int annotNum = 1; annotNum <= last; annotNum++) {
+			String text = doc.getAnnotationText(page, annotNum);
+			records.write(Journal.frame(record(ADD_ANNOTATION, doc, out -> {
+				out.writeInt(page);
+				writeString(out, text == null ? "" : text);
+			})));
+		}
+		for (int annotNum = 1; annotNum <= last; annotNum++) {
+			if (doc.getAnnotationText(page, annotNum) == null) {
+				int removed = annotNum;
+				records.write(Journal.frame(record(REMOVE_ANNOTATION, doc, out -> {
+					out.writeInt(page);
+					out.writeInt(removed);
+				})));
+			}
+		}
+	}
+
+	/**
+	 * Waits until all the recorded mutations are on disk.
+	 *
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 * @throws IOException if the journal could not be written, so some of the
+	 *         mutations are not on disk
+	 */
+	public void sync() throws InterruptedException, IOException {
+		journal.sync();
+	}
+
+	/**
+	 * Stops recording mutations and closes the journal, after writing what is pending.
+	 */
+	@Override
+	public void close() {
+		library.unregisterListener(this);
+		shelves.unregisterListener(shelvesListener);
+		for (IDocument doc : library) {
+			doc.unregisterListener(this);
+		}
+		journal.close();
+	}
+
+	private void processShelfEvent(ShelfEvent e) {
+		String name = e.getShelfName();
+		if (e instanceof AddShelfEvent && isNormalShelf(name)) {
+			append(shelfRecord(ADD_SHELF, name, null));
+		} else if (e instanceof AddShelfEvent && shelves.getQuery(name).isPresent()) {
+			append(shelfRecord(ADD_QUERY_SHELF, name, shelves.getQuery(name).get().toString()));
+		} else if (e instanceof RemoveShelfEvent) {
+			append(shelfRecord(REMOVE_SHELF, name, null));
+		} else if (e instanceof AddDocumentShelfEvent ae && isNormalShelf(name)) {
+			append(shelfRecord(ADD_TO_SHELF, name, path(ae.getDocument())));
+		} else if (e instanceof RemoveDocumentShelfEvent re && isNormalShelf(name)) {
+			append(shelfRecord(REMOVE_FROM_SHELF, name, path(re.getDocument())));
+		}
+	}
+
+	private boolean isNormalShelf(String name) {
+		for (IShelf shelf : shelves) {
+			if (shelf.getName().equals(name)) {
+				return shelf instanceof NormalShelf;
+			}
+		}
+		return false;
+	}
+
+	private void append(byte[] record) {
+		try {
+			journal.append(record);
+		} catch (UncheckedIOException e) {
+			// the mutation is in memory only, which sync reports
+			return;
+		}
+		if (++recordsSinceSnapshot >= SNAPSHOT_EVERY) {
+			snapshot();
+		}
+	}
+
+	private interface Fields {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	/*
+	 * A record: type, path of the document, date of the document after the mutation, fields.
+	 */
+	private static byte[] record(byte type, IDocument doc, Fields fields) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(type);
+			writeString(out, DocumentId.of(doc).path());
+			out.writeLong(doc.getLastModifiedDate() == null ? Long.MIN_VALUE : doc.getLastModifiedDate().toEpochDay());
+			if (fields != null) {
+				fields.write(out);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte[] importRecord(IDocument doc) {
+		return record(IMPORT, doc, out -> {
+			writeString(out, doc.getTitle());
+			writeString(out, doc.getAuthor());
+			writeString(out, doc.getMimeType());
+			out.writeInt(doc.getNumberOfPages().orElse(-1));
+		});
+	}
+
+	/*
+	 * A shelf record: type, name of the shelf, and the path of a document or the query of a shelf.
+	 */
+	private static byte[] shelfRecord(byte type, String shelfName, String argument) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(type);
+			writeString(out, shelfName);
+			if (argument != null) {
+				writeString(out, argument);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static String path(IDocument doc) {
+		return DocumentId.of(doc).path();
+	}
+
+	/*
+	 * Applies a record to the library or to the shelves. Records that do not apply
+	 * (e.g. to a document that is no longer in the library) are ignored.
+	 */
+	private void replay(byte[] payload) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+			byte type = in.readByte();
+			if (type >= ADD_SHELF) {
+				replayShelf(type, readString(in), in);
+				return;
+			}
+			String path = readString(in);
+			long epochDay = in.readLong();
+			LocalDate date = epochDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(epochDay);
+			if (type == IMPORT) {
+				String title = readString(in);
+				String author = readString(in);
+				String mimeType = readString(in);
+				int pages = in.readInt();
+				library.addDocument(new Document(title, author, date, mimeType, path,
+						pages < 0 ? Optional.empty() : Optional.of(pages)));
+				return;
+			}
+			Optional<IDocument> found = library.getDocument(path);
+			if (found.isEmpty()) {
+				return;
+			}
+			IDocument doc = found.get();
+			switch (type) {
+			case REMOVE -> library.removeDocument(doc);
+			case UPDATE -> {
+				DocumentProperties properties = new DocumentProperties(doc);
+				properties.setTitle(readString(in));
+				properties.setAuthor(readString(in));
+				library.updateDocument(doc, properties);
+			}
+			case BOOKMARK -> {
+				int page = in.readInt();
+				if (doc.isBookmarked(page) != in.readBoolean()) {
+					doc.toggleBookmark(page);
+				}
+			}
+			case ADD_ANNOTATION -> doc.addAnnotation(in.readInt(), readString(in));
+			case REMOVE_ANNOTATION -> doc.removeAnnotation(in.readInt(), in.readInt());
+			default -> System.out.println("-------->> Unknown library journal record " + type);
+			}
+			if (date != null && doc instanceof Document d) {
+				d.setLastModifiedDate(date);
+			}
+		} catch (IOException | RuntimeException e) {
+			System.out.println("-------->> Library journal record could not be replayed: " + e);
+		}
+	}
+
+	private void replayShelf(byte type, String shelfName, DataInputStream in) throws IOException {
+		try {
+			switch (type) {
+			case ADD_SHELF -> shelves.addNormalShelf(shelfName);
+			case REMOVE_SHELF -> shelves.removeShelf(shelfName);
+			case ADD_QUERY_SHELF -> shelves.addSmartShelf(shelfName, ShelfQuery.parse(readString(in)));
+			case ADD_TO_SHELF -> {
+				Optional<IDocument> doc = library.getDocument(readString(in));
+				if (doc.isPresent()) {
+					shelves.addDocument(shelfName, doc.get());
+				}
+			}
+			case REMOVE_FROM_SHELF -> {
+				Optional<IDocument> doc = library.getDocument(readString(in));
+				if (doc.isPresent()) {
+					shelves.removeDocument(shelfName, doc.get());
+				}
+			}
+			default -> System.out.println("-------->> Unknown library journal record " + type);
+			}
+		} catch (OperationNotSupportedException e) {
+			// the shelf does not allow it: nothing to restore
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the records appended to the journal since the last snapshot
+	 */
+	int getRecordsSinceSnapshot() {
+		return recordsSinceSnapshot;
+	}
+
+	/**
+	 * @return the generation of the journal being appended
+	 */
+	long getGeneration() {
+		return journal.getGeneration();
+	}
+}
@@ -0,0 +1,306 @@
+package leibooks.services.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.sun.pdfview.PDFFile;
+
+/**
+ * PDFFilePool keeps the parsed PDF files, so a document is mapped and parsed
+ * once, however many viewers, thumbnails and readers use it.
+ *
+ * A parsed file is identified by the path of the document's file and the time
+ * it was last modified, so a document that changes is parsed again. Users
+ * acquire a handle to the parsed file, and close it when they are done; the
+ * file stays parsed while it has open handles. Files without open handles are
+ * kept idle for a while, up to a number of them, in case they are acquired
+ * again, and evicted after, the least recently released first.
+ *
+ * PDFFile is not thread-safe, so users of a shared file hold the lock of its
+ * handle while they use it. Not the lock of the file itself: the threads that
+ * parse its pages take that one, so holding it while rendering would never end.
+ *
+ * <p>Usage example:</p>
+ * <pre>{@code
+ * try (PDFFilePool.Handle handle = PDFFilePool.INSTANCE.acquire(file)) {
+ *     synchronized (handle.getLock()) {
+ *         int pages = handle.getPDFFile().getNumPages();
+ *     }
+ * }
+ * }</pre>
+ */
+public enum PDFFilePool {
+	/**
+	 * The singleton instance of the PDFFilePool.
+	 */
+	INSTANCE;
+
+	/**
+	 * The seconds a file is kept idle by default
+	 */
+	public static final int IDLE_SECONDS = 60;
+
+	/**
+	 * The idle files kept by default
+	 */
+	public static final int MAX_IDLE = 16;
+
+	/**
+	 * A handle to a parsed file, which stays parsed until the handle is closed.
+	 */
+	public static final class Handle implements AutoCloseable {
+		private final Entry entry;
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		private Handle(Entry entry) {
+			this.entry = entry;
+		}
+
+		/**
+		 * @return the parsed file, used holding the lock of the handle
+		 * @requires the handle is not closed
+		 */
+		public PDFFile getPDFFile() {
+			return entry.pdffile;
+		}
+
+		/**
+		 * @return the lock held while using the parsed file, shared by all its handles
+		 */
+		public Object getLock() {
+			return entry.lock;
+		}
+
+		/**
+		 * Releases the parsed file; closing a handle again has no effect.
+		 */
+		@Override
+		public void close() {
+			if (closed.compareAndSet(false, true)) {
+				INSTANCE.release(entry);
+			}
+		}
+	}
+
+	/**
+	 * The statistics of the pool.
+	 *
+	 * @param hits the files acquired already parsed
+	 * @param misses the files parsed when acquired
+	 * @param evictions the idle files evicted
+	 * @param files the parsed files in the pool
+	 * @param idle the files of those without open handles
+	 */
+	public record Stats(long hits, long misses, long evictions, int files, int idle) {
+	}
+
+	private record Key(String path, long lastModified) {
+	}
+
+	// guarded by the pool
+	private static final class Entry {
+		private final Key key;
+		private final Object lock = new Object();
+		private PDFFile pdffile;
+		private IOException failure;
+		private int references;
+		private long idleSince;
+
+		private Entry(Key key) {
+			this.key = key;
+		}
+	}
+
+	private final Map<Key, Entry> entries = new HashMap<>();
+	// the files without open handles, least recently released first
+	private final LinkedHashMap<Key, Entry> idle = new LinkedHashMap<>();
+
+	private long idleNanos = TimeUnit.SECONDS.toNanos(IDLE_SECONDS);
+	private int maxIdle = MAX_IDLE;
+	private ScheduledExecutorService sweeper;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Acquires the parsed file of a PDF document, parsing it if it is not in the
+	 * pool. If another thread is parsing it, waits for it.
+	 *
+	 * @param file the PDF file
+	 * @return a handle to the parsed file, to close when done with it
+	 * @throws IOException if an I/O error occurs while reading the file
+	 * @requires file != null
+	 */
+	public Handle acquire(File file) throws IOException {
+		Key key = new Key(file.getAbsolutePath(), file.lastModified());
+		Entry entry;
+		boolean parse;
+		synchronized (this) {
+			entry = entries.get(key);
+			parse = entry == null;
+			if (parse) {
+				misses++;
+				entry = new Entry(key);
+				entries.put(key, entry);
+			} else {
+				hits++;
+				idle.remove(key);
+			}
+			entry.references++;
+		}
+		if (parse) {
+			parse(file, entry);
+		} else {
+			awaitParsed(entry);
+		}
+		return new Handle(entry);
+	}
+
+	/**
+	 * Sets how long files are kept without open handles, and how many of them.
+	 *
+	 * @param seconds the seconds an idle file is kept
+	 * @param maxIdle the idle files kept
+	 * @requires seconds >= 0 && maxIdle >= 0
+	 */
+	public synchronized void setIdleLimits(int seconds, int maxIdle) {
+		this.idleNanos = TimeUnit.SECONDS.toNanos(seconds);
+		this.maxIdle = maxIdle;
+		trim();
+	}
+
+	/**
+	 * Evicts the files that have been idle for longer than allowed.
+	 */
+	public synchronized void evictIdle() {
+		long now = System.nanoTime();
+		Iterator<Entry> lru = idle.values().iterator();
+		while (lru.hasNext()) {
+			Entry entry = lru.next();
+			if (now - entry.idleSince < idleNanos) {
+				break;
+			}
+			lru.remove();
+			evict(entry);
+		}
+	}
+
+	/**
+	 * Evicts all the idle files, and resets the statistics of the pool.
+	 */
+	public synchronized void clear() {
+		idle.values().forEach(entry -> entries.remove(entry.key));
+		idle.clear();
+		hits = misses = evictions = 0;
+	}
+
+	/**
+	 * @return the statistics of the pool
+	 */
+	public synchronized Stats getStats() {
+		return new Stats(hits, misses, evictions, entries.size(), idle.size());
+	}
+
+	// parsed without the lock of the pool, so other files can be acquired meanwhile
+	private void parse(File file, Entry entry) throws IOException {
+		PDFFile pdffile;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			pdffile = new PDFFile(buf);
+		} catch (IOException | RuntimeException e) {
+			synchronized (this) {
+				entries.remove(entry.key);
+				entry.failure = e instanceof IOException io ? io : new IOException(e);
+				notifyAll();
+			}
+			throw entry.failure;
+		}
+		synchronized (this) {
+			entry.pdffile = pdffile;
+			// the versions of the document before this one are not acquired again
+			Iterator<Entry> older = idle.values().iterator();
+			while (older.hasNext()) {
+				Entry other = older.next();
+				if (isSuperseded(other)) {
+					older.remove();
+					evict(other);
+				}
+			}
+			notifyAll();
+		}
+	}
+
+	private synchronized void awaitParsed(Entry entry) throws IOException {
+		try {
+			while (entry.pdffile == null && entry.failure == null) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			release(entry);
+			throw new InterruptedIOException("Interrupted while " + entry.key.path() + " was parsed");
+		}
+		if (entry.failure != null) {
+			throw entry.failure;
+		}
+	}
+
+	private synchronized void release(Entry entry) {
+		if (--entry.references > 0 || entry.pdffile == null) {
+			return;
+		}
+		if (isSuperseded(entry)) {
+			entries.remove(entry.key);
+			return;
+		}
+		entry.idleSince = System.nanoTime();
+		idle.put(entry.key, entry);
+		trim();
+		if (sweeper == null) {
+			sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "pdf-file-pool");
+				t.setDaemon(true);
+				return t;
+			});
+			sweeper.scheduleWithFixedDelay(this::evictIdle, IDLE_SECONDS, IDLE_SECONDS, TimeUnit.SECONDS);
+		}
+	}
+
+	private void trim() {
+		Iterator<Entry> lru = idle.values().iterator();
+		while (idle.size() > maxIdle && lru.hasNext()) {
+			Entry entry = lru.next();
+			lru.remove();
+			evict(entry);
+		}
+	}
+
+	private void evict(Entry entry) {
+		entries.remove(entry.key);
+		evictions++;
+	}
+
+	// whether a later version of the same document was parsed
+	private boolean isSuperseded(Entry entry) {
+		for (Entry other : entries.values()) {
+			if (other.key.path().equals(entry.key.path()) && other.key.lastModified() > entry.key.lastModified()
+					&& other.pdffile != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -2,15 +2,13 @@ package leibooks.services.reader;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 
 import com.sun.pdfview.PDFFile;
 
 /**
  * The PDFReader class provides functionality to read PDF files and extract metadata such as the number of pages and authors.
- * It uses the com.sun.pdfview.PDFFile class to read and parse the PDF file.
+ * It uses the com.sun.pdfview.PDFFile class to read and parse the PDF file, shared
+ * through the PDFFilePool with the viewers of the document.
  * 
  * <p>Example usage:</p>
  * <pre>
@@ -38,13 +36,12 @@ public class PDFReader {
 	 * @throws IOException 	if an I/O error occurs while reading the file
 	 */
 	public PDFReader(File file) throws IOException {
-		try (RandomAccessFile raf = new RandomAccessFile(file, "r")){
-			FileChannel channel = raf.getChannel();
-			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY,
-					0, channel.size());
-			PDFFile pdffile = new PDFFile(buf);
-			pages = pdffile.getNumPages();
-			authors = pdffile.getStringMetadata("Author");
+		try (PDFFilePool.Handle handle = PDFFilePool.INSTANCE.acquire(file)) {
+			PDFFile pdffile = handle.getPDFFile();
+			synchronized (handle.getLock()) {
+				pages = pdffile.getNumPages();
+				authors = pdffile.getStringMetadata("Author");
+			}
 		}
 	}
 
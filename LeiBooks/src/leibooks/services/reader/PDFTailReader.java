@@ -0,0 +1,707 @@
+package leibooks.services.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.sun.pdfview.PDFStringUtil;
+
+/**
+ * The PDFTailReader class reads the number of pages and the authors of a PDF
+ * file without parsing the whole file.
+ *
+ * <p>It follows the file structure from its end: the startxref offset in the
+ * last bytes, the cross-reference sections (tables or streams, following the
+ * Prev chain of incremental updates), and then only the objects it needs: the
+ * Info dictionary, the document catalog and the root of the page tree, whose
+ * Count entry is the number of pages. The file is read with positional reads of
+ * small windows, never mapped, so the cost does not depend on its size.</p>
+ *
+ * <p>It throws an IOException for files it cannot make sense of (malformed,
+ * encrypted, or using filters other than FlateDecode in the structures it reads);
+ * those are left to PDFReader, which parses the whole file.</p>
+ */
+public class PDFTailReader {
+
+	private static final int TAIL_BYTES = 2048;
+	private static final int WINDOW_BYTES = 8192;
+	private static final int MAX_WINDOW_BYTES = 1 << 26;
+	private static final int MAX_NESTING = 64;
+
+	private final FileChannel channel;
+	private final long size;
+	private final Map<Integer, long[]> xref = new HashMap<>();
+	private final Map<Integer, ObjectStream> objectStreams = new HashMap<>();
+
+	private int pages;
+	private String authors;
+
+	/**
+	 * A reference to an indirect object
+	 */
+	private record Ref(int num, int gen) {
+	}
+
+	/**
+	 * A PDF name, to tell it from a PDF string
+	 */
+	private record Name(String value) {
+	}
+
+	/**
+	 * A stream object: its dictionary and the position of its data in the file
+	 */
+	private record Stream(Map<String, Object> dict, long start) {
+	}
+
+	/**
+	 * The decoded objects of an object stream and where each of them starts
+	 */
+	private record ObjectStream(byte[] data, int[] offsets) {
+	}
+
+	/**
+	 * Constructs a new PDFTailReader object to read the specified PDF file.
+	 *
+	 * @param file the PDF file to read
+	 * @throws IOException if an I/O error occurs while reading the file, or if
+	 *         its structure cannot be read without parsing the whole file
+	 */
+	public PDFTailReader(File file) throws IOException {
+		try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			this.channel = fc;
+			this.size = fc.size();
+			try {
+				Map<String, Object> trailer = readCrossReferences(startXref());
+				if (trailer.containsKey("Encrypt")) {
+					throw new IOException("Encrypted PDF");
+				}
+				Object catalog = resolve(trailer.get("Root"));
+				if (!(catalog instanceof Map<?, ?> root)) {
+					throw new IOException("No document catalog");
+				}
+				Object pageTree = resolve(root.get("Pages"));
+				if (!(pageTree instanceof Map<?, ?> tree) || !(resolve(tree.get("Count")) instanceof Long count)
+						|| count < 0 || count > Integer.MAX_VALUE) {
+					throw new IOException("No page count");
+				}
+				pages = count.intValue();
+				Object info = resolve(trailer.get("Info"));
+				if (info instanceof Map<?, ?> infoDict && resolve(infoDict.get("Author")) instanceof byte[] author) {
+					authors = PDFStringUtil.asTextString(new String(author, StandardCharsets.ISO_8859_1));
+				}
+			} catch (RuntimeException e) {
+				throw new IOException("Malformed PDF: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Retrieves the number of pages in the PDF document.
+	 *
+	 * @return the total number of pages in the PDF document.
+	 */
+	public int getPages() {
+		return pages;
+	}
+
+	/**
+	 * Retrieves the authors of the PDF document.
+	 * @return the authors of the PDF document, or null if it has none.
+	 */
+	public String getAuthors() {
+		return authors;
+	}
+
+	/*
+	 * The offset after the last startxref keyword of the file
+	 */
+	private long startXref() throws IOException {
+		int length = (int) Math.min(size, TAIL_BYTES);
+		byte[] tail = read(size - length, length);
+		byte[] keyword = "startxref".getBytes(StandardCharsets.ISO_8859_1);
+		for (int i = tail.length - keyword.length; i >= 0; i--) {
+			int j = 0;
+			while (j < keyword.length && tail[i + j] == keyword[j]) {
+				j++;
+			}
+			if (j == keyword.length) {
+				Parser p = new Parser(padded(tail), i + keyword.length);
+				return p.number().longValue();
+			}
+		}
+		throw new IOException("No startxref");
+	}
+
+	/*
+	 * Reads every cross-reference section, newest first, keeping the newest entry
+	 * of each object, and returns the newest trailer.
+	 */
+	private Map<String, Object> readCrossReferences(long offset) throws IOException {
+		Map<String, Object> newest = null;
+		Set<Long> visited = new HashSet<>();
+		List<Long> sections = new ArrayList<>();
+		sections.add(offset);
+		while (!sections.isEmpty()) {
+			long at = sections.remove(0);
+			if (at < 0 || at >= size || !visited.add(at)) {
+				continue;
+			}
+			Map<String, Object> trailer = readSection(at);
+			if (newest == null) {
+				newest = trailer;
+			}
+			// a hybrid file's XRefStm comes before its Prev
+			if (trailer.get("XRefStm") instanceof Long stm) {
+				readSection(stm);
+			}
+			if (trailer.get("Prev") instanceof Long prev) {
+				sections.add(prev);
+			}
+		}
+		if (newest == null) {
+			throw new IOException("No cross-reference section");
+		}
+		return newest;
+	}
+
+	private Map<String, Object> readSection(long offset) throws IOException {
+		int window = WINDOW_BYTES;
+		while (true) {
+			byte[] data = read(offset, (int) Math.min(window, size - offset));
+			try {
+				Parser p = new Parser(data, 0);
+				if (p.keywordIs("xref")) {
+					return readTable(p);
+				}
+				return readStream(offset, p);
+			} catch (EOFException e) {
+				if (offset + window >= size || window >= MAX_WINDOW_BYTES) {
+					throw e;
+				}
+				window *= 4;
+			}
+		}
+	}
+
+	private Map<String, Object> readTable(Parser p) throws IOException {
+		p.keyword();
+		while (!p.keywordIs("trailer")) {
+			int first = p.number().intValue();
+			int count = p.number().intValue();
+			for (int i = 0; i < count; i++) {
+				long offset = p.number().longValue();
+				p.number();
+				String kind = p.keyword();
+				if ("n".equals(kind)) {
+					xref.putIfAbsent(first + i, new long[] { 1, offset, 0 });
+				} else {
+					xref.putIfAbsent(first + i, new long[] { 0, 0, 0 });
+				}
+			}
+		}
+		p.keyword();
+		return dictionary(p.object());
+	}
+
+	private Map<String, Object> readStream(long offset, Parser p) throws IOException {
+		p.number();
+		p.number();
+		if (!"obj".equals(p.keyword())) {
+			throw new IOException("No cross-reference section at " + offset);
+		}
+		Map<String, Object> dict = dictionary(p.object());
+		if (!"stream".equals(p.keyword()) || !(dict.get("Type") instanceof Name name)
+				|| !"XRef".equals(name.value())) {
+			throw new IOException("No cross-reference stream at " + offset);
+		}
+		byte[] data = streamData(new Stream(dict, offset + p.streamStart()));
+		List<?> w = (List<?>) dict.get("W");
+		int[] widths = { ((Long) w.get(0)).intValue(), ((Long) w.get(1)).intValue(), ((Long) w.get(2)).intValue() };
+		int entryBytes = widths[0] + widths[1] + widths[2];
+		List<?> index = dict.get("Index") instanceof List<?> l ? l : List.of(0L, dict.get("Size"));
+		int pos = 0;
+		for (int s = 0; s + 1 < index.size(); s += 2) {
+			int first = ((Long) index.get(s)).intValue();
+			int count = ((Long) index.get(s + 1)).intValue();
+			for (int i = 0; i < count && pos + entryBytes <= data.length; i++) {
+				long type = widths[0] == 0 ? 1 : field(data, pos, widths[0]);
+				long second = field(data, pos + widths[0], widths[1]);
+				long third = field(data, pos + widths[0] + widths[1], widths[2]);
+				pos += entryBytes;
+				if (type == 1 || type == 2) {
+					xref.putIfAbsent(first + i, new long[] { type, second, third });
+				} else {
+					xref.putIfAbsent(first + i, new long[] { 0, 0, 0 });
+				}
+			}
+		}
+		return dict;
+	}
+
+	private static long field(byte[] data, int pos, int width) {
+		long value = 0;
+		for (int i = 0; i < width; i++) {
+			value = (value << 8) | (data[pos + i] & 0xFF);
+		}
+		return value;
+	}
+
+	/*
+	 * Follows references until a direct object
+	 */
+	private Object resolve(Object o) throws IOException {
+		for (int depth = 0; o instanceof Ref ref; depth++) {
+			if (depth > MAX_NESTING) {
+				throw new IOException("Reference loop");
+			}
+			o = object(ref.num());
+		}
+		return o instanceof Stream s ? s.dict() : o;
+	}
+
+	private Object object(int num) throws IOException {
+		long[] entry = xref.get(num);
+		if (entry == null || entry[0] == 0) {
+			return null;
+		}
+		if (entry[0] == 2) {
+			return compressedObject((int) entry[1], (int) entry[2], num);
+		}
+		long offset = entry[1];
+		int window = WINDOW_BYTES;
+		while (true) {
+			byte[] data = read(offset, (int) Math.min(window, size - offset));
+			try {
+				Parser p = new Parser(data, 0);
+				p.number();
+				p.number();
+				if (!"obj".equals(p.keyword())) {
+					throw new IOException("No object " + num + " at " + offset);
+				}
+				Object o = p.object();
+				if (o instanceof Map<?, ?> && p.keywordIs("stream")) {
+					p.keyword();
+					return new Stream(dictionary(o), offset + p.streamStart());
+				}
+				return o;
+			} catch (EOFException e) {
+				if (offset + window >= size || window >= MAX_WINDOW_BYTES) {
+					throw e;
+				}
+				window *= 4;
+			}
+		}
+	}
+
+	/*
+	 * The object stored at the given index of an object stream
+	 */
+	private Object compressedObject(int streamNum, int index, int num) throws IOException {
+		ObjectStream objects = objectStreams.get(streamNum);
+		if (objects == null) {
+			if (!(object(streamNum) instanceof Stream stream)) {
+				throw new IOException("No object stream " + streamNum);
+			}
+			int first = ((Long) resolve(stream.dict().get("First"))).intValue();
+			int n = ((Long) resolve(stream.dict().get("N"))).intValue();
+			byte[] data = padded(streamData(stream));
+			Parser header = new Parser(data, 0);
+			int[] offsets = new int[n];
+			for (int i = 0; i < n; i++) {
+				header.number();
+				offsets[i] = first + header.number().intValue();
+			}
+			objects = new ObjectStream(data, offsets);
+			objectStreams.put(streamNum, objects);
+		}
+		if (index < 0 || index >= objects.offsets().length) {
+			throw new IOException("No object " + num + " in object stream " + streamNum);
+		}
+		return new Parser(objects.data(), objects.offsets()[index]).object();
+	}
+
+	/*
+	 * The decoded data of a stream
+	 */
+	private byte[] streamData(Stream stream) throws IOException {
+		Map<String, Object> dict = stream.dict();
+		if (!(resolve(dict.get("Length")) instanceof Long length) || length < 0
+				|| stream.start() + length > size || length > MAX_WINDOW_BYTES) {
+			throw new IOException("Bad stream length");
+		}
+		byte[] data = read(stream.start(), length.intValue());
+		Object filter = resolve(dict.get("Filter"));
+		Object params = resolve(dict.get("DecodeParms"));
+		if (filter instanceof List<?> filters) {
+			if (filters.size() > 1) {
+				throw new IOException("Unsupported filters " + filters);
+			}
+			filter = filters.isEmpty() ? null : resolve(filters.get(0));
+			params = params instanceof List<?> list && !list.isEmpty() ? resolve(list.get(0)) : params;
+		}
+		if (filter == null) {
+			return data;
+		}
+		if (!(filter instanceof Name name) || !"FlateDecode".equals(name.value())) {
+			throw new IOException("Unsupported filter " + filter);
+		}
+		data = inflate(data);
+		if (params instanceof Map<?, ?> p && resolve(p.get("Predictor")) instanceof Long predictor && predictor >= 10) {
+			long columns = resolve(p.get("Columns")) instanceof Long c ? c : 1;
+			long colors = resolve(p.get("Colors")) instanceof Long c ? c : 1;
+			long bits = resolve(p.get("BitsPerComponent")) instanceof Long b ? b : 8;
+			data = unpredict(data, (int) ((columns * colors * bits + 7) / 8), (int) Math.max(1, colors * bits / 8));
+		}
+		return data;
+	}
+
+	private static byte[] inflate(byte[] data) throws IOException {
+		Inflater inflater = new Inflater();
+		inflater.setInput(data);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+		byte[] buffer = new byte[WINDOW_BYTES];
+		try {
+			while (!inflater.finished()) {
+				int n = inflater.inflate(buffer);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				out.write(buffer, 0, n);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Bad FlateDecode stream", e);
+		} finally {
+			inflater.end();
+		}
+		return out.toByteArray();
+	}
+
+	/*
+	 * Undoes the PNG predictors: each row starts with the number of its predictor
+	 */
+	private static byte[] unpredict(byte[] data, int rowBytes, int bpp) {
+		int rows = data.length / (rowBytes + 1);
+		byte[] out = new byte[rows * rowBytes];
+		for (int r = 0; r < rows; r++) {
+			int in = r * (rowBytes + 1);
+			int predictor = data[in];
+			int row = r * rowBytes;
+			for (int i = 0; i < rowBytes; i++) {
+				int raw = data[in + 1 + i] & 0xFF;
+				int left = i >= bpp ? out[row + i - bpp] & 0xFF : 0;
+				int up = r > 0 ? out[row - rowBytes + i] & 0xFF : 0;
+				int upLeft = r > 0 && i >= bpp ? out[row - rowBytes + i - bpp] & 0xFF : 0;
+				int value = switch (predictor) {
+				case 1 -> raw + left;
+				case 2 -> raw + up;
+				case 3 -> raw + (left + up) / 2;
+				case 4 -> raw + paeth(left, up, upLeft);
+				default -> raw;
+				};
+				out[row + i] = (byte) value;
+			}
+		}
+		return out;
+	}
+
+	private static int paeth(int a, int b, int c) {
+		int p = a + b - c;
+		int pa = Math.abs(p - a);
+		int pb = Math.abs(p - b);
+		int pc = Math.abs(p - c);
+		return pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+	}
+
+	/*
+	 * The data followed by a space, so a token at the very end is not taken for a cut one
+	 */
+	private static byte[] padded(byte[] data) {
+		byte[] copy = Arrays.copyOf(data, data.length + 1);
+		copy[data.length] = ' ';
+		return copy;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> dictionary(Object o) throws IOException {
+		if (!(o instanceof Map<?, ?>)) {
+			throw new IOException("Dictionary expected");
+		}
+		return (Map<String, Object>) o;
+	}
+
+	private byte[] read(long offset, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(Math.max(0, length));
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offset + buffer.position()) < 0) {
+				break;
+			}
+		}
+		return buffer.position() == buffer.capacity() ? buffer.array()
+				: Arrays.copyOf(buffer.array(), buffer.position());
+	}
+
+	/**
+	 * Parses PDF objects from a window of the file. Running out of the window
+	 * throws an EOFException, so the caller can retry with a larger one.
+	 */
+	private static final class Parser {
+
+		private final byte[] data;
+		private int pos;
+		private int depth;
+
+		Parser(byte[] data, int pos) {
+			this.data = data;
+			this.pos = pos;
+		}
+
+		/*
+		 * The position of the data of a stream, after the stream keyword and its end of line
+		 */
+		int streamStart() {
+			int p = pos;
+			if (p < data.length && data[p] == '\r') {
+				p++;
+			}
+			if (p < data.length && data[p] == '\n') {
+				p++;
+			}
+			return p;
+		}
+
+		Object object() throws IOException {
+			skipWhitespace();
+			if (++depth > MAX_NESTING) {
+				throw new IOException("Objects nested too deep");
+			}
+			try {
+				byte b = peek();
+				if (b == '/') {
+					pos++;
+					return new Name(regular());
+				}
+				if (b == '(') {
+					return literalString();
+				}
+				if (b == '<') {
+					if (peek(1) == '<') {
+						return dictionaryObject();
+					}
+					return hexString();
+				}
+				if (b == '[') {
+					pos++;
+					List<Object> list = new ArrayList<>();
+					while (true) {
+						skipWhitespace();
+						if (peek() == ']') {
+							pos++;
+							return list;
+						}
+						list.add(object());
+					}
+				}
+				if (b == '+' || b == '-' || b == '.' || Character.isDigit(b)) {
+					Number n = number();
+					int mark = pos;
+					if (n instanceof Long num) {
+						// "num gen R" is a reference
+						skipWhitespace();
+						if (Character.isDigit(peek())) {
+							Number gen = number();
+							skipWhitespace();
+							if (gen instanceof Long g && peek() == 'R' && !isRegular(peek(1))) {
+								pos++;
+								return new Ref(num.intValue(), g.intValue());
+							}
+						}
+					}
+					pos = mark;
+					return n;
+				}
+				String keyword = keyword();
+				return switch (keyword) {
+				case "true" -> Boolean.TRUE;
+				case "false" -> Boolean.FALSE;
+				case "null" -> null;
+				default -> throw new IOException("Unexpected " + keyword);
+				};
+			} finally {
+				depth--;
+			}
+		}
+
+		private Map<String, Object> dictionaryObject() throws IOException {
+			pos += 2;
+			Map<String, Object> dict = new HashMap<>();
+			while (true) {
+				skipWhitespace();
+				if (peek() == '>') {
+					if (peek(1) != '>') {
+						throw new IOException("Bad dictionary");
+					}
+					pos += 2;
+					return dict;
+				}
+				if (!(object() instanceof Name key)) {
+					throw new IOException("Bad dictionary key");
+				}
+				dict.put(key.value(), object());
+			}
+		}
+
+		private byte[] literalString() throws IOException {
+			pos++;
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			int nesting = 1;
+			while (true) {
+				byte b = next();
+				if (b == '(') {
+					nesting++;
+				} else if (b == ')' && --nesting == 0) {
+					return out.toByteArray();
+				} else if (b == '\\') {
+					b = next();
+					switch (b) {
+					case 'n' -> out.write('\n');
+					case 'r' -> out.write('\r');
+					case 't' -> out.write('\t');
+					case 'b' -> out.write('\b');
+					case 'f' -> out.write('\f');
+					case '\r' -> {
+						if (peek() == '\n') {
+							pos++;
+						}
+					}
+					case '\n' -> {
+						// a line continuation
+					}
+					default -> {
+						if (b >= '0' && b <= '7') {
+							int value = b - '0';
+							for (int i = 0; i < 2 && peek() >= '0' && peek() <= '7'; i++) {
+								value = value * 8 + next() - '0';
+							}
+							out.write(value);
+						} else {
+							out.write(b);
+						}
+					}
+					}
+					continue;
+				}
+				out.write(b);
+			}
+		}
+
+		private byte[] hexString() throws IOException {
+			pos++;
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			int high = -1;
+			while (true) {
+				byte b = next();
+				if (b == '>') {
+					if (high >= 0) {
+						out.write(high << 4);
+					}
+					return out.toByteArray();
+				}
+				int digit = Character.digit(b, 16);
+				if (digit < 0) {
+					continue;
+				}
+				if (high < 0) {
+					high = digit;
+				} else {
+					out.write(high << 4 | digit);
+					high = -1;
+				}
+			}
+		}
+
+		Number number() throws IOException {
+			skipWhitespace();
+			String token = regular();
+			try {
+				if (token.indexOf('.') >= 0) {
+					return Double.valueOf(token);
+				}
+				return Long.valueOf(token);
+			} catch (NumberFormatException e) {
+				throw new IOException("Number expected: " + token);
+			}
+		}
+
+		String keyword() throws IOException {
+			skipWhitespace();
+			return regular();
+		}
+
+		boolean keywordIs(String keyword) throws IOException {
+			int mark = pos;
+			boolean is = keyword().equals(keyword);
+			pos = mark;
+			return is;
+		}
+
+		private String regular() throws IOException {
+			int start = pos;
+			while (isRegular(peek())) {
+				pos++;
+			}
+			return new String(data, start, pos - start, StandardCharsets.ISO_8859_1);
+		}
+
+		private void skipWhitespace() throws IOException {
+			while (true) {
+				byte b = peek();
+				if (b == '%') {
+					while (peek() != '\n' && peek() != '\r') {
+						pos++;
+					}
+				} else if (b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0) {
+					pos++;
+				} else {
+					return;
+				}
+			}
+		}
+
+		private byte peek() throws EOFException {
+			return peek(0);
+		}
+
+		private byte peek(int ahead) throws EOFException {
+			if (pos + ahead >= data.length) {
+				throw new EOFException();
+			}
+			return data[pos + ahead];
+		}
+
+		private byte next() throws EOFException {
+			byte b = peek();
+			pos++;
+			return b;
+		}
+
+		private static boolean isRegular(byte b) {
+			return b > ' ' && b != '(' && b != ')' && b != '<' && b != '>' && b != '[' && b != ']'
+					&& b != '{' && b != '}' && b != '/' && b != '%' && b != 0x7F;
+		}
+	}
+}
@@ -0,0 +1,468 @@
+package leibooks.services.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.pdfview.PDFFile;
+import com.sun.pdfview.PDFObject;
+
+/**
+ * The PDFTextExtractor class extracts the text shown in the pages of a PDF file.
+ * It uses the com.sun.pdfview.PDFFile class to parse the file and decode the
+ * content streams of the pages, and then collects the strings drawn by the
+ * text operators (Tj, TJ, ' and ").
+ *
+ * <p>Strings are decoded with the ToUnicode map of their font, when the font
+ * has one, and as single-byte Latin-1 characters otherwise. The extraction is
+ * a best effort: it is meant for indexing, not for reproducing the layout.</p>
+ *
+ * <p>The parsed file is shared with the readers and viewers of the same document
+ * through the PDFFilePool, so the extractor holds a handle to it until it is
+ * closed, and reads the file holding the lock of the handle.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * {@code
+ * PDFTextExtractor extractor = new PDFTextExtractor(new File("example.pdf"));
+ * try {
+ *     for (int page = 1; page <= extractor.getNumPages(); page++)
+ *         System.out.println(extractor.getPageText(page));
+ * } finally {
+ *     extractor.close();
+ * }
+ * }
+ * </pre>
+ */
+public class PDFTextExtractor implements Closeable {
+
+	private final PDFFilePool.Handle handle;
+	private final List<PDFObject> pages = new ArrayList<>();
+	private final List<PDFObject> pageResources = new ArrayList<>();
+
+	/**
+	 * Constructs a new PDFTextExtractor for the specified PDF file.
+	 *
+	 * @param file the PDF file to read
+	 * @throws IOException if an I/O error occurs while reading the file
+	 */
+	public PDFTextExtractor(File file) throws IOException {
+		handle = PDFFilePool.INSTANCE.acquire(file);
+		try {
+			synchronized (handle.getLock()) {
+				collectPages(handle.getPDFFile().getRoot().getDictRef("Pages"), null);
+			}
+		} catch (IOException | RuntimeException e) {
+			handle.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Releases the parsed PDF file.
+	 */
+	@Override
+	public void close() {
+		handle.close();
+	}
+
+	/**
+	 * Retrieves the number of pages in the PDF document.
+	 *
+	 * @return the total number of pages in the PDF document.
+	 */
+	public int getNumPages() {
+		return pages.size();
+	}
+
+	/**
+	 * Retrieves the text of a page.
+	 *
+	 * @param pageNum the page number (1-based index)
+	 * @return the text drawn in the page, with words separated by white space
+	 * @throws IOException if the page cannot be decoded
+	 * @throws IllegalArgumentException if there is no such page
+	 */
+	public String getPageText(int pageNum) throws IOException {
+		if (pageNum < 1 || pageNum > pages.size()) {
+			throw new IllegalArgumentException("No page " + pageNum);
+		}
+		byte[] content;
+		Map<String, Map<Integer, String>> fonts;
+		// the objects of the file are parsed on demand, from its shared buffer
+		synchronized (handle.getLock()) {
+			PDFObject page = pages.get(pageNum - 1);
+			PDFObject contents = page.getDictRef("Contents");
+			if (contents == null) {
+				return "";
+			}
+			fonts = readFonts(pageResources.get(pageNum - 1));
+			if (contents.getType() == PDFObject.ARRAY) {
+				// the content of a page may be split among several streams
+				ByteArrayOutputStream all = new ByteArrayOutputStream();
+				for (PDFObject part : contents.getArray()) {
+					all.write(part.getStream());
+					all.write(' ');
+				}
+				content = all.toByteArray();
+			} else {
+				content = contents.getStream();
+			}
+		}
+		StringBuilder text = new StringBuilder();
+		new ContentParser(content, fonts, text).parse();
+		return text.toString();
+	}
+
+	/*
+	 * Collects the leaves of the page tree, in order, with their (possibly inherited) resources.
+	 */
+	private void collectPages(PDFObject node, PDFObject inheritedResources) throws IOException {
+		if (node == null) {
+			return;
+		}
+		PDFObject resources = node.getDictRef("Resources");
+		if (resources == null) {
+			resources = inheritedResources;
+		}
+		PDFObject kids = node.getDictRef("Kids");
+		if (kids == null) {
+			pages.add(node);
+			pageResources.add(resources);
+			return;
+		}
+		for (PDFObject kid : kids.getArray()) {
+			collectPages(kid, resources);
+		}
+	}
+
+	/*
+	 * Reads the ToUnicode maps of the fonts of a page, by font resource name.
+	 */
+	private static Map<String, Map<Integer, String>> readFonts(PDFObject resources) {
+		Map<String, Map<Integer, String>> fonts = new HashMap<>();
+		try {
+			PDFObject fontDict = resources == null ? null : resources.getDictRef("Font");
+			if (fontDict == null) {
+				return fonts;
+			}
+			for (Map.Entry<String, PDFObject> entry : fontDict.getDictionary().entrySet()) {
+				PDFObject toUnicode = entry.getValue().getDictRef("ToUnicode");
+				if (toUnicode != null) {
+					fonts.put(entry.getKey(), parseToUnicode(toUnicode.getStream()));
+				}
+			}
+		} catch (IOException e) {
+			// fonts without a readable map are decoded as Latin-1
+		}
+		return fonts;
+	}
+
+	/*
+	 * Parses the bfchar and bfrange sections of a ToUnicode CMap. Codes are stored
+	 * with their byte length in the upper bits, so 1 and 2 byte codes do not collide.
+	 */
+	private static Map<Integer, String> parseToUnicode(byte[] cmap) {
+		Map<Integer, String> map = new HashMap<>();
+		String s = new String(cmap, StandardCharsets.ISO_8859_1);
+		int pos = 0;
+		while (true) {
+			int chars = s.indexOf("beginbfchar", pos);
+			int ranges = s.indexOf("beginbfrange", pos);
+			if (chars < 0 && ranges < 0) {
+				return map;
+			}
+			boolean isRange = chars < 0 || (ranges >= 0 && ranges < chars);
+			int start = isRange ? ranges + "beginbfrange".length() : chars + "beginbfchar".length();
+			int end = s.indexOf(isRange ? "endbfrange" : "endbfchar", start);
+			if (end < 0) {
+				return map;
+			}
+			List<String> tokens = cmapTokens(s.substring(start, end));
+			if (isRange) {
+				for (int i = 0; i + 2 < tokens.size(); i += 3) {
+					String lo = tokens.get(i);
+					int from = Integer.parseInt(lo, 16);
+					int to = Integer.parseInt(tokens.get(i + 1), 16);
+					String dst = tokens.get(i + 2);
+					if (dst.startsWith("[")) {
+						String[] items = dst.substring(1, dst.length() - 1).trim().split("\\s+");
+						for (int c = from; c <= to && c - from < items.length; c++) {
+							map.put(codeKey(c, lo.length() / 2), utf16(items[c - from]));
+						}
+					} else {
+						String base = utf16(dst);
+						for (int c = from; c <= to && !base.isEmpty(); c++) {
+							char last = (char) (base.charAt(base.length() - 1) + (c - from));
+							map.put(codeKey(c, lo.length() / 2), base.substring(0, base.length() - 1) + last);
+						}
+					}
+				}
+			} else {
+				for (int i = 0; i + 1 < tokens.size(); i += 2) {
+					String src = tokens.get(i);
+					map.put(codeKey(Integer.parseInt(src, 16), src.length() / 2), utf16(tokens.get(i + 1)));
+				}
+			}
+			pos = end;
+		}
+	}
+
+	private static List<String> cmapTokens(String section) {
+		List<String> tokens = new ArrayList<>();
+		int i = 0;
+		while (i < section.length()) {
+			char c = section.charAt(i);
+			if (c == '<') {
+				int end = section.indexOf('>', i);
+				if (end < 0) {
+					break;
+				}
+				tokens.add(section.substring(i + 1, end).replaceAll("\\s", ""));
+				i = end + 1;
+			} else if (c == '[') {
+				int end = section.indexOf(']', i);
+				if (end < 0) {
+					break;
+				}
+				tokens.add("[" + section.substring(i + 1, end).replaceAll("[<>]", " ") + "]");
+				i = end + 1;
+			} else {
+				i++;
+			}
+		}
+		return tokens;
+	}
+
+	private static String utf16(String hex) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i + 4 <= hex.length(); i += 4) {
+			sb.append((char) Integer.parseInt(hex.substring(i, i + 4), 16));
+		}
+		return sb.toString();
+	}
+
+	private static int codeKey(int code, int numBytes) {
+		return (numBytes << 24) | code;
+	}
+
+	/*
+	 * A minimal scanner of page content streams that keeps only the text operators.
+	 */
+	private static final class ContentParser {
+
+		private final byte[] data;
+		private final Map<String, Map<Integer, String>> fonts;
+		private final StringBuilder text;
+		private final List<byte[]> strings = new ArrayList<>();
+		private Map<Integer, String> font;
+		private String lastName;
+		private int pos;
+
+		ContentParser(byte[] data, Map<String, Map<Integer, String>> fonts, StringBuilder text) {
+			this.data = data;
+			this.fonts = fonts;
+			this.text = text;
+		}
+
+		void parse() {
+			while (pos < data.length) {
+				int c = data[pos] & 0xff;
+				if (c == '(') {
+					strings.add(literalString());
+				} else if (c == '<' && pos + 1 < data.length && data[pos + 1] == '<') {
+					pos += 2;
+				} else if (c == '<') {
+					strings.add(hexString());
+				} else if (c == '/') {
+					lastName = name();
+				} else if (c == '%') {
+					skipComment();
+				} else if (c == '-' && pos + 1 < data.length && isNumberStart(data[pos + 1])) {
+					// a large negative kerning inside a TJ array is a word space
+					if (number() < -200 && !strings.isEmpty()) {
+						strings.add(new byte[] { ' ' });
+					}
+				} else if (Character.isLetter(c) || c == '\'' || c == '"') {
+					operator(keyword());
+				} else {
+					pos++;
+				}
+			}
+		}
+
+		private void operator(String op) {
+			switch (op) {
+			case "Tj", "TJ", "'", "\"" -> {
+				for (byte[] s : strings) {
+					decode(s);
+				}
+				text.append(' ');
+			}
+			case "Tf" -> font = fonts.get(lastName);
+			case "Td", "TD", "T*", "Tm", "ET" -> text.append(' ');
+			case "ID" -> skipInlineImage();
+			default -> {
+				// operators that do not draw text
+			}
+			}
+			strings.clear();
+		}
+
+		private void decode(byte[] s) {
+			if (s.length == 1 && s[0] == ' ') {
+				text.append(' ');
+				return;
+			}
+			if (font == null) {
+				text.append(new String(s, StandardCharsets.ISO_8859_1));
+				return;
+			}
+			int i = 0;
+			while (i < s.length) {
+				int one = s[i] & 0xff;
+				String u = font.get(codeKey(one, 1));
+				if (u == null && i + 1 < s.length) {
+					u = font.get(codeKey((one << 8) | (s[i + 1] & 0xff), 2));
+					if (u != null) {
+						i++;
+					}
+				}
+				text.append(u != null ? u : " ");
+				i++;
+			}
+		}
+
+		private byte[] literalString() {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			int depth = 1;
+			pos++;
+			while (pos < data.length) {
+				int c = data[pos++] & 0xff;
+				if (c == '\\' && pos < data.length) {
+					int e = data[pos++] & 0xff;
+					switch (e) {
+					case 'n' -> out.write('\n');
+					case 'r' -> out.write('\r');
+					case 't' -> out.write('\t');
+					case 'b' -> out.write('\b');
+					case 'f' -> out.write('\f');
+					case '\r', '\n' -> {
+						// line continuation
+					}
+					default -> {
+						if (e >= '0' && e <= '7') {
+							int v = e - '0';
+							for (int k = 0; k < 2 && pos < data.length && data[pos] >= '0' && data[pos] <= '7'; k++) {
+								v = v * 8 + (data[pos++] - '0');
+							}
+							out.write(v);
+						} else {
+							out.write(e);
+						}
+					}
+					}
+				} else if (c == '(') {
+					depth++;
+					out.write(c);
+				} else if (c == ')') {
+					if (--depth == 0) {
+						break;
+					}
+					out.write(c);
+				} else {
+					out.write(c);
+				}
+			}
+			return out.toByteArray();
+		}
+
+		private byte[] hexString() {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			pos++;
+			int hi = -1;
+			while (pos < data.length && data[pos] != '>') {
+				int d = Character.digit(data[pos++], 16);
+				if (d < 0) {
+					continue;
+				}
+				if (hi < 0) {
+					hi = d;
+				} else {
+					out.write(hi * 16 + d);
+					hi = -1;
+				}
+			}
+			if (hi >= 0) {
+				out.write(hi * 16);
+			}
+			pos++;
+			return out.toByteArray();
+		}
+
+		private String name() {
+			int start = ++pos;
+			while (pos < data.length && isRegular(data[pos])) {
+				pos++;
+			}
+			return new String(data, start, pos - start, StandardCharsets.ISO_8859_1);
+		}
+
+		private String keyword() {
+			int start = pos;
+			if (data[pos] == '\'' || data[pos] == '"') {
+				pos++;
+			} else {
+				while (pos < data.length && isRegular(data[pos])) {
+					pos++;
+				}
+			}
+			return new String(data, start, pos - start, StandardCharsets.ISO_8859_1);
+		}
+
+		private double number() {
+			int start = pos++;
+			while (pos < data.length && isNumberStart(data[pos])) {
+				pos++;
+			}
+			try {
+				return Double.parseDouble(new String(data, start, pos - start, StandardCharsets.ISO_8859_1));
+			} catch (NumberFormatException e) {
+				return 0;
+			}
+		}
+
+		private void skipComment() {
+			while (pos < data.length && data[pos] != '\n' && data[pos] != '\r') {
+				pos++;
+			}
+		}
+
+		/*
+		 * Inline image data is binary, it ends at the first EI between white space.
+		 */
+		private void skipInlineImage() {
+			pos++;
+			while (pos + 2 < data.length
+					&& !(data[pos] == 'E' && data[pos + 1] == 'I' && PDFFile.isWhiteSpace(data[pos - 1])
+							&& (PDFFile.isWhiteSpace(data[pos + 2]) || PDFFile.isDelimiter(data[pos + 2])))) {
+				pos++;
+			}
+			pos += 2;
+		}
+
+		private static boolean isRegular(byte b) {
+			return PDFFile.isRegularCharacter(b & 0xff);
+		}
+
+		private static boolean isNumberStart(byte b) {
+			return (b >= '0' && b <= '9') || b == '.';
+		}
+	}
+}
@@ -41,4 +41,44 @@ public interface IViewer {
 	 */
 	Object getPage(int pageNum, int width, int height) throws NoSuchPageException;
 
+	/**
+	 * Retrieves a specific page of the document that is used once, e.g. for a 
+	 * thumbnail, without keeping it where the viewer keeps the pages it 
+	 * retrieves. Viewers that keep no pages retrieve it as getPage does.
+	 *
+	 * @param pageNum the page number to retrieve.
+	 * @param width the width of the page.
+	 * @param height the height of the page.
+	 * @return the page object.
+	 * @throws NoSuchPageException if the specified page does not exist.
+	 */
+	default Object getUncachedPage(int pageNum, int width, int height) throws NoSuchPageException {
+		return getPage(pageNum, width, height);
+	}
+
+	/**
+	 * Retrieves a coarse version of a page to show until the page is retrieved,
+	 * from what the viewer has at hand, e.g. the page rendered at another size:
+	 * progressive viewing gets the preview of a page and then the page. Nothing
+	 * is rendered, so it is fast, and it may be called while another thread 
+	 * retrieves a page with the viewer. Viewers that have nothing at hand 
+	 * return null.
+	 *
+	 * @param pageNum the page number to retrieve.
+	 * @param width the width of the page.
+	 * @param height the height of the page.
+	 * @return the preview of the page, of about the size of the page, or null 
+	 *         if there is none.
+	 */
+	default Object getPreview(int pageNum, int width, int height) {
+		return null;
+	}
+
+	/**
+	 * Releases the resources held for the document, e.g. when it is closed. 
+	 * The viewer can be set to a document again afterwards.
+	 */
+	default void close() {
+	}
+
 }
\ No newline at end of file
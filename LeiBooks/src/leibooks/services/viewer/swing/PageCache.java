@@ -0,0 +1,265 @@
+package leibooks.services.viewer.swing;
+
+import java.awt.Image;
+import java.io.File;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import leibooks.app.AppProperties;
+import leibooks.services.viewer.NoSuchPageException;
+
+/**
+ * PageCache is a cache of the rendered pages of documents, shared by the
+ * Swing viewers, so a page is rendered once to be shown again, e.g. when
+ * flipping back a page or in a slideshow.
+ *
+ * A rendered page is identified by the document's file (and the time it was
+ * last modified), the page number and the size it was rendered to fit; the
+ * scale of the page follows from that size. The cache is bounded by the bytes
+ * of the pixels of its images, rather than by their number, and evicts the
+ * least recently used pages first. With spillover, evicted pages are kept
+ * through soft references, until the garbage collector needs their memory.
+ *
+ * <p>Usage example:</p>
+ * <pre>{@code
+ * Image page = PageCache.INSTANCE.getPage(file, 1, 800, 600, () -> render(1, 800, 600));
+ * }</pre>
+ */
+public enum PageCache {
+	/**
+	 * The singleton instance of the PageCache.
+	 */
+	INSTANCE;
+
+	/**
+	 * Renders a page of a document.
+	 */
+	@FunctionalInterface
+	public interface Renderer {
+		/**
+		 * @return the rendered page
+		 * @throws NoSuchPageException if the document has no such page
+		 */
+		Image render() throws NoSuchPageException;
+	}
+
+	/**
+	 * The statistics of the cache.
+	 *
+	 * @param hits the pages found in the cache
+	 * @param softHits the pages of the hits found through soft references
+	 * @param misses the pages rendered because they were not in the cache
+	 * @param evictions the pages evicted to keep the cache within its capacity
+	 * @param pages the pages in the cache
+	 * @param bytes the bytes of the pages in the cache
+	 */
+	public record Stats(long hits, long softHits, long misses, long evictions, int pages, long bytes) {
+	}
+
+	private record PageKey(String path, long lastModified, int pageNum, int width, int height) {
+	}
+
+	private record Page(Image image, long bytes) {
+	}
+
+	private static final class SpilledPage extends SoftReference<Image> {
+		private final PageKey key;
+
+		SpilledPage(PageKey key, Image image, ReferenceQueue<Image> queue) {
+			super(image, queue);
+			this.key = key;
+		}
+	}
+
+	// the pages in least recently used order
+	private final LinkedHashMap<PageKey, Page> pages = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<PageKey, SpilledPage> spilled = new HashMap<>();
+	private final ReferenceQueue<Image> cleared = new ReferenceQueue<>();
+
+	private long capacity = AppProperties.INSTANCE.PAGE_CACHE_MEGABYTES * 1024L * 1024L;
+	private boolean spillover = true;
+	private long bytes;
+	private long hits;
+	private long softHits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Returns a page of a document from the cache, rendering it with the given
+	 * renderer if it is not there.
+	 *
+	 * @param file the document file
+	 * @param pageNum the page number
+	 * @param width the width the page was rendered to fit
+	 * @param height the height the page was rendered to fit
+	 * @param renderer renders the page if it is not in the cache
+	 * @return the rendered page
+	 * @throws NoSuchPageException if the document has no such page
+	 * @requires file != null && renderer != null
+	 */
+	public Image getPage(File file, int pageNum, int width, int height, Renderer renderer)
+			throws NoSuchPageException {
+		PageKey key = new PageKey(file.getAbsolutePath(), file.lastModified(), pageNum, width, height);
+		Image image = lookup(key);
+		if (image != null) {
+			return image;
+		}
+		// rendered without the lock, so other pages can be served meanwhile
+		image = renderer.render();
+		store(key, image);
+		return image;
+	}
+
+	/**
+	 * Returns a page of a document if it is in the cache, without rendering it.
+	 *
+	 * @param file the document file
+	 * @param pageNum the page number
+	 * @param width the width the page was rendered to fit
+	 * @param height the height the page was rendered to fit
+	 * @return the rendered page, or null if it is not in the cache
+	 * @requires file != null
+	 */
+	public synchronized Image getCachedPage(File file, int pageNum, int width, int height) {
+		PageKey key = new PageKey(file.getAbsolutePath(), file.lastModified(), pageNum, width, height);
+		// a miss is left to be counted by the render that follows
+		return pages.containsKey(key) ? lookup(key) : null;
+	}
+
+	/**
+	 * Returns the largest render of a page of a document in the cache, whatever
+	 * size it was rendered to fit, without rendering it. It is not counted in
+	 * the statistics of the cache.
+	 *
+	 * @param file the document file
+	 * @param pageNum the page number
+	 * @return the largest render of the page, or null if there is none in the cache
+	 * @requires file != null
+	 */
+	public synchronized Image getAnyCachedPage(File file, int pageNum) {
+		String path = file.getAbsolutePath();
+		long lastModified = file.lastModified();
+		Image largest = null;
+		for (Map.Entry<PageKey, Page> entry : pages.entrySet()) {
+			PageKey key = entry.getKey();
+			Image image = entry.getValue().image();
+			if (key.pageNum() == pageNum && key.lastModified() == lastModified && key.path().equals(path)
+					&& (largest == null || image.getWidth(null) > largest.getWidth(null))) {
+				largest = image;
+			}
+		}
+		return largest;
+	}
+
+	/**
+	 * Sets the maximum number of bytes of the pages in the cache, evicting
+	 * the least recently used pages if needed.
+	 *
+	 * @param capacity the capacity in bytes
+	 * @requires capacity >= 0
+	 */
+	public synchronized void setCapacity(long capacity) {
+		this.capacity = capacity;
+		evict();
+	}
+
+	/**
+	 * Sets whether the evicted pages are kept through soft references.
+	 *
+	 * @param spillover whether the evicted pages are kept
+	 */
+	public synchronized void setSpillover(boolean spillover) {
+		this.spillover = spillover;
+		if (!spillover) {
+			spilled.clear();
+		}
+	}
+
+	/**
+	 * Removes all the pages from the cache, and resets its statistics.
+	 */
+	public synchronized void clear() {
+		pages.clear();
+		spilled.clear();
+		bytes = 0;
+		hits = softHits = misses = evictions = 0;
+	}
+
+	/**
+	 * @return the statistics of the cache
+	 */
+	public synchronized Stats getStats() {
+		return new Stats(hits, softHits, misses, evictions, pages.size(), bytes);
+	}
+
+	private synchronized Image lookup(PageKey key) {
+		Page page = pages.get(key);
+		if (page != null) {
+			hits++;
+			return page.image();
+		}
+		expunge();
+		SpilledPage soft = spilled.remove(key);
+		Image image = soft == null ? null : soft.get();
+		if (image == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		softHits++;
+		insert(key, image);
+		return image;
+	}
+
+	private synchronized void store(PageKey key, Image image) {
+		if (!pages.containsKey(key)) {
+			insert(key, image);
+		}
+	}
+
+	private void insert(PageKey key, Image image) {
+		expunge();
+		Page page = new Page(image, bytesOf(image));
+		if (page.bytes() > capacity) {
+			spill(key, image);
+			return;
+		}
+		pages.put(key, page);
+		bytes += page.bytes();
+		evict();
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<PageKey, Page>> lru = pages.entrySet().iterator();
+		while (bytes > capacity && lru.hasNext()) {
+			Map.Entry<PageKey, Page> eldest = lru.next();
+			lru.remove();
+			bytes -= eldest.getValue().bytes();
+			evictions++;
+			spill(eldest.getKey(), eldest.getValue().image());
+		}
+	}
+
+	private void spill(PageKey key, Image image) {
+		if (spillover) {
+			spilled.put(key, new SpilledPage(key, image, cleared));
+		}
+	}
+
+	// forgets the spilled pages whose images were collected
+	private void expunge() {
+		SpilledPage page;
+		while ((page = (SpilledPage) cleared.poll()) != null) {
+			spilled.remove(page.key, page);
+		}
+	}
+
+	// 4 bytes per pixel, as images are drawn in ARGB
+	private static long bytesOf(Image image) {
+		return 4L * Math.max(image.getWidth(null), 1) * Math.max(image.getHeight(null), 1);
+	}
+}
@@ -1,16 +1,16 @@
 package leibooks.services.viewer.swing;
 
+import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.RenderingHints;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 
-import com.sun.pdfview.PDFFile;
 import com.sun.pdfview.PDFPage;
 
+import leibooks.services.reader.PDFFilePool;
 import leibooks.services.viewer.AViewer;
 import leibooks.services.viewer.NoSuchPageException;
 
@@ -19,12 +19,19 @@ import leibooks.services.viewer.NoSuchPageException;
  * using the Swing framework.
  * 
  * This class uses the com.sun.pdfview library to read and render PDF files.
+ * The parsed files are shared with the other viewers and readers of the same 
+ * documents through the PDFFilePool, so the viewer holds a handle to the parsed 
+ * file of its document until it is closed or set to another document.
+ * The preview of a page is the page if it was rendered already, or else the
+ * page rendered at another size scaled to the size. Pages used once, e.g.
+ * thumbnails, are rendered without going through the PageCache.
  * 
  * <p>Usage:</p>
  * <pre>
  * SwingPDFViewer viewer = new SwingPDFViewer();
  * viewer.setDocument(new File("path/to/pdf"));
  * Image pageImage = viewer.getPage(1, 800, 600);
+ * viewer.close();
  * </pre>
  * 
  * <p>Note: This class is not thread-safe.</p>
@@ -38,9 +45,9 @@ public class SwingPDFViewer extends AViewer {
 	private static final long serialVersionUID = 7010322497796689226L;
 
 	/**
-	 * The PDFFile object representing the loaded PDF document.
+	 * The handle to the parsed PDF document.
 	 */
-	private PDFFile pdffile;
+	private PDFFilePool.Handle document;
 
 	/**
 	 * Constructs a new SwingPDFViewer with the viewer type set to "swing".
@@ -57,11 +64,20 @@ public class SwingPDFViewer extends AViewer {
 	 */
 	@Override
 	public void setDocument(File file) throws IOException {
+		PDFFilePool.Handle handle = PDFFilePool.INSTANCE.acquire(file);
+		close();
 		super.setDocument(file);
-		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
-			FileChannel channel = raf.getChannel();
-			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
-			pdffile = new PDFFile(buf);
+		document = handle;
+	}
+
+	/**
+	 * Releases the parsed PDF document.
+	 */
+	@Override
+	public void close() {
+		if (document != null) {
+			document.close();
+			document = null;
 		}
 	}
 
@@ -74,7 +90,8 @@ public class SwingPDFViewer extends AViewer {
 	}
 
 	/**
-	 * Retrieves an image of the specified page from the PDF document.
+	 * Retrieves an image of the specified page from the PDF document, 
+	 * rendering it only if it is not in the PageCache.
 	 * 
 	 * @param pageNum the page number to retrieve (1-based index)
 	 * @param width the desired width of the resulting image
@@ -84,10 +101,73 @@ public class SwingPDFViewer extends AViewer {
 	 */
 	@Override
 	public Image getPage(int pageNum, int width, int height) throws NoSuchPageException {
-		if (pageNum < 1 || pageNum > pdffile.getNumPages())
-			throw new NoSuchPageException();
+		PDFFilePool.Handle handle = document;
+		checkPage(handle, pageNum);
+		return PageCache.INSTANCE.getPage(file, pageNum, width, height, 
+				() -> render(handle, pageNum, width, height));
+	}
+
+	/**
+	 * Renders an image of the specified page from the PDF document, without
+	 * looking it up in or adding it to the PageCache, e.g. for a thumbnail.
+	 * 
+	 * @param pageNum the page number to retrieve (1-based index)
+	 * @param width the desired width of the resulting image
+	 * @param height the desired height of the resulting image
+	 * @return an Image object representing the specified page
+	 * @throws NoSuchPageException if the specified page number is out of range
+	 */
+	@Override
+	public Image getUncachedPage(int pageNum, int width, int height) throws NoSuchPageException {
+		PDFFilePool.Handle handle = document;
+		checkPage(handle, pageNum);
+		return render(handle, pageNum, width, height);
+	}
+
+	/**
+	 * Retrieves a preview of the specified page from the PageCache: the page 
+	 * itself, or else the page rendered at another size, scaled to the size.
+	 * 
+	 * @param pageNum the page number to retrieve (1-based index)
+	 * @param width the desired width of the resulting image
+	 * @param height the desired height of the resulting image
+	 * @return an Image object with a preview of the specified page, or null if 
+	 *         the page was not rendered at any size
+	 */
+	@Override
+	public Image getPreview(int pageNum, int width, int height) {
+		Image page = PageCache.INSTANCE.getCachedPage(file, pageNum, width, height);
+		if (page != null)
+			return page;
+		Image coarse = PageCache.INSTANCE.getAnyCachedPage(file, pageNum);
+		if (coarse == null)
+			return null;
+		// scaled as the page would be rendered to fit the size
+		double scale = Math.min((double) width / coarse.getWidth(null), (double) height / coarse.getHeight(null));
+		BufferedImage preview = new BufferedImage(Math.max((int) (coarse.getWidth(null) * scale), 1), 
+				Math.max((int) (coarse.getHeight(null) * scale), 1), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = preview.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.drawImage(coarse, 0, 0, preview.getWidth(), preview.getHeight(), null);
+		g.dispose();
+		return preview;
+	}
+
+	private static void checkPage(PDFFilePool.Handle handle, int pageNum) throws NoSuchPageException {
+		synchronized (handle.getLock()) {
+			if (pageNum < 1 || pageNum > handle.getPDFFile().getNumPages())
+				throw new NoSuchPageException();
+		}
+	}
+
+	// the file is shared with other viewers, which may be rendering on other threads
+	private static Image render(PDFFilePool.Handle handle, int pageNum, int width, int height) {
+		synchronized (handle.getLock()) {
+			return render(handle.getPDFFile().getPage(pageNum), width, height);
+		}
+	}
 
-		PDFPage page = pdffile.getPage(pageNum);
+	private static Image render(PDFPage page, int width, int height) {
 
 		int sourceWidth = (int) page.getBBox().getWidth();
 		int sourceHeight = (int) page.getBBox().getHeight();
@@ -61,10 +61,33 @@ public abstract class BookshelfUIDelegate implements Listener<LBEvent> {
 	
 	
 	/**
-	 * Removes the selected thumbnail from the document's panel
+	 * Adds thumbnails representing the documents to the document's panel, 
+	 * which is refreshed once
+	 * 
+	 * @param documents The documents whose thumbnails will be added to the panel
+	 */
+	protected void addToDocumentsPanel (Iterable<IDocument> documents) {
+		bookshelf.addToDocumentsPanel(documents);
+	}
+	
+	
+	/**
+	 * Releases the resources kept for showing a document removed from the library
+	 * 
+	 * @param document The document removed
+	 */
+	protected void releaseDocument (IDocument document) {
+		bookshelf.releaseDocument(document);
+	}
+	
+	
+	/**
+	 * Removes the thumbnail of a document from the document's panel
+	 * 
+	 * @param document The document whose thumbnail will be removed
 	 */
-	protected void removeSelectedDocumentFromPanel () {
-		bookshelf.removeSelectedDocumentFromPanel (); 
+	protected void removeDocumentFromPanel (IDocument document) {
+		bookshelf.removeDocumentFromPanel (document); 
 	}
 	
 	
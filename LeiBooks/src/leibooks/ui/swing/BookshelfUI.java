@@ -5,13 +5,16 @@ import java.awt.Color;
 import java.awt.FlowLayout;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import javax.naming.OperationNotSupportedException;
 import javax.swing.JButton;
+import javax.swing.ImageIcon;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
-import javax.swing.JLabel;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
@@ -23,7 +26,6 @@ import javax.swing.JTree;
 import javax.swing.ScrollPaneConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.TransferHandler;
-import javax.swing.border.MatteBorder;
 import javax.swing.event.TreeSelectionEvent;
 import javax.swing.event.TreeSelectionListener;
 import javax.swing.tree.DefaultMutableTreeNode;
@@ -55,7 +57,7 @@ public class BookshelfUI extends JFrame {
 
 	private JTextField searchField; // Search box for user input
 	private JSplitPane contentPane;
-	private JPanel documentsPanel;
+	private DocumentGrid documentsPanel;
 	private DefaultMutableTreeNode selectedTreeNode;
 	private DocumentLabel selectedDocumentLabel;
 	private JPopupMenu treeContextMenu;
@@ -67,6 +69,8 @@ public class BookshelfUI extends JFrame {
 	private BookshelfUIDelegate uiDelegate;
 	private DocumentUIDelegate documentUIDelegate;
 	private DocumentMetadataUIDelegate documentMetadataDelegate;
+	// the thumbnails being produced for the labels in the documents panel
+	private Map<DocumentLabel, Future<Thumbnail>> thumbnailRequests = new HashMap<>();
 
 	/**
 	 * Create the main frame given the shelves and the library controllers.
@@ -98,7 +102,6 @@ public class BookshelfUI extends JFrame {
 		searchButton.addActionListener(e -> {
 				String query = searchField.getText().trim();
 				if (!query.isEmpty()) {
-					query = ".*" + query + ".*";
 					showDocuments(AppProperties.INSTANCE.LIBRARY_NAME, uiDelegate.searchDocuments(query));
 				}
 		});
@@ -111,7 +114,8 @@ public class BookshelfUI extends JFrame {
 		contentPane = new JSplitPane();
 
 		// Set the right documents view
-		documentsPanel = new JPanel(new ModifiedFlowLayout(FlowLayout.LEFT, GAP_SIZE, GAP_SIZE));
+		documentsPanel = new DocumentGrid(ThumbnailFactory.THUMBNAIL_SIZE, GAP_SIZE, this::newDocumentLabel, 
+				documentLabelController());
 		documentsPanel.setBackground(new Color(103, 103, 103));
 		JScrollPane scrollDocumentsPane = new JScrollPane(documentsPanel);
 		scrollDocumentsPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
@@ -197,43 +201,73 @@ public class BookshelfUI extends JFrame {
 	 * Show the library thumbnails 
 	 */
 	private void showDocuments(String target, Iterable<IDocument> iterable) {
-		// remove previously added thumbnails
-		documentsPanel.removeAll();
 		createContextMenuDocuments(target);
+		// only the documents in view get labels, and thumbnails
+		documentsPanel.setDocuments(iterable);
+	}
 
-		// load new thumbnails
-		for(IDocument d : iterable) {
-			internalAddToDocumentsPanel(d);
-		}
-		SwingUtilities.updateComponentTreeUI(documentsPanel);
+	public void removeDocumentFromPanel(IDocument document) {
+		documentsPanel.removeDocument(document);
 	}
 
-	public void removeSelectedDocumentFromPanel() {
-		documentsPanel.remove(selectedDocumentLabel);
-		SwingUtilities.updateComponentTreeUI(documentsPanel);
+	/**
+	 * Releases the cached thumbnail of a document that left the library
+	 */
+	public void releaseDocument(IDocument document) {
+		ThumbnailFactory.getInstance().release(document);
 	}
 
 	public void addToDocumentsPanel(IDocument document) {
-		internalAddToDocumentsPanel(document);
-		SwingUtilities.updateComponentTreeUI(documentsPanel);
+		documentsPanel.addDocuments(List.of(document));
 	}
 
-	private void internalAddToDocumentsPanel(IDocument d) {
-		try {
-			documentUIDelegate.setDocument(d);
-			Thumbnail tb = ThumbnailFactory.getInstance().getThumbnail(documentUIDelegate);
-			JLabel thumbnailLabel = new DocumentLabel(tb.image, d, tb.getViewer());
-			thumbnailLabel.setToolTipText(uiDelegate.getDocumentTitle(d));
-			thumbnailLabel.addMouseListener(thumbnailController());
-			thumbnailLabel.addMouseMotionListener(thumbnailMouseMotionController());
-			thumbnailLabel.setTransferHandler(new TransferHandler("document"));
-			documentsPanel.add(thumbnailLabel);
-		} catch(IOException e) {
-			// Do not load the document thumbnail...
-			//e.printStackTrace(); 
-		} catch(NoSuchPageException e) {
-			JOptionPane.showMessageDialog(this, "Empty document", "Error reading page", JOptionPane.ERROR_MESSAGE);
-		}
+	public void addToDocumentsPanel(Iterable<IDocument> documents) {
+		documentsPanel.addDocuments(documents);
+	}
+
+	private DocumentLabel newDocumentLabel() {
+		DocumentLabel thumbnailLabel = new DocumentLabel(ThumbnailFactory.PLACEHOLDER, null, null);
+		thumbnailLabel.addMouseListener(thumbnailController());
+		thumbnailLabel.addMouseMotionListener(thumbnailMouseMotionController());
+		thumbnailLabel.setTransferHandler(new TransferHandler("document"));
+		return thumbnailLabel;
+	}
+
+	/**
+	 * Shows a placeholder in the labels that scroll into view, and swaps in 
+	 * the thumbnail when it is produced in the background; stops producing it 
+	 * if the label scrolls out of view before
+	 */
+	private DocumentGrid.CellListener documentLabelController() {
+		return new DocumentGrid.CellListener() {
+
+			@Override
+			public void bound(DocumentLabel thumbnailLabel) {
+				IDocument d = thumbnailLabel.getDocument();
+				thumbnailLabel.setIcon(ThumbnailFactory.PLACEHOLDER);
+				thumbnailLabel.setToolTipText(uiDelegate.getDocumentTitle(d));
+				documentUIDelegate.setDocument(d);
+				thumbnailRequests.put(thumbnailLabel, ThumbnailFactory.getInstance().requestThumbnail(documentUIDelegate, 
+						tb -> {
+							thumbnailRequests.remove(thumbnailLabel);
+							thumbnailLabel.setIcon(tb.image);
+						}, 
+						e -> {
+							// Do not show the document thumbnail...
+							thumbnailRequests.remove(thumbnailLabel);
+							documentsPanel.removeDocument(d);
+							if (e instanceof NoSuchPageException)
+								JOptionPane.showMessageDialog(BookshelfUI.this, "Empty document", "Error reading page", JOptionPane.ERROR_MESSAGE);
+						}));
+			}
+
+			@Override
+			public void unbound(DocumentLabel thumbnailLabel) {
+				Future<Thumbnail> request = thumbnailRequests.remove(thumbnailLabel);
+				if (request != null)
+					request.cancel(false);
+			}
+		};
 	}
 
 
@@ -285,17 +319,22 @@ public class BookshelfUI extends JFrame {
 
 			@Override
 			public void mouseClicked(MouseEvent event) {
-				if (selectedDocumentLabel != null)
-					selectedDocumentLabel.setBorder(null);
 				selectedDocumentLabel =(DocumentLabel) event.getSource();
-				selectedDocumentLabel.setBorder(new MatteBorder(3, 3, 3, 3,(Color) Color.YELLOW));
+				documentsPanel.setSelected(selectedDocumentLabel.getDocument());
 				if (event.getButton() == MouseEvent.BUTTON1) {
 					if (event.getClickCount() >= 2) {
 						// on double click, view the document
+						documentUIDelegate.setDocument(selectedDocumentLabel.getDocument());
+						if (selectedDocumentLabel.getDocumentViewer() == null)
+							// the viewer is created when the document is first opened
+							documentUIDelegate.getViewer(documentUIDelegate.getDocumentType(), "swing")
+								.ifPresent(selectedDocumentLabel::setDocumentViewer);
 						if (selectedDocumentLabel.getDocumentViewer() != null) {
-							documentUIDelegate.setDocument(selectedDocumentLabel.getDocument());
 							documentUIDelegate.setListeners();
-							new DocumentUI(BookshelfUI.this, selectedDocumentLabel, documentUIDelegate, 
+							// the label of the grid is reused for other documents as they scroll
+							DocumentLabel openedLabel = new DocumentLabel((ImageIcon) selectedDocumentLabel.getIcon(), 
+									selectedDocumentLabel.getDocument(), selectedDocumentLabel.getDocumentViewer());
+							new DocumentUI(BookshelfUI.this, openedLabel, documentUIDelegate, 
 									documentMetadataDelegate);
 						} 
 						else
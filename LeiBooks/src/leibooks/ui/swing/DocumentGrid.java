@@ -0,0 +1,323 @@
+package leibooks.ui.swing;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.swing.JPanel;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.border.MatteBorder;
+import javax.swing.event.ChangeListener;
+
+import leibooks.domain.facade.IDocument;
+
+/**
+ * A grid of documents that only has cells for the documents in view.
+ *
+ * <p>All cells have the same size, that of a thumbnail, so the position of the
+ * cell of each document, and the documents in view, follow from the width of
+ * the grid and the scroll position, without walking the cells. Only the rows
+ * in view, plus a few rows above and below, have cells: a DocumentLabel bound
+ * to a document. The cells of rows that scroll out of view are unbound and
+ * reused for the rows that scroll in.</p>
+ *
+ * <p>The grid is meant to be the view of a JScrollPane. Its CellListener is
+ * told when a cell is bound to a document, to fill it in, e.g. with the
+ * thumbnail of the document, and when it is unbound.</p>
+ */
+@SuppressWarnings("serial")
+class DocumentGrid extends JPanel implements Scrollable {
+
+	/**
+	 * Told when cells are bound to documents and unbound.
+	 */
+	interface CellListener {
+		/**
+		 * @param cell the cell, bound to its document
+		 */
+		void bound(DocumentLabel cell);
+
+		/**
+		 * @param cell the cell, still bound to its document
+		 */
+		void unbound(DocumentLabel cell);
+	}
+
+	// the rows with cells above and below the rows in view
+	private static final int MARGIN_ROWS = 2;
+	private static final MatteBorder SELECTED_BORDER = new MatteBorder(3, 3, 3, 3, Color.YELLOW);
+
+	private final int gap;
+	private final int cellSize;
+	private final Supplier<DocumentLabel> cellFactory;
+	private final CellListener listener;
+
+	private final List<IDocument> documents = new ArrayList<>();
+	// the indexes of the documents, valid below indexedUpTo: the ones after a
+	// removed document are indexed again when they are looked up
+	private final Map<IDocument, Integer> indexes = new HashMap<>();
+	private int indexedUpTo;
+	private final ChangeListener viewportListener = e -> updateCells();
+	// the cells in use, by the index of their documents
+	private final Map<Integer, DocumentLabel> cells = new HashMap<>();
+	private final Deque<DocumentLabel> spareCells = new ArrayDeque<>();
+	private IDocument selected;
+
+	/**
+	 * @param cellSize the width and height of the cells
+	 * @param gap the gap around the cells
+	 * @param cellFactory creates new cells, with their mouse listeners
+	 * @param listener told when cells are bound and unbound
+	 */
+	DocumentGrid(int cellSize, int gap, Supplier<DocumentLabel> cellFactory, CellListener listener) {
+		super(null);
+		this.cellSize = cellSize;
+		this.gap = gap;
+		this.cellFactory = cellFactory;
+		this.listener = listener;
+	}
+
+	/**
+	 * Shows the given documents instead of the ones shown.
+	 *
+	 * @param newDocuments the documents to show
+	 */
+	void setDocuments(Iterable<IDocument> newDocuments) {
+		unbindAll();
+		documents.clear();
+		indexes.clear();
+		indexedUpTo = 0;
+		newDocuments.forEach(documents::add);
+		changed();
+	}
+
+	/**
+	 * Shows the given documents after the ones shown.
+	 *
+	 * @param newDocuments the documents to add
+	 */
+	void addDocuments(Iterable<IDocument> newDocuments) {
+		newDocuments.forEach(documents::add);
+		changed();
+	}
+
+	/**
+	 * Stops showing a document.
+	 *
+	 * @param document the document to remove
+	 */
+	void removeDocument(IDocument document) {
+		int i = indexOf(document);
+		if (i >= 0) {
+			documents.remove(i);
+			indexes.remove(document);
+			indexedUpTo = Math.min(indexedUpTo, i);
+			removeCell(i);
+			changed();
+		}
+	}
+
+	/**
+	 * @return the number of documents of the grid
+	 */
+	int getDocumentCount() {
+		return documents.size();
+	}
+
+	/**
+	 * @return the number of cells of the grid
+	 */
+	int getCellCount() {
+		return cells.size() + spareCells.size();
+	}
+
+	/**
+	 * Marks the cell of the given document as selected.
+	 *
+	 * @param document the selected document, or null
+	 */
+	void setSelected(IDocument document) {
+		selected = document;
+		for (DocumentLabel cell : cells.values()) {
+			cell.setBorder(cell.getDocument().equals(selected) ? SELECTED_BORDER : null);
+		}
+	}
+
+	@Override
+	public void doLayout() {
+		updateCells();
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		int rows = (documents.size() + columns() - 1) / columns();
+		return new Dimension(gap + columns() * (cellSize + gap), gap + rows * (cellSize + gap));
+	}
+
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		if (getParent() instanceof JViewport viewport) {
+			viewport.addChangeListener(viewportListener);
+		}
+	}
+
+	// the grid is added again to the same viewport, e.g. when a document is closed
+	@Override
+	public void removeNotify() {
+		if (getParent() instanceof JViewport viewport) {
+			viewport.removeChangeListener(viewportListener);
+		}
+		super.removeNotify();
+	}
+
+	@Override
+	public Dimension getPreferredScrollableViewportSize() {
+		return getPreferredSize();
+	}
+
+	@Override
+	public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+		return (cellSize + gap) / 4;
+	}
+
+	@Override
+	public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+		return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+	}
+
+	@Override
+	public boolean getScrollableTracksViewportWidth() {
+		return true;
+	}
+
+	@Override
+	public boolean getScrollableTracksViewportHeight() {
+		return false;
+	}
+
+	/**
+	 * @param width the width of the grid
+	 * @return the number of cells in a row
+	 */
+	int columns(int width) {
+		return Math.max(1, (width - gap) / (cellSize + gap));
+	}
+
+	/**
+	 * @param visible the part of the grid in view
+	 * @param columns the number of cells in a row
+	 * @return the indexes of the first document with a cell, and of the one after the last
+	 */
+	int[] range(Rectangle visible, int columns) {
+		int row = cellSize + gap;
+		int firstRow = Math.max(0, (visible.y - gap) / row - MARGIN_ROWS);
+		int lastRow = (visible.y + visible.height) / row + MARGIN_ROWS;
+		int from = Math.min(documents.size(), firstRow * columns);
+		int to = Math.min(documents.size(), (lastRow + 1) * columns);
+		return new int[] { from, to };
+	}
+
+	// before the grid has a width, it has 4 columns
+	private int columns() {
+		return columns(getWidth() > 0 ? getWidth() : gap + 4 * (cellSize + gap));
+	}
+
+	private void changed() {
+		revalidate();
+		updateCells();
+		repaint();
+	}
+
+	private int indexOf(IDocument document) {
+		Integer i = indexes.get(document);
+		if (i != null && i < indexedUpTo) {
+			return i;
+		}
+		while (indexedUpTo < documents.size()) {
+			IDocument doc = documents.get(indexedUpTo);
+			indexes.put(doc, indexedUpTo++);
+			if (doc.equals(document)) {
+				return indexedUpTo - 1;
+			}
+		}
+		return -1;
+	}
+
+	// the cells after the removed document move back one position, bound to the same documents
+	private void removeCell(int removed) {
+		DocumentLabel cell = cells.remove(removed);
+		if (cell != null) {
+			release(cell);
+		}
+		Map<Integer, DocumentLabel> moved = new HashMap<>();
+		for (Iterator<Map.Entry<Integer, DocumentLabel>> it = cells.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Integer, DocumentLabel> entry = it.next();
+			if (entry.getKey() > removed) {
+				moved.put(entry.getKey() - 1, entry.getValue());
+				it.remove();
+			}
+		}
+		cells.putAll(moved);
+	}
+
+	private void unbindAll() {
+		for (DocumentLabel cell : cells.values()) {
+			release(cell);
+		}
+		cells.clear();
+	}
+
+	private void release(DocumentLabel cell) {
+		listener.unbound(cell);
+		cell.setVisible(false);
+		spareCells.push(cell);
+	}
+
+	// binds cells to the documents in view, and unbinds the others
+	private void updateCells() {
+		int columns = columns();
+		int[] range = range(getVisibleRect(), columns);
+		for (Iterator<Map.Entry<Integer, DocumentLabel>> it = cells.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Integer, DocumentLabel> entry = it.next();
+			int i = entry.getKey();
+			if (i < range[0] || i >= range[1]) {
+				it.remove();
+				release(entry.getValue());
+			}
+		}
+		for (int i = range[0]; i < range[1]; i++) {
+			DocumentLabel cell = cells.get(i);
+			if (cell == null) {
+				cell = spareCells.isEmpty() ? newCell() : spareCells.pop();
+				cells.put(i, cell);
+				IDocument document = documents.get(i);
+				cell.setDocument(document);
+				cell.setDocumentViewer(null);
+				cell.setBorder(document.equals(selected) ? SELECTED_BORDER : null);
+				cell.setVisible(true);
+				listener.bound(cell);
+			}
+			cell.setBounds(gap + (i % columns) * (cellSize + gap), gap + (i / columns) * (cellSize + gap),
+					cellSize, cellSize);
+		}
+	}
+
+	private DocumentLabel newCell() {
+		DocumentLabel cell = cellFactory.get();
+		cell.setHorizontalAlignment(SwingConstants.CENTER);
+		cell.setVerticalAlignment(SwingConstants.CENTER);
+		add(cell);
+		return cell;
+	}
+}
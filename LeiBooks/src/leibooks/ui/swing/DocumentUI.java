@@ -4,7 +4,6 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.FlowLayout;
-import java.awt.Image;
 import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -42,6 +41,8 @@ public class DocumentUI {
 	private Component oldRightComponent;
 	private JLabel pageActionLabel;
 	private JLabel bookmarkLabel;
+	private PageRenderer pageRenderer;
+	private int shownPage;
 	
 	public DocumentUI (JFrame frame, DocumentLabel documentLabel, 
 			DocumentUIDelegate documentViewerDelegate, 
@@ -57,6 +58,8 @@ public class DocumentUI {
 		
 		createGUIComponents ();
 		activateDocumentViewer();
+		pageRenderer = new PageRenderer(documentLabel.getDocumentViewer(), 
+				documentsPanelWidth, documentsPanelHeight, PageRenderer.PREFETCH);
 		
 		pageNum = Math.max(documentViewerDelegate.getLastPageVisited() - 1, 0); 
 		pageDown();
@@ -64,8 +67,11 @@ public class DocumentUI {
 
 
 	private void activateDocumentViewer() {
+		IViewer viewer = documentLabel.getDocumentViewer();
 		try {
-			documentLabel.getDocumentViewer().setDocument(documentUIDelegate.getDocumentFile());
+			synchronized (viewer) {
+				viewer.setDocument(documentUIDelegate.getDocumentFile());
+			}
 		} catch (IOException e) {
 			JOptionPane.showMessageDialog(frame, "Cannot read document", 
 					"IO Error", JOptionPane.ERROR_MESSAGE);
@@ -128,10 +134,43 @@ public class DocumentUI {
 	}
 
 	
+	/**
+	 * Shows a page. Its image is rendered in the background, unless it was 
+	 * prefetched, and swapped in when ready, after a preview of it.
+	 * 
+	 * @param pageNum the page to show
+	 * @throws NoSuchPageException if the page is known not to exist
+	 */
 	public void showPage (int pageNum) throws NoSuchPageException {
+		if (!pageRenderer.mayExist(pageNum))
+			throw new NoSuchPageException();
 		this.pageNum = pageNum;
-		IViewer viewer = documentLabel.getDocumentViewer();
-   		documentJLabel.setIcon(new ImageIcon((Image) viewer.getPage(pageNum, documentsPanelWidth, documentsPanelHeight)));
+		updateBookmarkLabel(pageNum, documentUIDelegate.isBookmarked(pageNum));
+		updatePageActionLabel(pageNum, documentUIDelegate.hasAnnotations(pageNum));
+		pageRenderer.request(pageNum, image -> {
+			documentJLabel.setIcon(new ImageIcon(image));
+			shownPage = pageNum;
+		}, () -> noSuchPage(pageNum), () -> pageFailed(pageNum));
+	}
+	
+	// The page turned out not to exist after the labels moved to it
+	private void noSuchPage(int missingPage) {
+		if (missingPage > shownPage)
+			JOptionPane.showMessageDialog(frame, "End of document", "Error reading page", JOptionPane.ERROR_MESSAGE);
+		else
+			JOptionPane.showMessageDialog(frame, "Begin of document", "Error reading page", JOptionPane.ERROR_MESSAGE);
+		backToShownPage();
+	}
+	
+	// The page could not be rendered after the labels moved to it
+	private void pageFailed(int failedPage) {
+		JOptionPane.showMessageDialog(frame, "Page " + failedPage + " could not be rendered", 
+				"Error reading page", JOptionPane.ERROR_MESSAGE);
+		backToShownPage();
+	}
+	
+	private void backToShownPage() {
+		pageNum = shownPage;
 		updateBookmarkLabel(pageNum, documentUIDelegate.isBookmarked(pageNum));
 		updatePageActionLabel(pageNum, documentUIDelegate.hasAnnotations(pageNum));
 	}
@@ -210,6 +249,12 @@ public class DocumentUI {
 			public void mouseClicked(MouseEvent arg0) {
 				((JSplitPane) DocumentUI.this.frame.getContentPane()).setRightComponent(oldRightComponent);
 				documentUIDelegate.deleteListeners();
+				pageRenderer.close();
+				// the parsed document is kept in the pool for a while, in case it is opened again
+				IViewer viewer = documentLabel.getDocumentViewer();
+				synchronized (viewer) {
+					viewer.close();
+				}
 				documentUIDelegate.setLastPageVisited(pageNum);
     	        SwingUtilities.updateComponentTreeUI(DocumentUI.this.frame.getContentPane());
 			}
@@ -16,12 +16,15 @@ import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.Timer;
 
 import leibooks.services.viewer.IViewer;
@@ -30,6 +33,22 @@ import leibooks.services.viewer.NoSuchPageException;
 @SuppressWarnings("serial")
 public class DocumentUIFullscreen extends JFrame {
 
+	// a coarse page to show in a label until the page is rendered
+	private record Coarse(JLabel label, Image image) {
+	}
+
+	// the pages rendered to be shown, and the page number once they are shown
+	private static final class Pages {
+		private int pageNum;
+		private Image left;
+		private Image right;
+		private boolean onePageOnly;
+
+		private Pages(int pageNum) {
+			this.pageNum = pageNum;
+		}
+	}
+
 	private JLabel leftPageF;
 	private JLabel rightPageF;
 	private JPanel twoPagePanel;
@@ -41,9 +60,9 @@ public class DocumentUIFullscreen extends JFrame {
 
 	private int pageNum;
 	private DocumentLabel documentLabel;
-
 	private Dimension screenSize;
 	private DocumentUI documentUI;
+	private int showing;
 
 
 	public DocumentUIFullscreen(DocumentLabel documentLabel, DocumentUI documentUI) {
@@ -162,44 +181,125 @@ public class DocumentUIFullscreen extends JFrame {
 		showPages();
 	}
 
-	private void showPages () {
-		IViewer viewer = documentLabel.getDocumentViewer();
+	// viewers are not thread-safe, and the document's viewer also renders pages in the background 
+	private static Image getPage(IViewer viewer, int pageNum, int width, int height) throws NoSuchPageException {
+		synchronized (viewer) {
+			return (Image) viewer.getPage(pageNum, width, height);
+		}
+	}
+
+	// previews are not rendered, so they are got without the lock of the viewer
+	private static boolean showPreview(JLabel pageLabel, IViewer viewer, int pageNum, int width, int height) {
+		Image preview = (Image) viewer.getPreview(pageNum, width, height);
+		if (preview != null)
+			pageLabel.setIcon(new ImageIcon(preview));
+		return preview != null;
+	}
+
+	// renders the pages from the given one, moving back when they are missing; 
+	// the images of the pages that are not rendered are left null
+	private static Pages render(IViewer viewer, int pageNum, int numPages, int width, int height) {
+		Pages pages = new Pages(pageNum);
 		if (numPages == 2) {
 			try {
-				leftPageF.setIcon(new ImageIcon((Image) viewer.getPage(pageNum, 
-						screenSize.width / numPages, screenSize.height)));
+				pages.left = getPage(viewer, pages.pageNum, width, height);
 			} catch (NoSuchPageException e) {
 				// Ignore error in full screen mode
-				pageNum -= 2;
+				pages.pageNum -= 2;
 			}
 			try {
-				rightPageF.setIcon(new ImageIcon((Image) viewer.getPage(pageNum + 1, 
-						screenSize.width / numPages, screenSize.height)));
+				pages.right = getPage(viewer, pages.pageNum + 1, width, height);
 			} catch (NoSuchPageException e) {
 				// Ignore error in full screen mode
-				pageNum -= 1;
-				System.out.println(pageNum);
+				pages.pageNum -= 1;
 				try {
-					leftPageF.setIcon(new ImageIcon((Image) viewer.getPage(pageNum, 
-							screenSize.width / numPages, screenSize.height)));
-					rightPageF.setIcon(new ImageIcon((Image) viewer.getPage(pageNum + 1, 
-							screenSize.width / numPages, screenSize.height)));
+					pages.left = getPage(viewer, pages.pageNum, width, height);
+					pages.right = getPage(viewer, pages.pageNum + 1, width, height);
 				} catch (NoSuchPageException e1) {
 					// One page only?!?!
-					pageNum = 1;
-					onePage();
+					pages.onePageOnly = true;
 				}
 			}
 		} 
 		else {
 			try {
-				onePage.setIcon(new ImageIcon((Image) viewer.getPage(pageNum, 
-						screenSize.width, screenSize.height)));
+				pages.left = getPage(viewer, pages.pageNum, width, height);
 			} catch (NoSuchPageException e) {
 				// Ignore error in full screen mode
-				pageNum -= 1;
+				pages.pageNum -= 1;
 			}
 		}
+		return pages;
+	}
+
+	private void showPages (Pages pages) {
+		pageNum = pages.pageNum;
+		if (pages.onePageOnly) {
+			pageNum = 1;
+			onePage();
+		} else if (numPages == 2) {
+			if (pages.left != null)
+				leftPageF.setIcon(new ImageIcon(pages.left));
+			if (pages.right != null)
+				rightPageF.setIcon(new ImageIcon(pages.right));
+		} else if (pages.left != null) 
+			onePage.setIcon(new ImageIcon(pages.left));
+	}
+
+	// shows the previews of the pages at once, or else their coarse versions when
+	// they are rendered in the background, and the pages when they are rendered, 
+	// unless other pages are shown meanwhile
+	private void showPages () {
+		IViewer viewer = documentLabel.getDocumentViewer();
+		int first = pageNum;
+		int pages = numPages;
+		int width = screenSize.width / numPages;
+		int height = screenSize.height;
+		JLabel[] labels = numPages == 2 ? new JLabel[] {leftPageF, rightPageF} : new JLabel[] {onePage};
+		boolean[] previewed = new boolean[labels.length];
+		for (int i = 0; i < labels.length; i++)
+			previewed[i] = showPreview(labels[i], viewer, first + i, width, height);
+		int request = ++showing;
+		new SwingWorker<Pages, Coarse>() {
+			private boolean shown;
+
+			@Override
+			protected Pages doInBackground() {
+				for (int i = 0; i < labels.length; i++) {
+					if (!previewed[i]) {
+						try {
+							publish(new Coarse(labels[i], PageRenderer.renderCoarse(viewer, first + i, width, height)));
+						} catch (NoSuchPageException e) {
+							// rendering the pages finds out
+						}
+					}
+				}
+				return render(viewer, first, pages, width, height);
+			}
+
+			@Override
+			protected void process(List<Coarse> coarse) {
+				// may come after the pages
+				if (request != showing || shown)
+					return;
+				for (Coarse c : coarse)
+					c.label().setIcon(new ImageIcon(c.image()));
+			}
+
+			@Override
+			protected void done() {
+				shown = true;
+				if (request != showing)
+					return;
+				try {
+					showPages(get());
+				} catch (ExecutionException e) {
+					// the previews stay
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}.execute();
 	}
 
 
@@ -0,0 +1,319 @@
+package leibooks.ui.swing;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+
+import leibooks.services.viewer.IViewer;
+import leibooks.services.viewer.NoSuchPageException;
+
+/**
+ * Renders the pages of a document, at a fixed size, on a thread of its own
+ * instead of the event dispatch thread.
+ *
+ * <p>The requested page is rendered first, and then the pages around it, up to
+ * a number of pages ahead and behind, so turning to them is instant. The pages
+ * that move out of that window when the user jumps elsewhere are not rendered,
+ * and their images are dropped. While the requested page renders, its preview
+ * is shown: the one the viewer has at hand, if any, or else the page rendered 
+ * at a quarter of its size, and scaled up, before the page itself. Viewers are
+ * not thread-safe, so a page is rendered holding the lock of the viewer, on 
+ * the thread of the renderer, never on the event dispatch thread.</p>
+ */
+final class PageRenderer {
+
+	/**
+	 * The number of pages rendered ahead and behind the requested one
+	 */
+	static final int PREFETCH = 2;
+
+	/**
+	 * The times a coarse page is smaller than the page, in each dimension
+	 */
+	static final int COARSE_SCALE = 4;
+
+	private final IViewer viewer;
+	private final int width;
+	private final int height;
+	private final int prefetch;
+
+	// guarded by this
+	private final Map<Integer, Image> rendered = new HashMap<>();
+	private final Set<Integer> failed = new HashSet<>();
+	private int lastPage = Integer.MAX_VALUE;
+	private int current;
+	private int requests;
+	private Consumer<Image> onReady;
+	private Runnable onNoSuchPage;
+	private Runnable onFailure;
+	private Image preview;
+	private boolean closed;
+
+	/**
+	 * Starts rendering the pages requested to the given viewer.
+	 *
+	 * @param viewer the viewer of the document
+	 * @param width the width of the pages
+	 * @param height the height of the pages
+	 * @param prefetch the number of pages rendered ahead and behind the requested one
+	 * @requires viewer != null && viewer has a document && prefetch >= 0
+	 */
+	PageRenderer(IViewer viewer, int width, int height, int prefetch) {
+		this.viewer = viewer;
+		this.width = width;
+		this.height = height;
+		this.prefetch = prefetch;
+		Thread worker = new Thread(this::renderPages, "page-renderer");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * @param pageNum the page number
+	 * @return false if the page is known not to exist
+	 */
+	synchronized boolean mayExist(int pageNum) {
+		return pageNum >= 1 && pageNum <= lastPage;
+	}
+
+	/**
+	 * Meant for tests: a rendered page is shown right away when requested.
+	 *
+	 * @param pageNum the page number
+	 * @return whether the image of the page is rendered and kept
+	 */
+	synchronized boolean isRendered(int pageNum) {
+		return rendered.containsKey(pageNum);
+	}
+
+	/**
+	 * Requests a page. On the event dispatch thread, onReady gets its image, 
+	 * onNoSuchPage runs if the document has no such page, or onFailure runs if
+	 * the page could not be rendered; right away, if the page was prefetched or
+	 * failed before. Otherwise, onReady may first get a preview of the page, 
+	 * right away too. If another page is requested before, none of them runs.
+	 *
+	 * @param pageNum the page number
+	 * @param onReady what to do with the image of the page
+	 * @param onNoSuchPage what to do if there is no such page
+	 * @param onFailure what to do if the page could not be rendered
+	 * @requires called on the event dispatch thread
+	 */
+	void request(int pageNum, Consumer<Image> onReady, Runnable onNoSuchPage, Runnable onFailure) {
+		Image image;
+		boolean exists;
+		boolean broken;
+		synchronized (this) {
+			current = pageNum;
+			requests++;
+			rendered.keySet().removeIf(p -> !inWindow(p));
+			image = rendered.get(pageNum);
+			exists = mayExist(pageNum);
+			broken = failed.contains(pageNum);
+			boolean pending = image == null && exists && !broken;
+			this.onReady = pending ? onReady : null;
+			this.onNoSuchPage = pending ? onNoSuchPage : null;
+			this.onFailure = pending ? onFailure : null;
+			preview = null;
+			notifyAll();
+		}
+		if (image != null) {
+			onReady.accept(image);
+		} else if (!exists) {
+			onNoSuchPage.run();
+		} else if (broken) {
+			onFailure.run();
+		} else {
+			showPreview(pageNum, onReady);
+		}
+	}
+
+	/**
+	 * Stops rendering pages and drops the rendered ones.
+	 */
+	synchronized void close() {
+		closed = true;
+		rendered.clear();
+		onReady = null;
+		onNoSuchPage = null;
+		onFailure = null;
+		preview = null;
+		notifyAll();
+	}
+
+	// the viewer does not render previews, so they are got without its lock
+	private void showPreview(int pageNum, Consumer<Image> onReady) {
+		Image image = (Image) viewer.getPreview(pageNum, width, height);
+		if (image == null) {
+			return;
+		}
+		synchronized (this) {
+			if (closed || rendered.containsKey(pageNum)) {
+				// the page was rendered meanwhile, and is on its way
+				return;
+			}
+			preview = image;
+		}
+		onReady.accept(image);
+	}
+
+	private void renderPages() {
+		try {
+			while (true) {
+				int pageNum;
+				synchronized (this) {
+					while (!closed && nextPage() == 0) {
+						wait();
+					}
+					if (closed) {
+						return;
+					}
+					pageNum = nextPage();
+				}
+				render(pageNum);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return the page in the window closest to the current one that is still to
+	 *         be rendered, the next pages before the previous ones, or 0 if none
+	 */
+	private int nextPage() {
+		for (int d = 0; d <= prefetch; d++) {
+			if (toRender(current + d)) {
+				return current + d;
+			}
+			if (toRender(current - d)) {
+				return current - d;
+			}
+		}
+		return 0;
+	}
+
+	private boolean toRender(int pageNum) {
+		return mayExist(pageNum) && !rendered.containsKey(pageNum) && !failed.contains(pageNum);
+	}
+
+	private boolean inWindow(int pageNum) {
+		return Math.abs(pageNum - current) <= prefetch;
+	}
+
+	private void render(int pageNum) {
+		// the requested page is shown coarse first, unless it has a preview
+		int coarseRequest;
+		synchronized (this) {
+			coarseRequest = pageNum == current && onReady != null && preview == null ? requests : 0;
+		}
+		Image image = null;
+		boolean broken = false;
+		try {
+			if (coarseRequest != 0) {
+				showCoarse(coarseRequest, renderCoarse(viewer, pageNum, width, height));
+			}
+			synchronized (viewer) {
+				image = (Image) viewer.getPage(pageNum, width, height);
+			}
+		} catch (NoSuchPageException e) {
+			// the pages after a missing one are missing too
+		} catch (RuntimeException e) {
+			System.out.println("-------->> Page " + pageNum + " could not be rendered: " + e);
+			broken = true;
+		}
+		Consumer<Image> ready;
+		Runnable missing;
+		Runnable failure;
+		int request;
+		boolean shown;
+		synchronized (this) {
+			if (broken) {
+				failed.add(pageNum);
+			} else if (image == null) {
+				lastPage = Math.min(lastPage, pageNum - 1);
+			} else if (!closed && inWindow(pageNum)) {
+				rendered.put(pageNum, image);
+			}
+			if (pageNum != current || onReady == null) {
+				return;
+			}
+			ready = onReady;
+			missing = onNoSuchPage;
+			failure = onFailure;
+			request = requests;
+			// a preview that was the page already is not shown again
+			shown = image == preview;
+		}
+		Image page = image;
+		boolean error = broken;
+		SwingUtilities.invokeLater(() -> {
+			synchronized (this) {
+				if (closed || request != requests) {
+					return;
+				}
+				onReady = null;
+				onNoSuchPage = null;
+				onFailure = null;
+			}
+			if (error) {
+				failure.run();
+			} else if (page == null) {
+				missing.run();
+			} else if (!shown) {
+				ready.accept(page);
+			}
+		});
+	}
+
+	// shows a coarse version of the requested page, unless it has a preview by now
+	private void showCoarse(int request, Image coarse) {
+		SwingUtilities.invokeLater(() -> {
+			Consumer<Image> ready;
+			synchronized (this) {
+				if (closed || request != requests || onReady == null || preview != null) {
+					return;
+				}
+				preview = coarse;
+				ready = onReady;
+			}
+			ready.accept(coarse);
+		});
+	}
+
+	/**
+	 * Renders a page at a quarter of the given size, and scales it up to fit 
+	 * the size, holding the lock of the viewer while it renders. 
+	 *
+	 * @param viewer the viewer of the document
+	 * @param pageNum the page number
+	 * @param width the width of the page
+	 * @param height the height of the page
+	 * @return the coarse page
+	 * @throws NoSuchPageException if the document has no such page
+	 * @requires viewer != null && viewer has a document
+	 */
+	static Image renderCoarse(IViewer viewer, int pageNum, int width, int height) throws NoSuchPageException {
+		Image coarse;
+		synchronized (viewer) {
+			coarse = (Image) viewer.getPage(pageNum, Math.max(width / COARSE_SCALE, 1), 
+					Math.max(height / COARSE_SCALE, 1));
+		}
+		double scale = Math.min((double) width / coarse.getWidth(null), (double) height / coarse.getHeight(null));
+		BufferedImage page = new BufferedImage(Math.max((int) (coarse.getWidth(null) * scale), 1), 
+				Math.max((int) (coarse.getHeight(null) * scale), 1), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = page.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.drawImage(coarse, 0, 0, page.getWidth(), page.getHeight(), null);
+		g.dispose();
+		return page;
+	}
+}
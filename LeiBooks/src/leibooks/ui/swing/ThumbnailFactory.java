@@ -1,13 +1,25 @@
 package leibooks.ui.swing;
 
+import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
 
 import leibooks.app.AppProperties;
 import leibooks.domain.facade.IDocument;
@@ -15,6 +27,18 @@ import leibooks.services.viewer.IViewer;
 import leibooks.services.viewer.NoSuchPageException;
 import leibooks.ui.delegates.DocumentUIDelegate;
 
+/**
+ * Produces the thumbnails of documents, in the background, from the thumbnail
+ * store or rendering their first page.
+ * 
+ * The recently used thumbnails are cached, up to a number of bytes of their 
+ * images (thumbnail_cache_megabytes), and the least recently used ones are 
+ * evicted first. The cache is keyed by the path of the document's file, so it
+ * does not keep documents alive, and the thumbnail of a document is released 
+ * when the document leaves the library. Thumbnails hold no viewer: the viewer 
+ * that renders one is closed and dropped, and a document's viewer is created 
+ * when it is opened.
+ */
 final class ThumbnailFactory {
 
 	/**
@@ -24,6 +48,15 @@ final class ThumbnailFactory {
 	
 	private static final ImageIcon NO_VIEWER_IMAGE = new ImageIcon ("images/no_viewer_available.png");
 
+	/**
+	 * Shown by a document label until the thumbnail of its document is ready
+	 */
+	public static final ImageIcon PLACEHOLDER = placeholder();
+	
+	private static final long COMPACTION_THRESHOLD = 4L * 1024 * 1024;
+	
+	private static final int WORKERS = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+
 	private static ThumbnailFactory instance;
 
 	public static ThumbnailFactory getInstance () {
@@ -32,39 +65,170 @@ final class ThumbnailFactory {
 		return instance;
 	}
 
-	private Map<IDocument, Thumbnail> thumbnails;
+	// guarded by this, in least recently used order
+	private LinkedHashMap<String, Thumbnail> thumbnails;
+	private long capacity;
+	private long footprint;
+	
+	private ExecutorService workers;
+	
+	private ThumbnailStore store;
 
 	private ThumbnailFactory () {
-		thumbnails = new HashMap<> ();
+		thumbnails = new LinkedHashMap<> (16, 0.75f, true);
+		capacity = AppProperties.INSTANCE.THUMBNAIL_CACHE_MEGABYTES * 1024L * 1024L;
+		AtomicInteger threads = new AtomicInteger();
+		workers = Executors.newFixedThreadPool(WORKERS, r -> {
+			Thread t = new Thread(r, "thumbnail-" + threads.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		File folder = new File(System.getProperty("user.dir") + File.separator + AppProperties.INSTANCE.FOLDER_DOCUMENT_FILES + 
+				File.separator + "thumbnails");
+		try {
+			store = new ThumbnailStore(folder);
+			workers.execute(this::compactStore);
+		} catch (IOException e) {
+			// Thumbnails are rendered every time, then
+			System.out.println("-------->> Thumbnail store in " + folder.toString().replace("\\", "/") + " could not be opened");
+		}
 	}
 
-	public Thumbnail getThumbnail (DocumentUIDelegate uiDelegate) throws IOException, NoSuchPageException {
+	/**
+	 * Produces the thumbnail of the delegate's document on a worker thread. 
+	 * Then, on the event dispatch thread, onReady gets the thumbnail, or onFailure 
+	 * the exception (IOException or NoSuchPageException) if it could not be produced. 
+	 * Neither runs if the request is cancelled before.
+	 * 
+	 * @param uiDelegate the delegate, set to the document
+	 * @param onReady what to do with the thumbnail
+	 * @param onFailure what to do if the thumbnail could not be produced
+	 * @return the request, to cancel it when the thumbnail is no longer needed
+	 * @requires called on the event dispatch thread
+	 */
+	public Future<Thumbnail> requestThumbnail (DocumentUIDelegate uiDelegate, 
+			Consumer<Thumbnail> onReady, Consumer<Exception> onFailure) {
+		// read from the delegate now, since it moves on to other documents
 		File dFile = uiDelegate.getDocumentFile();
-		File tbFile = new File(System.getProperty("user.dir") + File.separator + AppProperties.INSTANCE.FOLDER_DOCUMENT_FILES + File.separator + "thumbnails" + 
-				File.separator + "thumb_" + dFile.getName());
-		Optional<IViewer> v = uiDelegate.getViewer(uiDelegate.getDocumentType(), "swing");
-		if (!tbFile.exists() || dFile.lastModified() > tbFile.lastModified()) {
+		String mimeType = uiDelegate.getDocumentType();
+		FutureTask<Thumbnail> request = new FutureTask<>(() -> 
+				getThumbnail(dFile, () -> uiDelegate.getViewer(mimeType, "swing"))) {
+			@Override
+			protected void done() {
+				if (!isCancelled())
+					SwingUtilities.invokeLater(this::deliver);
+			}
+			
+			private void deliver() {
+				if (isCancelled())
+					return;
+				try {
+					onReady.accept(get());
+				} catch (ExecutionException e) {
+					onFailure.accept(e.getCause() instanceof Exception cause ? cause : e);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		workers.execute(request);
+		return request;
+	}
+
+	/**
+	 * Releases the thumbnail of a document, e.g. removed from the library
+	 * 
+	 * @param document the document
+	 */
+	public synchronized void release (IDocument document) {
+		Thumbnail tb = thumbnails.remove(key(document.getFile()));
+		if (tb != null)
+			footprint -= tb.bytes();
+	}
+	
+	/**
+	 * @return the bytes of the images of the cached thumbnails
+	 */
+	public synchronized long getFootprint () {
+		return footprint;
+	}
+	
+	/**
+	 * @return the number of cached thumbnails
+	 */
+	public synchronized int getCachedThumbnails () {
+		return thumbnails.size();
+	}
+
+	private Thumbnail getThumbnail (File dFile, Supplier<Optional<IViewer>> viewers) 
+			throws IOException, NoSuchPageException {
+		long lastModified = dFile.lastModified();
+		Thumbnail tb = cached(dFile);
+		if (tb != null && tb.lastModified == lastModified)
+			return tb;
+
+		Optional<BufferedImage> stored = store == null ? Optional.empty() : store.load(dFile);
+		if (stored.isPresent())
+			tb = new Thumbnail (new ImageIcon(stored.get()), lastModified);
+		else {
 			// criar thumbnail se nao existe ou se o ficheiro eh mais recente do que o thumbnail
-			Thumbnail tb;
-			if (v.isPresent()) {
+			Optional<IViewer> v = viewers.get();
+			if (v.isEmpty())
+				// not cached, as there is a single image for all
+				return new Thumbnail (NO_VIEWER_IMAGE, lastModified);
+			Image image;
+			try {
 				v.get().setDocument(dFile);
-				tb = new Thumbnail (tbFile, new ImageIcon((Image) v.get().getPage(1, THUMBNAIL_SIZE, THUMBNAIL_SIZE)), v.get());
-			} 
-			else 
-				tb = new Thumbnail (tbFile, NO_VIEWER_IMAGE, null);
-			tb.save();
-			thumbnails.put(uiDelegate.getDocument(), tb);
-		} 
-
-		if (thumbnails.get(uiDelegate.getDocument()) == null) {
-			Thumbnail tb = Thumbnail.load(tbFile);
-			if (v.isPresent())
-				tb.setViewer(v.get());
-			else 
-				tb.setViewer(null);
-			thumbnails.put(uiDelegate.getDocument(), tb);
+				// rendered once and kept here, so not to take the place of pages in the viewers' cache
+				image = (Image) v.get().getUncachedPage(1, THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+			} finally {
+				// the parsed document stays in the pool, for the viewer that opens it
+				v.get().close();
+			}
+			if (store != null)
+				store.save(dFile, image);
+			tb = new Thumbnail (new ImageIcon(image), lastModified);
 		}
-
-		return thumbnails.get(uiDelegate.getDocument());
+		cache(dFile, tb);
+		return tb;
+	}
+	
+	private synchronized Thumbnail cached (File dFile) {
+		return thumbnails.get(key(dFile));
+	}
+	
+	private synchronized void cache (File dFile, Thumbnail tb) {
+		Thumbnail previous = thumbnails.put(key(dFile), tb);
+		if (previous != null)
+			footprint -= previous.bytes();
+		footprint += tb.bytes();
+		Iterator<Thumbnail> lru = thumbnails.values().iterator();
+		while (footprint > capacity && lru.hasNext()) {
+			footprint -= lru.next().bytes();
+			lru.remove();
+		}
+	}
+	
+	private static String key (File dFile) {
+		return dFile.getAbsolutePath();
+	}
+	
+	// reclaims the space of superseded thumbnails, once there is enough of it
+	private void compactStore() {
+		try {
+			if (store.staleBytes() > COMPACTION_THRESHOLD)
+				store.compact();
+		} catch (IOException e) {
+			System.out.println("-------->> Thumbnail store could not be compacted");
+		}
+	}
+	
+	private static ImageIcon placeholder() {
+		BufferedImage image = new BufferedImage(THUMBNAIL_SIZE * 3 / 4, THUMBNAIL_SIZE, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = image.createGraphics();
+		g.setColor(new Color(130, 130, 130));
+		g.fillRect(0, 0, image.getWidth(), image.getHeight());
+		g.dispose();
+		return new ImageIcon(image);
 	}
 }
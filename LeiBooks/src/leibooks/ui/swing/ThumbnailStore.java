@@ -0,0 +1,450 @@
+package leibooks.ui.swing;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A store of the thumbnails of documents, packed in two files of a folder,
+ * thumbnails.&lt;generation&gt;.pack and thumbnails.&lt;generation&gt;.idx.
+ *
+ * <p>The pack file holds the thumbnails, one after the other, as PNG images.
+ * Each entry starts with the canonical path of the document and the time its
+ * file was last modified, which identify the thumbnail, so documents with the
+ * same name in different folders do not collide, and a thumbnail is stale once
+ * its document changes. Thumbnails are only appended: a new thumbnail of a
+ * document supersedes the previous one, which stays in the pack until it is
+ * compacted.</p>
+ *
+ * <p>The index file has a fixed-size record per entry of the pack, with a hash
+ * of the path, the time and the position of the entry. It is memory-mapped and
+ * read when the store is opened. The pack is memory-mapped too, and a thumbnail
+ * is decoded straight from the mapped pages, without copying its bytes.</p>
+ *
+ * <p>Compacting the store writes the files of the next generation and then
+ * switches to them, so a file is never replaced while thumbnails being decoded
+ * may still map it (which some platforms do not allow). The files of older
+ * generations are deleted when they can be, at the latest when the store is
+ * next opened.</p>
+ */
+final class ThumbnailStore {
+
+	private static final String PREFIX = "thumbnails.";
+	private static final String PACK_SUFFIX = ".pack";
+	private static final String INDEX_SUFFIX = ".idx";
+
+	private static final int PACK_MAGIC = 0x4c425450; // LBTP
+	private static final int INDEX_MAGIC = 0x4c425449; // LBTI
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+	// hash of the path, last modified time, position and length of the entry
+	private static final int RECORD_SIZE = 8 + 8 + 8 + 4;
+
+	private record Entry(long modified, long position, int length) {
+	}
+
+	private final Path folder;
+	private long generation;
+	private Path pack;
+	private Path index;
+	// the latest entry of each path hash
+	private final Map<Long, Entry> entries = new HashMap<>();
+	private FileChannel packChannel;
+	private FileChannel indexChannel;
+	private MappedByteBuffer mappedPack;
+	private long liveBytes;
+
+	/**
+	 * Opens the store in the given folder, creating its files if needed.
+	 *
+	 * @param folder the folder of the store
+	 * @throws IOException if the files cannot be opened
+	 * @requires folder != null
+	 */
+	ThumbnailStore(File folder) throws IOException {
+		this.folder = folder.toPath();
+		Files.createDirectories(this.folder);
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(this.folder, PREFIX + "*" + PACK_SUFFIX)) {
+			for (Path file : files) {
+				// a compaction cut short may have left a pack without its index
+				if (Files.exists(indexPath(generationOf(file)))) {
+					generation = Math.max(generation, generationOf(file));
+				}
+			}
+		}
+		open(generation);
+		deleteOlderGenerations();
+	}
+
+	/**
+	 * Loads the thumbnail of a document, if stored for its current version.
+	 *
+	 * @param document the document file
+	 * @return the thumbnail, if stored and not stale
+	 */
+	Optional<BufferedImage> load(File document) {
+		String path = canonicalPath(document);
+		ByteBuffer image;
+		synchronized (this) {
+			Entry entry = entries.get(hash(path));
+			if (entry == null || entry.modified() != document.lastModified()) {
+				return Optional.empty();
+			}
+			try {
+				image = imageOf(entry, path);
+			} catch (IOException e) {
+				return Optional.empty();
+			}
+		}
+		if (image == null) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.ofNullable(ImageIO.read(new ByteBufferInputStream(image)));
+		} catch (IOException e) {
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Stores the thumbnail of a document, for its current version.
+	 *
+	 * @param document the document file
+	 * @param image the thumbnail
+	 * @throws IOException if the thumbnail cannot be written
+	 * @requires document != null && image != null
+	 */
+	void save(File document, Image image) throws IOException {
+		String path = canonicalPath(document);
+		long modified = document.lastModified();
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		ImageIO.write(toBufferedImage(image), "png", png);
+		byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+
+		ByteBuffer entry = ByteBuffer.allocate(4 + pathBytes.length + 8 + 4 + png.size());
+		entry.putInt(pathBytes.length).put(pathBytes).putLong(modified).putInt(png.size());
+		entry.put(png.toByteArray()).flip();
+		synchronized (this) {
+			long position = packChannel.size();
+			writeFully(packChannel, entry, position);
+			ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+			record.putLong(hash(path)).putLong(modified).putLong(position).putInt(entry.limit()).flip();
+			writeFully(indexChannel, record, indexChannel.size());
+			add(hash(path), new Entry(modified, position, entry.limit()));
+		}
+	}
+
+	/**
+	 * @return the pack file of the current generation
+	 */
+	synchronized Path packFile() {
+		return pack;
+	}
+
+	/**
+	 * @return the bytes of the pack taken by entries superseded by newer ones
+	 * @throws IOException if the size of the pack cannot be read
+	 */
+	synchronized long staleBytes() throws IOException {
+		return packChannel.size() - HEADER_SIZE - liveBytes;
+	}
+
+	/**
+	 * Writes the files of the next generation of the store with only the latest
+	 * thumbnail of each document whose file still exists and was not modified
+	 * since, and switches to them. If they cannot be written, the store goes on
+	 * with its current files.
+	 *
+	 * @throws IOException if the files cannot be written
+	 */
+	synchronized void compact() throws IOException {
+		long next = generation + 1;
+		Path newPack = packPath(next);
+		Path newIndex = indexPath(next);
+		Path packTmp = newPack.resolveSibling(newPack.getFileName() + ".tmp");
+		Path indexTmp = newIndex.resolveSibling(newIndex.getFileName() + ".tmp");
+		try {
+			write(packTmp, indexTmp);
+			// new names, which nothing maps
+			Files.move(packTmp, newPack, StandardCopyOption.ATOMIC_MOVE);
+			Files.move(indexTmp, newIndex, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | RuntimeException e) {
+			deleteQuietly(packTmp);
+			deleteQuietly(indexTmp);
+			deleteQuietly(newPack);
+			deleteQuietly(newIndex);
+			throw e;
+		}
+		long current = generation;
+		close();
+		try {
+			open(next);
+		} catch (IOException | RuntimeException e) {
+			close();
+			open(current);
+			deleteQuietly(newPack);
+			deleteQuietly(newIndex);
+			throw e;
+		}
+		deleteOlderGenerations();
+	}
+
+	private void write(Path newPack, Path newIndex) throws IOException {
+		try (FileChannel packOut = FileChannel.open(newPack, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+				FileChannel indexOut = FileChannel.open(newIndex, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			writeFully(packOut, header(PACK_MAGIC), 0);
+			writeFully(indexOut, header(INDEX_MAGIC), 0);
+			for (Iterator<Map.Entry<Long, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<Long, Entry> e = it.next();
+				Entry entry = e.getValue();
+				String path = pathOf(entry);
+				File document = path == null ? null : new File(path);
+				if (document == null || document.lastModified() != entry.modified()) {
+					continue;
+				}
+				long position = packOut.size();
+				// transferTo writes at the position of the channel
+				packOut.position(position);
+				long copied = 0;
+				while (copied < entry.length()) {
+					copied += packChannel.transferTo(entry.position() + copied, entry.length() - copied, packOut);
+				}
+				ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+				record.putLong(e.getKey()).putLong(entry.modified()).putLong(position).putInt(entry.length()).flip();
+				writeFully(indexOut, record, indexOut.size());
+			}
+			packOut.force(true);
+			indexOut.force(true);
+		}
+	}
+
+	/**
+	 * Closes the files of the store.
+	 *
+	 * @throws IOException if the files cannot be closed
+	 */
+	synchronized void close() throws IOException {
+		mappedPack = null;
+		entries.clear();
+		liveBytes = 0;
+		try {
+			packChannel.close();
+		} finally {
+			indexChannel.close();
+		}
+	}
+
+	private void open(long generation) throws IOException {
+		this.generation = generation;
+		pack = packPath(generation);
+		index = indexPath(generation);
+		packChannel = FileChannel.open(pack, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			indexChannel = FileChannel.open(index, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+		} catch (IOException e) {
+			packChannel.close();
+			throw e;
+		}
+		if (!hasHeader(packChannel, PACK_MAGIC) || !hasHeader(indexChannel, INDEX_MAGIC)) {
+			// new or unreadable files: start over
+			packChannel.truncate(0);
+			indexChannel.truncate(0);
+			writeFully(packChannel, header(PACK_MAGIC), 0);
+			writeFully(indexChannel, header(INDEX_MAGIC), 0);
+			return;
+		}
+		long packSize = packChannel.size();
+		// a record cut short by a crash is ignored
+		long records = (indexChannel.size() - HEADER_SIZE) / RECORD_SIZE;
+		MappedByteBuffer mappedIndex = indexChannel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+				records * RECORD_SIZE);
+		for (long i = 0; i < records; i++) {
+			long hash = mappedIndex.getLong();
+			Entry entry = new Entry(mappedIndex.getLong(), mappedIndex.getLong(), mappedIndex.getInt());
+			if (entry.position() >= HEADER_SIZE && entry.position() + entry.length() <= packSize) {
+				add(hash, entry);
+			}
+		}
+	}
+
+	// the files of older generations may still be mapped on some platforms, and are deleted later
+	private void deleteOlderGenerations() throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, PREFIX + "*")) {
+			for (Path file : files) {
+				if (generationOf(file) < generation) {
+					deleteQuietly(file);
+				}
+			}
+		}
+	}
+
+	private Path packPath(long generation) {
+		return folder.resolve(PREFIX + generation + PACK_SUFFIX);
+	}
+
+	private Path indexPath(long generation) {
+		return folder.resolve(PREFIX + generation + INDEX_SUFFIX);
+	}
+
+	// the generation of a file of the store, or -1 if it is not one
+	private static long generationOf(Path file) {
+		String name = file.getFileName().toString();
+		int end = name.indexOf('.', PREFIX.length());
+		try {
+			return end < 0 ? -1 : Long.parseLong(name.substring(PREFIX.length(), end));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			// deleted when the store is next opened
+		}
+	}
+
+	private void add(long hash, Entry entry) {
+		Entry previous = entries.put(hash, entry);
+		if (previous != null) {
+			liveBytes -= previous.length();
+		}
+		liveBytes += entry.length();
+	}
+
+	// the PNG bytes of the entry, as a view of the mapped pack, or null if the entry is of another path
+	private ByteBuffer imageOf(Entry entry, String path) throws IOException {
+		ByteBuffer bytes = entryBytes(entry);
+		byte[] pathBytes = new byte[bytes.getInt()];
+		bytes.get(pathBytes);
+		if (!path.equals(new String(pathBytes, StandardCharsets.UTF_8))) {
+			return null;
+		}
+		bytes.getLong();
+		int length = bytes.getInt();
+		return bytes.slice(bytes.position(), length);
+	}
+
+	private String pathOf(Entry entry) throws IOException {
+		ByteBuffer bytes = entryBytes(entry);
+		byte[] pathBytes = new byte[bytes.getInt()];
+		bytes.get(pathBytes);
+		return new String(pathBytes, StandardCharsets.UTF_8);
+	}
+
+	private ByteBuffer entryBytes(Entry entry) throws IOException {
+		if (mappedPack == null || entry.position() + entry.length() > mappedPack.capacity()) {
+			// remapped as the pack grows
+			mappedPack = packChannel.map(FileChannel.MapMode.READ_ONLY, 0, packChannel.size());
+		}
+		return mappedPack.slice((int) entry.position(), entry.length());
+	}
+
+	private static boolean hasHeader(FileChannel channel, int magic) throws IOException {
+		if (channel.size() < HEADER_SIZE) {
+			return false;
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+			// reads the whole header
+		}
+		header.flip();
+		return header.getInt() == magic && header.getInt() == VERSION;
+	}
+
+	private static ByteBuffer header(int magic) {
+		return ByteBuffer.allocate(HEADER_SIZE).putInt(magic).putInt(VERSION).flip();
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer bytes, long position) throws IOException {
+		while (bytes.hasRemaining()) {
+			position += channel.write(bytes, position);
+		}
+	}
+
+	private static String canonicalPath(File file) {
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException e) {
+			return file.getAbsolutePath();
+		}
+	}
+
+	// 64-bit FNV-1a
+	private static long hash(String path) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private static BufferedImage toBufferedImage(Image image) {
+		if (image instanceof BufferedImage buffered) {
+			return buffered;
+		}
+		BufferedImage buffered = new BufferedImage(Math.max(image.getWidth(null), 1),
+				Math.max(image.getHeight(null), 1), BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = buffered.createGraphics();
+		g.drawImage(image, 0, 0, null);
+		g.dispose();
+		return buffered;
+	}
+
+	/**
+	 * Reads the bytes of a buffer, so ImageIO decodes an image from mapped memory.
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
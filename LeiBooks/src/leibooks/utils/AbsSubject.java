@@ -2,6 +2,9 @@ package leibooks.utils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @param <E>
@@ -9,10 +12,34 @@ import java.util.List;
  * Represents objects that are being observed by a list of 
  * listeners of events of type E.
  * 
+ * The list of listeners is copied on write, so listeners can be registered
+ * and unregistered while an event is being emitted, also by the listeners
+ * themselves; the event goes to the listeners registered when it was emitted.
+ * 
+ * By default the listeners process each event on the thread that emits it.
+ * With a dispatch executor, events are delivered on its threads instead,
+ * one at a time and in the order they were emitted (see EventBus).
+ * 
+ * Inside a transaction (see beginTransaction), events are buffered. When the
+ * outermost transaction ends, they are merged by coalesce and delivered: each
+ * event to the listeners, in order, and then the whole batch to the batch
+ * listeners (see BatchListener).
+ * 
+ * A transaction belongs to the thread that began it: only the events that
+ * thread emits are buffered, while the events of other threads are delivered
+ * as usual. A thread that begins a transaction while another thread has one
+ * open waits until that one ends.
+ * 
  */
 public abstract class AbsSubject<E extends Event> implements Subject<E> {
 	
-	protected List<Listener<E>> listeners = new ArrayList<>();
+	protected List<Listener<E>> listeners = new CopyOnWriteArrayList<>();
+	
+	private volatile Executor dispatcher;
+	
+	private volatile Thread owner;
+	private int transactions;
+	private List<E> buffered = new ArrayList<>();
 	
 	protected  AbsSubject() {}
 	
@@ -23,9 +50,79 @@ public abstract class AbsSubject<E extends Event> implements Subject<E> {
 	 */
 	@Override
 	public void emitEvent(E e) {
-		for (Listener<E> o : listeners) {
-			o.processEvent(e);
+		if (owner == Thread.currentThread()) {
+			synchronized (this) {
+				buffered.add(e);
+				return;
+			}
 		}
+		dispatch(List.of(e), false);
+	}
+	
+	/**
+	 * Starts buffering the events emitted, until the returned transaction is
+	 * closed. Transactions can be nested: the events are delivered when the
+	 * outermost one is closed. Only the events emitted by the calling thread
+	 * are buffered; if another thread has a transaction open, this waits for
+	 * it to end.
+	 * 
+	 * @return the transaction
+	 */
+	@Override
+	public EventTransaction beginTransaction() {
+		Thread current = Thread.currentThread();
+		synchronized (this) {
+			boolean interrupted = false;
+			while (owner != null && owner != current) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				current.interrupt();
+			}
+			if (transactions++ == 0) {
+				owner = current;
+				transactionStarted();
+			}
+		}
+		AtomicBoolean closed = new AtomicBoolean();
+		return () -> {
+			if (closed.compareAndSet(false, true)) {
+				commit();
+			}
+		};
+	}
+	
+	/**
+	 * Called when the outermost transaction begins, by the thread that owns it,
+	 * before any of its events are buffered. By default, does nothing.
+	 */
+	protected void transactionStarted() {
+		// nothing to prepare by default
+	}
+	
+	/**
+	 * Merges the events buffered in a transaction before they are delivered,
+	 * e.g. dropping events that undo each other. By default, they are not merged.
+	 * 
+	 * @param events the events emitted in the transaction, in order
+	 * @return the events to deliver, in order
+	 */
+	protected List<E> coalesce(List<E> events) {
+		return events;
+	}
+	
+	/**
+	 * Delivers the events of this subject on the threads of the given executor,
+	 * in the order they are emitted, or on the emitting thread if null.
+	 * 
+	 * @param executor the executor, e.g. EventBus.asyncExecutor(), or null
+	 */
+	public void setDispatchExecutor(Executor executor) {
+		this.dispatcher = executor == null ? null : new SerialExecutor(executor);
 	}
 	
 	/**
@@ -50,4 +147,50 @@ public abstract class AbsSubject<E extends Event> implements Subject<E> {
 			listeners.remove(obs);
 	}
 
+	private void commit() {
+		List<E> events;
+		synchronized (this) {
+			if (--transactions > 0) {
+				return;
+			}
+			events = buffered;
+			buffered = new ArrayList<>();
+			// still the owner, so no other thread can buffer events while merging
+			events = events.isEmpty() ? events : coalesce(events);
+			owner = null;
+			notifyAll();
+		}
+		if (!events.isEmpty()) {
+			dispatch(List.copyOf(events), true);
+		}
+	}
+	
+	private void dispatch(List<E> events, boolean batch) {
+		Executor executor = dispatcher;
+		if (executor == null) {
+			deliver(listeners, events, batch);
+		} else {
+			List<Listener<E>> snapshot = List.copyOf(listeners);
+			executor.execute(() -> deliver(snapshot, events, batch));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void deliver(List<Listener<E>> targets, List<E> events, boolean batch) {
+		for (E e : events) {
+			for (Listener<E> o : targets) {
+				if (!batch || !(o instanceof BatchListener)) {
+					o.processEvent(e);
+				}
+			}
+		}
+		if (batch) {
+			for (Listener<E> o : targets) {
+				if (o instanceof BatchListener) {
+					((BatchListener<E>) o).processBatch(events);
+				}
+			}
+		}
+	}
+
 }
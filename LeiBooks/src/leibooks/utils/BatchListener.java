@@ -0,0 +1,21 @@
+package leibooks.utils;
+
+import java.util.List;
+
+/**
+ * @param <E>
+ * 
+ * A listener that can process the events of a transaction (see EventTransaction)
+ * all at once. Listeners that are not batch listeners get the events of a
+ * transaction one by one.
+ */
+public interface BatchListener<E extends Event> extends Listener<E> {
+
+	/**
+	 * Process the given events, which occurred in this order
+	 * 
+	 * @param events the events to process, not empty
+	 */
+	public void processBatch(List<E> events);
+
+}
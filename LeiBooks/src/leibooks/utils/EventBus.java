@@ -0,0 +1,93 @@
+package leibooks.utils;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Ways of delivering events other than on the thread that emits them.
+ *
+ * <p>A subject delivers its events asynchronously, in the order they were
+ * emitted, after {@code subject.setDispatchExecutor(EventBus.asyncExecutor())}
+ * (see AbsSubject). A listener that updates the user interface is registered
+ * as {@code subject.registerListener(EventBus.onEventDispatchThread(listener))},
+ * so it gets the events on the Swing event dispatch thread, in the order they
+ * were emitted, and the emitter does not wait for it.</p>
+ */
+public final class EventBus {
+
+	private static final AtomicInteger THREADS = new AtomicInteger();
+	private static final ExecutorService ASYNC = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "event-bus-" + THREADS.incrementAndGet());
+		t.setDaemon(true);
+		return t;
+	});
+
+	private EventBus() {
+	}
+
+	/**
+	 * @return a pool of daemon threads shared by the subjects that deliver their
+	 *         events asynchronously
+	 */
+	public static Executor asyncExecutor() {
+		return ASYNC;
+	}
+
+	/**
+	 * Returns a listener that passes the events to the given listener on the
+	 * Swing event dispatch thread. The returned listeners of the same listener
+	 * are equal, so a listener registered this way can be unregistered with
+	 * {@code subject.unregisterListener(EventBus.onEventDispatchThread(listener))}.
+	 * The events of a transaction are passed together, as a batch if the given
+	 * listener is a BatchListener.
+	 *
+	 * @param <E> the type of the events
+	 * @param listener the listener
+	 * @requires listener != null
+	 * @return the listener on the event dispatch thread
+	 */
+	public static <E extends Event> Listener<E> onEventDispatchThread(Listener<E> listener) {
+		return new EdtListener<>(listener);
+	}
+
+	private static final class EdtListener<E extends Event> implements BatchListener<E> {
+
+		private final Listener<E> listener;
+
+		EdtListener(Listener<E> listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public void processEvent(E e) {
+			// always queued, even from the event dispatch thread, to keep the order of the events
+			SwingUtilities.invokeLater(() -> listener.processEvent(e));
+		}
+
+		@Override
+		public void processBatch(List<E> events) {
+			SwingUtilities.invokeLater(() -> {
+				if (listener instanceof BatchListener<E> batchListener) {
+					batchListener.processBatch(events);
+				} else {
+					events.forEach(listener::processEvent);
+				}
+			});
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof EdtListener<?> other && listener.equals(other.listener);
+		}
+
+		@Override
+		public int hashCode() {
+			return listener.hashCode();
+		}
+	}
+}
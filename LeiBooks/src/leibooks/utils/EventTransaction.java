@@ -0,0 +1,28 @@
+package leibooks.utils;
+
+/**
+ * A scope in which a subject buffers the events it emits, instead of delivering
+ * them. When the outermost transaction of the subject is closed, the buffered
+ * events are merged and delivered as a batch (see BatchListener).
+ *
+ * <pre>
+ * {@code
+ * EventTransaction transaction = document.beginTransaction();
+ * try {
+ *     for (int page : pages)
+ *         document.toggleBookmark(page);
+ * } finally {
+ *     transaction.close();
+ * }
+ * }
+ * </pre>
+ */
+@FunctionalInterface
+public interface EventTransaction extends AutoCloseable {
+
+	/**
+	 * Ends the transaction. Closing it again has no effect.
+	 */
+	@Override
+	void close();
+}
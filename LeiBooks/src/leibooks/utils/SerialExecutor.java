@@ -0,0 +1,54 @@
+package leibooks.utils;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * An executor that runs its tasks one at a time, in the order they were
+ * submitted, on the threads of another executor.
+ *
+ * Many serial executors can share a pool of threads: each keeps the order of
+ * its own tasks, and none holds a thread while it has no tasks to run.
+ */
+public final class SerialExecutor implements Executor {
+
+	private final Executor executor;
+	private final Queue<Runnable> tasks = new ArrayDeque<>();
+	private Runnable active;
+
+	/**
+	 * @param executor the executor that runs the tasks
+	 * @requires executor != null
+	 */
+	public SerialExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Runs the given task after the tasks submitted before it have run.
+	 *
+	 * @param task the task
+	 * @requires task != null
+	 */
+	@Override
+	public synchronized void execute(Runnable task) {
+		tasks.add(() -> {
+			try {
+				task.run();
+			} finally {
+				scheduleNext();
+			}
+		});
+		if (active == null) {
+			scheduleNext();
+		}
+	}
+
+	private synchronized void scheduleNext() {
+		active = tasks.poll();
+		if (active != null) {
+			executor.execute(active);
+		}
+	}
+}
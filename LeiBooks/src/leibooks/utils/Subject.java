@@ -31,4 +31,14 @@ public interface Subject<E extends Event> {
 	 */
 	void unregisterListener(Listener<E> obs);
 
+	/**
+	 * Starts buffering the events emitted, until the returned transaction is
+	 * closed. Subjects that do not buffer their events deliver them as usual.
+	 * 
+	 * @return the transaction
+	 */
+	default EventTransaction beginTransaction() {
+		return () -> { };
+	}
+
 }
\ No newline at end of file
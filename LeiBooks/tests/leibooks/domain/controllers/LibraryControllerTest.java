@@ -0,0 +1,121 @@
+package leibooks.domain.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import leibooks.domain.core.Document;
+import leibooks.domain.core.Library;
+import leibooks.domain.facade.IDocument;
+import leibooks.domain.facade.ImportReport;
+import leibooks.domain.facade.events.AddDocumentsEvent;
+import leibooks.domain.facade.events.LBEvent;
+
+class LibraryControllerTest {
+
+	@TempDir
+	Path folder;
+
+	private Library library;
+	private LibraryController controller;
+	private final List<LBEvent> events = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() throws IOException {
+		for (String name : List.of("Aula2.pdf", "ScarletTown.txt", "tulips2.jpg")) {
+			Files.copy(Path.of("doc_files", name), folder.resolve(name));
+		}
+		Files.createDirectory(folder.resolve("more"));
+		Files.copy(Path.of("doc_files", "TLXScale.pdf"), folder.resolve("more").resolve("TLXScale.pdf"));
+		library = new Library();
+		controller = new LibraryController(library);
+		controller.registerListener(events::add);
+	}
+
+	@Test
+	void testImportFolder() {
+		ImportReport report = controller.importFolder(folder, false);
+		assertEquals(3, report.getImported().size());
+		assertTrue(report.getFailures().isEmpty());
+		assertEquals(3, library.getNumberOfDocuments());
+		assertEquals(List.of("Aula2", "ScarletTown", "tulips2"), report.getImported().stream().map(IDocument::getTitle).toList());
+		assertEquals(1, events.size());
+		assertEquals(report.getImported(), ((AddDocumentsEvent) events.get(0)).getDocuments());
+	}
+
+	@Test
+	void testImportFolderRecursivelySkipsDocumentsInLibrary() {
+		controller.importDocument("Aula 02", folder.resolve("Aula2.pdf").toString());
+		ImportReport report = controller.importFolder(folder, true);
+		assertEquals(3, report.getImported().size());
+		assertEquals(List.of(folder.resolve("Aula2.pdf")), report.getFailures().stream().map(ImportReport.Result::path).toList());
+		assertEquals(4, library.getNumberOfDocuments());
+		assertEquals(Optional.of(13), library.getDocument(folder.resolve("Aula2.pdf").toString()).get().getNumberOfPages());
+	}
+
+	@Test
+	void testImportDocumentsReportsEachFile() {
+		Path missing = folder.resolve("missing.pdf");
+		Path text = folder.resolve("ScarletTown.txt");
+		ImportReport report = controller.importDocuments(List.of(text, missing, text));
+		assertEquals(List.of(text, missing, text), report.getResults().stream().map(ImportReport.Result::path).toList());
+		assertTrue(report.getResults().get(0).isImported());
+		assertFalse(report.getResults().get(1).isImported());
+		assertFalse(report.getResults().get(2).isImported());
+		assertEquals(1, library.getNumberOfDocuments());
+	}
+
+	@Test
+	void testInterruptedImportReportsWhatWasAdded() {
+		ImportReport report;
+		Thread.currentThread().interrupt();
+		try {
+			report = controller.importFolder(folder, true);
+		} finally {
+			Thread.interrupted();
+		}
+		assertEquals(4, report.getResults().size());
+		assertEquals(library.getNumberOfDocuments(), report.getImported().size());
+		for (IDocument doc : report.getImported()) {
+			assertTrue(library.getDocument(doc.getFile().getPath()).isPresent());
+		}
+		for (ImportReport.Result failure : report.getFailures()) {
+			assertEquals(Optional.of("interrupted"), failure.failure());
+		}
+	}
+
+	@Test
+	void testGetMatchesFindsSubstringsInLibraryOrder() {
+		Document lopes = new Document("Aula 01", "Antonia Lopes", LocalDate.now(), "application/pdf", "z.pdf", Optional.empty());
+		Document martins = new Document("Slides OR notes", "Francisco Martins", LocalDate.now(), "application/pdf", "a.pdf", Optional.empty());
+		Document both = new Document("Lopes and Martins", "", LocalDate.now(), "application/pdf", "m.pdf", Optional.empty());
+		library.addDocument(lopes);
+		library.addDocument(martins);
+		library.addDocument(both);
+
+		assertEquals(List.of(lopes, both), controller.getMatches("opes"));
+		assertEquals(List.of(lopes, both), controller.getMatches("LOP"));
+		assertEquals(List.of(martins), controller.getMatches("es OR no"));
+		assertEquals(List.of(martins, both), controller.getMatches("Martin"));
+		assertEquals(List.of(lopes, martins, both), controller.getMatches("a"));
+		assertEquals(List.of(), controller.getMatches("opes m"));
+		assertEquals(List.of(lopes, both), controller.getMatches("L.pes"));
+
+		library.removeDocument(lopes);
+		library.addDocument(lopes);
+		assertEquals(List.of(both, lopes), controller.getMatches("opes"));
+		assertEquals(List.of(both, lopes), controller.getMatches("Lopes"));
+	}
+}
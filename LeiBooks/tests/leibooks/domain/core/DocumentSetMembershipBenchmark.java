@@ -0,0 +1,87 @@
+package leibooks.domain.core;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Microbenchmark of the cost of set membership tests over documents, as done
+ * by the shelves. It compares the identity that resolves the file path on
+ * every call (as documents used to do) with the precomputed DocumentId.
+ * 
+ * Run it as a plain Java program; an optional argument gives the number of
+ * documents (default 100000).
+ */
+public final class DocumentSetMembershipBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	private DocumentSetMembershipBenchmark() {
+	}
+
+	/**
+	 * The document identity before DocumentId: every call to equals and
+	 * hashCode creates a File and resolves its absolute path.
+	 */
+	private record PathResolvingKey(String pathToFile) {
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof PathResolvingKey other
+					&& new File(pathToFile).getAbsolutePath()
+							.equals(new File(other.pathToFile).getAbsolutePath());
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(new File(pathToFile).getAbsolutePath());
+		}
+	}
+
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+		List<Document> docs = new ArrayList<>(n);
+		List<Document> probes = new ArrayList<>(n);
+		List<PathResolvingKey> keys = new ArrayList<>(n);
+		List<PathResolvingKey> keyProbes = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			String path = "doc_files" + File.separator + "folder" + (i % 100) + File.separator + "doc" + i + ".pdf";
+			docs.add(new Document("Title " + i, "Author", LocalDate.now(), "application/pdf", path, Optional.empty()));
+			probes.add(new Document("Title " + i, "Author", LocalDate.now(), "application/pdf", path, Optional.empty()));
+			keys.add(new PathResolvingKey(path));
+			keyProbes.add(new PathResolvingKey(path));
+		}
+
+		Set<Document> docSet = new LinkedHashSet<>(docs);
+		Set<PathResolvingKey> keySet = new HashSet<>(keys);
+
+		for (int round = 1; round <= ROUNDS; round++) {
+			long before = time(keySet, keyProbes);
+			long after = time(docSet, probes);
+			System.out.printf("round %d: %d lookups, path resolving %.1f ns/op, DocumentId %.1f ns/op%n",
+					round, n, (double) before / n, (double) after / n);
+		}
+	}
+
+	private static <T> long time(Set<T> set, List<T> probes) {
+		int found = 0;
+		long start = System.nanoTime();
+		for (T probe : probes) {
+			if (set.contains(probe)) {
+				found++;
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		if (found != probes.size()) {
+			throw new IllegalStateException("missing documents: " + (probes.size() - found));
+		}
+		return elapsed;
+	}
+}
@@ -8,11 +8,17 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
 
+import leibooks.domain.facade.events.DocumentEvent;
+import leibooks.domain.facade.events.ToggleBookmarkEvent;
+import leibooks.utils.EventTransaction;
+
 class DocumentTest {
 
 	@Test
@@ -129,6 +135,23 @@ class DocumentTest {
 		assertTrue(matches);
 	}
 
+	@Test
+	void testMatchesIgnoresCase() {
+		Document doc = new Document("Test Title", "Test Author", LocalDate.now(), "application/pdf", "TestFile.pdf", Optional.empty());
+		assertTrue(doc.matches("tITLe"));
+		assertTrue(doc.matches("title test"));
+		assertTrue(doc.matches("AUTH(or|ora)"));
+		assertFalse(doc.matches("^Author"));
+	}
+
+	@Test
+	void testMatchesAfterSetTitle() {
+		Document doc = new Document("Old Title", "Test Author", LocalDate.now(), "application/pdf", "TestFile.pdf", Optional.empty());
+		doc.setTitle("New Name");
+		assertTrue(doc.matches("new"));
+		assertFalse(doc.matches("Old"));
+	}
+
 	@Test
 	void testEqualsSame() {
 		Document doc1 = new Document("Test Title", "Test Author", LocalDate.now(), "application/pdf", "TestFile.pdf", Optional.of(10));
@@ -150,6 +173,16 @@ class DocumentTest {
 		assertFalse(doc1.equals(doc2));
 	}
 
+	@Test
+	void testEqualsSameCanonicalPath() {
+		Document doc1 = new Document("Test Title", "Test Author", LocalDate.now(), "application/pdf", "TestFile.pdf", Optional.empty());
+		Document doc2 = new Document("Test Title", "Test Author", LocalDate.now(), "application/pdf", "./docs/../TestFile.pdf", Optional.empty());
+		assertTrue(doc1.equals(doc2));
+		assertEquals(doc1.hashCode(), doc2.hashCode());
+		assertEquals(0, doc1.compareTo(doc2));
+		assertEquals(doc1.getId().id(), doc2.getId().id());
+	}
+
 	@Test
 	void testCompareToSame() {
 		Document doc1 = new Document("Test Title", "Test Author", LocalDate.now(), "application/pdf", "TestFile.pdf", Optional.of(10));
@@ -225,5 +258,72 @@ class DocumentTest {
 	    assertDoesNotThrow(() -> doc.removeAnnotation(1, 0)); // should not crash
 	}
 
+	@Test
+	@SuppressWarnings("try")
+	void testTogglesUndoneInTransactionAreDropped() {
+		LocalDate date = LocalDate.of(2025, 1, 1);
+		Document doc = new Document("Title", "Author", date, "application/pdf", "TestFile.pdf", Optional.of(10));
+		List<DocumentEvent> events = new ArrayList<>();
+		doc.registerListener(events::add);
+
+		try (EventTransaction t = doc.beginTransaction()) {
+			doc.toggleBookmark(1);
+			doc.toggleBookmark(1);
+			assertTrue(events.isEmpty());
+		}
+		assertTrue(events.isEmpty());
+		assertEquals(date, doc.getLastModifiedDate());
+
+		try (EventTransaction t = doc.beginTransaction()) {
+			doc.toggleBookmark(1);
+			doc.toggleBookmark(2);
+			doc.toggleBookmark(1);
+		}
+		assertEquals(1, events.size());
+		assertEquals(2, ((ToggleBookmarkEvent) events.get(0)).getPageNum());
+		assertEquals(LocalDate.now(), doc.getLastModifiedDate());
+	}
 
-}
\ No newline at end of file
+	@Test
+	void testTransactionWithOtherModificationsKeepsTheNewDate() {
+		LocalDate date = LocalDate.of(2025, 1, 1);
+		Document doc = new Document("Title", "Author", date, "application/pdf", "TestFile.pdf", Optional.of(10));
+
+		EventTransaction transaction = doc.beginTransaction();
+		try {
+			doc.toggleBookmark(1);
+			doc.setTitle("Other title");
+			doc.toggleBookmark(1);
+		} finally {
+			transaction.close();
+		}
+		assertEquals(LocalDate.now(), doc.getLastModifiedDate());
+	}
+
+	@Test
+	void testUnusedIdentitiesAreForgotten() throws InterruptedException {
+		DocumentId kept = DocumentId.of("kept.pdf");
+		int before = DocumentId.internedCount();
+		for (int i = 0; i < 10_000; i++) {
+			assertEquals(DocumentId.of("transient" + i + ".pdf"), DocumentId.of("transient" + i + ".pdf"));
+		}
+		long deadline = System.nanoTime() + 10_000_000_000L;
+		while (DocumentId.internedCount() > before && System.nanoTime() < deadline) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertTrue(DocumentId.internedCount() <= before);
+		// the ids of the forgotten identities are given again
+		assertTrue(DocumentId.of("fresh.pdf").id() < before + 1);
+		assertTrue(kept == DocumentId.of("./kept.pdf"));
+	}
+
+	@Test
+	void testRegexMatchesNonAsciiLettersInAnyCase() {
+		Document doc = new Document("émile zola", "ÉLODIE", LocalDate.now(), "application/pdf", "zola.pdf", Optional.of(5));
+		assertTrue(doc.matches("Émile.*"));
+		assertTrue(doc.matches("élodie$"));
+		assertTrue(doc.matches("ÉMILE"));
+		assertTrue(doc.matches("\\p{Lu}LODIE"));
+	}
+}
@@ -5,7 +5,10 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -14,6 +17,10 @@ import org.junit.jupiter.api.Test;
 
 import leibooks.domain.facade.DocumentProperties;
 import leibooks.domain.facade.IDocument;
+import leibooks.domain.facade.events.AddDocumentEvent;
+import leibooks.domain.facade.events.DocumentEvent;
+import leibooks.domain.facade.events.UpdateDocumentEvent;
+import leibooks.utils.EventTransaction;
 
 class LibraryTest {
 
@@ -45,6 +52,36 @@ class LibraryTest {
 	}
 
 
+	@Test
+	void testContainsAndGetDocumentByPath() {
+		MockDocument doc = new MockDocument("Test.jpg");
+		library.addDocument(doc);
+
+		assertTrue(library.contains(new MockDocument("Test.jpg", false)));
+		assertFalse(library.contains(new MockDocument("Other.jpg")));
+		assertTrue(library.getDocument("Test.jpg").isPresent());
+		assertEquals(doc, library.getDocument("Test.jpg").get());
+		assertFalse(library.getDocument("Other.jpg").isPresent());
+	}
+
+	@Test
+	void testIterationKeepsInsertionOrder() {
+		MockDocument doc1 = new MockDocument("B.jpg");
+		MockDocument doc2 = new MockDocument("A.jpg");
+		MockDocument doc3 = new MockDocument("C.jpg");
+		library.addDocument(doc1);
+		library.addDocument(doc2);
+		library.addDocument(doc3);
+		library.removeDocument(doc2);
+		library.addDocument(doc2);
+
+		Iterator<IDocument> it = library.iterator();
+		assertEquals(doc1, it.next());
+		assertEquals(doc3, it.next());
+		assertEquals(doc2, it.next());
+		assertFalse(it.hasNext());
+	}
+
 	@Test
 	void testDeleteExistingDocument() {
 		MockDocument doc = new MockDocument("Test.jpg");
@@ -121,6 +158,30 @@ class LibraryTest {
 	    assertEquals("abc.pdf", doc.getFile().getName()); // unchanged
 	}
 
+	@Test
+	@SuppressWarnings("try")
+	void testTransactionCoalescesEvents() {
+		MockDocument kept = new MockDocument("Kept.pdf");
+		MockDocument undone = new MockDocument("Undone.pdf");
+		MockDocument updated = new MockDocument("Updated.pdf");
+		library.addDocument(updated);
+		List<DocumentEvent> events = new ArrayList<>();
+		library.registerListener(events::add);
+		DocumentProperties props = new DocumentProperties(updated);
+		props.setTitle("New Title");
 
-
-}
\ No newline at end of file
+		try (EventTransaction t = library.beginTransaction()) {
+			library.addDocument(kept);
+			library.updateDocument(kept, new DocumentProperties(kept));
+			library.addDocument(undone);
+			library.removeDocument(undone);
+			library.updateDocument(updated, props);
+			library.updateDocument(updated, props);
+		}
+		assertEquals(2, events.size());
+		assertTrue(events.get(0) instanceof AddDocumentEvent);
+		assertEquals(kept, events.get(0).getDocument());
+		assertTrue(events.get(1) instanceof UpdateDocumentEvent);
+		assertEquals(updated, events.get(1).getDocument());
+	}
+}
@@ -0,0 +1,79 @@
+package leibooks.domain.metadatareader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MetadataCacheTest {
+
+	@TempDir
+	Path directory;
+
+	private Path pdf;
+	private MetadataCache cache;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		pdf = Files.copy(Path.of("doc_files", "TLXScale.pdf"), directory.resolve("scale.pdf"));
+		cache = new MetadataCache(directory.resolve("metadata.cache"));
+	}
+
+	@Test
+	void testHitWhenFileDidNotChange() throws FileNotFoundException {
+		IMetadataReader read = cache.getMetadataReader(pdf.toString());
+		IMetadataReader cached = cache.getMetadataReader(pdf.toString());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+		assertEquals(read.getMimeType(), cached.getMimeType());
+		assertEquals(read.getAuthors(), cached.getAuthors());
+		assertEquals(Optional.of(1), cached.getNumPages());
+		assertEquals(read.getModifiedDate(), cached.getModifiedDate());
+	}
+
+	@Test
+	void testMissWhenFileChanged() throws IOException {
+		cache.getMetadataReader(pdf.toString());
+		pdf.toFile().setLastModified(pdf.toFile().lastModified() - 60_000);
+		cache.getMetadataReader(pdf.toString());
+		assertEquals(2, cache.getMisses());
+		assertEquals(1, cache.size());
+		Files.delete(pdf);
+		assertThrows(FileNotFoundException.class, () -> cache.getMetadataReader(pdf.toString()));
+		// the entry of the file is dropped, as it no longer matches
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void testEntriesOfMissingFilesAreNotSaved() throws IOException {
+		Path other = Files.copy(pdf, directory.resolve("other.pdf"));
+		cache.getMetadataReader(pdf.toString());
+		cache.getMetadataReader(other.toString());
+		Files.delete(other);
+		cache.save();
+		assertEquals(1, cache.size());
+		MetadataCache loaded = new MetadataCache(directory.resolve("metadata.cache"));
+		assertEquals(1, loaded.size());
+		assertEquals(Optional.of(1), loaded.getMetadataReader(pdf.toString()).getNumPages());
+		assertEquals(1, loaded.getHits());
+	}
+
+	@Test
+	void testSaveAndLoad() throws IOException {
+		cache.getMetadataReader(pdf.toString());
+		cache.save();
+		MetadataCache loaded = new MetadataCache(directory.resolve("metadata.cache"));
+		assertEquals(1, loaded.size());
+		assertEquals(Optional.of(1), loaded.getMetadataReader(pdf.toString()).getNumPages());
+		assertEquals(1, loaded.getHits());
+		assertEquals(0, loaded.getMisses());
+	}
+}
@@ -0,0 +1,78 @@
+package leibooks.domain.metadatareader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MimeTypeSnifferTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testSniffDocumentFiles() throws FileNotFoundException {
+		assertEquals("application/pdf", MimeTypeSniffer.sniff("doc_files/Aula2.pdf"));
+		assertEquals("image/jpeg", MimeTypeSniffer.sniff("doc_files/tulips2.jpg"));
+		assertEquals("text/plain", MimeTypeSniffer.sniff("doc_files/ScarletTown.txt"));
+	}
+
+	@Test
+	void testSniffIgnoresFileName() throws IOException {
+		Path png = write("image.txt", new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0 });
+		Path gif = write("image.pdf", "GIF89a\1\0\1\0".getBytes(StandardCharsets.ISO_8859_1));
+		Path pdf = Files.copy(Path.of("doc_files", "TLXScale.pdf"), directory.resolve("scale"));
+		Path text = write("notes", "Olá, 世界\n".repeat(100).getBytes(StandardCharsets.UTF_8));
+		assertEquals("image/png", MimeTypeSniffer.sniff(png.toString()));
+		assertEquals("image/gif", MimeTypeSniffer.sniff(gif.toString()));
+		assertEquals("application/pdf", MimeTypeSniffer.sniff(pdf.toString()));
+		assertEquals("text/plain", MimeTypeSniffer.sniff(text.toString()));
+	}
+
+	@Test
+	void testPDFHeaderMustStartTheFile() throws IOException {
+		byte[] pdf = Files.readAllBytes(Path.of("doc_files", "TLXScale.pdf"));
+		Path blank = write("blank", concat("\r\n  ".getBytes(StandardCharsets.US_ASCII), pdf));
+		Path garbage = write("garbage", concat(new byte[] { 0, 5, (byte) 0xFF, 'x', 0 }, pdf));
+		Path quoted = write("quoted", "The header is %PDF-1.4 and then\n".getBytes(StandardCharsets.US_ASCII));
+		Path late = write("late", concat(new byte[MimeTypeSniffer.PDF_HEADER_SLACK + 1], pdf));
+		assertEquals("application/pdf", MimeTypeSniffer.sniff(blank.toString()));
+		assertEquals("application/pdf", MimeTypeSniffer.sniff(garbage.toString()));
+		assertEquals("text/plain", MimeTypeSniffer.sniff(quoted.toString()));
+		assertNotEquals("application/pdf", MimeTypeSniffer.sniff(late.toString()));
+	}
+
+	@Test
+	void testSniffBinary() throws IOException {
+		Path binary = write("data", new byte[] { 'a', 'b', 0, 1, 2, (byte) 0xFE });
+		assertEquals("", MimeTypeSniffer.sniff(binary.toString()));
+		assertThrows(FileNotFoundException.class, () -> MimeTypeSniffer.sniff(directory.resolve("missing").toString()));
+	}
+
+	@Test
+	void testReaderGetsSniffedType() throws IOException {
+		Path pdf = Files.copy(Path.of("doc_files", "TLXScale.pdf"), directory.resolve("scale.bin"));
+		IMetadataReader reader = MetadataReaderFactory.INSTANCE.createMetadataReader(pdf.toString());
+		assertEquals(PDFMetadataReaderAdapter.class, reader.getClass());
+		assertEquals("application/pdf", reader.getMimeType());
+	}
+
+	private static byte[] concat(byte[] first, byte[] second) {
+		byte[] result = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, result, first.length, second.length);
+		return result;
+	}
+
+	private Path write(String name, byte[] contents) throws IOException {
+		return Files.write(directory.resolve(name), contents);
+	}
+}
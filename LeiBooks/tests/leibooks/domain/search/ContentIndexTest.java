@@ -0,0 +1,156 @@
+package leibooks.domain.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import leibooks.domain.core.Document;
+import leibooks.domain.core.DocumentId;
+import leibooks.domain.core.Library;
+import leibooks.domain.facade.events.IndexProgressEvent;
+
+class ContentIndexTest {
+
+	@TempDir
+	Path directory;
+
+	private ContentIndex index;
+	private String slides;
+	private String lyrics;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		index = new ContentIndex(directory);
+		slides = DocumentId.canonicalPath("slides.pdf");
+		lyrics = DocumentId.canonicalPath("lyrics.txt");
+		index.addPage("slides.pdf", 10, 100, 1, "Desenho Centrado em Objectos");
+		index.addPage("slides.pdf", 10, 100, 2, "Programming in the large");
+		index.addPage("lyrics.txt", 20, 200, 1, "Scarlet town, the large river");
+	}
+
+	private static BitSet pages(int... pages) {
+		BitSet result = new BitSet();
+		for (int page : pages) {
+			result.set(page);
+		}
+		return result;
+	}
+
+	@Test
+	void testSearchPagesByPrefix() {
+		assertEquals(Map.of(slides, pages(1)), index.search("objec"));
+		assertEquals(Map.of(slides, pages(2), lyrics, pages(1)), index.search("LARGE"));
+		assertEquals(Map.of(slides, pages(1, 2)), index.search("desenho programming"));
+		assertTrue(index.search("nothing").isEmpty());
+	}
+
+	@Test
+	void testFlushAndReopen() throws IOException {
+		index.flush();
+		assertTrue(Files.exists(directory.resolve("segment-1.idx")));
+		ContentIndex reopened = new ContentIndex(directory);
+		assertEquals(2, reopened.getNumberOfDocuments());
+		assertEquals(Map.of(slides, pages(2), lyrics, pages(1)), reopened.search("large"));
+		assertTrue(reopened.isUpToDate("slides.pdf", 10, 100));
+		assertFalse(reopened.isUpToDate("slides.pdf", 11, 100));
+	}
+
+	@Test
+	void testRemoveAndReindexAfterFlush() throws IOException {
+		index.flush();
+		index.remove("lyrics.txt");
+		index.addPage("slides.pdf", 11, 120, 1, "Desenho de Classes");
+		assertEquals(Map.of(slides, pages(1)), index.search("desenho"));
+		assertTrue(index.search("large").isEmpty());
+		index.flush();
+		assertTrue(Files.exists(directory.resolve("segment-2.idx")));
+		ContentIndex reopened = new ContentIndex(directory);
+		assertEquals(1, reopened.getNumberOfDocuments());
+		assertEquals(Map.of(slides, pages(1)), reopened.search("classes"));
+		assertTrue(reopened.search("objectos").isEmpty());
+	}
+
+	@Test
+	void testFlushesWriteSegmentsThatAreMerged() throws IOException, InterruptedException {
+		index.flush();
+		for (int i = 0; i < 20; i++) {
+			index.addPage("notes" + i + ".txt", i, i, 1, "note number " + i);
+			if (i % 3 == 0) {
+				index.remove("notes" + (i / 2) + ".txt");
+			}
+			index.flush();
+		}
+		index.remove("lyrics.txt");
+		index.flush();
+		assertTrue(index.awaitMerges(10_000));
+		assertTrue(index.getNumberOfSegments() <= 8);
+		ContentIndex reopened = new ContentIndex(directory);
+		assertEquals(index.getNumberOfSegments(), reopened.getNumberOfSegments());
+		assertEquals(index.getNumberOfDocuments(), reopened.getNumberOfDocuments());
+		assertEquals(index.search("note"), reopened.search("note"));
+		assertEquals(Map.of(slides, pages(2)), reopened.search("large"));
+		assertFalse(reopened.search("note").containsKey(DocumentId.canonicalPath("notes0.txt")));
+		assertTrue(reopened.search("note").containsKey(DocumentId.canonicalPath("notes19.txt")));
+	}
+
+	@Test
+	void testLongTermsAreTruncated() throws IOException {
+		String word = "a".repeat(ContentIndex.TERM_BYTES + 10);
+		index.addPage("long.txt", 1, 1, 1, word);
+		index.flush();
+		assertEquals(Set.of(DocumentId.canonicalPath("long.txt")), index.search(word).keySet());
+	}
+
+	@Test
+	void testIndexerIndexesTextDocuments() throws IOException, InterruptedException {
+		Path text = Files.writeString(directory.resolve("song.txt"), "Scarlet Town\nIn the Scarlet Town where I was born");
+		Library library = new Library();
+		Document song = new Document("Song", "", LocalDate.now(), "text/plain", text.toString(), Optional.empty());
+		library.addDocument(song);
+		ContentIndexer indexer = new ContentIndexer(library, new ContentIndex(directory.resolve("index")));
+		try {
+			assertTrue(indexer.awaitIdle(10_000));
+			assertEquals(List.of(song), indexer.search("scarlet born"));
+			library.removeDocument(song);
+			assertTrue(indexer.awaitIdle(10_000));
+			assertEquals(List.of(), indexer.search("scarlet"));
+		} finally {
+			indexer.shutdown();
+		}
+	}
+
+	@Test
+	void testIndexerReportsProgressPerDocument() throws IOException, InterruptedException {
+		Library library = new Library();
+		ContentIndexer indexer = new ContentIndexer(library, new ContentIndex(directory.resolve("index")));
+		List<IndexProgressEvent> events = Collections.synchronizedList(new ArrayList<>());
+		indexer.registerListener(events::add);
+		try {
+			library.addDocument(new Document("Aula 2", "", LocalDate.now(), "application/pdf", "doc_files/Aula2.pdf", Optional.of(13)));
+			assertTrue(indexer.awaitIdle(30_000));
+			// not one event per page: the last one tells the document is indexed
+			assertTrue(events.size() < 13);
+			IndexProgressEvent last = events.get(events.size() - 1);
+			assertEquals(13, last.getPage());
+			assertEquals(13, last.getNumberOfPages());
+		} finally {
+			indexer.shutdown();
+		}
+	}
+}
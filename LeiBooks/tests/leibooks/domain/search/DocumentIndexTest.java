@@ -0,0 +1,130 @@
+package leibooks.domain.search;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import leibooks.domain.core.Document;
+import leibooks.domain.core.Library;
+import leibooks.domain.facade.DocumentProperties;
+import leibooks.domain.facade.IDocument;
+
+class DocumentIndexTest {
+
+	private Library library;
+	private DocumentIndex index;
+	private Document slides;
+	private Document notes;
+
+	@BeforeEach
+	void setUp() {
+		library = new Library();
+		slides = newDocument("Aula 01 Slides", "Antonia Lopes", "aula01.pdf");
+		library.addDocument(slides);
+		index = new DocumentIndex(library);
+		notes = newDocument("Lecture notes", "Francisco Martins", "notes.pdf");
+		library.addDocument(notes);
+	}
+
+	private static Document newDocument(String title, String author, String path) {
+		return new Document(title, author, LocalDate.now(), "application/pdf", path, Optional.empty());
+	}
+
+	@Test
+	void testIndexesExistingAndAddedDocuments() {
+		assertEquals(2, index.getNumberOfDocuments());
+		assertArrayEquals(new int[] { slides.getId().id() }, index.term("lopes"));
+		assertArrayEquals(new int[] { notes.getId().id() }, index.term("NOTES"));
+		assertEquals(0, index.term("lope").length);
+		assertEquals(1, index.prefix("lope").length);
+	}
+
+	@Test
+	void testRemoveDocument() {
+		library.removeDocument(slides);
+		assertEquals(1, index.getNumberOfDocuments());
+		assertEquals(0, index.term("lopes").length);
+		assertEquals(List.of(), index.search("aula").get());
+	}
+
+	@Test
+	void testUpdateDocumentReindexes() {
+		DocumentProperties props = new DocumentProperties(notes);
+		props.setTitle("Exam");
+		library.updateDocument(notes, props);
+
+		assertEquals(0, index.term("lecture").length);
+		assertEquals(List.of(notes), index.search("exam").get());
+	}
+
+	@Test
+	void testAndOrQueries() {
+		assertEquals(List.of(slides), index.search("aula lop").get());
+		assertEquals(List.of(), index.search("aula martins").get());
+		List<IDocument> both = index.search("aula OR martins").get();
+		assertEquals(2, both.size());
+		assertTrue(both.contains(slides) && both.contains(notes));
+	}
+
+	@Test
+	void testWordsMatchTheTermsThatContainThem() {
+		assertEquals(List.of(slides), index.search("opes").get());
+		assertEquals(List.of(slides, notes), index.search("S").get());
+		assertEquals(List.of(notes), index.search("cis tin").get());
+		assertTrue(DocumentIndex.isWord("Lopes"));
+		assertFalse(DocumentIndex.isWord("Antonia Lopes"));
+	}
+
+	@Test
+	void testDocumentsAreInLibraryOrder() {
+		library.removeDocument(slides);
+		library.addDocument(slides);
+		DocumentProperties props = new DocumentProperties(notes);
+		props.setTitle("Slides notes");
+		library.updateDocument(notes, props);
+
+		assertEquals(List.of(notes, slides), index.search("slides").get());
+		BitSet ids = new BitSet();
+		ids.set(slides.getId().id());
+		ids.set(notes.getId().id());
+		assertEquals(List.of(notes, slides), index.getDocuments(ids));
+	}
+
+	@Test
+	void testRegexQueriesAreNotAnswered() {
+		assertFalse(DocumentIndex.isKeywordQuery(".*Lopes.*"));
+		assertFalse(index.search("Lop(es)?").isPresent());
+		assertFalse(index.search("   ").isPresent());
+	}
+
+	@Test
+	void testMergeSortedLists() {
+		assertArrayEquals(new int[] { 3, 7 }, DocumentIndex.and(new int[] { 1, 3, 7, 9 }, new int[] { 3, 4, 7 }));
+		assertArrayEquals(new int[] { 1, 3, 4, 7, 9 }, DocumentIndex.or(new int[] { 1, 3, 7, 9 }, new int[] { 3, 4, 7 }));
+	}
+
+	@Test
+	void testCandidatesMayContainTheQuery() {
+		BitSet both = new BitSet();
+		both.set(slides.getId().id());
+		both.set(notes.getId().id());
+		BitSet onlySlides = new BitSet();
+		onlySlides.set(slides.getId().id());
+		// mid-word substrings are candidates
+		assertEquals(onlySlides, index.candidates("opes").get());
+		assertEquals(onlySlides, index.candidates("nia lop").get());
+		assertEquals(new BitSet(), index.candidates("nia lopes x").get());
+		assertEquals(both, index.candidates("S").get());
+		assertEquals(onlySlides, index.candidates("TONIA").get());
+		assertFalse(index.candidates("Lop(es)?").isPresent());
+	}
+}
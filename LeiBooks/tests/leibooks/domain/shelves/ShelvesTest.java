@@ -2,7 +2,11 @@ package leibooks.domain.shelves;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
 import java.util.function.Predicate;
 
 
@@ -11,10 +15,15 @@ import javax.naming.OperationNotSupportedException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import leibooks.domain.core.Document;
 import leibooks.domain.core.ILibrary;
 import leibooks.domain.core.Library;
 import leibooks.domain.core.MockDocument;
 import leibooks.domain.facade.IDocument;
+import leibooks.domain.facade.events.AddDocumentShelfEvent;
+import leibooks.domain.facade.events.RemoveDocumentShelfEvent;
+import leibooks.domain.facade.events.ShelfEvent;
+import leibooks.domain.shelves.query.ShelfQuery;
 
 class ShelvesTest {
 
@@ -136,5 +145,85 @@ class ShelvesTest {
         assertThrows(OperationNotSupportedException.class, () -> shelves.addDocument("Smart", doc));
     }
 
+    @Test
+    void testRecentShelfRollsOverByDay() {
+        LocalDate today = LocalDate.now();
+        Document fresh = new Document("Fresh", "", today, "application/pdf", "recent/fresh.pdf", Optional.of(1));
+        Document older = new Document("Older", "", today.minusMonths(3), "text/plain", "recent/older.txt",
+                Optional.empty());
+        Document old = new Document("Old", "", today.minusMonths(13), "application/pdf", "recent/old.pdf",
+                Optional.of(1));
+        Document photo = new Document("Photo", "", today, "image/png", "recent/photo.png", Optional.of(1));
+        for (Document doc : List.of(fresh, older, old, photo)) {
+            library.addDocument(doc);
+        }
+        Shelves sixMonths = new Shelves(library, null, 6);
+        SmartShelf recent = null;
+        for (IShelf shelf : sixMonths) {
+            if ("Recent".equals(shelf.getName())) {
+                recent = (SmartShelf) shelf;
+            }
+        }
+        assertEquals(List.of(fresh, older), list(recent));
+        assertEquals(3, recent.getEvaluations(), "Only the documents of the last 6 months are tested");
+        List<ShelfEvent> events = new ArrayList<>();
+        sixMonths.registerListener(events::add);
+
+        sixMonths.rollover(today.plusMonths(4));
+        assertEquals(List.of(fresh), list(recent));
+        assertEquals(1, events.size());
+        assertEquals("Recent", ((RemoveDocumentShelfEvent) events.get(0)).getShelfName());
+        assertEquals(older, ((RemoveDocumentShelfEvent) events.get(0)).getDocument());
+        assertEquals(4, recent.getEvaluations(), "Only the documents of the expired days are tested");
+        assertTrue(recent.isConsistent());
+
+        older.toggleBookmark(0);
+        assertEquals(List.of(fresh, older), list(recent));
+        sixMonths.rollover(today.plusYears(2));
+        assertEquals(List.of(), list(recent));
+        events.clear();
+        sixMonths.rollover(today);
+        assertEquals(List.of(fresh, older), list(recent));
+        assertEquals(List.of(fresh, older), events.stream().map(e -> ((AddDocumentShelfEvent) e).getDocument()).toList());
+        assertTrue(recent.isConsistent());
+    }
+
+    @Test
+    void testQueryShelvesWithRelativeDatesRollOverByDay() {
+        LocalDate today = LocalDate.now();
+        Document monday = new Document("Monday", "", today.minusDays(3), "application/pdf", "week/monday.pdf",
+                Optional.of(1));
+        Document lastWeek = new Document("Last week", "", today.minusDays(10), "text/plain", "week/last.txt",
+                Optional.empty());
+        library.addDocument(monday);
+        library.addDocument(lastWeek);
+        shelves.addSmartShelf("This week", ShelfQuery.parse("modified >= now-1W"));
+        shelves.addSmartShelf("Fixed", ShelfQuery.parse("modified >= " + today.minusDays(7)));
+        SmartShelf week = (SmartShelf) shelves.getDocuments("This week");
+        SmartShelf fixed = (SmartShelf) shelves.getDocuments("Fixed");
+        assertEquals(List.of(monday), list(week));
+        long evaluations = fixed.getEvaluations();
+        List<ShelfEvent> events = new ArrayList<>();
+        shelves.registerListener(events::add);
+
+        shelves.rollover(today.plusDays(5));
+        assertEquals(List.of(), list(week));
+        assertTrue(week.isConsistent());
+        assertEquals(List.of(monday), events.stream().map(e -> ((RemoveDocumentShelfEvent) e).getDocument()).toList());
+        assertEquals(evaluations, fixed.getEvaluations(), "Shelves without relative dates are not tested again");
+
+        events.clear();
+        shelves.rollover(today.minusDays(4));
+        assertEquals(List.of(monday, lastWeek), list(week));
+        assertTrue(week.isConsistent());
+        assertEquals(2, events.size());
+    }
+
+    private static List<IDocument> list(Iterable<IDocument> docs) {
+        List<IDocument> result = new ArrayList<>();
+        docs.forEach(result::add);
+        return result;
+    }
+
 
 }
@@ -0,0 +1,177 @@
+package leibooks.domain.shelves;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import leibooks.domain.core.Document;
+import leibooks.domain.core.Library;
+import leibooks.domain.facade.DocumentAttribute;
+import leibooks.domain.facade.DocumentProperties;
+import leibooks.domain.facade.IDocument;
+import leibooks.domain.facade.ShelfCriteria;
+
+class SmartShelfTest {
+
+	private Library library;
+	private List<Document> docs;
+
+	@BeforeEach
+	void setUp() {
+		library = new Library();
+		docs = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			Document doc = new Document("Title " + i, "Author", LocalDate.now(), "application/pdf", "smart/doc" + i + ".pdf",
+					Optional.of(20));
+			docs.add(doc);
+			library.addDocument(doc);
+		}
+	}
+
+	@Test
+	void testFollowsDocumentEvents() {
+		SmartShelf bookmarked = new SmartShelf("Bookmarked", library, IDocument::isBookmarked);
+		assertEquals(List.of(), list(bookmarked));
+
+		docs.get(7).toggleBookmark(1);
+		docs.get(2).toggleBookmark(3);
+		assertEquals(List.of(docs.get(2), docs.get(7)), list(bookmarked));
+
+		Document late = new Document("Late", "Author", LocalDate.now(), "application/pdf", "smart/late.pdf", Optional.of(5));
+		library.addDocument(late);
+		late.toggleBookmark(2);
+		docs.get(2).toggleBookmark(3);
+		assertEquals(List.of(docs.get(7), late), list(bookmarked));
+
+		library.removeDocument(docs.get(7));
+		docs.get(7).toggleBookmark(1);
+		assertEquals(List.of(late), list(bookmarked));
+		assertTrue(bookmarked.isConsistent());
+	}
+
+	@Test
+	void testKeepsLibraryOrder() {
+		SmartShelf drafts = new SmartShelf("Drafts", library, d -> d.getTitle().startsWith("Draft"));
+		rename(docs.get(5), "Draft 5");
+		rename(docs.get(1), "Draft 1");
+		rename(docs.get(9), "Draft 9");
+		assertEquals(List.of(docs.get(1), docs.get(5), docs.get(9)), list(drafts));
+
+		library.removeDocument(docs.get(1));
+		library.addDocument(docs.get(1));
+		assertEquals(List.of(docs.get(5), docs.get(9), docs.get(1)), list(drafts));
+		assertTrue(drafts.isConsistent());
+	}
+
+	@Test
+	void testIteratingDoesNotTestTheLibrary() {
+		for (int i = 10; i < 100_000; i++) {
+			library.addDocument(new Document("Title " + i, "Author", LocalDate.now(), "application/pdf",
+					"smart/doc" + i + ".pdf", Optional.of(1)));
+		}
+		AtomicInteger tests = new AtomicInteger();
+		SmartShelf shelf = new SmartShelf("Few", library, d -> {
+			tests.incrementAndGet();
+			return d.getTitle().endsWith("000");
+		});
+		assertEquals(100_000, tests.get());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(99, list(shelf).size());
+		}
+		assertEquals(100_000, tests.get());
+		assertTrue(shelf.isConsistent());
+	}
+
+	@Test
+	void testShelvesDispatchEachEventOnce() throws OperationNotSupportedException {
+		Shelves shelves = new Shelves(library);
+		AtomicInteger tests = new AtomicInteger();
+		shelves.addSmartShelf("Counted", d -> {
+			tests.incrementAndGet();
+			return d.isBookmarked();
+		});
+		shelves.addNormalShelf("Normal");
+		assertEquals(10, tests.get());
+
+		docs.get(3).toggleBookmark(4);
+		assertEquals(11, tests.get());
+		assertEquals(List.of(docs.get(3)), list(shelves.getDocuments("Counted")));
+		assertEquals(List.of(docs.get(3)), list(shelves.getDocuments("Bookmarked")));
+
+		shelves.addDocument("Normal", docs.get(3));
+		library.removeDocument(docs.get(3));
+		docs.get(3).toggleBookmark(4);
+		assertEquals(11, tests.get());
+		assertEquals(List.of(), list(shelves.getDocuments("Normal")));
+		assertEquals(List.of(), list(shelves.getDocuments("Counted")));
+
+		shelves.removeShelf("Counted");
+		docs.get(4).toggleBookmark(1);
+		assertEquals(11, tests.get());
+	}
+
+	@Test
+	void testSkipsEventsOfUnrelatedAttributes() {
+		SmartShelf bookmarked = new SmartShelf("Bookmarked", library,
+				ShelfCriteria.of(IDocument::isBookmarked, DocumentAttribute.BOOKMARKS));
+		SmartShelf drafts = new SmartShelf("Drafts", library,
+				ShelfCriteria.of(d -> d.getTitle().startsWith("Draft"), DocumentAttribute.TITLE));
+		SmartShelf any = new SmartShelf("Any", library, d -> d.getTitle().startsWith("Draft"));
+
+		docs.get(1).addAnnotation(2, "note");
+		docs.get(2).toggleBookmark(1);
+		rename(docs.get(3), "Draft 3");
+
+		assertEquals(10 + 1, bookmarked.getEvaluations());
+		assertEquals(2, bookmarked.getSkippedEvaluations());
+		assertEquals(10 + 1, drafts.getEvaluations());
+		assertEquals(2, drafts.getSkippedEvaluations());
+		assertEquals(10 + 3, any.getEvaluations());
+		assertEquals(0, any.getSkippedEvaluations());
+		assertEquals(List.of(docs.get(2)), list(bookmarked));
+		assertEquals(List.of(docs.get(3)), list(drafts));
+		assertTrue(bookmarked.isConsistent() && drafts.isConsistent() && any.isConsistent());
+	}
+
+	@Test
+	void testInitialMembersAreTestedUnderTheLockOfTheRouter() throws Exception {
+		DocumentEventRouter router = new DocumentEventRouter(library);
+		CompletableFuture<SmartShelf> created = new CompletableFuture<>();
+		Thread creator = new Thread(() -> created.complete(new SmartShelf("All", router, d -> true)));
+		synchronized (router) {
+			creator.start();
+			// waits for the events being dispatched, e.g. of an import
+			creator.join(200);
+			assertFalse(created.isDone());
+		}
+		SmartShelf shelf = created.get(10, TimeUnit.SECONDS);
+		router.addShelf(shelf);
+		assertEquals(docs, list(shelf));
+		assertTrue(shelf.isConsistent());
+	}
+
+	private void rename(Document doc, String title) {
+		DocumentProperties properties = new DocumentProperties(doc);
+		properties.setTitle(title);
+		library.updateDocument(doc, properties);
+	}
+
+	private static List<IDocument> list(Iterable<IDocument> shelf) {
+		List<IDocument> result = new ArrayList<>();
+		shelf.forEach(result::add);
+		return result;
+	}
+}
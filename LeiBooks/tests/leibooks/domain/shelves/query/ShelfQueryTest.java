@@ -0,0 +1,152 @@
+package leibooks.domain.shelves.query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import leibooks.domain.core.Document;
+import leibooks.domain.core.Library;
+import leibooks.domain.facade.DocumentAttribute;
+import leibooks.domain.facade.IDocument;
+import leibooks.domain.facade.ShelfCriteria;
+import leibooks.domain.search.DocumentIndex;
+import leibooks.domain.shelves.IShelf;
+import leibooks.domain.shelves.Shelves;
+import leibooks.domain.shelves.SmartShelf;
+
+class ShelfQueryTest {
+
+	private Library library;
+	private Document slides;
+	private Document notes;
+	private Document photo;
+	private Document old;
+
+	@BeforeEach
+	void setUp() {
+		library = new Library();
+		slides = new Document("Aula 01 - Sockets", "Antonia Lopes", LocalDate.now(), "application/pdf", "query/aula01.pdf",
+				Optional.of(12));
+		notes = new Document("Lecture notes", "Antonia Lopes", LocalDate.now().minusMonths(2), "text/plain",
+				"query/notes.txt", Optional.empty());
+		photo = new Document("Board", "", LocalDate.now(), "image/png", "query/board.png", Optional.of(1));
+		old = new Document("Old exam", "Vasco Vasconcelos", LocalDate.of(2015, 6, 1), "application/pdf", "query/exam.pdf",
+				Optional.of(3));
+		for (Document doc : List.of(slides, notes, photo, old)) {
+			library.addDocument(doc);
+		}
+	}
+
+	@Test
+	void testParseAndSerialize() {
+		String example = "mime in (pdf, txt) and modified >= now-6M and bookmarked";
+		assertEquals(example, ShelfQuery.parse(example).toString());
+		assertEquals("title ~ aula or author = \"Antonia Lopes\" and not bookmarked",
+				ShelfQuery.parse("TITLE~aula OR author=\"Antonia Lopes\" AND NOT bookmarked").toString());
+		assertEquals("modified < 2020-01-01 and (pages >= 10 or bookmarked)",
+				ShelfQuery.parse("modified<2020-01-01 and (pages>=10 or (bookmarked))").toString());
+		assertEquals("modified = now", ShelfQuery.parse("modified = today").toString());
+
+		for (String query : List.of("not (title = x or title = y)", "bookmarked and (bookmarked and pages > 1)",
+				"title = \"and\" or author in (\"Lopes, A.\", \"say \\\"hi\\\"\", back\\slash)",
+				"mime != pdf and modified > now+1W")) {
+			ShelfQuery parsed = ShelfQuery.parse(query);
+			assertEquals(query, parsed.toString());
+			assertEquals(parsed, ShelfQuery.parse(parsed.toString()));
+		}
+	}
+
+	@Test
+	void testSyntaxErrors() {
+		for (String query : List.of("", "title", "title < x", "pages = many", "pages in (1, 2)", "modified >= yesterday",
+				"(bookmarked", "bookmarked bookmarked", "mime ~ pdf", "title = \"open", "size > 3", "not")) {
+			IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ShelfQuery.parse(query),
+					query);
+			assertTrue(e.getMessage().startsWith("Invalid shelf query at position"), e.getMessage());
+		}
+	}
+
+	@Test
+	void testEvaluation() {
+		slides.toggleBookmark(1);
+		assertEquals(List.of(slides), matches("mime in (pdf, txt) and modified >= now-6M and bookmarked"));
+		assertEquals(List.of(slides, notes), matches("mime in (pdf, txt) and modified >= now-6M"));
+		assertEquals(List.of(slides, notes), matches("author = \"antonia lopes\""));
+		assertEquals(List.of(slides), matches("title ~ \"sock aul\""));
+		assertEquals(List.of(photo, old), matches("not author ~ lopes"));
+		assertEquals(List.of(slides, old), matches("pages > 2"));
+		assertEquals(List.of(old), matches("modified < 2016-01-01 or title in (nothing)"));
+		assertEquals(List.of(photo), matches("mime = image/png"));
+	}
+
+	@Test
+	void testDependencies() {
+		ShelfCriteria criteria = ShelfQuery.parse("mime in (pdf, txt) and modified >= now-6M and bookmarked").compile();
+		assertEquals(EnumSet.of(DocumentAttribute.MIME_TYPE, DocumentAttribute.DATE, DocumentAttribute.BOOKMARKS),
+				criteria.getDependencies());
+		assertEquals(EnumSet.of(DocumentAttribute.TITLE, DocumentAttribute.AUTHOR),
+				ShelfQuery.parse("title ~ a or not author = b").compile().getDependencies());
+		assertEquals(Set.of(), ShelfQuery.parse("pages > 100").compile().getDependencies());
+	}
+
+	@Test
+	void testShelvesUseIndexes() {
+		Shelves shelves = new Shelves(library, new DocumentIndex(library));
+		notes.toggleBookmark(0);
+		old.toggleBookmark(2);
+		assertTrue(shelves.addSmartShelf("Marked", ShelfQuery.parse("bookmarked and pages < 10")));
+		assertTrue(shelves.addSmartShelf("Lopes", ShelfQuery.parse("author ~ lopes")));
+		assertFalse(shelves.addSmartShelf("Lopes", ShelfQuery.parse("bookmarked")));
+
+		SmartShelf marked = smartShelf(shelves, "Marked");
+		assertEquals(List.of(old), list(marked));
+		assertEquals(2, marked.getEvaluations());
+		SmartShelf lopes = smartShelf(shelves, "Lopes");
+		assertEquals(List.of(slides, notes), list(lopes));
+		assertEquals(2, lopes.getEvaluations());
+
+		slides.toggleBookmark(0);
+		old.toggleBookmark(2);
+		assertEquals(List.of(), list(marked));
+		assertTrue(marked.isConsistent());
+		assertEquals(Optional.of(ShelfQuery.parse("bookmarked and pages < 10")), shelves.getQuery("Marked"));
+		assertEquals(Optional.empty(), shelves.getQuery("Bookmarked"));
+	}
+
+	private List<IDocument> matches(String query) {
+		ShelfCriteria criteria = ShelfQuery.parse(query).compile();
+		List<IDocument> result = new ArrayList<>();
+		for (IDocument doc : library) {
+			if (criteria.test(doc)) {
+				result.add(doc);
+			}
+		}
+		return result;
+	}
+
+	private static SmartShelf smartShelf(Shelves shelves, String name) {
+		for (IShelf shelf : shelves) {
+			if (shelf.getName().equals(name)) {
+				return (SmartShelf) shelf;
+			}
+		}
+		throw new AssertionError("No shelf " + name);
+	}
+
+	private static List<IDocument> list(Iterable<IDocument> docs) {
+		List<IDocument> result = new ArrayList<>();
+		docs.forEach(result::add);
+		return result;
+	}
+}
@@ -0,0 +1,165 @@
+package leibooks.domain.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import javax.naming.OperationNotSupportedException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import leibooks.domain.core.Document;
+import leibooks.domain.core.Library;
+import leibooks.domain.facade.DocumentProperties;
+import leibooks.domain.facade.IDocument;
+import leibooks.domain.shelves.Shelves;
+import leibooks.domain.shelves.query.ShelfQuery;
+
+class LibraryStoreTest {
+
+	private static final LocalDate DATE = LocalDate.of(2024, 10, 1);
+
+	@TempDir
+	Path directory;
+
+	private Library library;
+	private Shelves shelves;
+	private LibraryStore store;
+	private Document slides;
+	private Document notes;
+
+	@BeforeEach
+	void setUp() throws IOException, OperationNotSupportedException {
+		open();
+		slides = new Document("Aula 01", "Antonia Lopes", DATE, "application/pdf", "aula01.pdf", Optional.of(12));
+		notes = new Document("Notes", "", DATE, "text/plain", "notes.txt", Optional.empty());
+		library.addDocument(slides);
+		library.addDocument(notes);
+		slides.toggleBookmark(3);
+		slides.addAnnotation(2, "check moodle");
+		slides.addAnnotation(2, "exam topic");
+		slides.removeAnnotation(2, 1);
+		shelves.addNormalShelf("Dco");
+		shelves.addDocument("Dco", slides);
+		shelves.addDocument("Dco", notes);
+		shelves.removeDocument("Dco", notes);
+	}
+
+	private void open() throws IOException {
+		library = new Library();
+		shelves = new Shelves(library);
+		store = new LibraryStore(directory, library, shelves);
+	}
+
+	private void reopen() throws IOException, InterruptedException {
+		store.sync();
+		store.close();
+		open();
+	}
+
+	private static List<String> titles(Iterable<IDocument> docs) {
+		List<String> result = new ArrayList<>();
+		docs.forEach(d -> result.add(d.getTitle()));
+		return result;
+	}
+
+	@Test
+	void testReplayJournal() throws IOException, InterruptedException {
+		reopen();
+		assertEquals(List.of("Aula 01", "Notes"), titles(library));
+		IDocument doc = library.getDocument("aula01.pdf").get();
+		assertEquals(Optional.of(12), doc.getNumberOfPages());
+		assertEquals(List.of(3), doc.getBookmarks());
+		assertEquals(List.of("exam topic"), doc.getAnnotations(2));
+		assertEquals(LocalDate.now(), doc.getLastModifiedDate());
+		assertEquals(DATE, library.getDocument("notes.txt").get().getLastModifiedDate());
+		assertEquals(List.of("Aula 01"), titles(shelves.getDocuments("Dco")));
+		assertEquals(List.of("Aula 01"), titles(shelves.getDocuments("Bookmarked")));
+	}
+
+	@Test
+	void testReplayRemoveAndUpdate() throws IOException, InterruptedException, OperationNotSupportedException {
+		DocumentProperties properties = new DocumentProperties(notes);
+		properties.setTitle("Lecture notes");
+		library.updateDocument(notes, properties);
+		library.removeDocument(slides);
+		shelves.addNormalShelf("Photos");
+		shelves.removeShelf("Dco");
+		reopen();
+		assertEquals(List.of("Lecture notes"), titles(library));
+		assertEquals(null, shelves.getDocuments("Dco"));
+		assertFalse(shelves.getDocuments("Photos").iterator().hasNext());
+	}
+
+	@Test
+	void testSnapshotReplacesJournal() throws IOException, InterruptedException {
+		store.snapshot();
+		notes.toggleBookmark(1);
+		store.sync();
+		assertEquals(1, store.getGeneration());
+		assertFalse(Files.exists(Journal.journalFile(directory, 0)));
+		assertTrue(Files.exists(Journal.snapshotFile(directory, 1)));
+		reopen();
+		assertEquals(1, store.getRecordsSinceSnapshot());
+		IDocument doc = library.getDocument("aula01.pdf").get();
+		assertEquals(List.of("exam topic"), doc.getAnnotations(2));
+		doc.addAnnotation(2, "slides 3 to 5");
+		doc.removeAnnotation(2, 2);
+		assertEquals(List.of(1), library.getDocument("notes.txt").get().getBookmarks());
+		reopen();
+		assertEquals(List.of("slides 3 to 5"), library.getDocument("aula01.pdf").get().getAnnotations(2));
+		assertEquals(List.of("Aula 01"), titles(shelves.getDocuments("Dco")));
+	}
+
+	@Test
+	void testReplayQueryShelves() throws IOException, InterruptedException {
+		shelves.addSmartShelf("Lopes", ShelfQuery.parse("author ~ lopes and pages >= 10"));
+		shelves.addSmartShelf("Predicate", d -> true);
+		reopen();
+		assertEquals(Optional.of(ShelfQuery.parse("author ~ lopes and pages >= 10")), shelves.getQuery("Lopes"));
+		assertEquals(List.of("Aula 01"), titles(shelves.getDocuments("Lopes")));
+		assertEquals(null, shelves.getDocuments("Predicate"));
+		store.snapshot();
+		reopen();
+		assertEquals(List.of("Aula 01"), titles(shelves.getDocuments("Lopes")));
+	}
+
+	@Test
+	void testTornRecordIsDiscarded() throws IOException, InterruptedException {
+		store.sync();
+		store.close();
+		Files.write(Journal.journalFile(directory, 0), new byte[] { 0, 0, 0, 40, 1, 2 }, StandardOpenOption.APPEND);
+		open();
+		assertEquals(2, library.getNumberOfDocuments());
+		library.getDocument("notes.txt").get().toggleBookmark(5);
+		reopen();
+		assertEquals(List.of(5), library.getDocument("notes.txt").get().getBookmarks());
+	}
+
+	@Test
+	void testFailedJournalIsReported() throws IOException, InterruptedException {
+		// the snapshot cannot be written where its temporary file goes
+		Files.createDirectory(directory.resolve(Journal.snapshotFile(directory, 1).getFileName() + ".tmp"));
+		store.snapshot();
+		assertThrows(IOException.class, store::sync);
+		notes.toggleBookmark(1);
+		assertThrows(IOException.class, store::sync);
+		store.close();
+		open();
+		// what reached the disk before the failure is replayed
+		assertEquals(List.of(3), library.getDocument("aula01.pdf").get().getBookmarks());
+		assertEquals(List.of(), library.getDocument("notes.txt").get().getBookmarks());
+	}
+}
@@ -0,0 +1,105 @@
+package leibooks.services.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.pdfview.PDFFile;
+
+class PDFFilePoolTest {
+
+	private static final File FILE = new File("doc_files", "Aula2.pdf");
+
+	@TempDir
+	Path directory;
+
+	@BeforeEach
+	void setUp() {
+		PDFFilePool.INSTANCE.setIdleLimits(PDFFilePool.IDLE_SECONDS, PDFFilePool.MAX_IDLE);
+		PDFFilePool.INSTANCE.clear();
+	}
+
+	@AfterEach
+	void tearDown() {
+		PDFFilePool.INSTANCE.setIdleLimits(PDFFilePool.IDLE_SECONDS, PDFFilePool.MAX_IDLE);
+		PDFFilePool.INSTANCE.clear();
+	}
+
+	@Test
+	void testFileIsParsedOnceAndKeptIdle() throws IOException {
+		PDFFilePool pool = PDFFilePool.INSTANCE;
+		try (PDFFilePool.Handle first = pool.acquire(FILE); PDFFilePool.Handle second = pool.acquire(FILE)) {
+			assertSame(first.getPDFFile(), second.getPDFFile());
+		}
+		assertEquals(new PDFFilePool.Stats(1, 1, 0, 1, 1), pool.getStats());
+		// the reader gets the idle file
+		PDFReader reader = new PDFReader(FILE);
+		PDFFile pdffile;
+		try (PDFFilePool.Handle handle = pool.acquire(FILE)) {
+			pdffile = handle.getPDFFile();
+			assertEquals(pdffile.getNumPages(), reader.getPages());
+		}
+		assertEquals(new PDFFilePool.Stats(3, 1, 0, 1, 1), pool.getStats());
+		pool.setIdleLimits(0, PDFFilePool.MAX_IDLE);
+		pool.evictIdle();
+		assertEquals(new PDFFilePool.Stats(3, 1, 1, 0, 0), pool.getStats());
+		try (PDFFilePool.Handle handle = pool.acquire(FILE)) {
+			assertNotSame(pdffile, handle.getPDFFile());
+		}
+	}
+
+	@Test
+	void testTextExtractorSharesTheParsedFile() throws IOException {
+		PDFFilePool pool = PDFFilePool.INSTANCE;
+		try (PDFFilePool.Handle handle = pool.acquire(FILE);
+				PDFTextExtractor extractor = new PDFTextExtractor(FILE)) {
+			assertEquals(handle.getPDFFile().getNumPages(), extractor.getNumPages());
+			assertTrue(extractor.getPageText(1).length() > 0);
+			assertEquals(1, pool.getStats().misses());
+		}
+		assertEquals(new PDFFilePool.Stats(1, 1, 0, 1, 1), pool.getStats());
+	}
+
+	@Test
+	void testOpenFilesAreNotEvicted() throws IOException {
+		PDFFilePool pool = PDFFilePool.INSTANCE;
+		pool.setIdleLimits(0, 0);
+		PDFFilePool.Handle handle = pool.acquire(FILE);
+		pool.evictIdle();
+		assertEquals(1, pool.getStats().files());
+		handle.close();
+		assertEquals(new PDFFilePool.Stats(0, 1, 1, 0, 0), pool.getStats());
+		// closing the handle again has no effect
+		handle.close();
+		assertEquals(new PDFFilePool.Stats(0, 1, 1, 0, 0), pool.getStats());
+	}
+
+	@Test
+	void testModifiedFileIsParsedAgain() throws IOException {
+		PDFFilePool pool = PDFFilePool.INSTANCE;
+		File copy = directory.resolve("copy.pdf").toFile();
+		Files.copy(FILE.toPath(), copy.toPath());
+		copy.setLastModified(1_000_000_000_000L);
+		PDFFile before;
+		try (PDFFilePool.Handle handle = pool.acquire(copy)) {
+			before = handle.getPDFFile();
+		}
+		copy.setLastModified(2_000_000_000_000L);
+		try (PDFFilePool.Handle handle = pool.acquire(copy)) {
+			assertNotSame(before, handle.getPDFFile());
+			// the version before is dropped
+			assertEquals(new PDFFilePool.Stats(0, 2, 1, 1, 0), pool.getStats());
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package leibooks.services.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Benchmark of reading the number of pages and the authors of PDF files, as
+ * done when documents are imported. It compares PDFReader, which maps the whole
+ * file and builds a PDFFile, with PDFTailReader, which only reads the end of the
+ * file and the objects it needs. For each reader it prints the median latency
+ * per file and the resident set size (VmRSS, VmHWM from /proc/self/status, so
+ * only on Linux) after reading the corpus.
+ *
+ * Run it as a plain Java program, once per reader so the two do not share the
+ * process: the first argument is "tail" or "full", the others are PDF files or
+ * folders of PDF files (default doc_files). With "-synthetic N" instead of
+ * files, it benchmarks copies of doc_files/Aula2.pdf grown to N megabytes by an
+ * incremental update with a large stream, as scanned books are.
+ */
+public final class PDFMetadataBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	private PDFMetadataBenchmark() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		boolean tail = args.length == 0 || !"full".equals(args[0]);
+		List<File> corpus = new ArrayList<>();
+		if (args.length > 2 && "-synthetic".equals(args[1])) {
+			corpus.add(synthetic(Integer.parseInt(args[2])));
+		} else {
+			for (int i = 1; i < args.length; i++) {
+				addFiles(new File(args[i]), corpus);
+			}
+			if (corpus.isEmpty()) {
+				addFiles(new File("doc_files"), corpus);
+			}
+		}
+
+		System.out.printf("%s reader, %d files, before: %s%n", tail ? "tail" : "full", corpus.size(), memory());
+		for (File file : corpus) {
+			long[] times = new long[ROUNDS];
+			int pages = 0;
+			try {
+				for (int round = 0; round < ROUNDS; round++) {
+					long start = System.nanoTime();
+					pages = tail ? new PDFTailReader(file).getPages() : new PDFReader(file).getPages();
+					times[round] = System.nanoTime() - start;
+				}
+			} catch (IOException e) {
+				System.out.printf("%-40s not read: %s%n", file.getName(), e.getMessage());
+				continue;
+			}
+			Arrays.sort(times);
+			System.out.printf("%-40s %8d KB %5d pages %10.3f ms%n", file.getName(), file.length() / 1024, pages,
+					times[ROUNDS / 2] / 1e6);
+		}
+		System.out.printf("after: %s%n", memory());
+	}
+
+	private static void addFiles(File file, List<File> corpus) {
+		if (file.isDirectory()) {
+			File[] files = file.listFiles();
+			if (files != null) {
+				Arrays.sort(files);
+				for (File f : files) {
+					addFiles(f, corpus);
+				}
+			}
+		} else if (file.getName().toLowerCase().endsWith(".pdf")) {
+			corpus.add(file);
+		}
+	}
+
+	/*
+	 * A copy of Aula2.pdf with an unused stream of the given size appended as an incremental update
+	 */
+	private static File synthetic(int megabytes) throws IOException {
+		Path copy = Files.createTempFile("benchmark", ".pdf");
+		copy.toFile().deleteOnExit();
+		byte[] original = Files.readAllBytes(Path.of("doc_files", "Aula2.pdf"));
+		String text = new String(original, StandardCharsets.ISO_8859_1);
+		String prev = text.substring(text.lastIndexOf("startxref") + "startxref".length()).replace("%%EOF", "").trim();
+		long length = (long) megabytes << 20;
+		try (RandomAccessFile out = new RandomAccessFile(copy.toFile(), "rw")) {
+			out.write(original);
+			long offset = out.getFilePointer();
+			out.write(("900 0 obj\n<< /Length " + length + " >>\nstream\n").getBytes(StandardCharsets.ISO_8859_1));
+			byte[] chunk = new byte[1 << 20];
+			for (long written = 0; written < length; written += chunk.length) {
+				out.write(chunk, 0, (int) Math.min(chunk.length, length - written));
+			}
+			out.write("\nendstream\nendobj\n".getBytes(StandardCharsets.ISO_8859_1));
+			long xref = out.getFilePointer();
+			out.write(("xref\n900 1\n" + String.format("%010d 00000 n\r\n", offset) + "trailer\n<< /Size 901 /Root 147 0 R"
+					+ " /Info 225 0 R /Prev " + prev + " >>\nstartxref\n" + xref + "\n%%EOF\n")
+					.getBytes(StandardCharsets.ISO_8859_1));
+		}
+		return copy.toFile();
+	}
+
+	private static String memory() throws IOException {
+		Path status = Path.of("/proc/self/status");
+		if (!Files.exists(status)) {
+			return "n/a";
+		}
+		StringBuilder sb = new StringBuilder();
+		for (String line : Files.readAllLines(status)) {
+			if (line.startsWith("VmRSS") || line.startsWith("VmHWM")) {
+				sb.append(line.replaceAll("\\s+", " ")).append(' ');
+			}
+		}
+		return sb.toString().trim();
+	}
+}
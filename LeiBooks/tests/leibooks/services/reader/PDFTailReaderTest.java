@@ -0,0 +1,133 @@
+package leibooks.services.reader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PDFTailReaderTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testSameMetadataAsPDFReader() throws IOException {
+		for (String name : new String[] { "Apresentacao.pdf", "Aula2.pdf", "TLXScale.pdf" }) {
+			File file = new File("doc_files", name);
+			PDFTailReader tail = new PDFTailReader(file);
+			PDFReader full = new PDFReader(file);
+			assertEquals(full.getPages(), tail.getPages(), name);
+			assertEquals(full.getAuthors(), tail.getAuthors(), name);
+		}
+	}
+
+	@Test
+	void testCrossReferenceStreamAndObjectStream() throws IOException {
+		PDFTailReader reader = new PDFTailReader(write("compressed.pdf", compressedPdf()));
+		assertEquals(3, reader.getPages());
+		assertEquals("Éva", reader.getAuthors());
+	}
+
+	@Test
+	void testIncrementalUpdate() throws IOException {
+		byte[] original = Files.readAllBytes(Path.of("doc_files", "TLXScale.pdf"));
+		String text = new String(original, StandardCharsets.ISO_8859_1);
+		int startxref = text.lastIndexOf("startxref");
+		String prev = text.substring(startxref + "startxref".length()).replace("%%EOF", "").trim();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.writeBytes(original);
+		int offset = out.size();
+		ascii(out, "30 0 obj\n<< /Author (Jos\\351 \\(ed.\\)) >>\nendobj\n");
+		int xref = out.size();
+		ascii(out, "xref\n30 1\n" + String.format("%010d 00000 n\r\n", offset)
+				+ "trailer\n<< /Size 31 /Root 14 0 R /Info 30 0 R /Prev " + prev + " >>\nstartxref\n" + xref + "\n%%EOF\n");
+		PDFTailReader reader = new PDFTailReader(write("updated.pdf", out.toByteArray()));
+		assertEquals(1, reader.getPages());
+		assertEquals("José (ed.)", reader.getAuthors());
+	}
+
+	@Test
+	void testMalformedFile() throws IOException {
+		byte[] original = Files.readAllBytes(Path.of("doc_files", "TLXScale.pdf"));
+		File truncated = write("truncated.pdf", Arrays.copyOf(original, original.length / 2));
+		assertThrows(IOException.class, () -> new PDFTailReader(truncated));
+		assertNull(new PDFTailReader(new File("doc_files", "TLXScale.pdf")).getAuthors());
+	}
+
+	/*
+	 * A PDF 1.5 file whose catalog, page tree and Info dictionary are in an object
+	 * stream, indexed by a cross-reference stream with the PNG Up predictor.
+	 */
+	private static byte[] compressedPdf() {
+		String[] objects = { "<< /Type /Catalog /Pages 2 0 R >>", "<< /Type /Pages /Kids [] /Count 3 >>",
+				"<< /Author <FEFF00C900760061> /Producer (test) >>" };
+		StringBuilder header = new StringBuilder();
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < objects.length; i++) {
+			header.append(i + 1).append(' ').append(body.length()).append(' ');
+			body.append(objects[i]).append('\n');
+		}
+		byte[] objStm = deflate((header + body.toString()).getBytes(StandardCharsets.ISO_8859_1));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ascii(out, "%PDF-1.5\n");
+		int objStmOffset = out.size();
+		ascii(out, "4 0 obj\n<< /Type /ObjStm /N 3 /First " + header.length() + " /Filter /FlateDecode /Length "
+				+ objStm.length + " >>\nstream\n");
+		out.writeBytes(objStm);
+		ascii(out, "\nendstream\nendobj\n");
+		int xrefOffset = out.size();
+
+		long[][] entries = { { 0, 0, 0 }, { 2, 4, 0 }, { 2, 4, 1 }, { 2, 4, 2 }, { 1, objStmOffset, 0 },
+				{ 1, xrefOffset, 0 } };
+		byte[] rows = new byte[entries.length * 8];
+		byte[] previous = new byte[7];
+		for (int r = 0; r < entries.length; r++) {
+			byte[] row = { (byte) entries[r][0], (byte) (entries[r][1] >> 24), (byte) (entries[r][1] >> 16),
+					(byte) (entries[r][1] >> 8), (byte) entries[r][1], (byte) (entries[r][2] >> 8), (byte) entries[r][2] };
+			rows[r * 8] = 2;
+			for (int i = 0; i < 7; i++) {
+				rows[r * 8 + 1 + i] = (byte) (row[i] - previous[i]);
+			}
+			previous = row;
+		}
+		byte[] xref = deflate(rows);
+		ascii(out, "5 0 obj\n<< /Type /XRef /Size 6 /W [1 4 2] /Root 1 0 R /Info 3 0 R /Filter /FlateDecode"
+				+ " /DecodeParms << /Columns 7 /Predictor 12 >> /Length " + xref.length + " >>\nstream\r\n");
+		out.writeBytes(xref);
+		ascii(out, "\nendstream\nendobj\nstartxref\n" + xrefOffset + "\n%%EOF\n");
+		return out.toByteArray();
+	}
+
+	private static byte[] deflate(byte[] data) {
+		Deflater deflater = new Deflater();
+		deflater.setInput(data);
+		deflater.finish();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		while (!deflater.finished()) {
+			out.write(buffer, 0, deflater.deflate(buffer));
+		}
+		deflater.end();
+		return out.toByteArray();
+	}
+
+	private static void ascii(ByteArrayOutputStream out, String s) {
+		out.writeBytes(s.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	private File write(String name, byte[] contents) throws IOException {
+		return Files.write(directory.resolve(name), contents).toFile();
+	}
+}
@@ -0,0 +1,87 @@
+package leibooks.services.viewer.swing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import leibooks.app.AppProperties;
+import leibooks.services.viewer.NoSuchPageException;
+
+class PageCacheTest {
+
+	private static final File FILE = new File("doc_files/cache-test.pdf");
+
+	// 10x10 pixels, 400 bytes
+	private static Image page() {
+		return new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+	}
+
+	@BeforeEach
+	void setUp() {
+		PageCache.INSTANCE.clear();
+		PageCache.INSTANCE.setSpillover(false);
+		PageCache.INSTANCE.setCapacity(1000);
+	}
+
+	@AfterEach
+	void tearDown() {
+		PageCache.INSTANCE.clear();
+		PageCache.INSTANCE.setSpillover(true);
+		PageCache.INSTANCE.setCapacity(AppProperties.INSTANCE.PAGE_CACHE_MEGABYTES * 1024L * 1024L);
+	}
+
+	@Test
+	void testLeastRecentlyUsedPageIsEvictedByBytes() throws NoSuchPageException {
+		PageCache cache = PageCache.INSTANCE;
+		Image first = cache.getPage(FILE, 1, 10, 10, PageCacheTest::page);
+		cache.getPage(FILE, 2, 10, 10, PageCacheTest::page);
+		assertSame(first, cache.getPage(FILE, 1, 10, 10, PageCacheTest::page));
+		// 3 pages do not fit in 1000 bytes: page 2 is the least recently used
+		cache.getPage(FILE, 3, 10, 10, PageCacheTest::page);
+		assertSame(first, cache.getPage(FILE, 1, 10, 10, PageCacheTest::page));
+		assertEquals(new PageCache.Stats(2, 0, 3, 1, 2, 800), cache.getStats());
+		cache.getPage(FILE, 2, 10, 10, PageCacheTest::page);
+		assertEquals(4, cache.getStats().misses());
+	}
+
+	@Test
+	void testSizeIsPartOfTheKey() throws NoSuchPageException {
+		PageCache cache = PageCache.INSTANCE;
+		cache.getPage(FILE, 1, 10, 10, PageCacheTest::page);
+		cache.getPage(FILE, 1, 20, 10, PageCacheTest::page);
+		assertEquals(2, cache.getStats().misses());
+		assertEquals(0, cache.getStats().hits());
+	}
+
+	@Test
+	void testAnyCachedPageIsTheLargestRender() throws NoSuchPageException {
+		PageCache cache = PageCache.INSTANCE;
+		cache.setCapacity(10000);
+		cache.getPage(FILE, 1, 10, 10, PageCacheTest::page);
+		Image large = cache.getPage(FILE, 1, 20, 20, () -> new BufferedImage(20, 20, BufferedImage.TYPE_INT_ARGB));
+		cache.getPage(FILE, 2, 30, 30, () -> new BufferedImage(30, 30, BufferedImage.TYPE_INT_ARGB));
+		assertSame(large, cache.getAnyCachedPage(FILE, 1));
+		assertNull(cache.getAnyCachedPage(FILE, 3));
+		assertEquals(0, cache.getStats().hits());
+	}
+
+	@Test
+	void testSpilledPagesAreFoundThroughSoftReferences() throws NoSuchPageException {
+		PageCache cache = PageCache.INSTANCE;
+		cache.setSpillover(true);
+		cache.setCapacity(400);
+		Image first = cache.getPage(FILE, 1, 10, 10, PageCacheTest::page);
+		cache.getPage(FILE, 2, 10, 10, PageCacheTest::page);
+		// strongly reachable here, so its soft reference was not cleared
+		assertSame(first, cache.getPage(FILE, 1, 10, 10, PageCacheTest::page));
+		assertEquals(1, cache.getStats().softHits());
+	}
+}
@@ -0,0 +1,54 @@
+package leibooks.services.viewer.swing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Image;
+import java.io.File;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import leibooks.services.reader.PDFFilePool;
+import leibooks.services.viewer.NoSuchPageException;
+
+class SwingPDFViewerTest {
+
+	private static final File FILE = new File("doc_files", "Aula2.pdf");
+
+	@Test
+	void testViewersShareTheParsedFile() {
+		assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+			PDFFilePool.INSTANCE.clear();
+			SwingPDFViewer first = new SwingPDFViewer();
+			SwingPDFViewer second = new SwingPDFViewer();
+			first.setDocument(FILE);
+			second.setDocument(FILE);
+			assertEquals(1, PDFFilePool.INSTANCE.getStats().misses());
+			// rendered at a size of their own, not to be found in the page cache
+			Image page = first.getPage(1, 97, 89);
+			assertTrue(page.getWidth(null) <= 97 && page.getHeight(null) <= 89);
+			second.getPage(2, 89, 97);
+			assertThrows(NoSuchPageException.class, () -> second.getPage(0, 89, 97));
+			first.close();
+			second.close();
+			assertEquals(1, PDFFilePool.INSTANCE.getStats().idle());
+		});
+	}
+
+	@Test
+	void testUncachedPagesAreNotKeptInThePageCache() {
+		assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+			SwingPDFViewer viewer = new SwingPDFViewer();
+			viewer.setDocument(FILE);
+			Image page = viewer.getUncachedPage(1, 83, 79);
+			assertTrue(page.getWidth(null) <= 83 && page.getHeight(null) <= 79);
+			assertNull(PageCache.INSTANCE.getCachedPage(FILE, 1, 83, 79));
+			assertThrows(NoSuchPageException.class, () -> viewer.getUncachedPage(0, 83, 79));
+			viewer.close();
+		});
+	}
+}
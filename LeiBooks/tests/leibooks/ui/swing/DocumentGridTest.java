@@ -0,0 +1,110 @@
+package leibooks.ui.swing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.swing.JViewport;
+
+import org.junit.jupiter.api.Test;
+
+import leibooks.domain.core.MockDocument;
+import leibooks.domain.facade.IDocument;
+
+class DocumentGridTest {
+
+	private static final int SIZE = 100;
+	private static final int GAP = 20;
+
+	@Test
+	void testOnlyDocumentsInViewHaveCells() {
+		List<IDocument> documents = new ArrayList<>();
+		for (int i = 0; i < 100_000; i++)
+			documents.add(new MockDocument("doc" + i + ".pdf"));
+		Set<IDocument> bound = new HashSet<>();
+		List<DocumentLabel> created = new ArrayList<>();
+		DocumentGrid grid = new DocumentGrid(SIZE, GAP, () -> {
+			DocumentLabel cell = new DocumentLabel(null, null, null);
+			created.add(cell);
+			return cell;
+		}, new DocumentGrid.CellListener() {
+			@Override
+			public void bound(DocumentLabel cell) {
+				assertTrue(bound.add(cell.getDocument()));
+			}
+
+			@Override
+			public void unbound(DocumentLabel cell) {
+				assertTrue(bound.remove(cell.getDocument()));
+			}
+		});
+		JViewport viewport = new JViewport();
+		viewport.setView(grid);
+		viewport.setSize(500, 400);
+		grid.setSize(500, 1);
+		grid.setDocuments(documents);
+		grid.setSize(grid.getPreferredSize());
+
+		// 4 columns of 120 pixels, and 4 rows in view plus 2 below
+		assertEquals(4, grid.columns(500));
+		grid.doLayout();
+		assertEquals(24, bound.size());
+		assertTrue(bound.contains(documents.get(0)));
+
+		// scrolled to row 10000: rows 9998 to 10005 have cells
+		viewport.setViewPosition(new Point(0, GAP + 10_000 * (SIZE + GAP)));
+		grid.doLayout();
+		assertEquals(32, bound.size());
+		assertTrue(bound.contains(documents.get(40_000)));
+		assertTrue(bound.contains(documents.get(39_992)));
+		assertTrue(!bound.contains(documents.get(0)));
+		// the cells are reused
+		assertTrue(created.size() <= 32);
+		assertEquals(created.size(), grid.getCellCount());
+	}
+
+	@Test
+	void testRemovedDocumentOnlyRebindsTheCellsThatChange() {
+		List<IDocument> documents = new ArrayList<>();
+		for (int i = 0; i < 100; i++)
+			documents.add(new MockDocument("doc" + i + ".pdf"));
+		List<IDocument> bound = new ArrayList<>();
+		List<IDocument> unbound = new ArrayList<>();
+		DocumentGrid grid = new DocumentGrid(SIZE, GAP, () -> new DocumentLabel(null, null, null), 
+				new DocumentGrid.CellListener() {
+			@Override
+			public void bound(DocumentLabel cell) {
+				bound.add(cell.getDocument());
+			}
+
+			@Override
+			public void unbound(DocumentLabel cell) {
+				unbound.add(cell.getDocument());
+			}
+		});
+		JViewport viewport = new JViewport();
+		viewport.setView(grid);
+		viewport.setSize(500, 400);
+		grid.setSize(500, 1);
+		grid.setDocuments(documents);
+		grid.setSize(grid.getPreferredSize());
+		grid.doLayout();
+		bound.clear();
+
+		// documents 0 to 23 have cells: 5 leaves, and 24 moves into view
+		grid.removeDocument(documents.get(5));
+		grid.removeDocument(new MockDocument("other.pdf"));
+		assertEquals(List.of(documents.get(5)), unbound);
+		assertEquals(List.of(documents.get(24)), bound);
+		assertEquals(99, grid.getDocumentCount());
+		grid.removeDocument(documents.get(30));
+		grid.removeDocument(documents.get(2));
+		assertEquals(97, grid.getDocumentCount());
+		assertEquals(List.of(documents.get(24), documents.get(25)), bound);
+	}
+}
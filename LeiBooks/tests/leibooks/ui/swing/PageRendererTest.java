@@ -0,0 +1,164 @@
+package leibooks.ui.swing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Test;
+
+import leibooks.services.viewer.IViewer;
+import leibooks.services.viewer.NoSuchPageException;
+
+class PageRendererTest {
+
+	// a viewer of a document with 5 pages
+	private static final class PagesViewer implements IViewer {
+
+		private final boolean previews;
+		private volatile int broken;
+		private final List<Integer> widths = Collections.synchronizedList(new ArrayList<>());
+
+		PagesViewer() {
+			this(true);
+		}
+
+		PagesViewer(boolean previews) {
+			this.previews = previews;
+		}
+
+		@Override
+		public Iterable<String> getSupportedViewerMimeTypes() {
+			return List.of("application/pdf");
+		}
+
+		@Override
+		public String getWidgetToolkit() {
+			return "swing";
+		}
+
+		@Override
+		public void setDocument(File file) {
+		}
+
+		@Override
+		public Object getPage(int pageNum, int width, int height) throws NoSuchPageException {
+			if (pageNum < 1 || pageNum > 5)
+				throw new NoSuchPageException();
+			if (pageNum == broken)
+				throw new IllegalStateException("Broken page " + pageNum);
+			widths.add(width);
+			return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		}
+
+		@Override
+		public Object getPreview(int pageNum, int width, int height) {
+			return !previews || pageNum < 1 || pageNum > 5 ? null : PREVIEW;
+		}
+	}
+
+	private static final Image PREVIEW = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+
+	@Test
+	void testPrefetchedPagesAreShownRightAway() throws Exception {
+		PagesViewer viewer = new PagesViewer();
+		PageRenderer renderer = new PageRenderer(viewer, 10, 10, 1);
+		CompletableFuture<Image> first = new CompletableFuture<>();
+		SwingUtilities.invokeAndWait(() -> renderer.request(1, first::complete, () -> { }, () -> { }));
+		assertNotNull(first.get(10, TimeUnit.SECONDS));
+		waitFor(() -> renderer.isRendered(2));
+
+		List<Image> shown = new ArrayList<>();
+		SwingUtilities.invokeAndWait(() -> renderer.request(2, shown::add, () -> { }, () -> { }));
+		assertEquals(1, shown.size());
+		renderer.close();
+	}
+
+	@Test
+	void testPreviewIsShownBeforeThePage() throws Exception {
+		PagesViewer viewer = new PagesViewer();
+		PageRenderer renderer = new PageRenderer(viewer, 10, 10, 1);
+		List<Image> shown = Collections.synchronizedList(new ArrayList<>());
+		// the preview is shown at once, while the viewer is busy
+		synchronized (viewer) {
+			SwingUtilities.invokeAndWait(() -> renderer.request(3, shown::add, () -> { }, () -> { }));
+			assertEquals(List.of(PREVIEW), shown);
+		}
+		waitFor(() -> shown.size() == 2);
+		assertEquals(10, shown.get(1).getWidth(null));
+
+		// prefetched pages are shown without a preview
+		waitFor(() -> renderer.isRendered(4));
+		shown.clear();
+		SwingUtilities.invokeAndWait(() -> renderer.request(4, shown::add, () -> { }, () -> { }));
+		assertEquals(1, shown.size());
+		assertEquals(10, shown.get(0).getWidth(null));
+		renderer.close();
+	}
+
+	@Test
+	void testCoarsePageIsShownWithoutAPreview() throws Exception {
+		PagesViewer viewer = new PagesViewer(false);
+		PageRenderer renderer = new PageRenderer(viewer, 40, 40, 0);
+		List<Image> shown = Collections.synchronizedList(new ArrayList<>());
+		SwingUtilities.invokeAndWait(() -> renderer.request(3, shown::add, () -> { }, () -> { }));
+		waitFor(() -> shown.size() == 2);
+		assertEquals(List.of(40 / PageRenderer.COARSE_SCALE, 40), viewer.widths);
+		assertEquals(40, shown.get(0).getWidth(null));
+		assertNotSame(shown.get(0), shown.get(1));
+		renderer.close();
+	}
+
+	@Test
+	void testMissingPagesAreLearned() throws Exception {
+		PagesViewer viewer = new PagesViewer();
+		PageRenderer renderer = new PageRenderer(viewer, 10, 10, 1);
+		CompletableFuture<Boolean> missing = new CompletableFuture<>();
+		SwingUtilities.invokeAndWait(() -> renderer.request(7, image -> missing.complete(false), 
+				() -> missing.complete(true), () -> missing.complete(false)));
+		assertTrue(missing.get(10, TimeUnit.SECONDS));
+		assertFalse(renderer.mayExist(7));
+		assertFalse(renderer.mayExist(0));
+		assertTrue(renderer.mayExist(5));
+		renderer.close();
+	}
+
+	@Test
+	void testFailedPageIsReported() throws Exception {
+		PagesViewer viewer = new PagesViewer(false);
+		viewer.broken = 3;
+		PageRenderer renderer = new PageRenderer(viewer, 10, 10, 0);
+		CompletableFuture<Boolean> failed = new CompletableFuture<>();
+		SwingUtilities.invokeAndWait(() -> renderer.request(3, image -> failed.complete(false), 
+				() -> failed.complete(false), () -> failed.complete(true)));
+		assertTrue(failed.get(10, TimeUnit.SECONDS));
+		assertTrue(renderer.mayExist(3));
+
+		// the page is not rendered again, and its failure is reported right away
+		List<Boolean> reported = new ArrayList<>();
+		SwingUtilities.invokeAndWait(() -> renderer.request(3, image -> reported.add(false), 
+				() -> reported.add(false), () -> reported.add(true)));
+		assertEquals(List.of(true), reported);
+		renderer.close();
+	}
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean() && System.nanoTime() < deadline)
+			Thread.sleep(5);
+		assertTrue(condition.getAsBoolean());
+	}
+}
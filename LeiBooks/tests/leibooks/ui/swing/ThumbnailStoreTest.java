@@ -0,0 +1,109 @@
+package leibooks.ui.swing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ThumbnailStoreTest {
+
+	@TempDir
+	Path dir;
+
+	private static BufferedImage image(Color color) {
+		BufferedImage image = new BufferedImage(20, 30, BufferedImage.TYPE_INT_ARGB);
+		for (int x = 0; x < 20; x++)
+			for (int y = 0; y < 30; y++)
+				image.setRGB(x, y, color.getRGB());
+		return image;
+	}
+
+	private File document(String folder) throws IOException {
+		Path file = dir.resolve(folder).resolve("Aula2.pdf");
+		Files.createDirectories(file.getParent());
+		Files.writeString(file, folder);
+		return file.toFile();
+	}
+
+	@Test
+	void testSameNameInDifferentFoldersDoNotCollide() throws IOException {
+		File a = document("a");
+		File b = document("b");
+		ThumbnailStore store = new ThumbnailStore(dir.resolve("thumbnails").toFile());
+		store.save(a, image(Color.RED));
+		store.save(b, image(Color.BLUE));
+		store.close();
+
+		store = new ThumbnailStore(dir.resolve("thumbnails").toFile());
+		assertEquals(Color.RED.getRGB(), store.load(a).get().getRGB(5, 5));
+		assertEquals(Color.BLUE.getRGB(), store.load(b).get().getRGB(5, 5));
+		store.close();
+	}
+
+	@Test
+	void testModifiedDocumentHasNoThumbnail() throws IOException {
+		File a = document("a");
+		ThumbnailStore store = new ThumbnailStore(dir.resolve("thumbnails").toFile());
+		store.save(a, image(Color.RED));
+		assertTrue(store.load(a).isPresent());
+		assertTrue(a.setLastModified(a.lastModified() + 10_000));
+		assertFalse(store.load(a).isPresent());
+		store.close();
+	}
+
+	@Test
+	void testCompactionDropsSupersededThumbnails() throws IOException {
+		File a = document("a");
+		File b = document("b");
+		ThumbnailStore store = new ThumbnailStore(dir.resolve("thumbnails").toFile());
+		store.save(b, image(Color.BLUE));
+		for (int i = 0; i < 5; i++)
+			store.save(a, image(Color.RED));
+		store.save(a, image(Color.GREEN));
+		Path pack = store.packFile();
+		long size = Files.size(pack);
+		assertTrue(store.staleBytes() > 0);
+
+		store.compact();
+		assertEquals(0, store.staleBytes());
+		assertNotEquals(pack, store.packFile(), "The pack is not replaced while it may be mapped");
+		assertTrue(Files.size(store.packFile()) < size);
+		assertEquals(Color.GREEN.getRGB(), store.load(a).get().getRGB(5, 5));
+		assertEquals(Color.BLUE.getRGB(), store.load(b).get().getRGB(5, 5));
+		store.close();
+
+		store = new ThumbnailStore(dir.resolve("thumbnails").toFile());
+		assertFalse(Files.exists(pack));
+		assertEquals(Color.GREEN.getRGB(), store.load(a).get().getRGB(5, 5));
+		store.close();
+	}
+
+	@Test
+	void testFailedCompactionKeepsTheStoreOpen() throws IOException {
+		File a = document("a");
+		ThumbnailStore store = new ThumbnailStore(dir.resolve("thumbnails").toFile());
+		store.save(a, image(Color.RED));
+		store.save(a, image(Color.GREEN));
+		Path pack = store.packFile();
+		// the pack of the next generation cannot be written where a folder is
+		Files.createDirectory(dir.resolve("thumbnails").resolve("thumbnails.1.pack.tmp"));
+
+		assertThrows(IOException.class, store::compact);
+		assertEquals(pack, store.packFile());
+		assertEquals(Color.GREEN.getRGB(), store.load(a).get().getRGB(5, 5));
+		store.save(a, image(Color.BLUE));
+		assertEquals(Color.BLUE.getRGB(), store.load(a).get().getRGB(5, 5));
+		store.close();
+	}
+}
@@ -0,0 +1,159 @@
+package leibooks.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.jupiter.api.Test;
+
+class AbsSubjectTest {
+
+	private record Numbered(int number) implements Event {
+	}
+
+	private static final class Counter extends AbsSubject<Numbered> {
+	}
+
+	@Test
+	void testRegisterWhileEmitting() {
+		Counter subject = new Counter();
+		List<Integer> received = new ArrayList<>();
+		subject.registerListener(new Listener<Numbered>() {
+			@Override
+			public void processEvent(Numbered e) {
+				received.add(e.number());
+				// a listener that registers a new listener on each event
+				subject.registerListener(n -> received.add(-n.number()));
+			}
+		});
+		subject.emitEvent(new Numbered(1));
+		subject.emitEvent(new Numbered(2));
+		assertEquals(List.of(1, 2, -2), received);
+	}
+
+	@Test
+	void testAsyncDispatchKeepsOrder() throws InterruptedException {
+		Counter subject = new Counter();
+		subject.setDispatchExecutor(EventBus.asyncExecutor());
+		List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch done = new CountDownLatch(1000);
+		Thread emitter = Thread.currentThread();
+		List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+		subject.registerListener(e -> {
+			threads.add(Thread.currentThread());
+			received.add(e.number());
+			done.countDown();
+		});
+		for (int i = 0; i < 1000; i++) {
+			subject.emitEvent(new Numbered(i));
+		}
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i, received.get(i));
+		}
+		assertTrue(threads.stream().noneMatch(emitter::equals));
+	}
+
+	@Test
+	void testEventDispatchThreadBridge() throws Exception {
+		Counter subject = new Counter();
+		List<Boolean> onEdt = Collections.synchronizedList(new ArrayList<>());
+		Listener<Numbered> listener = e -> onEdt.add(SwingUtilities.isEventDispatchThread());
+		subject.registerListener(EventBus.onEventDispatchThread(listener));
+		subject.registerListener(EventBus.onEventDispatchThread(listener));
+		subject.emitEvent(new Numbered(1));
+		subject.unregisterListener(EventBus.onEventDispatchThread(listener));
+		subject.emitEvent(new Numbered(2));
+		SwingUtilities.invokeAndWait(() -> {
+			// runs after the events queued before it
+		});
+		assertEquals(List.of(true), onEdt);
+	}
+
+	@Test
+	@SuppressWarnings("try")
+	void testTransactionDeliversBatch() {
+		Counter subject = new Counter();
+		List<Integer> received = new ArrayList<>();
+		List<List<Numbered>> batches = new ArrayList<>();
+		subject.registerListener(e -> received.add(e.number()));
+		subject.registerListener(new BatchListener<Numbered>() {
+			@Override
+			public void processEvent(Numbered e) {
+				batches.add(List.of(e));
+			}
+
+			@Override
+			public void processBatch(List<Numbered> events) {
+				batches.add(events);
+			}
+		});
+		try (EventTransaction outer = subject.beginTransaction()) {
+			subject.emitEvent(new Numbered(1));
+			try (EventTransaction inner = subject.beginTransaction()) {
+				subject.emitEvent(new Numbered(2));
+			}
+			assertTrue(received.isEmpty());
+			subject.emitEvent(new Numbered(3));
+		}
+		subject.emitEvent(new Numbered(4));
+		assertEquals(List.of(1, 2, 3, 4), received);
+		assertEquals(List.of(List.of(new Numbered(1), new Numbered(2), new Numbered(3)),
+				List.of(new Numbered(4))), batches);
+	}
+
+	@Test
+	void testEventsOfOtherThreadsAreNotBuffered() throws InterruptedException {
+		Counter subject = new Counter();
+		List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+		subject.registerListener(e -> received.add(e.number()));
+		EventTransaction transaction = subject.beginTransaction();
+		try {
+			subject.emitEvent(new Numbered(1));
+			Thread other = new Thread(() -> subject.emitEvent(new Numbered(2)));
+			other.start();
+			other.join();
+			assertEquals(List.of(2), received);
+		} finally {
+			transaction.close();
+		}
+		assertEquals(List.of(2, 1), received);
+	}
+
+	@Test
+	void testTransactionOfOtherThreadWaitsForTheOpenOne() throws InterruptedException {
+		Counter subject = new Counter();
+		List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+		subject.registerListener(e -> received.add(e.number()));
+		CountDownLatch began = new CountDownLatch(1);
+		EventTransaction transaction = subject.beginTransaction();
+		Thread other;
+		try {
+			subject.emitEvent(new Numbered(1));
+			other = new Thread(() -> {
+				EventTransaction t = subject.beginTransaction();
+				try {
+					began.countDown();
+					subject.emitEvent(new Numbered(2));
+				} finally {
+					t.close();
+				}
+			});
+			other.start();
+			assertFalse(began.await(200, TimeUnit.MILLISECONDS));
+		} finally {
+			transaction.close();
+		}
+		other.join();
+		assertEquals(2, received.size());
+		assertTrue(received.containsAll(List.of(1, 2)));
+	}
+}
@@ -1,9 +1,12 @@
+import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.image.BufferedImage;
 
 import javax.swing.ImageIcon;
 
 import leibooks.services.viewer.AViewer;
 import leibooks.services.viewer.NoSuchPageException;
+import leibooks.services.viewer.swing.PageCache;
 
 public class SwingImageViewer extends AViewer {
 
@@ -27,7 +30,10 @@ public class SwingImageViewer extends AViewer {
 	public Object getPage(int pageNum, int width, int height) throws NoSuchPageException {
 		if (pageNum != 1)
 			throw new NoSuchPageException();
-		
+		return PageCache.INSTANCE.getPage(file, pageNum, width, height, () -> render(width, height));
+	}
+	
+	private Image render(int width, int height) {
 		Image image = new ImageIcon (file.getAbsolutePath()).getImage();
 		
 	    double sourceWidth = image.getWidth(null);
@@ -38,6 +44,12 @@ public class SwingImageViewer extends AViewer {
 	    int thumbWidth = (int) (sourceWidth * maxRatio);
 	    int thumbHeight = (int) (sourceHeight * maxRatio);
 	    			
-	    return image.getScaledInstance(thumbWidth, thumbHeight, Image.SCALE_SMOOTH);
+	    // drawn now, as scaled instances are only loaded when drawn, to cache the pixels
+	    Image scaled = new ImageIcon (image.getScaledInstance(thumbWidth, thumbHeight, Image.SCALE_SMOOTH)).getImage();
+	    BufferedImage page = new BufferedImage(Math.max(thumbWidth, 1), Math.max(thumbHeight, 1), BufferedImage.TYPE_INT_ARGB);
+	    Graphics2D g = page.createGraphics();
+	    g.drawImage(scaled, 0, 0, null);
+	    g.dispose();
+	    return page;
 	}
 }